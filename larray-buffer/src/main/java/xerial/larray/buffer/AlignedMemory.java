@@ -0,0 +1,58 @@
+package xerial.larray.buffer;
+
+import java.lang.ref.ReferenceQueue;
+
+/**
+ * A memory whose data part starts at an aligned address within a larger memory allocated by a {@link MemoryAllocator}.
+ * This is used by the default implementation of {@link MemoryAllocator#allocate(long, long)}. The allocated memory is released
+ * through the wrapped memory, so the allocator finds it at the same header address.
+ *
+ * @author Taro L. Saito
+ */
+class AlignedMemory implements Memory {
+
+    private final Memory m;
+    private final long _data;
+    private final long _dataSize;
+    private final long _alignment;
+
+    /**
+     * @param m the allocated memory, whose data part must be larger than dataSize + alignment - 1
+     * @param dataSize the data part size
+     * @param alignment the alignment of the data part address
+     */
+    AlignedMemory(Memory m, long dataSize, long alignment) {
+        this.m = m;
+        this._data = AlignedOffHeapMemory.alignUp(m.address(), alignment);
+        this._dataSize = dataSize;
+        this._alignment = alignment;
+    }
+
+    public long headerAddress() {
+        return m.headerAddress();
+    }
+
+    public long address() {
+        return _data;
+    }
+
+    public long size() {
+        return m.size();
+    }
+
+    public long dataSize() {
+        return _dataSize;
+    }
+
+    public long alignment() {
+        return _alignment;
+    }
+
+    public void release() {
+        m.release();
+    }
+
+    public MemoryReference toRef(ReferenceQueue<Memory> queue) {
+        return m.toRef(queue);
+    }
+}
@@ -0,0 +1,77 @@
+package xerial.larray.buffer;
+
+import java.lang.ref.ReferenceQueue;
+
+/**
+ * Off-heap memory whose data part starts at an aligned address. Unlike {@link OffHeapMemory}, no size header is
+ * stored in front of the data, so the data can be aligned to cache lines or pages. The allocated
+ * address and sizes are held in this object instead.
+ *
+ * @author Taro L. Saito
+ */
+public class AlignedOffHeapMemory implements Memory {
+
+    private final long _address;
+    private final long _size;
+    private final long _data;
+    private final long _dataSize;
+    private final long _alignment;
+
+    /**
+     * @param address the allocated memory address
+     * @param size the allocated memory size, which must be larger than dataSize + alignment - 1
+     * @param dataSize the data part size
+     * @param alignment the alignment of the data part address
+     */
+    public AlignedOffHeapMemory(long address, long size, long dataSize, long alignment) {
+        this._address = address;
+        this._size = size;
+        this._data = alignUp(address, alignment);
+        this._dataSize = dataSize;
+        this._alignment = alignment;
+    }
+
+    /**
+     * Round up the address to a multiple of the alignment
+     */
+    public static long alignUp(long address, long alignment) {
+        return (address + alignment - 1L) & ~(alignment - 1L);
+    }
+
+    /**
+     * Check the alignment is a power of two
+     */
+    public static void checkAlignment(long alignment) {
+        if(alignment <= 0L || (alignment & (alignment - 1L)) != 0L)
+            throw new IllegalArgumentException(String.format("alignment must be a power of two: %,d", alignment));
+    }
+
+    public long headerAddress() {
+        return _address;
+    }
+
+    public long address() {
+        return _data;
+    }
+
+    public long size() {
+        return _size;
+    }
+
+    public long dataSize() {
+        return _dataSize;
+    }
+
+    public long alignment() {
+        return _alignment;
+    }
+
+    public void release() {
+        if(_address != 0L)
+            UnsafeUtil.unsafe.freeMemory(_address);
+    }
+
+    public MemoryReference toRef(ReferenceQueue<Memory> queue) {
+        return new AlignedOffHeapMemoryReference(this, queue);
+    }
+}
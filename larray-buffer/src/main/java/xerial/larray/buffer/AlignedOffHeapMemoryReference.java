@@ -0,0 +1,31 @@
+package xerial.larray.buffer;
+
+import java.lang.ref.ReferenceQueue;
+
+/**
+ * @author Taro L. Saito
+ */
+public class AlignedOffHeapMemoryReference extends MemoryReference {
+
+    private final long size;
+    private final long dataSize;
+    private final long alignment;
+
+    /**
+     * Create a phantom reference
+     * @param m the allocated memory
+     * @param queue the reference queue to which GCed reference of the Memory will be inserted
+     */
+    public AlignedOffHeapMemoryReference(AlignedOffHeapMemory m, ReferenceQueue<Memory> queue) {
+        super(m, queue);
+        this.size = m.size();
+        this.dataSize = m.dataSize();
+        this.alignment = m.alignment();
+    }
+
+    public Memory toMemory() {
+        return new AlignedOffHeapMemory(address, size, dataSize, alignment);
+    }
+
+    public String name() { return "aligned off-heap"; }
+}
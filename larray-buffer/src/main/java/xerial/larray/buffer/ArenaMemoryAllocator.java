@@ -0,0 +1,220 @@
+package xerial.larray.buffer;
+
+import java.io.Closeable;
+import java.lang.ref.ReferenceQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static xerial.larray.buffer.UnsafeUtil.unsafe;
+
+/**
+ * A region-based memory allocator that carves memories out of large off-heap chunks by bumping a pointer.
+ * Allocated memories are not tracked individually, and releasing a memory does nothing. All memories
+ * allocated from this arena are freed at once by calling {@link #close()}.
+ *
+ * Usage:
+ * <pre>
+ *   ArenaMemoryAllocator arena = new ArenaMemoryAllocator();
+ *   try {
+ *       // allocate LArrays or LBuffers from the arena
+ *   }
+ *   finally {
+ *       arena.close();
+ *   }
+ * </pre>
+ *
+ * After close(), the memories allocated from the arena become invalid. The arena itself can be reused
+ * for the next allocations.
+ *
+ * @author Taro L. Saito
+ */
+public class ArenaMemoryAllocator implements MemoryAllocator, Closeable {
+
+    private static Logger logger = Logger.getLogger(ArenaMemoryAllocator.class.getName());
+
+    /**
+     * Each chunk stores the address of the previously allocated chunk in its first 8 bytes
+     */
+    private static final long CHUNK_HEADER_SIZE = 8L;
+
+    private final long chunkSize;
+
+    // The most recently allocated chunk
+    private long chunk = 0L;
+    // The head of the chunk list, which may be a chunk dedicated to a large memory
+    private long lastChunk = 0L;
+    private long cursor = 0L;
+    private long limit = 0L;
+
+    private long allocatedSize = 0L;
+    private long reservedSize = 0L;
+    private int numChunks = 0;
+
+    /**
+     * Create an arena that allocates 64MB chunks
+     */
+    public ArenaMemoryAllocator() {
+        this(64L * 1024 * 1024);
+    }
+
+    /**
+     * Create an arena
+     * @param chunkSize byte size of the chunks. Memories larger than the chunk size are allocated in dedicated chunks.
+     */
+    public ArenaMemoryAllocator(long chunkSize) {
+        if(chunkSize <= CHUNK_HEADER_SIZE)
+            throw new IllegalArgumentException(String.format("chunk size is too small: %,d", chunkSize));
+        this.chunkSize = chunkSize;
+    }
+
+    private static long align8(long size) {
+        return (size + 7L) & ~7L;
+    }
+
+    private long newChunk(long size) {
+        long address = unsafe.allocateMemory(size);
+        unsafe.putLong(address, lastChunk);
+        lastChunk = address;
+        reservedSize += size;
+        numChunks++;
+        return address;
+    }
+
+    public Memory allocate(long size) {
+        return allocate(size, 8L);
+    }
+
+    public synchronized Memory allocate(long size, long alignment) {
+        AlignedOffHeapMemory.checkAlignment(alignment);
+        if(size == 0L)
+            return new OffHeapMemory();
+
+        // The size header is placed right before the aligned data address
+        long headerSize = AlignedOffHeapMemory.alignUp(OffHeapMemory.HEADER_SIZE, alignment);
+        long padding = Math.max(alignment - 8L, 0L);
+        long address;
+        if(headerSize + size + padding > chunkSize - CHUNK_HEADER_SIZE) {
+            // Use a dedicated chunk for a large memory
+            long memorySize = align8(headerSize + size + padding);
+            long c = newChunk(memorySize + CHUNK_HEADER_SIZE);
+            address = AlignedOffHeapMemory.alignUp(c + CHUNK_HEADER_SIZE + OffHeapMemory.HEADER_SIZE, alignment);
+            allocatedSize += memorySize;
+        }
+        else {
+            long data = AlignedOffHeapMemory.alignUp(cursor + OffHeapMemory.HEADER_SIZE, alignment);
+            if(chunk == 0L || data + size > limit) {
+                chunk = newChunk(chunkSize);
+                cursor = chunk + CHUNK_HEADER_SIZE;
+                limit = chunk + chunkSize;
+                data = AlignedOffHeapMemory.alignUp(cursor + OffHeapMemory.HEADER_SIZE, alignment);
+            }
+            long end = align8(data + size);
+            allocatedSize += end - cursor;
+            cursor = end;
+            address = data;
+        }
+        return new ArenaMemory(address - OffHeapMemory.HEADER_SIZE, size);
+    }
+
+    /**
+     * Resize a memory. The most recently allocated memory is extended or shrunk in place if the current chunk has enough space.
+     * Otherwise, the contents are copied to a new memory, and the old memory remains in the arena until it is closed.
+     */
+    public synchronized Memory reallocate(Memory m, long newSize) {
+        if(m instanceof ArenaMemory && newSize > 0L) {
+            long data = m.address();
+            if(data > chunk && data < limit && align8(data + m.dataSize()) == cursor && data + newSize <= limit) {
+                long end = align8(data + newSize);
+                allocatedSize += end - cursor;
+                cursor = end;
+                return new ArenaMemory(m.headerAddress(), newSize);
+            }
+        }
+        Memory newMemory = allocate(newSize);
+        long len = Math.min(m.dataSize(), newSize);
+        if(len > 0L)
+            unsafe.copyMemory(m.address(), newMemory.address(), len);
+        release(m);
+        return newMemory;
+    }
+
+    /**
+     * Get the total byte size of the memories allocated from this arena
+     */
+    public synchronized long allocatedSize() {
+        return allocatedSize;
+    }
+
+    /**
+     * Get the total byte size of the chunks reserved by this arena
+     */
+    public synchronized long reservedSize() {
+        return reservedSize;
+    }
+
+    /**
+     * Memories allocated by other allocators (e.g., memory mapped files) are only counted in allocatedSize
+     */
+    public synchronized void register(Memory m) {
+        allocatedSize += m.size();
+    }
+
+    /**
+     * Release a memory. Memories allocated from this arena are released only when the arena is closed,
+     * so this method just ignores them.
+     */
+    public void release(Memory m) {
+        if(m instanceof ArenaMemory)
+            return;
+        synchronized(this) {
+            allocatedSize -= m.size();
+        }
+        m.release();
+    }
+
+    public void release(MemoryReference ref) {
+        release(ref.toMemory());
+    }
+
+    /**
+     * Free all memories allocated from this arena
+     */
+    public synchronized void close() {
+        if(logger.isLoggable(Level.FINER)) {
+            logger.finer(String.format("Closing an arena of %,d chunks (allocated:%,d, reserved:%,d)", numChunks, allocatedSize, reservedSize));
+        }
+        long c = lastChunk;
+        while(c != 0L) {
+            long prev = unsafe.getLong(c);
+            unsafe.freeMemory(c);
+            c = prev;
+        }
+        chunk = 0L;
+        lastChunk = 0L;
+        cursor = 0L;
+        limit = 0L;
+        allocatedSize = 0L;
+        reservedSize = 0L;
+        numChunks = 0;
+    }
+
+    /**
+     * A memory in an arena chunk, which cannot be released individually
+     */
+    private static class ArenaMemory extends OffHeapMemory {
+
+        ArenaMemory(long address, long size) {
+            super(address, size);
+        }
+
+        @Override
+        public MemoryReference toRef(ReferenceQueue<Memory> queue) {
+            throw new UnsupportedOperationException("Memory allocated from an arena cannot be tracked");
+        }
+
+        @Override
+        public void release() {
+            // Released when the arena is closed
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package xerial.larray.buffer;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A memory allocator wrapper that limits the total amount of allocated memory. Whether a new allocation
+ * fits in the budget is checked against the allocatedSize() of the underlying allocator.
+ * If an allocation exceeds the budget, one of the following policies is applied:
+ * <ul>
+ *     <li>{@link OverflowPolicy#FAIL}: throw {@link MemoryBudgetExceededException} immediately</li>
+ *     <li>{@link OverflowPolicy#BLOCK}: wait until the other memories are released, or throw MemoryBudgetExceededException after the timeout</li>
+ *     <li>{@link OverflowPolicy#SPILL}: call {@link SpillHandler#spill(long)}, which should release memories, then retry the allocation once</li>
+ * </ul>
+ *
+ * Usage:
+ * <pre>
+ *   // Allow up to 8GB of off-heap memory
+ *   LBufferConfig.allocator = new BudgetedMemoryAllocator(new DefaultMemoryAllocator(), 8L * 1024 * 1024 * 1024);
+ * </pre>
+ *
+ * @author Taro L. Saito
+ */
+public class BudgetedMemoryAllocator implements MemoryAllocator {
+
+    private static Logger logger = Logger.getLogger(BudgetedMemoryAllocator.class.getName());
+
+    public enum OverflowPolicy {
+        FAIL,
+        BLOCK,
+        SPILL
+    }
+
+    /**
+     * A callback for freeing memories when the budget is exhausted
+     */
+    public interface SpillHandler {
+        /**
+         * Release memories (e.g., by writing the buffer contents to disk)
+         * @param requiredBytes the byte size that needs to be released to allocate the requested memory
+         */
+        void spill(long requiredBytes);
+    }
+
+    private final MemoryAllocator allocator;
+    private final long limit;
+    private final OverflowPolicy policy;
+    private final long timeoutMillis;
+    private final SpillHandler spillHandler;
+
+    private static final long POLLING_INTERVAL_MILLIS = 10L;
+
+    // The total byte size of the allocations in progress
+    private long reserved = 0L;
+
+    /**
+     * Create an allocator that fails when the allocation exceeds the limit
+     * @param allocator the underlying allocator
+     * @param limit the maximum byte size of the allocated memory
+     */
+    public BudgetedMemoryAllocator(MemoryAllocator allocator, long limit) {
+        this(allocator, limit, OverflowPolicy.FAIL, 0L, null);
+    }
+
+    /**
+     * Create an allocator that waits until enough memory is released when the allocation exceeds the limit
+     * @param allocator the underlying allocator
+     * @param limit the maximum byte size of the allocated memory
+     * @param timeoutMillis the maximum time to wait
+     */
+    public BudgetedMemoryAllocator(MemoryAllocator allocator, long limit, long timeoutMillis) {
+        this(allocator, limit, OverflowPolicy.BLOCK, timeoutMillis, null);
+    }
+
+    /**
+     * Create an allocator that calls the spill handler when the allocation exceeds the limit
+     * @param allocator the underlying allocator
+     * @param limit the maximum byte size of the allocated memory
+     * @param spillHandler the callback for releasing memories
+     */
+    public BudgetedMemoryAllocator(MemoryAllocator allocator, long limit, SpillHandler spillHandler) {
+        this(allocator, limit, OverflowPolicy.SPILL, 0L, spillHandler);
+    }
+
+    private BudgetedMemoryAllocator(MemoryAllocator allocator, long limit, OverflowPolicy policy, long timeoutMillis, SpillHandler spillHandler) {
+        if(allocator == null)
+            throw new NullPointerException("allocator");
+        if(limit < 0L)
+            throw new IllegalArgumentException(String.format("invalid limit: %,d", limit));
+        if(timeoutMillis < 0L)
+            throw new IllegalArgumentException(String.format("invalid timeout: %,d", timeoutMillis));
+        if(policy == OverflowPolicy.SPILL && spillHandler == null)
+            throw new NullPointerException("spillHandler");
+        this.allocator = allocator;
+        this.limit = limit;
+        this.policy = policy;
+        this.timeoutMillis = timeoutMillis;
+        this.spillHandler = spillHandler;
+    }
+
+    public OverflowPolicy getPolicy() { return policy; }
+
+    /**
+     * The maximum byte size of the allocated memory
+     */
+    public long getLimit() { return limit; }
+
+    /**
+     * The byte size that can be allocated without exceeding the budget
+     */
+    public long remaining() {
+        return Math.max(0L, limit - allocatedSize());
+    }
+
+    public long allocatedSize() {
+        return allocator.allocatedSize();
+    }
+
+    public Memory allocate(long size) {
+        if(size == 0L)
+            return allocator.allocate(size);
+
+        long required = size + OffHeapMemory.HEADER_SIZE;
+        reserve(required);
+        try {
+            return allocator.allocate(size);
+        }
+        finally {
+            synchronized(this) {
+                reserved -= required;
+            }
+        }
+    }
+
+    public Memory allocate(long size, long alignment) {
+        if(size == 0L)
+            return allocator.allocate(size, alignment);
+
+        long required = size + alignment - 1L;
+        reserve(required);
+        try {
+            return allocator.allocate(size, alignment);
+        }
+        finally {
+            synchronized(this) {
+                reserved -= required;
+            }
+        }
+    }
+
+    /**
+     * Resize a memory. Only the increased size is counted against the budget.
+     */
+    public Memory reallocate(Memory m, long newSize) {
+        long required = (newSize == 0L ? 0L : newSize + OffHeapMemory.HEADER_SIZE) - m.size();
+        if(required <= 0L) {
+            Memory newMemory = allocator.reallocate(m, newSize);
+            released();
+            return newMemory;
+        }
+
+        reserve(required);
+        try {
+            return allocator.reallocate(m, newSize);
+        }
+        finally {
+            synchronized(this) {
+                reserved -= required;
+            }
+        }
+    }
+
+    private void reserve(long required) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        boolean spilled = false;
+        while(true) {
+            long used;
+            synchronized(this) {
+                used = allocator.allocatedSize() + reserved;
+                if(used + required <= limit) {
+                    reserved += required;
+                    return;
+                }
+                if(required > limit)
+                    throw new MemoryBudgetExceededException(required, used, limit);
+
+                switch(policy) {
+                    case FAIL:
+                        throw new MemoryBudgetExceededException(required, used, limit);
+                    case BLOCK: {
+                        long remainingTime = deadline - System.currentTimeMillis();
+                        if(remainingTime <= 0L)
+                            throw new MemoryBudgetExceededException(required, used, limit);
+                        try {
+                            // Memories collected by GC are released by the underlying allocator without notifying this
+                            // allocator, so poll the allocated size periodically
+                            wait(Math.min(remainingTime, POLLING_INTERVAL_MILLIS));
+                        }
+                        catch(InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new MemoryBudgetExceededException(required, used, limit, e);
+                        }
+                        continue;
+                    }
+                    case SPILL:
+                        if(spilled)
+                            throw new MemoryBudgetExceededException(required, used, limit);
+                        break;
+                }
+            }
+            // Call the spill handler outside the lock so that it can release memories
+            if(logger.isLoggable(Level.FINE)) {
+                logger.fine(String.format("Spilling %,d bytes", used + required - limit));
+            }
+            spillHandler.spill(used + required - limit);
+            spilled = true;
+        }
+    }
+
+    public void register(Memory m) {
+        allocator.register(m);
+    }
+
+    public void release(Memory m) {
+        allocator.release(m);
+        released();
+    }
+
+    public void release(MemoryReference ref) {
+        allocator.release(ref);
+        released();
+    }
+
+    private synchronized void released() {
+        notifyAll();
+    }
+}
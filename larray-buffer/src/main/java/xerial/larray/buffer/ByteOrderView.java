@@ -0,0 +1,147 @@
+package xerial.larray.buffer;
+
+import java.nio.ByteOrder;
+
+/**
+ * A view of LBuffer that reads and writes values in a fixed byte order. The byte order is resolved when
+ * creating the view, so the accessors have no branch for checking the byte order.
+ *
+ * <pre>
+ *   ByteOrderView v = buffer.orderedView(ByteOrder.BIG_ENDIAN);
+ *   int header = v.getInt(0);
+ * </pre>
+ *
+ * @author Taro L. Saito
+ */
+public abstract class ByteOrderView {
+
+    /**
+     * True if the native byte order is big-endian
+     */
+    public static final boolean NATIVE_BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+    protected final LBufferAPI buf;
+
+    protected ByteOrderView(LBufferAPI buf) {
+        this.buf = buf;
+    }
+
+    /**
+     * Create a view of the buffer in the given byte order
+     * @param buf buffer
+     * @param order byte order of the values stored in the buffer
+     * @return
+     */
+    public static ByteOrderView of(LBufferAPI buf, ByteOrder order) {
+        if(order == ByteOrder.nativeOrder())
+            return new NativeOrder(buf);
+        else if(order == ByteOrder.BIG_ENDIAN)
+            return new BigEndian(buf);
+        else
+            return new LittleEndian(buf);
+    }
+
+    /**
+     * Byte order of this view
+     */
+    public abstract ByteOrder order();
+
+    /**
+     * The underlying buffer
+     */
+    public LBufferAPI buffer() {
+        return buf;
+    }
+
+    public long size() {
+        return buf.size();
+    }
+
+    public byte getByte(long offset) {
+        return buf.getByte(offset);
+    }
+
+    public void putByte(long offset, byte value) {
+        buf.putByte(offset, value);
+    }
+
+    public abstract char getChar(long offset);
+    public abstract short getShort(long offset);
+    public abstract int getInt(long offset);
+    public abstract float getFloat(long offset);
+    public abstract long getLong(long offset);
+    public abstract double getDouble(long offset);
+
+    public abstract void putChar(long offset, char value);
+    public abstract void putShort(long offset, short value);
+    public abstract void putInt(long offset, int value);
+    public abstract void putFloat(long offset, float value);
+    public abstract void putLong(long offset, long value);
+    public abstract void putDouble(long offset, double value);
+
+    private static final class NativeOrder extends ByteOrderView {
+        NativeOrder(LBufferAPI buf) {
+            super(buf);
+        }
+
+        public ByteOrder order() { return ByteOrder.nativeOrder(); }
+
+        public char getChar(long offset) { return buf.getChar(offset); }
+        public short getShort(long offset) { return buf.getShort(offset); }
+        public int getInt(long offset) { return buf.getInt(offset); }
+        public float getFloat(long offset) { return buf.getFloat(offset); }
+        public long getLong(long offset) { return buf.getLong(offset); }
+        public double getDouble(long offset) { return buf.getDouble(offset); }
+
+        public void putChar(long offset, char value) { buf.putChar(offset, value); }
+        public void putShort(long offset, short value) { buf.putShort(offset, value); }
+        public void putInt(long offset, int value) { buf.putInt(offset, value); }
+        public void putFloat(long offset, float value) { buf.putFloat(offset, value); }
+        public void putLong(long offset, long value) { buf.putLong(offset, value); }
+        public void putDouble(long offset, double value) { buf.putDouble(offset, value); }
+    }
+
+    private static final class BigEndian extends ByteOrderView {
+        BigEndian(LBufferAPI buf) {
+            super(buf);
+        }
+
+        public ByteOrder order() { return ByteOrder.BIG_ENDIAN; }
+
+        public char getChar(long offset) { return buf.getCharBE(offset); }
+        public short getShort(long offset) { return buf.getShortBE(offset); }
+        public int getInt(long offset) { return buf.getIntBE(offset); }
+        public float getFloat(long offset) { return buf.getFloatBE(offset); }
+        public long getLong(long offset) { return buf.getLongBE(offset); }
+        public double getDouble(long offset) { return buf.getDoubleBE(offset); }
+
+        public void putChar(long offset, char value) { buf.putCharBE(offset, value); }
+        public void putShort(long offset, short value) { buf.putShortBE(offset, value); }
+        public void putInt(long offset, int value) { buf.putIntBE(offset, value); }
+        public void putFloat(long offset, float value) { buf.putFloatBE(offset, value); }
+        public void putLong(long offset, long value) { buf.putLongBE(offset, value); }
+        public void putDouble(long offset, double value) { buf.putDoubleBE(offset, value); }
+    }
+
+    private static final class LittleEndian extends ByteOrderView {
+        LittleEndian(LBufferAPI buf) {
+            super(buf);
+        }
+
+        public ByteOrder order() { return ByteOrder.LITTLE_ENDIAN; }
+
+        public char getChar(long offset) { return buf.getCharLE(offset); }
+        public short getShort(long offset) { return buf.getShortLE(offset); }
+        public int getInt(long offset) { return buf.getIntLE(offset); }
+        public float getFloat(long offset) { return buf.getFloatLE(offset); }
+        public long getLong(long offset) { return buf.getLongLE(offset); }
+        public double getDouble(long offset) { return buf.getDoubleLE(offset); }
+
+        public void putChar(long offset, char value) { buf.putCharLE(offset, value); }
+        public void putShort(long offset, short value) { buf.putShortLE(offset, value); }
+        public void putInt(long offset, int value) { buf.putIntLE(offset, value); }
+        public void putFloat(long offset, float value) { buf.putFloatLE(offset, value); }
+        public void putLong(long offset, long value) { buf.putLongLE(offset, value); }
+        public void putDouble(long offset, double value) { buf.putDoubleLE(offset, value); }
+    }
+}
@@ -0,0 +1,101 @@
+package xerial.larray.buffer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A memory allocator that releases the memories collected by GC using the cleaner mechanism of the JVM
+ * instead of the LArray-GC thread of {@link DefaultMemoryAllocator}. In Java 9 or later, java.lang.ref.Cleaner
+ * is used. In Java 8, sun.misc.Cleaner, whose actions run in the reference handler thread of the JVM, is used.
+ *
+ * Usage:
+ * <pre>
+ *   LBufferConfig.allocator = new CleanerMemoryAllocator();
+ * </pre>
+ *
+ * @author Taro L. Saito
+ */
+public class CleanerMemoryAllocator extends DefaultMemoryAllocator {
+
+    private static Logger logger = Logger.getLogger(CleanerMemoryAllocator.class.getName());
+
+    // (Object, Runnable)void
+    private final MethodHandle register;
+
+    public CleanerMemoryAllocator() {
+        super(false);
+        this.register = findCleaner();
+    }
+
+    private static MethodHandle findCleaner() {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodType type = MethodType.methodType(void.class, Object.class, Runnable.class);
+        try {
+            // Java 9 or later
+            Class<?> cleanerClass = Class.forName("java.lang.ref.Cleaner");
+            Class<?> cleanableClass = Class.forName("java.lang.ref.Cleaner$Cleanable");
+            Object cleaner = lookup.findStatic(cleanerClass, "create", MethodType.methodType(cleanerClass)).invoke();
+            return lookup.findVirtual(cleanerClass, "register", MethodType.methodType(cleanableClass, Object.class, Runnable.class))
+                    .bindTo(cleaner)
+                    .asType(type);
+        }
+        catch(ClassNotFoundException e) {
+            try {
+                // Java 8
+                Class<?> cleanerClass = Class.forName("sun.misc.Cleaner");
+                return lookup.findStatic(cleanerClass, "create", MethodType.methodType(cleanerClass, Object.class, Runnable.class))
+                        .asType(type);
+            }
+            catch(Throwable e2) {
+                throw new IllegalStateException("No cleaner is available in this JVM", e2);
+            }
+        }
+        catch(Throwable e) {
+            throw new IllegalStateException("Failed to create java.lang.ref.Cleaner", e);
+        }
+    }
+
+    @Override
+    protected MemoryReference newReference(Memory m) {
+        // This reference is used only for releasing the memory, so no reference queue is necessary
+        MemoryReference ref = m.toRef(null);
+        try {
+            register.invokeExact((Object) m, (Runnable) new Reclaimer(this, ref));
+        }
+        catch(Throwable e) {
+            throw new IllegalStateException("Failed to register a memory to the cleaner", e);
+        }
+        return ref;
+    }
+
+    /**
+     * A cleaning action of a memory. This must not hold a reference to the Memory object.
+     */
+    private static class Reclaimer implements Runnable {
+        private final DefaultMemoryAllocator allocator;
+        private final MemoryReference ref;
+
+        Reclaimer(DefaultMemoryAllocator allocator, MemoryReference ref) {
+            this.allocator = allocator;
+            this.ref = ref;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if(logger.isLoggable(Level.FINER)) {
+                    logger.finer(String.format("Found GC target at %x", ref.address));
+                }
+                // Does nothing if the memory is already released explicitly
+                allocator.reclaim(ref);
+            }
+            catch(Throwable e) {
+                // An exception thrown from sun.misc.Cleaner terminates the JVM
+                e.printStackTrace(System.err);
+            }
+        }
+    }
+}
@@ -2,9 +2,9 @@ package xerial.larray.buffer;
 
 
 import java.lang.ref.ReferenceQueue;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,10 +19,36 @@ public class DefaultMemoryAllocator implements MemoryAllocator {
     private static Logger logger = Logger.getLogger(DefaultMemoryAllocator.class.getName());
 
     // Table from address -> MemoryReference
-    private Map<Long, MemoryReference> allocatedMemoryReferences = new ConcurrentHashMap<Long, MemoryReference>();
+    private MemoryReferenceTable allocatedMemoryReferences = new MemoryReferenceTable();
     private ReferenceQueue<Memory> queue = new ReferenceQueue<Memory>();
 
-    {
+    /**
+     * Create an allocator that releases the memories collected by GC in a background thread
+     */
+    public DefaultMemoryAllocator() {
+        this(true);
+    }
+
+    /**
+     * @param startCollector if true, start a background thread that releases the memories collected by GC.
+     *                       Subclasses that use another mechanism for detecting collected memories can set this to false.
+     */
+    protected DefaultMemoryAllocator(boolean startCollector) {
+        if(startCollector) {
+            startCollector();
+        }
+        String rate = System.getProperty(LBufferConfig.KEY_LEAK_DETECTION_SAMPLE_RATE);
+        if(rate != null) {
+            try {
+                setLeakDetector(new LeakDetector(Double.parseDouble(rate)));
+            }
+            catch(IllegalArgumentException e) {
+                logger.warning(String.format("Invalid %s: %s", LBufferConfig.KEY_LEAK_DETECTION_SAMPLE_RATE, rate));
+            }
+        }
+    }
+
+    private void startCollector() {
         // Start OffHeapMemory collector that releases the allocated memory when the corresponding Memory object is collected by GC.
         Thread collector = new Thread(new Runnable() {
             @Override
@@ -33,7 +59,7 @@ public class DefaultMemoryAllocator implements MemoryAllocator {
                         if(logger.isLoggable(Level.FINER)) {
                             logger.finer(String.format("Found GC target at %x", ref.address));
                         }
-                        release(ref);
+                        reclaim(ref);
                     }
                     catch(Exception e) {
                         e.printStackTrace(System.err);
@@ -47,12 +73,12 @@ public class DefaultMemoryAllocator implements MemoryAllocator {
         collector.start();
     }
 
-    private AtomicLong totalAllocatedSize = new AtomicLong(0L);
+    private LongAdder totalAllocatedSize = new LongAdder();
 
     /**
      * Get the total amount of allocated memory
      */
-    public long allocatedSize() { return totalAllocatedSize.get(); }
+    public long allocatedSize() { return totalAllocatedSize.sum(); }
 
     /**
      * Allocate a memory of the specified byte length. The allocated memory must be released via `release`
@@ -72,11 +98,139 @@ public class DefaultMemoryAllocator implements MemoryAllocator {
         return m;
     }
 
+    /**
+     * Allocate a memory of the specified byte length whose data part address is a multiple of the given alignment.
+     * @param size byte length of the memory
+     * @param alignment alignment of the data address. This must be a power of two.
+     * @return allocated memory information
+     */
+    public Memory allocate(long size, long alignment) {
+        AlignedOffHeapMemory.checkAlignment(alignment);
+        if(size == 0L)
+            return new OffHeapMemory();
+
+        // Allocate extra space for aligning the data address
+        long memorySize = size + alignment - 1L;
+        long address = UnsafeUtil.unsafe.allocateMemory(memorySize);
+        Memory m = new AlignedOffHeapMemory(address, memorySize, size, alignment);
+        register(m);
+        return m;
+    }
+
+    /**
+     * Resize the memory. A memory allocated by {@link #allocate(long)} is resized with realloc(), which extends the memory
+     * in place if the following space is free. For large memories, realloc() of glibc remaps the pages with mremap() instead of copying
+     * the contents. The other memories (e.g., aligned memories) are copied to a newly allocated memory.
+     * @param m memory to resize
+     * @param newSize new byte length of the memory
+     * @return resized memory information
+     */
+    public Memory reallocate(Memory m, long newSize) {
+        if(m.getClass() != OffHeapMemory.class || m.dataSize() == 0L || newSize == 0L)
+            return reallocateByCopy(m, newSize);
+
+        unregister(m);
+        long address;
+        try {
+            address = UnsafeUtil.unsafe.reallocateMemory(m.headerAddress(), newSize + OffHeapMemory.HEADER_SIZE);
+        }
+        catch(OutOfMemoryError e) {
+            // The original memory is still valid
+            register(m);
+            throw e;
+        }
+        Memory newMemory = new OffHeapMemory(address, newSize);
+        register(newMemory);
+        return newMemory;
+    }
+
+    /**
+     * Resize the memory by allocating a new memory and copying the contents
+     * @param m memory to resize
+     * @param newSize new byte length of the memory
+     * @return newly allocated memory
+     */
+    protected Memory reallocateByCopy(Memory m, long newSize) {
+        Memory newMemory = (m instanceof AlignedOffHeapMemory) ? allocate(newSize, ((AlignedOffHeapMemory) m).alignment()) : allocate(newSize);
+        long len = Math.min(m.dataSize(), newSize);
+        if(len > 0L)
+            LBufferConfig.access.copyMemory(m.address(), newMemory.address(), len);
+        release(m);
+        return newMemory;
+    }
+
+    /**
+     * Remove the memory from this allocator without freeing its content
+     * @param m memory to unregister
+     * @throws IllegalArgumentException if the memory is not registered to this allocator
+     */
+    protected void unregister(Memory m) {
+        MemoryReference ref = allocatedMemoryReferences.remove(m.headerAddress());
+        if(ref == null)
+            throw new IllegalArgumentException(String.format("Memory at %x is not allocated by this allocator", m.headerAddress()));
+        released(ref);
+        totalAllocatedSize.add(-m.size());
+    }
+
     public void register(Memory m) {
         // Register a memory reference that will be collected upon GC
-        MemoryReference ref = m.toRef(queue);
+        MemoryReference ref = newReference(m);
         allocatedMemoryReferences.put(ref.address, ref);
-        totalAllocatedSize.getAndAdd(m.size());
+        totalAllocatedSize.add(m.size());
+        LeakDetector detector = leakDetector;
+        if(detector != null) {
+            detector.allocated(ref, m.size());
+        }
+        if(reclamationThreshold != Long.MAX_VALUE) {
+            checkReclamationThreshold();
+        }
+    }
+
+    /**
+     * Create a reference for tracking the given memory. The default implementation creates a reference
+     * that will be put to the reference queue of the background collector thread when the memory is collected by GC.
+     * @param m the memory to track
+     * @return a reference to the memory
+     */
+    protected MemoryReference newReference(Memory m) {
+        return m.toRef(queue);
+    }
+
+    private volatile long reclamationThreshold = Long.MAX_VALUE;
+    private AtomicLong lastGCRequest = new AtomicLong(0L);
+    private static final long GC_REQUEST_INTERVAL_MILLIS = 100L;
+
+    /**
+     * Set the threshold of the allocated memory size for triggering GC. Memories that are not released explicitly
+     * are freed only after their Memory objects are collected by GC, but GC rarely runs if the JVM heap is
+     * not used much. When the allocated size exceeds this threshold, this allocator requests GC (at most once every
+     * 100 milliseconds) so that unreachable memories will be released.
+     *
+     * @param thresholdBytes the allocated size for triggering GC. Long.MAX_VALUE disables this check.
+     */
+    public void setReclamationThreshold(long thresholdBytes) {
+        this.reclamationThreshold = thresholdBytes;
+    }
+
+    /**
+     * Get the allocated size for triggering GC
+     */
+    public long getReclamationThreshold() {
+        return reclamationThreshold;
+    }
+
+    private void checkReclamationThreshold() {
+        if(allocatedSize() <= reclamationThreshold)
+            return;
+
+        long now = System.currentTimeMillis();
+        long last = lastGCRequest.get();
+        if(now - last >= GC_REQUEST_INTERVAL_MILLIS && lastGCRequest.compareAndSet(last, now)) {
+            if(logger.isLoggable(Level.FINER)) {
+                logger.finer(String.format("Allocated size %,d exceeds the threshold %,d. Requesting GC", allocatedSize(), reclamationThreshold));
+            }
+            System.gc();
+        }
     }
 
 
@@ -86,34 +240,88 @@ public class DefaultMemoryAllocator implements MemoryAllocator {
      * Be careful in using this method, since all of the memory addresses become invalid.
      */
     public void releaseAll() {
-        synchronized(this) {
-            Object[] refSet = allocatedMemoryReferences.values().toArray();
-            if(refSet.length != 0) {
-                logger.finer("Releasing allocated memory regions");
-            }
-            for(Object ref : refSet) {
-                release((MemoryReference) ref);
-            }
+        List<MemoryReference> refSet = allocatedMemoryReferences.values();
+        if(!refSet.isEmpty()) {
+            logger.finer("Releasing allocated memory regions");
+        }
+        for(MemoryReference ref : refSet) {
+            release(ref);
         }
     }
 
 
     public void release(MemoryReference ref) {
-        release(ref.toMemory());
+        // Release the memory only when the reference is still registered. If the memory is already released,
+        // its address might have been reused by another memory.
+        if(allocatedMemoryReferences.remove(ref.address, ref)) {
+            released(ref);
+            releaseMemory(ref.toMemory());
+        }
     }
 
     public void release(Memory m) {
-        synchronized(this) {
-            long address = m.headerAddress();
-            if(allocatedMemoryReferences.containsKey(address)) {
-                if(logger.isLoggable(Level.FINER)) {
-                    logger.finer(String.format("Released memory at %x (size:%,d)", address, m.dataSize()));
-                }
-                totalAllocatedSize.getAndAdd(-m.size());
-                allocatedMemoryReferences.remove(address);
-                m.release();
+        MemoryReference ref = allocatedMemoryReferences.remove(m.headerAddress());
+        if(ref != null) {
+            released(ref);
+            releaseMemory(m);
+        }
+    }
+
+    /**
+     * Release the memory whose Memory object is collected by GC without being released explicitly
+     * @param ref the reference to the collected memory
+     */
+    protected void reclaim(MemoryReference ref) {
+        if(allocatedMemoryReferences.remove(ref.address, ref)) {
+            LeakDetector detector = leakDetector;
+            if(detector != null) {
+                detector.reclaimed(ref);
             }
+            releaseMemory(ref.toMemory());
+        }
+    }
+
+    private void released(MemoryReference ref) {
+        LeakDetector detector = leakDetector;
+        if(detector != null) {
+            detector.released(ref);
+        }
+    }
+
+    private volatile LeakDetector leakDetector = null;
+
+    /**
+     * Set the detector of the memories reclaimed by GC without being released. Only the memories allocated after
+     * this call are tracked.
+     * @param detector leak detector, or null to disable the leak detection
+     */
+    public void setLeakDetector(LeakDetector detector) {
+        this.leakDetector = detector;
+    }
+
+    /**
+     * Get the leak detector, or null if the leak detection is disabled
+     */
+    public LeakDetector getLeakDetector() {
+        return leakDetector;
+    }
+
+    private void releaseMemory(Memory m) {
+        if(logger.isLoggable(Level.FINER)) {
+            logger.finer(String.format("Released memory at %x (size:%,d)", m.headerAddress(), m.dataSize()));
         }
+        totalAllocatedSize.add(-m.size());
+        dispose(m);
+    }
+
+
+    /**
+     * Free the memory content after it is unregistered from this allocator. Subclasses may override this method
+     * to recycle the memory instead of returning it to the OS.
+     * @param m the memory to free
+     */
+    protected void dispose(Memory m) {
+        m.release();
     }
 
 
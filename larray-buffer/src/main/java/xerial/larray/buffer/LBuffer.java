@@ -15,6 +15,16 @@ public class LBuffer extends LBufferAPI {
     public LBuffer(long size) {
         super(LBufferConfig.allocator.allocate(size));
     }
+
+    /**
+     * Allocate a memory of the specified byte size whose address is a multiple of the given alignment
+     *
+     * @param size byte size of the array
+     * @param alignment alignment of the address. This must be a power of two.
+     */
+    public LBuffer(long size, long alignment) {
+        super(LBufferConfig.allocator.allocate(size, alignment));
+    }
 }
 
 
@@ -10,15 +10,17 @@ import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
 
-import static xerial.larray.buffer.UnsafeUtil.unsafe;
+import static xerial.larray.buffer.LBufferConfig.access;
 
 /**
- * Defines common utility methods for accessing LBuffer
+ * Defines common utility methods for accessing LBuffer. LBufferAPI is AutoCloseable, so the buffer
+ * can be released deterministically with try-with-resources statement.
  *
  * @author Taro L. Saito
  */
-public class LBufferAPI {
+public class LBufferAPI implements AutoCloseable {
 
     public Memory m;
 
@@ -72,11 +74,21 @@ public class LBufferAPI {
 
     /**
      * Release the memory content. After this method invocation, the behaviour of
-     * getXXX and putXXX methods becomes undefined.
+     * getXXX and putXXX methods becomes undefined. Calling this method more than once has no effect.
      */
     public void release() {
-        LBufferConfig.allocator.release(m);
-        m = null;
+        if(m != null) {
+            LBufferConfig.allocator.release(m);
+            m = null;
+        }
+    }
+
+    /**
+     * Release the memory content. This method is the same with {@link #release()}
+     */
+    @Override
+    public void close() {
+        release();
     }
 
 
@@ -111,121 +123,694 @@ public class LBufferAPI {
      * @param value
      */
     public void fill(long offset, long length, byte value) {
-        unsafe.setMemory(address() + offset, length, value);
+        access.setMemory(address() + offset, length, value);
     }
 
     public byte getByte(int offset) {
-        return unsafe.getByte(address() + offset);
+        return access.getByte(address() + offset);
     }
 
     public char getChar(int offset) {
-        return unsafe.getChar(address() + offset);
+        return access.getChar(address() + offset);
     }
 
     public short getShort(int offset) {
-        return unsafe.getShort(address() + offset);
+        return access.getShort(address() + offset);
     }
 
     public int getInt(int offset) {
-        return unsafe.getInt(address() + offset);
+        return access.getInt(address() + offset);
     }
 
     public float getFloat(int offset) {
-        return unsafe.getFloat(address() + offset);
+        return access.getFloat(address() + offset);
     }
 
     public long getLong(int offset) {
-        return unsafe.getLong(address() + offset);
+        return access.getLong(address() + offset);
     }
 
     public double getDouble(int offset) {
-        return unsafe.getDouble(address() + offset);
+        return access.getDouble(address() + offset);
     }
 
     public void putByte(int offset, byte value) {
-        unsafe.putByte(address() + offset, value);
+        access.putByte(address() + offset, value);
     }
 
     public void putChar(int offset, char value) {
-        unsafe.putChar(address() + offset, value);
+        access.putChar(address() + offset, value);
     }
 
     public void putShort(int offset, short value) {
-        unsafe.putShort(address() + offset, value);
+        access.putShort(address() + offset, value);
     }
 
     public void putInt(int offset, int value) {
-        unsafe.putInt(address() + offset, value);
+        access.putInt(address() + offset, value);
     }
 
     public void putFloat(int offset, float value) {
-        unsafe.putFloat(address() + offset, value);
+        access.putFloat(address() + offset, value);
     }
 
     public void putLong(int offset, long value) {
-        unsafe.putLong(address() + offset, value);
+        access.putLong(address() + offset, value);
     }
 
     public void putDouble(int offset, double value) {
-        unsafe.putDouble(address() + offset, value);
+        access.putDouble(address() + offset, value);
     }
 
     public byte getByte(long offset) {
-        return unsafe.getByte(address() + offset);
+        return access.getByte(address() + offset);
     }
 
     public char getChar(long offset) {
-        return unsafe.getChar(address() + offset);
+        return access.getChar(address() + offset);
     }
 
     public short getShort(long offset) {
-        return unsafe.getShort(address() + offset);
+        return access.getShort(address() + offset);
     }
 
     public int getInt(long offset) {
-        return unsafe.getInt(address() + offset);
+        return access.getInt(address() + offset);
     }
 
     public float getFloat(long offset) {
-        return unsafe.getFloat(address() + offset);
+        return access.getFloat(address() + offset);
     }
 
     public long getLong(long offset) {
-        return unsafe.getLong(address() + offset);
+        return access.getLong(address() + offset);
     }
 
     public double getDouble(long offset) {
-        return unsafe.getDouble(address() + offset);
+        return access.getDouble(address() + offset);
     }
 
     public void putByte(long offset, byte value) {
-        unsafe.putByte(address() + offset, value);
+        access.putByte(address() + offset, value);
     }
 
     public void putChar(long offset, char value) {
-        unsafe.putChar(address() + offset, value);
+        access.putChar(address() + offset, value);
     }
 
     public void putShort(long offset, short value) {
-        unsafe.putShort(address() + offset, value);
+        access.putShort(address() + offset, value);
     }
 
     public void putInt(long offset, int value) {
-        unsafe.putInt(address() + offset, value);
+        access.putInt(address() + offset, value);
     }
 
     public void putFloat(long offset, float value) {
-        unsafe.putFloat(address() + offset, value);
+        access.putFloat(address() + offset, value);
     }
 
     public void putLong(long offset, long value) {
-        unsafe.putLong(address() + offset, value);
+        access.putLong(address() + offset, value);
     }
 
     public void putDouble(long offset, double value) {
-        unsafe.putDouble(address() + offset, value);
+        access.putDouble(address() + offset, value);
+    }
+
+
+    // Accessors of explicit byte orders: BE (big-endian) and LE (little-endian)
+
+    public char getCharBE(long offset) {
+        char v = access.getChar(address() + offset);
+        return ByteOrderView.NATIVE_BIG_ENDIAN ? v : Character.reverseBytes(v);
+    }
+
+    public short getShortBE(long offset) {
+        short v = access.getShort(address() + offset);
+        return ByteOrderView.NATIVE_BIG_ENDIAN ? v : Short.reverseBytes(v);
+    }
+
+    public int getIntBE(long offset) {
+        int v = access.getInt(address() + offset);
+        return ByteOrderView.NATIVE_BIG_ENDIAN ? v : Integer.reverseBytes(v);
+    }
+
+    public long getLongBE(long offset) {
+        long v = access.getLong(address() + offset);
+        return ByteOrderView.NATIVE_BIG_ENDIAN ? v : Long.reverseBytes(v);
+    }
+
+    public float getFloatBE(long offset) {
+        return Float.intBitsToFloat(getIntBE(offset));
+    }
+
+    public double getDoubleBE(long offset) {
+        return Double.longBitsToDouble(getLongBE(offset));
+    }
+
+    public void putCharBE(long offset, char value) {
+        access.putChar(address() + offset, ByteOrderView.NATIVE_BIG_ENDIAN ? value : Character.reverseBytes(value));
+    }
+
+    public void putShortBE(long offset, short value) {
+        access.putShort(address() + offset, ByteOrderView.NATIVE_BIG_ENDIAN ? value : Short.reverseBytes(value));
+    }
+
+    public void putIntBE(long offset, int value) {
+        access.putInt(address() + offset, ByteOrderView.NATIVE_BIG_ENDIAN ? value : Integer.reverseBytes(value));
+    }
+
+    public void putLongBE(long offset, long value) {
+        access.putLong(address() + offset, ByteOrderView.NATIVE_BIG_ENDIAN ? value : Long.reverseBytes(value));
+    }
+
+    public void putFloatBE(long offset, float value) {
+        putIntBE(offset, Float.floatToRawIntBits(value));
+    }
+
+    public void putDoubleBE(long offset, double value) {
+        putLongBE(offset, Double.doubleToRawLongBits(value));
+    }
+
+    public char getCharLE(long offset) {
+        char v = access.getChar(address() + offset);
+        return !ByteOrderView.NATIVE_BIG_ENDIAN ? v : Character.reverseBytes(v);
+    }
+
+    public short getShortLE(long offset) {
+        short v = access.getShort(address() + offset);
+        return !ByteOrderView.NATIVE_BIG_ENDIAN ? v : Short.reverseBytes(v);
+    }
+
+    public int getIntLE(long offset) {
+        int v = access.getInt(address() + offset);
+        return !ByteOrderView.NATIVE_BIG_ENDIAN ? v : Integer.reverseBytes(v);
+    }
+
+    public long getLongLE(long offset) {
+        long v = access.getLong(address() + offset);
+        return !ByteOrderView.NATIVE_BIG_ENDIAN ? v : Long.reverseBytes(v);
+    }
+
+    public float getFloatLE(long offset) {
+        return Float.intBitsToFloat(getIntLE(offset));
+    }
+
+    public double getDoubleLE(long offset) {
+        return Double.longBitsToDouble(getLongLE(offset));
+    }
+
+    public void putCharLE(long offset, char value) {
+        access.putChar(address() + offset, !ByteOrderView.NATIVE_BIG_ENDIAN ? value : Character.reverseBytes(value));
+    }
+
+    public void putShortLE(long offset, short value) {
+        access.putShort(address() + offset, !ByteOrderView.NATIVE_BIG_ENDIAN ? value : Short.reverseBytes(value));
+    }
+
+    public void putIntLE(long offset, int value) {
+        access.putInt(address() + offset, !ByteOrderView.NATIVE_BIG_ENDIAN ? value : Integer.reverseBytes(value));
+    }
+
+    public void putLongLE(long offset, long value) {
+        access.putLong(address() + offset, !ByteOrderView.NATIVE_BIG_ENDIAN ? value : Long.reverseBytes(value));
+    }
+
+    public void putFloatLE(long offset, float value) {
+        putIntLE(offset, Float.floatToRawIntBits(value));
+    }
+
+    public void putDoubleLE(long offset, double value) {
+        putLongLE(offset, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Create a view of this buffer that reads and writes values in the given byte order
+     * @param order byte order of the values stored in this buffer
+     * @return
+     */
+    public ByteOrderView orderedView(ByteOrder order) {
+        return ByteOrderView.of(this, order);
+    }
+
+    // Atomic operations for sharing the buffer between threads, or between processes through memory-mapped files.
+    // The offset must be aligned to the value size.
+
+    /**
+     * Atomically set the int value at the offset if the current value is equal to the expected one
+     * @param offset
+     * @param expected
+     * @param value
+     * @return true if the value is updated
+     */
+    public boolean compareAndSwapInt(long offset, int expected, int value) {
+        return access.compareAndSwapInt(address() + offset, expected, value);
+    }
+
+    /**
+     * Atomically set the long value at the offset if the current value is equal to the expected one
+     * @param offset
+     * @param expected
+     * @param value
+     * @return true if the value is updated
+     */
+    public boolean compareAndSwapLong(long offset, long expected, long value) {
+        return access.compareAndSwapLong(address() + offset, expected, value);
+    }
+
+    /**
+     * Atomically add the delta to the int value at the offset
+     * @return the previous value
+     */
+    public int getAndAddInt(long offset, int delta) {
+        return access.getAndAddInt(address() + offset, delta);
+    }
+
+    /**
+     * Atomically add the delta to the long value at the offset
+     * @return the previous value
+     */
+    public long getAndAddLong(long offset, long delta) {
+        return access.getAndAddLong(address() + offset, delta);
+    }
+
+    /**
+     * Atomically set the int value at the offset
+     * @return the previous value
+     */
+    public int getAndSetInt(long offset, int value) {
+        return access.getAndSetInt(address() + offset, value);
+    }
+
+    /**
+     * Atomically set the long value at the offset
+     * @return the previous value
+     */
+    public long getAndSetLong(long offset, long value) {
+        return access.getAndSetLong(address() + offset, value);
+    }
+
+    public int getIntVolatile(long offset) {
+        return access.getIntVolatile(address() + offset);
+    }
+
+    public long getLongVolatile(long offset) {
+        return access.getLongVolatile(address() + offset);
+    }
+
+    public void putIntVolatile(long offset, int value) {
+        access.putIntVolatile(address() + offset, value);
+    }
+
+    public void putLongVolatile(long offset, long value) {
+        access.putLongVolatile(address() + offset, value);
+    }
+
+    public int getIntAcquire(long offset) {
+        return access.getIntAcquire(address() + offset);
+    }
+
+    public long getLongAcquire(long offset) {
+        return access.getLongAcquire(address() + offset);
+    }
+
+    /**
+     * Write the int value so that the preceding writes become visible to the threads reading it with {@link #getIntAcquire(long)}
+     */
+    public void putIntRelease(long offset, int value) {
+        access.putIntRelease(address() + offset, value);
+    }
+
+    /**
+     * Write the long value so that the preceding writes become visible to the threads reading it with {@link #getLongAcquire(long)}
+     */
+    public void putLongRelease(long offset, long value) {
+        access.putLongRelease(address() + offset, value);
+    }
+
+    public static void loadFence() {
+        access.loadFence();
+    }
+
+    public static void storeFence() {
+        access.storeFence();
+    }
+
+    public static void fullFence() {
+        access.fullFence();
+    }
+
+    /**
+     * Find the first byte that differs between this buffer and the other buffer
+     * @param other
+     * @return the index of the first mismatch, the smaller size if one buffer is a prefix of the other, or -1 if the buffers have the same contents
+     */
+    public long mismatch(LBufferAPI other) {
+        long len = Math.min(size(), other.size());
+        long i = MemoryOps.mismatch(address(), other.address(), len);
+        if(i < 0 && size() != other.size())
+            return len;
+        return i;
+    }
+
+    /**
+     * Find the first byte that differs between the ranges of this buffer and the other buffer
+     * @param offset
+     * @param other
+     * @param otherOffset
+     * @param length
+     * @return the relative index of the first mismatch, or -1 if the ranges have the same contents
+     */
+    public long mismatch(long offset, LBufferAPI other, long otherOffset, long length) {
+        return MemoryOps.mismatch(checkRange(offset, length), other.checkRange(otherOffset, length), length);
+    }
+
+    /**
+     * Returns true if the ranges of this buffer and the other buffer have the same contents
+     */
+    public boolean equals(long offset, LBufferAPI other, long otherOffset, long length) {
+        return mismatch(offset, other, otherOffset, length) < 0;
+    }
+
+    /**
+     * Returns true if this buffer and the other buffer have the same size and contents
+     */
+    public boolean contentEquals(LBufferAPI other) {
+        return size() == other.size() && MemoryOps.mismatch(address(), other.address(), size()) < 0;
+    }
+
+    /**
+     * Compare the contents in the lexicographic order of unsigned bytes
+     * @param other
+     * @return a negative value, zero or a positive value if this buffer is smaller than, equal to or larger than the other buffer
+     */
+    public int compareTo(LBufferAPI other) {
+        return MemoryOps.compare(address(), size(), other.address(), other.size());
+    }
+
+    /**
+     * Compute a 64-bit hash value of the buffer contents
+     * @see MemoryOps#hash64(long, long, long)
+     */
+    public long hash64() {
+        return MemoryOps.hash64(address(), size(), 0L);
+    }
+
+    /**
+     * Compute a 64-bit hash value of the range
+     * @see MemoryOps#hash64(long, long, long)
+     */
+    public long hash64(long offset, long length) {
+        return MemoryOps.hash64(checkRange(offset, length), length, 0L);
+    }
+
+    /**
+     * Compute the CRC32C checksum of the buffer contents
+     * @return CRC32C value in the lower 32 bits
+     */
+    public long crc32c() {
+        return MemoryChecksum.crc32c(address(), size());
+    }
+
+    /**
+     * Compute the CRC32C checksum of the range
+     * @param offset
+     * @param length
+     * @param parallelism the number of threads to use for large ranges. The result does not depend on the parallelism
+     * @return CRC32C value in the lower 32 bits
+     */
+    public long crc32c(long offset, long length, int parallelism) {
+        return MemoryChecksum.crc32c(checkRange(offset, length), length, parallelism);
+    }
+
+    /**
+     * Compute the xxHash64 value of the buffer contents with seed 0
+     */
+    public long xxHash64() {
+        return MemoryChecksum.xxHash64(address(), size(), 0L);
+    }
+
+    /**
+     * Compute the xxHash64 value of the range
+     */
+    public long xxHash64(long offset, long length, long seed) {
+        return MemoryChecksum.xxHash64(checkRange(offset, length), length, seed);
+    }
+
+    /**
+     * Compute a hash value of the range by combining the xxHash64 values of the chunks computed in parallel
+     * @see MemoryChecksum#xxHash64Chunked(long, long, long, int)
+     */
+    public long xxHash64Chunked(long offset, long length, long seed, int parallelism) {
+        return MemoryChecksum.xxHash64Chunked(checkRange(offset, length), length, seed, parallelism);
+    }
+
+    public void get(long offset, char[] dest) {
+        get(offset, dest, 0, dest.length);
+    }
+
+    public void get(long offset, char[] dest, int destIndex, int length) {
+        get(offset, dest, destIndex, length, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Read char values beginning from the offset into the destination array
+     * @param offset byte offset in this buffer
+     * @param dest destination array
+     * @param destIndex index in the destination array
+     * @param length the number of values to read
+     * @param order byte order of the values stored in this buffer
+     */
+    public void get(long offset, char[] dest, int destIndex, int length, ByteOrder order) {
+        access.copyToArray(checkRange(offset, (long) length * 2), dest, destIndex, length, order != ByteOrder.nativeOrder());
+    }
+
+    public void put(long offset, char[] src) {
+        put(offset, src, 0, src.length);
+    }
+
+    public void put(long offset, char[] src, int srcIndex, int length) {
+        put(offset, src, srcIndex, length, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Write char values of the source array to this buffer beginning from the offset
+     * @param offset byte offset in this buffer
+     * @param src source array
+     * @param srcIndex index in the source array
+     * @param length the number of values to write
+     * @param order byte order of the values to store in this buffer
+     */
+    public void put(long offset, char[] src, int srcIndex, int length, ByteOrder order) {
+        access.copyFromArray(src, srcIndex, checkRange(offset, (long) length * 2), length, order != ByteOrder.nativeOrder());
+    }
+
+    public void get(long offset, short[] dest) {
+        get(offset, dest, 0, dest.length);
+    }
+
+    public void get(long offset, short[] dest, int destIndex, int length) {
+        get(offset, dest, destIndex, length, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Read short values beginning from the offset into the destination array
+     * @param offset byte offset in this buffer
+     * @param dest destination array
+     * @param destIndex index in the destination array
+     * @param length the number of values to read
+     * @param order byte order of the values stored in this buffer
+     */
+    public void get(long offset, short[] dest, int destIndex, int length, ByteOrder order) {
+        access.copyToArray(checkRange(offset, (long) length * 2), dest, destIndex, length, order != ByteOrder.nativeOrder());
+    }
+
+    public void put(long offset, short[] src) {
+        put(offset, src, 0, src.length);
+    }
+
+    public void put(long offset, short[] src, int srcIndex, int length) {
+        put(offset, src, srcIndex, length, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Write short values of the source array to this buffer beginning from the offset
+     * @param offset byte offset in this buffer
+     * @param src source array
+     * @param srcIndex index in the source array
+     * @param length the number of values to write
+     * @param order byte order of the values to store in this buffer
+     */
+    public void put(long offset, short[] src, int srcIndex, int length, ByteOrder order) {
+        access.copyFromArray(src, srcIndex, checkRange(offset, (long) length * 2), length, order != ByteOrder.nativeOrder());
+    }
+
+    public void get(long offset, int[] dest) {
+        get(offset, dest, 0, dest.length);
+    }
+
+    public void get(long offset, int[] dest, int destIndex, int length) {
+        get(offset, dest, destIndex, length, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Read int values beginning from the offset into the destination array
+     * @param offset byte offset in this buffer
+     * @param dest destination array
+     * @param destIndex index in the destination array
+     * @param length the number of values to read
+     * @param order byte order of the values stored in this buffer
+     */
+    public void get(long offset, int[] dest, int destIndex, int length, ByteOrder order) {
+        access.copyToArray(checkRange(offset, (long) length * 4), dest, destIndex, length, order != ByteOrder.nativeOrder());
+    }
+
+    public void put(long offset, int[] src) {
+        put(offset, src, 0, src.length);
+    }
+
+    public void put(long offset, int[] src, int srcIndex, int length) {
+        put(offset, src, srcIndex, length, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Write int values of the source array to this buffer beginning from the offset
+     * @param offset byte offset in this buffer
+     * @param src source array
+     * @param srcIndex index in the source array
+     * @param length the number of values to write
+     * @param order byte order of the values to store in this buffer
+     */
+    public void put(long offset, int[] src, int srcIndex, int length, ByteOrder order) {
+        access.copyFromArray(src, srcIndex, checkRange(offset, (long) length * 4), length, order != ByteOrder.nativeOrder());
     }
 
+    public void get(long offset, float[] dest) {
+        get(offset, dest, 0, dest.length);
+    }
+
+    public void get(long offset, float[] dest, int destIndex, int length) {
+        get(offset, dest, destIndex, length, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Read float values beginning from the offset into the destination array
+     * @param offset byte offset in this buffer
+     * @param dest destination array
+     * @param destIndex index in the destination array
+     * @param length the number of values to read
+     * @param order byte order of the values stored in this buffer
+     */
+    public void get(long offset, float[] dest, int destIndex, int length, ByteOrder order) {
+        access.copyToArray(checkRange(offset, (long) length * 4), dest, destIndex, length, order != ByteOrder.nativeOrder());
+    }
+
+    public void put(long offset, float[] src) {
+        put(offset, src, 0, src.length);
+    }
+
+    public void put(long offset, float[] src, int srcIndex, int length) {
+        put(offset, src, srcIndex, length, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Write float values of the source array to this buffer beginning from the offset
+     * @param offset byte offset in this buffer
+     * @param src source array
+     * @param srcIndex index in the source array
+     * @param length the number of values to write
+     * @param order byte order of the values to store in this buffer
+     */
+    public void put(long offset, float[] src, int srcIndex, int length, ByteOrder order) {
+        access.copyFromArray(src, srcIndex, checkRange(offset, (long) length * 4), length, order != ByteOrder.nativeOrder());
+    }
+
+    public void get(long offset, long[] dest) {
+        get(offset, dest, 0, dest.length);
+    }
+
+    public void get(long offset, long[] dest, int destIndex, int length) {
+        get(offset, dest, destIndex, length, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Read long values beginning from the offset into the destination array
+     * @param offset byte offset in this buffer
+     * @param dest destination array
+     * @param destIndex index in the destination array
+     * @param length the number of values to read
+     * @param order byte order of the values stored in this buffer
+     */
+    public void get(long offset, long[] dest, int destIndex, int length, ByteOrder order) {
+        access.copyToArray(checkRange(offset, (long) length * 8), dest, destIndex, length, order != ByteOrder.nativeOrder());
+    }
+
+    public void put(long offset, long[] src) {
+        put(offset, src, 0, src.length);
+    }
+
+    public void put(long offset, long[] src, int srcIndex, int length) {
+        put(offset, src, srcIndex, length, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Write long values of the source array to this buffer beginning from the offset
+     * @param offset byte offset in this buffer
+     * @param src source array
+     * @param srcIndex index in the source array
+     * @param length the number of values to write
+     * @param order byte order of the values to store in this buffer
+     */
+    public void put(long offset, long[] src, int srcIndex, int length, ByteOrder order) {
+        access.copyFromArray(src, srcIndex, checkRange(offset, (long) length * 8), length, order != ByteOrder.nativeOrder());
+    }
+
+    public void get(long offset, double[] dest) {
+        get(offset, dest, 0, dest.length);
+    }
+
+    public void get(long offset, double[] dest, int destIndex, int length) {
+        get(offset, dest, destIndex, length, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Read double values beginning from the offset into the destination array
+     * @param offset byte offset in this buffer
+     * @param dest destination array
+     * @param destIndex index in the destination array
+     * @param length the number of values to read
+     * @param order byte order of the values stored in this buffer
+     */
+    public void get(long offset, double[] dest, int destIndex, int length, ByteOrder order) {
+        access.copyToArray(checkRange(offset, (long) length * 8), dest, destIndex, length, order != ByteOrder.nativeOrder());
+    }
+
+    public void put(long offset, double[] src) {
+        put(offset, src, 0, src.length);
+    }
+
+    public void put(long offset, double[] src, int srcIndex, int length) {
+        put(offset, src, srcIndex, length, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Write double values of the source array to this buffer beginning from the offset
+     * @param offset byte offset in this buffer
+     * @param src source array
+     * @param srcIndex index in the source array
+     * @param length the number of values to write
+     * @param order byte order of the values to store in this buffer
+     */
+    public void put(long offset, double[] src, int srcIndex, int length, ByteOrder order) {
+        access.copyFromArray(src, srcIndex, checkRange(offset, (long) length * 8), length, order != ByteOrder.nativeOrder());
+    }
+
+    private long checkRange(long offset, long byteLength) {
+        if (offset < 0 || byteLength < 0 || offset > size() - byteLength)
+            throw new IndexOutOfBoundsException(String.format("offset:%,d, length:%,d, size:%,d", offset, byteLength, size()));
+        return address() + offset;
+    }
 
     /**
      * Copy the contents of this buffer begginning from the srcOffset to a destination byte array
@@ -235,14 +820,9 @@ public class LBufferAPI {
      * @param size
      */
     public void copyTo(int srcOffset, byte[] destArray, int destOffset, int size) {
-        int cursor = destOffset;
-        for (ByteBuffer bb : toDirectByteBuffers(srcOffset, size)) {
-            int bbSize = bb.remaining();
-            if ((cursor + bbSize) > destArray.length)
-                throw new ArrayIndexOutOfBoundsException(String.format("cursor + bbSize = %,d", cursor + bbSize));
-            bb.get(destArray, cursor, bbSize);
-            cursor += bbSize;
-        }
+        if ((destOffset + size) > destArray.length)
+            throw new ArrayIndexOutOfBoundsException(String.format("destOffset + size = %,d", destOffset + size));
+        access.copyToArray(address() + srcOffset, destArray, destOffset, size);
     }
 
     /**
@@ -253,7 +833,7 @@ public class LBufferAPI {
      * @param size
      */
     public void copyTo(long srcOffset, LBufferAPI dest, long destOffset, long size) {
-        unsafe.copyMemory(address() + srcOffset, dest.address() + destOffset, size);
+        access.copyMemory(address() + srcOffset, dest.address() + destOffset, size);
     }
 
     /**
@@ -274,7 +854,8 @@ public class LBufferAPI {
 
     /**
      * Create a view of the range [from, to) of this buffer. Unlike slice(from, to), the generated view
-     * is a reference to this buffer.
+     * is a reference to this buffer. The view does not own the memory, so releasing either this buffer or the view
+     * invalidates both of them. Use {@link RefCountedLBuffer} for sharing the memory safely.
      * @param from
      * @param to
      * @return
@@ -295,21 +876,19 @@ public class LBufferAPI {
             throw new IllegalStateException("Cannot create byte array of more than 2GB");
 
         int len = (int) size();
-        ByteBuffer bb = toDirectByteBuffer(0L, len);
         byte[] b = new byte[len];
         // Copy data to the array
-        bb.get(b, 0, len);
+        access.copyToArray(address(), b, 0, len);
         return b;
     }
 
     /**
-     * Write the buffer contents to the given file channel. This method just
-     * calls channel.write(this.toDirectByteBuffers());
+     * Write the buffer contents to the given file channel.
      * @param channel
      * @throws IOException
      */
     public void writeTo(FileChannel channel) throws IOException {
-        channel.write(toDirectByteBuffers());
+        writeTo((WritableByteChannel) channel);
     }
 
     /**
@@ -319,18 +898,26 @@ public class LBufferAPI {
      * @throws IOException
      */
     public void writeTo(GatheringByteChannel channel) throws IOException {
-        channel.write(toDirectByteBuffers());
+        writeTo((WritableByteChannel) channel);
     }
 
     /**
-     * Writes the buffer contents to the given byte channel.
+     * Writes the buffer contents to the given byte channel. The contents are passed to the channel
+     * through a DirectByteBuffer view reused in the current thread, so the channel must not retain the given buffer.
      *
      * @param channel
      * @throws IOException
      */
     public void writeTo(WritableByteChannel channel) throws IOException {
-        for (ByteBuffer buffer : toDirectByteBuffers()) {
-            channel.write(buffer);
+        long pos = 0L;
+        long limit = size();
+        while (pos < limit) {
+            int blockLength = (int) Math.min(limit - pos, Integer.MAX_VALUE);
+            ByteBuffer buffer = UnsafeUtil.directByteBufferView(address() + pos, blockLength);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            pos += blockLength;
         }
     }
 
@@ -340,14 +927,54 @@ public class LBufferAPI {
      * @throws IOException
      */
     public void writeTo(File file) throws IOException {
+        writeTo(file, ParallelFileIO.defaultParallelism(), false, null);
+    }
+
+    /**
+     * Dump the buffer contents to a file. The contents are split into chunks, which are written concurrently with the given number of threads.
+     * @param file
+     * @param parallelism the number of threads to write the file
+     * @param sync if true, the file contents are flushed to the storage device (fsync) before returning
+     * @param listener progress listener, or null
+     * @throws IOException
+     */
+    public void writeTo(File file, int parallelism, boolean sync, ProgressListener listener) throws IOException {
         FileChannel channel = new FileOutputStream(file).getChannel();
         try {
-            writeTo(channel);
+            ParallelFileIO.write(this, 0L, size(), channel, 0L, parallelism, sync, listener);
         } finally {
             channel.close();
         }
     }
 
+    /**
+     * Dump the buffer contents to a file in background threads. The buffer must not be released until the returned future completes.
+     * @param file
+     * @return a future that completes when the file is written and closed
+     */
+    public CompletableFuture<Void> writeToAsync(File file) {
+        return writeToAsync(file, ParallelFileIO.defaultParallelism(), false, null);
+    }
+
+    /**
+     * Dump the buffer contents to a file in background threads. The buffer must not be released until the returned future completes.
+     * @param file
+     * @param parallelism the number of threads to write the file
+     * @param sync if true, the file contents are flushed to the storage device (fsync) before the future completes
+     * @param listener progress listener, or null
+     * @return a future that completes when the file is written and closed
+     */
+    public CompletableFuture<Void> writeToAsync(File file, int parallelism, boolean sync, ProgressListener listener) {
+        FileChannel channel;
+        try {
+            channel = new FileOutputStream(file).getChannel();
+        }
+        catch(IOException e) {
+            return ParallelFileIO.failed(e);
+        }
+        return ParallelFileIO.closeWhenDone(ParallelFileIO.writeAsync(this, 0L, size(), channel, 0L, parallelism, sync, listener), channel);
+    }
+
     /**
      * Read the given source byte array, then overwrite this buffer's contents
      *
@@ -370,9 +997,7 @@ public class LBufferAPI {
      */
     public int readFrom(byte[] src, int srcOffset, long destOffset, int length) {
         int readLen = (int) Math.min(src.length - srcOffset, Math.min(size() - destOffset, length));
-        ByteBuffer b = toDirectByteBuffer(destOffset, readLen);
-        b.position(0);
-        b.put(src, srcOffset, readLen);
+        access.copyFromArray(src, srcOffset, address() + destOffset, readLen);
         return readLen;
     }
 
@@ -386,9 +1011,18 @@ public class LBufferAPI {
         if (src.remaining() + destOffset > size())
             throw new BufferOverflowException();
         int readLen = src.remaining();
-        ByteBuffer b = toDirectByteBuffer(destOffset, readLen);
-        b.position(0);
-        b.put(src);
+        long srcAddress = UnsafeUtil.directBufferAddress(src);
+        if (src.hasArray()) {
+            access.copyFromArray(src.array(), src.arrayOffset() + src.position(), address() + destOffset, readLen);
+            src.position(src.position() + readLen);
+        }
+        else if (srcAddress != 0L) {
+            access.copyMemory(srcAddress + src.position(), address() + destOffset, readLen);
+            src.position(src.position() + readLen);
+        }
+        else {
+            UnsafeUtil.directByteBufferView(address() + destOffset, readLen).put(src);
+        }
         return readLen;
     }
 
@@ -399,17 +1033,34 @@ public class LBufferAPI {
      * @throws IOException
      */
     public static LBuffer loadFrom(File file) throws IOException {
+        return loadFrom(file, ParallelFileIO.defaultParallelism(), null);
+    }
+
+    /**
+     * Create an LBuffer from a given file. The file contents are read concurrently with the given number of threads.
+     * @param file
+     * @param parallelism the number of threads to read the file
+     * @param listener progress listener, or null
+     * @return
+     * @throws IOException
+     */
+    public static LBuffer loadFrom(File file, int parallelism, ProgressListener listener) throws IOException {
         FileChannel fin = new FileInputStream(file).getChannel();
-        long fileSize = fin.size();
-        if (fileSize > Integer.MAX_VALUE)
-            throw new IllegalArgumentException("Cannot load from file more than 2GB: " + file);
-        LBuffer b = new LBuffer((int) fileSize);
-        long pos = 0L;
-        WritableChannelWrap ch = new WritableChannelWrap(b);
-        while (pos < fileSize) {
-            pos += fin.transferTo(0, fileSize, ch);
+        try {
+            long fileSize = fin.size();
+            LBuffer b = new LBuffer(fileSize);
+            try {
+                ParallelFileIO.read(fin, 0L, b, 0L, fileSize, parallelism, listener);
+            }
+            catch(IOException | RuntimeException e) {
+                b.release();
+                throw e;
+            }
+            return b;
+        }
+        finally {
+            fin.close();
         }
-        return b;
     }
 
 
@@ -1,10 +1,49 @@
 package xerial.larray.buffer;
 
+import java.util.logging.Logger;
+
 /**
- * Holding the default memory allocator
+ * Holding the default memory allocator and the memory access backend
  * @author Taro L. Saito
  */
 public class LBufferConfig {
 
+    private static Logger logger = Logger.getLogger(LBufferConfig.class.getName());
+
+    /**
+     * System property for choosing the memory access backend: "unsafe" (default) or "ffm"
+     */
+    public static final String KEY_MEMORY_ACCESS = "xerial.larray.memoryAccess";
+
+    /**
+     * System property for enabling the leak detection of memory allocators with the given sample rate (e.g., 0.01)
+     * @see LeakDetector
+     */
+    public static final String KEY_LEAK_DETECTION_SAMPLE_RATE = "xerial.larray.leakDetection.sampleRate";
+
     public static MemoryAllocator allocator = new DefaultMemoryAllocator();
+
+    /**
+     * Backend for reading and writing off-heap memories. sun.misc.Unsafe is used by default. The Foreign Function and Memory API
+     * of Java 22 or later is used only when -Dxerial.larray.memoryAccess=ffm is set, since it calls a restricted method that
+     * needs --enable-native-access (otherwise the JVM warns or denies it).
+     */
+    public static final MemoryAccess access = selectMemoryAccess();
+
+    private static MemoryAccess selectMemoryAccess() {
+        String backend = System.getProperty(KEY_MEMORY_ACCESS, "unsafe");
+
+        if(backend.equals("ffm")) {
+            try {
+                return (MemoryAccess) Class.forName("xerial.larray.buffer.SegmentMemoryAccess").getDeclaredConstructor().newInstance();
+            }
+            catch(Throwable e) {
+                logger.fine("Foreign Function and Memory API is not available. Use sun.misc.Unsafe instead: " + e);
+            }
+        }
+        else if(!backend.equals("unsafe")) {
+            logger.warning(String.format("Unknown %s: %s", KEY_MEMORY_ACCESS, backend));
+        }
+        return new UnsafeMemoryAccess();
+    }
 }
@@ -0,0 +1,412 @@
+package xerial.larray.buffer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Detects off-heap memories that are reclaimed by GC instead of being released explicitly. The allocation stack traces of
+ * the sampled memories are recorded, so that the code paths leaking memories can be found. Only a fraction of the allocations
+ * given by the sample rate is recorded, and the other allocations take just a random number check, so this detector can be
+ * enabled in production with a low sample rate (e.g., 0.01). The overhead is dominated by capturing the stack traces
+ * of the sampled allocations. In Java 9 or later, only the top frames of the stacks are captured with StackWalker,
+ * whose cost depends on the number of the captured frames rather than the stack depth. In Java 8, the whole stack is captured
+ * with Throwable, which takes a few microseconds per sample in deep stacks.
+ *
+ * Usage:
+ * <pre>
+ *   DefaultMemoryAllocator alloc = new DefaultMemoryAllocator();
+ *   alloc.setLeakDetector(new LeakDetector(0.01));
+ *   LBufferConfig.allocator = alloc;
+ *   ...
+ *   System.err.println(alloc.getLeakDetector().dump());
+ * </pre>
+ *
+ * The detector of the default allocator can also be enabled with -Dxerial.larray.leakDetection.sampleRate=(rate) JVM option.
+ *
+ * @author Taro L. Saito
+ */
+public class LeakDetector {
+
+    private static Logger logger = Logger.getLogger(LeakDetector.class.getName());
+
+    /**
+     * Receives the allocations of the memories reclaimed by GC
+     */
+    public interface LeakListener {
+        void onLeak(Allocation allocation);
+    }
+
+    /**
+     * The default listener that reports leaks to the logger
+     */
+    public static final LeakListener LOGGING_LISTENER = new LeakListener() {
+        @Override
+        public void onLeak(Allocation allocation) {
+            if(logger.isLoggable(Level.WARNING)) {
+                logger.warning(String.format("LEAK: %,d bytes of off-heap memory were reclaimed by GC without being released. Allocated at:%n%s",
+                        allocation.size(), format(allocation.stackTrace())));
+            }
+        }
+    };
+
+    /**
+     * A sampled allocation
+     */
+    public static class Allocation {
+        private final long size;
+        private final long timestamp;
+        private final String threadName;
+        private final int maxStackDepth;
+        // Throwable, or StackWalker.StackFrame[] in Java 9 or later
+        private final Object trace;
+        private volatile StackTraceElement[] stackTrace;
+
+        Allocation(long size, int maxStackDepth, Object trace) {
+            this.size = size;
+            this.timestamp = System.currentTimeMillis();
+            this.threadName = Thread.currentThread().getName();
+            this.maxStackDepth = maxStackDepth;
+            this.trace = trace;
+        }
+
+        /**
+         * Byte size of the memory
+         */
+        public long size() { return size; }
+
+        /**
+         * The time of the allocation in milliseconds
+         */
+        public long timestamp() { return timestamp; }
+
+        /**
+         * The name of the thread that allocated the memory
+         */
+        public String threadName() { return threadName; }
+
+        /**
+         * The stack trace of the allocation excluding the frames of the memory allocators
+         */
+        public StackTraceElement[] stackTrace() {
+            StackTraceElement[] s = stackTrace;
+            if(s == null) {
+                // Resolve the stack trace lazily, since it is necessary only for reporting leaks
+                StackTraceElement[] frames = trace instanceof Throwable ? ((Throwable) trace).getStackTrace() : toStackTraceElements((Object[]) trace);
+                int i = 0;
+                while(i < frames.length && isAllocatorFrame(frames[i]))
+                    ++i;
+                s = Arrays.copyOfRange(frames, i, Math.min(frames.length, i + maxStackDepth));
+                stackTrace = s;
+            }
+            return s;
+        }
+    }
+
+    /**
+     * Live allocations that share the same call site
+     */
+    public static class CallSite {
+        private final StackTraceElement[] stackTrace;
+        private long count = 0L;
+        private long bytes = 0L;
+
+        CallSite(StackTraceElement[] stackTrace) {
+            this.stackTrace = stackTrace;
+        }
+
+        /**
+         * The top frames of the allocation stack trace
+         */
+        public StackTraceElement[] stackTrace() { return stackTrace; }
+
+        /**
+         * The number of sampled allocations
+         */
+        public long count() { return count; }
+
+        /**
+         * Total byte size of the sampled allocations
+         */
+        public long bytes() { return bytes; }
+    }
+
+    // StackWalker.getInstance, walk and StackWalker.StackFrame.toStackTraceElement of Java 9 or later
+    private static final MethodHandle newStackWalker;
+    private static final MethodHandle stackWalk;
+    private static final MethodHandle toStackTraceElement;
+
+    static {
+        MethodHandle newWalker = null;
+        MethodHandle walk = null;
+        MethodHandle toElement = null;
+        try {
+            Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+            Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+            // StackWalker.walk is caller-sensitive, so it cannot be found with the public lookup
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            newWalker = lookup.findStatic(walkerClass, "getInstance", MethodType.methodType(walkerClass, Set.class, int.class))
+                    .asType(MethodType.methodType(Object.class, Set.class, int.class));
+            walk = lookup.findVirtual(walkerClass, "walk", MethodType.methodType(Object.class, Function.class))
+                    .asType(MethodType.methodType(Object.class, Object.class, Function.class));
+            toElement = lookup.findVirtual(frameClass, "toStackTraceElement", MethodType.methodType(StackTraceElement.class))
+                    .asType(MethodType.methodType(StackTraceElement.class, Object.class));
+        }
+        catch(Throwable e) {
+            logger.fine("StackWalker is not available. Use Throwable to capture the stack traces instead");
+            newWalker = null;
+            walk = null;
+            toElement = null;
+        }
+        newStackWalker = newWalker;
+        stackWalk = walk;
+        toStackTraceElement = toElement;
+    }
+
+    private static StackTraceElement[] toStackTraceElements(Object[] frames) {
+        StackTraceElement[] s = new StackTraceElement[frames.length];
+        try {
+            for(int i = 0; i < frames.length; ++i)
+                s[i] = (StackTraceElement) toStackTraceElement.invokeExact(frames[i]);
+        }
+        catch(RuntimeException | Error e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        return s;
+    }
+
+    // The number of the memory allocator frames on top of the allocation stacks of DefaultMemoryAllocator:
+    // captureStack, allocated, register and allocate. These frames are captured in addition to maxStackDepth, and excluded from the stack traces
+    private static final int ALLOCATOR_FRAMES = 4;
+
+    // StackWalker fetches its own frames in the first batch and skips them, so a few extra frames are read at once
+    // to avoid fetching another batch for the top frames
+    private static final int WALKER_FRAMES = 2;
+
+    private static final Map<String, Boolean> allocatorClasses = new ConcurrentHashMap<String, Boolean>();
+
+    private static boolean isAllocatorFrame(StackTraceElement frame) {
+        String className = frame.getClassName();
+        Boolean b = allocatorClasses.get(className);
+        if(b == null) {
+            try {
+                Class<?> cl = Class.forName(className, false, LeakDetector.class.getClassLoader());
+                b = MemoryAllocator.class.isAssignableFrom(cl) || cl == LeakDetector.class;
+            }
+            catch(Throwable e) {
+                b = false;
+            }
+            allocatorClasses.put(className, b);
+        }
+        return b;
+    }
+
+    private static String format(StackTraceElement[] stackTrace) {
+        StringBuilder s = new StringBuilder();
+        for(StackTraceElement e : stackTrace) {
+            s.append("\tat ").append(e).append(System.lineSeparator());
+        }
+        return s.toString();
+    }
+
+    private final double sampleRate;
+    private final int callSiteDepth;
+    private final int maxStackDepth;
+    private final Object stackWalker;
+    private final Function<Stream<?>, Object[]> topFrames;
+    private final LeakListener listener;
+    private final ConcurrentHashMap<MemoryReference, Allocation> allocations = new ConcurrentHashMap<MemoryReference, Allocation>();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong leakedBytes = new AtomicLong();
+
+    /**
+     * Create a detector that reports leaks to the logger
+     * @param sampleRate the fraction of the allocations to record, from 0.0 to 1.0
+     */
+    public LeakDetector(double sampleRate) {
+        this(sampleRate, 5, LOGGING_LISTENER);
+    }
+
+    /**
+     * Create a detector that records only the stack frames of the call sites
+     * @param sampleRate the fraction of the allocations to record, from 0.0 to 1.0
+     * @param callSiteDepth the number of stack frames to distinguish the call sites in {@link #liveAllocations()}
+     * @param listener receives the leaked allocations
+     */
+    public LeakDetector(double sampleRate, int callSiteDepth, LeakListener listener) {
+        this(sampleRate, callSiteDepth, callSiteDepth, listener);
+    }
+
+    /**
+     * @param sampleRate the fraction of the allocations to record, from 0.0 to 1.0
+     * @param callSiteDepth the number of stack frames to distinguish the call sites in {@link #liveAllocations()}
+     * @param maxStackDepth the maximum number of stack frames recorded for each sampled allocation. In Java 9 or later,
+     *                      the cost of sampling grows with this depth
+     * @param listener receives the leaked allocations
+     */
+    public LeakDetector(double sampleRate, int callSiteDepth, int maxStackDepth, LeakListener listener) {
+        if(sampleRate < 0.0 || sampleRate > 1.0)
+            throw new IllegalArgumentException("sampleRate must be between 0.0 and 1.0: " + sampleRate);
+        if(callSiteDepth <= 0)
+            throw new IllegalArgumentException("callSiteDepth must be positive: " + callSiteDepth);
+        if(maxStackDepth < callSiteDepth)
+            throw new IllegalArgumentException(String.format("maxStackDepth %d must not be less than callSiteDepth %d", maxStackDepth, callSiteDepth));
+        this.sampleRate = sampleRate;
+        this.callSiteDepth = callSiteDepth;
+        this.maxStackDepth = maxStackDepth;
+        final long captureDepth = maxStackDepth + ALLOCATOR_FRAMES;
+        this.stackWalker = newStackWalker((int) captureDepth + WALKER_FRAMES);
+        this.topFrames = new Function<Stream<?>, Object[]>() {
+            @Override
+            public Object[] apply(Stream<?> frames) {
+                // The frames are resolved lazily in Allocation.stackTrace(), since resolving the class names here costs as much as capturing the frames
+                return frames.limit(captureDepth).toArray();
+            }
+        };
+        this.listener = listener;
+    }
+
+    public double getSampleRate() { return sampleRate; }
+
+    /**
+     * The number of the sampled memories reclaimed by GC
+     */
+    public long leakCount() { return leakCount.get(); }
+
+    /**
+     * Total byte size of the sampled memories reclaimed by GC
+     */
+    public long leakedBytes() { return leakedBytes.get(); }
+
+    /**
+     * Record the allocation of the memory if it is sampled
+     */
+    void allocated(MemoryReference ref, long size) {
+        if(sampleRate >= 1.0 || (sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+            allocations.put(ref, new Allocation(size, maxStackDepth, captureStack()));
+        }
+    }
+
+    /**
+     * Create a StackWalker that reads the given number of frames at once, or null in Java 8
+     */
+    private static Object newStackWalker(int estimateDepth) {
+        if(newStackWalker == null)
+            return null;
+        try {
+            return newStackWalker.invokeExact((Set) Collections.emptySet(), estimateDepth);
+        }
+        catch(RuntimeException | Error e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Object captureStack() {
+        if(stackWalker == null)
+            return new Throwable();
+        try {
+            return (Object) stackWalk.invokeExact(stackWalker, (Function) topFrames);
+        }
+        catch(RuntimeException | Error e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Called when the memory is released explicitly
+     */
+    void released(MemoryReference ref) {
+        if(!allocations.isEmpty())
+            allocations.remove(ref);
+    }
+
+    /**
+     * Called when the memory is reclaimed by GC
+     */
+    void reclaimed(MemoryReference ref) {
+        if(allocations.isEmpty())
+            return;
+        Allocation a = allocations.remove(ref);
+        if(a != null) {
+            leakCount.incrementAndGet();
+            leakedBytes.addAndGet(a.size());
+            if(listener != null)
+                listener.onLeak(a);
+        }
+    }
+
+    /**
+     * Group the sampled live allocations by their call sites
+     * @return call sites in the descending order of the allocated bytes
+     */
+    public List<CallSite> liveAllocations() {
+        Map<List<StackTraceElement>, CallSite> sites = new HashMap<List<StackTraceElement>, CallSite>();
+        for(Allocation a : allocations.values()) {
+            StackTraceElement[] s = a.stackTrace();
+            StackTraceElement[] top = Arrays.copyOf(s, Math.min(s.length, callSiteDepth));
+            List<StackTraceElement> key = Arrays.asList(top);
+            CallSite site = sites.get(key);
+            if(site == null) {
+                site = new CallSite(top);
+                sites.put(key, site);
+            }
+            site.count++;
+            site.bytes += a.size();
+        }
+        List<CallSite> result = new ArrayList<CallSite>(sites.values());
+        Collections.sort(result, new Comparator<CallSite>() {
+            @Override
+            public int compare(CallSite o1, CallSite o2) {
+                return Long.compare(o2.bytes, o1.bytes);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Describe the sampled live allocations grouped by their call sites
+     */
+    public String dump() {
+        List<CallSite> sites = liveAllocations();
+        long count = 0L;
+        long bytes = 0L;
+        for(CallSite site : sites) {
+            count += site.count;
+            bytes += site.bytes;
+        }
+        StringBuilder s = new StringBuilder();
+        s.append(String.format("Live off-heap allocations sampled at %.2f%%: %,d allocations of %,d bytes", sampleRate * 100, count, bytes));
+        if(sampleRate > 0.0 && sampleRate < 1.0)
+            s.append(String.format(" (estimated total: %,d bytes)", (long) (bytes / sampleRate)));
+        s.append(System.lineSeparator());
+        for(CallSite site : sites) {
+            s.append(String.format("%,d bytes in %,d allocations%n", site.bytes, site.count));
+            s.append(format(site.stackTrace));
+        }
+        return s.toString();
+    }
+}
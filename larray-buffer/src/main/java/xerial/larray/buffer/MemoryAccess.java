@@ -0,0 +1,111 @@
+package xerial.larray.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Backend for reading and writing off-heap memories at raw addresses. The backend used by LBuffer and LArray
+ * is chosen at startup and held in {@link LBufferConfig#access}.
+ *
+ * @author Taro L. Saito
+ */
+public interface MemoryAccess {
+
+    /**
+     * Name of this backend
+     */
+    String name();
+
+    byte getByte(long address);
+    char getChar(long address);
+    short getShort(long address);
+    int getInt(long address);
+    float getFloat(long address);
+    long getLong(long address);
+    double getDouble(long address);
+
+    void putByte(long address, byte value);
+    void putChar(long address, char value);
+    void putShort(long address, short value);
+    void putInt(long address, int value);
+    void putFloat(long address, float value);
+    void putLong(long address, long value);
+    void putDouble(long address, double value);
+
+    /**
+     * Copy the memory contents of the given byte length
+     */
+    void copyMemory(long srcAddress, long destAddress, long size);
+
+    /**
+     * Fill the memory region with a given value
+     */
+    void setMemory(long address, long size, byte value);
+
+    /**
+     * Copy the memory contents to a byte array
+     */
+    void copyToArray(long srcAddress, byte[] dest, int destOffset, int length);
+
+    /**
+     * Copy the contents of a byte array to the memory
+     */
+    void copyFromArray(byte[] src, int srcOffset, long destAddress, int length);
+
+    /**
+     * Copy the memory contents to a primitive array
+     * @param destArray byte[], char[], short[], int[], float[], long[] or double[]
+     * @param destIndex element index in the destination array
+     * @param length the number of elements to copy
+     * @param swapBytes if true, the byte order of each element is reversed
+     */
+    void copyToArray(long srcAddress, Object destArray, int destIndex, int length, boolean swapBytes);
+
+    /**
+     * Copy the contents of a primitive array to the memory
+     * @param srcArray byte[], char[], short[], int[], float[], long[] or double[]
+     * @param srcIndex element index in the source array
+     * @param length the number of elements to copy
+     * @param swapBytes if true, the byte order of each element is reversed
+     */
+    void copyFromArray(Object srcArray, int srcIndex, long destAddress, int length, boolean swapBytes);
+
+    /**
+     * Create a DirectByteBuffer view of the memory region. The returned buffer does not release the memory by itself.
+     * @param att object to be referenced from the buffer to prevent the memory from being collected, or null
+     */
+    ByteBuffer newDirectByteBuffer(long address, int size, Object att);
+
+    // Atomic operations. The address must be aligned to the value size.
+
+    boolean compareAndSwapInt(long address, int expected, int value);
+    boolean compareAndSwapLong(long address, long expected, long value);
+    int getAndAddInt(long address, int delta);
+    long getAndAddLong(long address, long delta);
+    int getAndSetInt(long address, int value);
+    long getAndSetLong(long address, long value);
+
+    int getIntVolatile(long address);
+    long getLongVolatile(long address);
+    void putIntVolatile(long address, int value);
+    void putLongVolatile(long address, long value);
+
+    int getIntAcquire(long address);
+    long getLongAcquire(long address);
+    void putIntRelease(long address, int value);
+    void putLongRelease(long address, long value);
+
+    /**
+     * Ensures loads before the fence are not reordered with loads and stores after the fence
+     */
+    void loadFence();
+
+    /**
+     * Ensures loads and stores before the fence are not reordered with stores after the fence
+     */
+    void storeFence();
+
+    /**
+     * Ensures loads and stores before the fence are not reordered with loads and stores after the fence
+     */
+    void fullFence();
+}
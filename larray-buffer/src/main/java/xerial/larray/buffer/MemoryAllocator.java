@@ -14,6 +14,46 @@ public interface MemoryAllocator {
      */
     Memory allocate(long size);
 
+    /**
+     * Allocate a memory of the specified byte length whose data part address is a multiple of the given alignment
+     * (e.g., 64 for cache lines, 4096 for pages). The allocated memory must be released via `release`.
+     * The default implementation allocates alignment - 1 extra bytes with {@link #allocate(long)} and aligns the data address
+     * within them. Allocators that can align memories without the extra space should override this method.
+     * @param size byte length of the memory
+     * @param alignment alignment of the data address. This must be a power of two.
+     * @return allocated memory information
+     */
+    default Memory allocate(long size, long alignment) {
+        AlignedOffHeapMemory.checkAlignment(alignment);
+        if(size == 0L)
+            return allocate(0L);
+        return new AlignedMemory(allocate(size + alignment - 1L), size, alignment);
+    }
+
+    /**
+     * Resize a memory allocated by this allocator as in realloc() in C/C++. The contents up to the smaller of
+     * the old and new sizes are preserved. The memory may be resized in place or moved to another address, so the given
+     * memory must not be used after this call, and the returned memory must be released via `release` instead.
+     * The default implementation allocates a new memory, copies the contents and releases the given memory.
+     * @param m memory to resize
+     * @param newSize new byte length of the memory
+     * @return resized memory information
+     */
+    default Memory reallocate(Memory m, long newSize) {
+        Memory newMemory;
+        if(m instanceof AlignedOffHeapMemory)
+            newMemory = allocate(newSize, ((AlignedOffHeapMemory) m).alignment());
+        else if(m instanceof AlignedMemory)
+            newMemory = allocate(newSize, ((AlignedMemory) m).alignment());
+        else
+            newMemory = allocate(newSize);
+        long len = Math.min(m.dataSize(), newSize);
+        if(len > 0L)
+            LBufferConfig.access.copyMemory(m.address(), newMemory.address(), len);
+        release(m);
+        return newMemory;
+    }
+
     /**
      * Get the total amount of allocated memories
      */
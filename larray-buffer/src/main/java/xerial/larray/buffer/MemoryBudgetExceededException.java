@@ -0,0 +1,39 @@
+package xerial.larray.buffer;
+
+/**
+ * Thrown when a memory allocation exceeds the budget of {@link BudgetedMemoryAllocator}
+ *
+ * @author Taro L. Saito
+ */
+public class MemoryBudgetExceededException extends RuntimeException {
+
+    private final long requestedSize;
+    private final long allocatedSize;
+    private final long limit;
+
+    public MemoryBudgetExceededException(long requestedSize, long allocatedSize, long limit) {
+        this(requestedSize, allocatedSize, limit, null);
+    }
+
+    public MemoryBudgetExceededException(long requestedSize, long allocatedSize, long limit, Throwable cause) {
+        super(String.format("Cannot allocate %,d bytes: allocated %,d bytes out of the budget %,d bytes", requestedSize, allocatedSize, limit), cause);
+        this.requestedSize = requestedSize;
+        this.allocatedSize = allocatedSize;
+        this.limit = limit;
+    }
+
+    /**
+     * The byte size of the requested memory
+     */
+    public long getRequestedSize() { return requestedSize; }
+
+    /**
+     * The byte size already allocated when the request failed
+     */
+    public long getAllocatedSize() { return allocatedSize; }
+
+    /**
+     * The memory budget in bytes
+     */
+    public long getLimit() { return limit; }
+}
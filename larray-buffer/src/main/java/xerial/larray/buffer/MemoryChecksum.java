@@ -0,0 +1,456 @@
+package xerial.larray.buffer;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.logging.Logger;
+import java.util.zip.Checksum;
+
+import static xerial.larray.buffer.LBufferConfig.access;
+
+/**
+ * Checksums of off-heap memory ranges, which read the memory directly without copying it to byte arrays.
+ *
+ * <ul>
+ *     <li>CRC32C uses java.util.zip.CRC32C (hardware-accelerated in Java 9 or later) through DirectByteBuffer views.
+ *     In Java 8, a table-based implementation is used. CRC32C values of large ranges can be computed in parallel
+ *     by combining the CRC32C values of the chunks, which gives the same value with the sequential computation.</li>
+ *     <li>xxHash64 is computed by reading 8 bytes at a time from the memory.</li>
+ * </ul>
+ *
+ * @author Taro L. Saito
+ */
+public class MemoryChecksum {
+
+    private static Logger logger = Logger.getLogger(MemoryChecksum.class.getName());
+
+    private MemoryChecksum() {}
+
+    /**
+     * Byte size of the chunks processed by each thread. This is also the chunk size of {@link #xxHash64Chunked}.
+     */
+    public static final long CHUNK_SIZE = 64L * 1024 * 1024;
+
+    // java.util.zip.CRC32C of Java 9 or later
+    private static final MethodHandle crc32cConstructor;
+    private static final MethodHandle crc32cUpdate;
+
+    static {
+        MethodHandle constructor = null;
+        MethodHandle update = null;
+        try {
+            Class<?> cl = Class.forName("java.util.zip.CRC32C");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            constructor = lookup.findConstructor(cl, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Checksum.class));
+            update = lookup.findVirtual(cl, "update", MethodType.methodType(void.class, ByteBuffer.class))
+                    .asType(MethodType.methodType(void.class, Checksum.class, ByteBuffer.class));
+        }
+        catch(Exception e) {
+            logger.fine("java.util.zip.CRC32C is not available. Use the table-based implementation instead");
+            constructor = null;
+            update = null;
+        }
+        crc32cConstructor = constructor;
+        crc32cUpdate = update;
+    }
+
+    /**
+     * Compute the CRC32C value of the memory range
+     * @param address
+     * @param length
+     * @return CRC32C value in the lower 32 bits
+     */
+    public static long crc32c(long address, long length) {
+        if(crc32cUpdate == null)
+            return (~crc32cTable(~0, address, length)) & 0xFFFFFFFFL;
+
+        try {
+            Checksum crc = (Checksum) crc32cConstructor.invokeExact();
+            for(long pos = 0; pos < length; ) {
+                int len = (int) Math.min(length - pos, Integer.MAX_VALUE);
+                crc32cUpdate.invokeExact(crc, UnsafeUtil.directByteBufferView(address + pos, len));
+                pos += len;
+            }
+            return crc.getValue();
+        }
+        catch(RuntimeException | Error e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compute the CRC32C value of the memory range using multiple threads. The result is the same with {@link #crc32c(long, long)}.
+     * @param address
+     * @param length
+     * @param parallelism the number of threads to use
+     * @return CRC32C value in the lower 32 bits
+     */
+    public static long crc32c(final long address, long length, int parallelism) {
+        if(parallelism <= 1 || length <= CHUNK_SIZE)
+            return crc32c(address, length);
+
+        final long[] chunkCRC = new long[(int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+        forEachChunk(length, parallelism, new ParallelFileIO.ChunkTransfer() {
+            @Override
+            public void transfer(long chunkOffset, int chunkLength, ParallelFileIO.Progress progress) {
+                chunkCRC[(int) (chunkOffset / CHUNK_SIZE)] = crc32c(address + chunkOffset, chunkLength);
+            }
+        });
+        long crc = chunkCRC[0];
+        for(int i = 1; i < chunkCRC.length; ++i) {
+            long chunkLength = Math.min(CHUNK_SIZE, length - i * CHUNK_SIZE);
+            crc = crc32cCombine(crc, chunkCRC[i], chunkLength);
+        }
+        return crc;
+    }
+
+    private static void forEachChunk(long length, int parallelism, ParallelFileIO.ChunkTransfer t) {
+        try {
+            ParallelFileIO.transfer(length, CHUNK_SIZE, parallelism, new ParallelFileIO.Progress(length, null), t);
+        }
+        catch(IOException e) {
+            // Checksum computation never throws IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final int CRC32C_POLY = 0x82F63B78;
+
+    // Tables for the slicing-by-8 algorithm
+    private static final int[][] crcTable = new int[8][256];
+
+    static {
+        for(int i = 0; i < 256; ++i) {
+            int c = i;
+            for(int k = 0; k < 8; ++k)
+                c = (c & 1) != 0 ? (c >>> 1) ^ CRC32C_POLY : c >>> 1;
+            crcTable[0][i] = c;
+        }
+        for(int i = 0; i < 256; ++i) {
+            for(int t = 1; t < 8; ++t)
+                crcTable[t][i] = (crcTable[t - 1][i] >>> 8) ^ crcTable[0][crcTable[t - 1][i] & 0xFF];
+        }
+    }
+
+    static int crc32cTable(int crc, long address, long length) {
+        final int[] t0 = crcTable[0], t1 = crcTable[1], t2 = crcTable[2], t3 = crcTable[3];
+        final int[] t4 = crcTable[4], t5 = crcTable[5], t6 = crcTable[6], t7 = crcTable[7];
+        long i = 0;
+        for(; i + 8 <= length; i += 8) {
+            long w = access.getLong(address + i);
+            if(ByteOrderView.NATIVE_BIG_ENDIAN)
+                w = Long.reverseBytes(w);
+            int lo = (int) w ^ crc;
+            int hi = (int) (w >>> 32);
+            crc = t7[lo & 0xFF] ^ t6[(lo >>> 8) & 0xFF] ^ t5[(lo >>> 16) & 0xFF] ^ t4[lo >>> 24]
+                    ^ t3[hi & 0xFF] ^ t2[(hi >>> 8) & 0xFF] ^ t1[(hi >>> 16) & 0xFF] ^ t0[hi >>> 24];
+        }
+        for(; i < length; ++i)
+            crc = (crc >>> 8) ^ t0[(crc ^ access.getByte(address + i)) & 0xFF];
+        return crc;
+    }
+
+    /**
+     * Compute the CRC32C value of the concatenated data from the CRC32C values of the two parts (the algorithm of zlib's crc32_combine)
+     * @param crc1 CRC32C of the first part
+     * @param crc2 CRC32C of the second part
+     * @param length2 byte length of the second part
+     * @return CRC32C of the concatenated data
+     */
+    public static long crc32cCombine(long crc1, long crc2, long length2) {
+        if(length2 <= 0)
+            return crc1;
+
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        // The operator for one zero bit
+        odd[0] = CRC32C_POLY & 0xFFFFFFFFL;
+        long row = 1;
+        for(int n = 1; n < 32; ++n) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // Operators for two and four zero bits
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+
+        // Apply length2 zero bytes to crc1
+        long len = length2;
+        do {
+            gf2MatrixSquare(even, odd);
+            if((len & 1) != 0)
+                crc1 = gf2MatrixTimes(even, crc1);
+            len >>>= 1;
+            if(len == 0)
+                break;
+            gf2MatrixSquare(odd, even);
+            if((len & 1) != 0)
+                crc1 = gf2MatrixTimes(odd, crc1);
+            len >>>= 1;
+        } while(len != 0);
+        return (crc1 ^ crc2) & 0xFFFFFFFFL;
+    }
+
+    private static long gf2MatrixTimes(long[] mat, long vec) {
+        long sum = 0;
+        for(int i = 0; vec != 0; ++i, vec >>>= 1) {
+            if((vec & 1) != 0)
+                sum ^= mat[i];
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] mat) {
+        for(int n = 0; n < 32; ++n)
+            square[n] = gf2MatrixTimes(mat, mat[n]);
+    }
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private static long getLongLE(long address) {
+        long v = access.getLong(address);
+        return ByteOrderView.NATIVE_BIG_ENDIAN ? Long.reverseBytes(v) : v;
+    }
+
+    private static long getIntLE(long address) {
+        int v = access.getInt(address);
+        return (ByteOrderView.NATIVE_BIG_ENDIAN ? Integer.reverseBytes(v) : v) & 0xFFFFFFFFL;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long mergeRound(long acc, long v) {
+        acc ^= round(0, v);
+        return acc * P1 + P4;
+    }
+
+    /**
+     * Compute the xxHash64 value of the memory range
+     * @param address
+     * @param length
+     * @param seed
+     * @return
+     */
+    public static long xxHash64(long address, long length, long seed) {
+        long p = address;
+        long end = address + length;
+        long h;
+        if(length >= 32) {
+            long v1 = seed + P1 + P2;
+            long v2 = seed + P2;
+            long v3 = seed;
+            long v4 = seed - P1;
+            long limit = end - 32;
+            do {
+                v1 = round(v1, getLongLE(p));
+                v2 = round(v2, getLongLE(p + 8));
+                v3 = round(v3, getLongLE(p + 16));
+                v4 = round(v4, getLongLE(p + 24));
+                p += 32;
+            } while(p <= limit);
+
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        }
+        else {
+            h = seed + P5;
+        }
+
+        h += length;
+        for(; p + 8 <= end; p += 8) {
+            h ^= round(0, getLongLE(p));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if(p + 4 <= end) {
+            h ^= getIntLE(p) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            p += 4;
+        }
+        for(; p < end; ++p) {
+            h ^= (access.getByte(p) & 0xFFL) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+
+        return avalanche(h);
+    }
+
+    private static long avalanche(long h) {
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    /**
+     * Incremental computation of xxHash64 over the data split into multiple memory ranges. The result is equal to
+     * {@link MemoryChecksum#xxHash64(long, long, long)} of the concatenated ranges.
+     */
+    public static class XXHash64 {
+        private final long seed;
+        private long v1, v2, v3, v4;
+        private long totalLength = 0L;
+        // Bytes of the incomplete 32-byte stripe
+        private final ByteBuffer stripe = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+
+        public XXHash64(long seed) {
+            this.seed = seed;
+            this.v1 = seed + P1 + P2;
+            this.v2 = seed + P2;
+            this.v3 = seed;
+            this.v4 = seed - P1;
+        }
+
+        /**
+         * Append the memory range to the hashed data
+         * @param address
+         * @param length
+         */
+        public void update(long address, long length) {
+            totalLength += length;
+            long p = address;
+            long end = address + length;
+            if(stripe.position() > 0) {
+                int len = (int) Math.min(32 - stripe.position(), length);
+                access.copyToArray(p, stripe.array(), stripe.position(), len);
+                stripe.position(stripe.position() + len);
+                p += len;
+                if(stripe.position() < 32)
+                    return;
+                v1 = round(v1, stripe.getLong(0));
+                v2 = round(v2, stripe.getLong(8));
+                v3 = round(v3, stripe.getLong(16));
+                v4 = round(v4, stripe.getLong(24));
+                stripe.clear();
+            }
+            for(; p + 32 <= end; p += 32) {
+                v1 = round(v1, getLongLE(p));
+                v2 = round(v2, getLongLE(p + 8));
+                v3 = round(v3, getLongLE(p + 16));
+                v4 = round(v4, getLongLE(p + 24));
+            }
+            if(p < end) {
+                access.copyToArray(p, stripe.array(), 0, (int) (end - p));
+                stripe.position((int) (end - p));
+            }
+        }
+
+        /**
+         * The xxHash64 value of the data appended so far
+         */
+        public long getValue() {
+            long h;
+            if(totalLength >= 32) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = mergeRound(h, v1);
+                h = mergeRound(h, v2);
+                h = mergeRound(h, v3);
+                h = mergeRound(h, v4);
+            }
+            else {
+                h = seed + P5;
+            }
+
+            h += totalLength;
+            int p = 0;
+            int end = stripe.position();
+            for(; p + 8 <= end; p += 8) {
+                h ^= round(0, stripe.getLong(p));
+                h = Long.rotateLeft(h, 27) * P1 + P4;
+            }
+            if(p + 4 <= end) {
+                h ^= (stripe.getInt(p) & 0xFFFFFFFFL) * P1;
+                h = Long.rotateLeft(h, 23) * P2 + P3;
+                p += 4;
+            }
+            for(; p < end; ++p) {
+                h ^= (stripe.get(p) & 0xFFL) * P5;
+                h = Long.rotateLeft(h, 11) * P1;
+            }
+            return avalanche(h);
+        }
+    }
+
+    /**
+     * Computes the xxHash64 value of a chunk in {@link #xxHash64Chunked(long, long, int, ChunkHasher)}
+     */
+    public interface ChunkHasher {
+        /**
+         * @param chunkOffset byte offset of the chunk from the beginning of the data
+         * @param chunkLength byte length of the chunk
+         * @param seed
+         * @return the xxHash64 value of the chunk
+         */
+        long xxHash64(long chunkOffset, long chunkLength, long seed);
+    }
+
+    /**
+     * Compute a hash value of the memory range using xxHash64 in parallel. Since xxHash64 cannot be split into parts, this computes
+     * the xxHash64 values of {@link #CHUNK_SIZE} chunks, then returns the xxHash64 value of the chunk hash values (in little-endian).
+     * The result does not depend on the parallelism, and is equal to {@link #xxHash64(long, long, long)} if the length is
+     * not larger than the chunk size.
+     *
+     * @param address
+     * @param length
+     * @param seed
+     * @param parallelism the number of threads to use
+     * @return
+     */
+    public static long xxHash64Chunked(final long address, long length, long seed, int parallelism) {
+        return xxHash64Chunked(length, seed, parallelism, new ChunkHasher() {
+            @Override
+            public long xxHash64(long chunkOffset, long chunkLength, long seed) {
+                return MemoryChecksum.xxHash64(address + chunkOffset, chunkLength, seed);
+            }
+        });
+    }
+
+    /**
+     * Compute a hash value of the data of the given length as in {@link #xxHash64Chunked(long, long, long, int)}, which is split into
+     * memory ranges not accessible with a single address. The hasher is called from multiple threads if the parallelism is larger than 1.
+     *
+     * @param length byte length of the data
+     * @param seed
+     * @param parallelism the number of threads to use
+     * @param hasher computes the xxHash64 value of each chunk
+     * @return
+     */
+    public static long xxHash64Chunked(long length, final long seed, int parallelism, final ChunkHasher hasher) {
+        if(length <= CHUNK_SIZE)
+            return hasher.xxHash64(0L, length, seed);
+
+        int numChunks = (int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        final LBuffer chunkHash = new LBuffer(numChunks * 8L);
+        try {
+            forEachChunk(length, parallelism, new ParallelFileIO.ChunkTransfer() {
+                @Override
+                public void transfer(long chunkOffset, int chunkLength, ParallelFileIO.Progress progress) {
+                    chunkHash.putLongLE(chunkOffset / CHUNK_SIZE * 8, hasher.xxHash64(chunkOffset, chunkLength, seed));
+                }
+            });
+            return xxHash64(chunkHash.address(), chunkHash.size(), seed);
+        }
+        finally {
+            chunkHash.release();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package xerial.larray.buffer;
+
+import static xerial.larray.buffer.LBufferConfig.access;
+
+/**
+ * Comparison and hashing of off-heap memory ranges. These methods read 8 bytes at a time.
+ *
+ * @author Taro L. Saito
+ */
+public class MemoryOps {
+
+    private MemoryOps() {}
+
+    /**
+     * Find the first byte that differs between the two memory ranges
+     *
+     * @param address1
+     * @param address2
+     * @param length byte length to compare
+     * @return the relative index of the first mismatch, or -1 if the ranges are the same
+     */
+    public static long mismatch(long address1, long address2, long length) {
+        long i = 0;
+        for(; i + 8 <= length; i += 8) {
+            long diff = access.getLong(address1 + i) ^ access.getLong(address2 + i);
+            if(diff != 0L) {
+                // The first differing byte in the memory order
+                int bits = ByteOrderView.NATIVE_BIG_ENDIAN ? Long.numberOfLeadingZeros(diff) : Long.numberOfTrailingZeros(diff);
+                return i + (bits >>> 3);
+            }
+        }
+        for(; i < length; ++i) {
+            if(access.getByte(address1 + i) != access.getByte(address2 + i))
+                return i;
+        }
+        return -1L;
+    }
+
+    /**
+     * Compare the two memory ranges in the lexicographic order of unsigned bytes. If one range is a prefix of the other,
+     * the shorter one is smaller.
+     *
+     * @return a negative value, zero or a positive value if the first range is smaller than, equal to or larger than the second range
+     */
+    public static int compare(long address1, long length1, long address2, long length2) {
+        long i = mismatch(address1, address2, Math.min(length1, length2));
+        if(i < 0)
+            return Long.compare(length1, length2);
+        return Integer.compare(access.getByte(address1 + i) & 0xFF, access.getByte(address2 + i) & 0xFF);
+    }
+
+    private static final long K1 = 0x9E3779B97F4A7C15L;
+    private static final long K2 = 0xC2B2AE3D27D4EB4FL;
+
+    /**
+     * Compute a 64-bit hash value of the memory range, which is suited to hash tables and deduplication.
+     * The hash value is the same in little-endian and big-endian machines, but it is not a stable checksum format
+     * and might be changed in future versions.
+     *
+     * @param address
+     * @param length
+     * @param seed
+     * @return
+     */
+    public static long hash64(long address, long length, long seed) {
+        long h = seed ^ (length * K2);
+        long i = 0;
+        for(; i + 8 <= length; i += 8) {
+            long w = access.getLong(address + i);
+            if(ByteOrderView.NATIVE_BIG_ENDIAN)
+                w = Long.reverseBytes(w);
+            h = Long.rotateLeft(h ^ (w * K1), 29) * K2;
+        }
+        if(i < length) {
+            // Pack the remaining bytes in the little-endian order
+            long w = 0L;
+            for(int shift = 0; i < length; ++i, shift += 8)
+                w |= (access.getByte(address + i) & 0xFFL) << shift;
+            h = Long.rotateLeft(h ^ (w * K1), 29) * K2;
+        }
+        return fmix64(h);
+    }
+
+    // The finalizer of MurmurHash3
+    private static long fmix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
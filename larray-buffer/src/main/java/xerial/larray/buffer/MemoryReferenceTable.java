@@ -0,0 +1,197 @@
+package xerial.larray.buffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A concurrent table from memory addresses to MemoryReferences. The table is split into stripes,
+ * each of which is an open-addressing hash table guarded by its own lock, so that threads
+ * registering and releasing different memories rarely contend. Addresses are stored as primitive
+ * long values to avoid boxing.
+ *
+ * @author Taro L. Saito
+ */
+class MemoryReferenceTable {
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    MemoryReferenceTable() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    MemoryReferenceTable(int concurrencyLevel) {
+        int n = 1;
+        while(n < concurrencyLevel)
+            n <<= 1;
+        this.stripes = new Stripe[n];
+        this.stripeMask = n - 1;
+        for(int i=0; i<n; ++i) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Scramble the address bits, since allocated addresses are aligned and their lower bits are always zeros
+     */
+    private static long hash(long address) {
+        long h = address;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private Stripe stripeOf(long h) {
+        return stripes[(int) (h >>> 40) & stripeMask];
+    }
+
+    void put(long address, MemoryReference ref) {
+        long h = hash(address);
+        stripeOf(h).put(address, (int) h, ref);
+    }
+
+    MemoryReference get(long address) {
+        long h = hash(address);
+        return stripeOf(h).get(address, (int) h);
+    }
+
+    /**
+     * Remove the entry of the given address
+     * @return the removed reference, or null if no entry is found
+     */
+    MemoryReference remove(long address) {
+        long h = hash(address);
+        return stripeOf(h).remove(address, (int) h, null);
+    }
+
+    /**
+     * Remove the entry of the given address only if it is mapped to the given reference
+     * @return true if the entry is removed
+     */
+    boolean remove(long address, MemoryReference ref) {
+        long h = hash(address);
+        return stripeOf(h).remove(address, (int) h, ref) != null;
+    }
+
+    /**
+     * Take a snapshot of the references in this table
+     */
+    List<MemoryReference> values() {
+        List<MemoryReference> result = new ArrayList<MemoryReference>();
+        for(Stripe s : stripes) {
+            s.collect(result);
+        }
+        return result;
+    }
+
+    int size() {
+        int size = 0;
+        for(Stripe s : stripes) {
+            size += s.size();
+        }
+        return size;
+    }
+
+    /**
+     * An open-addressing hash table using linear probing. An empty slot has a null value.
+     */
+    private static class Stripe {
+        private long[] keys = new long[16];
+        private MemoryReference[] values = new MemoryReference[16];
+        private int size = 0;
+
+        private int find(long key, int hash) {
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            while(values[i] != null) {
+                if(keys[i] == key)
+                    return i;
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        synchronized MemoryReference get(long key, int hash) {
+            int i = find(key, hash);
+            return i < 0 ? null : values[i];
+        }
+
+        synchronized void put(long key, int hash, MemoryReference ref) {
+            if((size + 1) * 2 > keys.length)
+                resize(keys.length * 2);
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            while(values[i] != null) {
+                if(keys[i] == key) {
+                    values[i] = ref;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = ref;
+            size++;
+        }
+
+        synchronized MemoryReference remove(long key, int hash, MemoryReference expected) {
+            int i = find(key, hash);
+            if(i < 0)
+                return null;
+            MemoryReference removed = values[i];
+            if(expected != null && removed != expected)
+                return null;
+
+            // Shift the following entries of the probe sequence back to fill the hole
+            int mask = keys.length - 1;
+            int hole = i;
+            int j = i;
+            while(true) {
+                j = (j + 1) & mask;
+                if(values[j] == null)
+                    break;
+                int home = (int) hash(keys[j]) & mask;
+                boolean movable = (hole <= j) ? (home <= hole || home > j) : (home <= hole && home > j);
+                if(movable) {
+                    keys[hole] = keys[j];
+                    values[hole] = values[j];
+                    hole = j;
+                }
+            }
+            keys[hole] = 0L;
+            values[hole] = null;
+            size--;
+            return removed;
+        }
+
+        synchronized void collect(List<MemoryReference> out) {
+            for(MemoryReference ref : values) {
+                if(ref != null)
+                    out.add(ref);
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void resize(int newCapacity) {
+            long[] oldKeys = keys;
+            MemoryReference[] oldValues = values;
+            keys = new long[newCapacity];
+            values = new MemoryReference[newCapacity];
+            int mask = newCapacity - 1;
+            for(int k=0; k<oldKeys.length; ++k) {
+                if(oldValues[k] != null) {
+                    int i = (int) hash(oldKeys[k]) & mask;
+                    while(values[i] != null)
+                        i = (i + 1) & mask;
+                    keys[i] = oldKeys[k];
+                    values[i] = oldValues[k];
+                }
+            }
+        }
+    }
+}
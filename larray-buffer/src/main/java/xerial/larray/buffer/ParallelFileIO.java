@@ -0,0 +1,332 @@
+package xerial.larray.buffer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Transfers data between files and off-heap buffers of any size. The range to transfer is split into chunks,
+ * and the chunks are transferred concurrently with positional reads and writes directly from/to the buffer memory.
+ *
+ * @author Taro L. Saito
+ */
+public class ParallelFileIO {
+
+    /**
+     * Byte size of each chunk transferred by a thread
+     */
+    public static final long CHUNK_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The default number of threads used for file transfers
+     */
+    public static int defaultParallelism() {
+        return Math.min(Runtime.getRuntime().availableProcessors(), 8);
+    }
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private static final ThreadFactory threadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r);
+            t.setName("LArray-IO-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    };
+
+    /**
+     * Read the file contents into the buffer
+     *
+     * @param in file to read
+     * @param position the file position to start reading
+     * @param dest the destination buffer
+     * @param offset the byte offset in the destination buffer
+     * @param length the byte length to read
+     * @param parallelism the number of threads to use
+     * @param listener progress listener, or null
+     * @throws IOException
+     */
+    public static void read(FileChannel in, long position, LBufferAPI dest, long offset, long length, int parallelism, ProgressListener listener) throws IOException {
+        read(in, position, dest, offset, length, CHUNK_SIZE, parallelism, listener);
+    }
+
+    static void read(FileChannel in, long position, LBufferAPI dest, long offset, long length, long chunkSize, int parallelism, ProgressListener listener) throws IOException {
+        checkRange(dest, offset, length);
+        transfer(length, chunkSize, parallelism, new Progress(length, listener), reader(in, position, dest.address() + offset, dest));
+    }
+
+    /**
+     * Write the buffer contents to the file
+     *
+     * @param src the source buffer
+     * @param offset the byte offset in the source buffer
+     * @param length the byte length to write
+     * @param out file to write
+     * @param position the file position to start writing
+     * @param parallelism the number of threads to use
+     * @param sync if true, the file contents are flushed to the storage device (fsync) after writing
+     * @param listener progress listener, or null
+     * @throws IOException
+     */
+    public static void write(LBufferAPI src, long offset, long length, FileChannel out, long position, int parallelism, boolean sync, ProgressListener listener) throws IOException {
+        checkRange(src, offset, length);
+        write(src.address() + offset, length, src, out, position, parallelism, sync, listener);
+    }
+
+    /**
+     * Write the memory contents to the file
+     *
+     * @param address the memory address to start writing
+     * @param length the byte length to write
+     * @param owner the object holding the memory, which is referenced until the transfer finishes
+     * @param out file to write
+     * @param position the file position to start writing
+     * @param parallelism the number of threads to use
+     * @param sync if true, the file contents are flushed to the storage device (fsync) after writing
+     * @param listener progress listener, or null
+     * @throws IOException
+     */
+    public static void write(long address, long length, Object owner, FileChannel out, long position, int parallelism, boolean sync, ProgressListener listener) throws IOException {
+        transfer(length, CHUNK_SIZE, parallelism, new Progress(length, listener), writer(out, position, address, owner));
+        if(sync)
+            out.force(true);
+    }
+
+    /**
+     * Write the buffer contents to the file in background threads. The returned future completes when all of the contents are written
+     * (and flushed if sync is true), or completes exceptionally when one of the writes fails.
+     *
+     * @param src the source buffer
+     * @param offset the byte offset in the source buffer
+     * @param length the byte length to write
+     * @param out file to write
+     * @param position the file position to start writing
+     * @param parallelism the number of threads to use
+     * @param sync if true, the file contents are flushed to the storage device (fsync) after writing
+     * @param listener progress listener, or null
+     */
+    public static CompletableFuture<Void> writeAsync(LBufferAPI src, long offset, long length, FileChannel out, long position, int parallelism, boolean sync, ProgressListener listener) {
+        checkRange(src, offset, length);
+        return writeAsync(src.address() + offset, length, src, out, position, parallelism, sync, listener);
+    }
+
+    /**
+     * Write the memory contents to the file in background threads.
+     *
+     * @param address the memory address to start writing
+     * @param length the byte length to write
+     * @param owner the object holding the memory, which is referenced until the transfer finishes
+     * @param out file to write
+     * @param position the file position to start writing
+     * @param parallelism the number of threads to use
+     * @param sync if true, the file contents are flushed to the storage device (fsync) after writing
+     * @param listener progress listener, or null
+     * @see #writeAsync(LBufferAPI, long, long, FileChannel, long, int, boolean, ProgressListener)
+     */
+    public static CompletableFuture<Void> writeAsync(long address, long length, Object owner, final FileChannel out, long position, int parallelism, boolean sync, ProgressListener listener) {
+        CompletableFuture<Void> f = transferAsync(length, CHUNK_SIZE, parallelism, new Progress(length, listener), writer(out, position, address, owner));
+        if(!sync)
+            return f;
+        return f.thenRun(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    out.force(true);
+                }
+                catch(IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Close the resource when the future completes. The returned future completes after the resource is closed.
+     */
+    public static <T> CompletableFuture<T> closeWhenDone(CompletableFuture<T> f, final Closeable resource) {
+        return f.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T result, Throwable error) {
+                try {
+                    resource.close();
+                }
+                catch(IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Create a future completed with the given error
+     */
+    public static <T> CompletableFuture<T> failed(Throwable e) {
+        CompletableFuture<T> f = new CompletableFuture<T>();
+        f.completeExceptionally(e);
+        return f;
+    }
+
+    private static void checkRange(LBufferAPI buf, long offset, long length) {
+        if(offset < 0 || length < 0 || offset + length > buf.size())
+            throw new IndexOutOfBoundsException(String.format("offset:%,d, length:%,d, buffer size:%,d", offset, length, buf.size()));
+    }
+
+    interface ChunkTransfer {
+        void transfer(long chunkOffset, int chunkLength, Progress progress) throws IOException;
+    }
+
+    private static ChunkTransfer reader(final FileChannel in, final long position, final long address, final Object owner) {
+        return new ChunkTransfer() {
+            @Override
+            public void transfer(long chunkOffset, int chunkLength, Progress progress) throws IOException {
+                ByteBuffer buf = UnsafeUtil.newDirectByteBuffer(address + chunkOffset, chunkLength, owner);
+                long filePos = position + chunkOffset;
+                while(buf.hasRemaining()) {
+                    int readBytes = in.read(buf, filePos + buf.position());
+                    if(readBytes < 0)
+                        throw new EOFException(String.format("Reached the end of file at %,d", filePos + buf.position()));
+                    progress.add(readBytes);
+                }
+            }
+        };
+    }
+
+    private static ChunkTransfer writer(final FileChannel out, final long position, final long address, final Object owner) {
+        return new ChunkTransfer() {
+            @Override
+            public void transfer(long chunkOffset, int chunkLength, Progress progress) throws IOException {
+                ByteBuffer buf = UnsafeUtil.newDirectByteBuffer(address + chunkOffset, chunkLength, owner);
+                long filePos = position + chunkOffset;
+                while(buf.hasRemaining()) {
+                    int writtenBytes = out.write(buf, filePos + buf.position());
+                    progress.add(writtenBytes);
+                }
+            }
+        };
+    }
+
+    static class Progress {
+        private final long totalBytes;
+        private final ProgressListener listener;
+        private final AtomicLong transferred = new AtomicLong();
+        private volatile boolean failed = false;
+
+        Progress(long totalBytes, ProgressListener listener) {
+            this.totalBytes = totalBytes;
+            this.listener = listener;
+        }
+
+        void add(long bytes) {
+            long done = transferred.addAndGet(bytes);
+            if(listener != null)
+                listener.progress(done, totalBytes);
+        }
+    }
+
+    /**
+     * Run the chunk transfers and wait until all of them finish
+     */
+    static void transfer(long length, long chunkSize, int parallelism, Progress progress, ChunkTransfer t) throws IOException {
+        long numChunks = (length + chunkSize - 1) / chunkSize;
+        if(parallelism <= 1 || numChunks <= 1) {
+            // Transfer in the current thread
+            for(long pos = 0; pos < length; pos += chunkSize)
+                t.transfer(pos, (int) Math.min(chunkSize, length - pos), progress);
+            return;
+        }
+
+        CompletableFuture<Void> f = transferAsync(length, chunkSize, parallelism, progress, t);
+        try {
+            f.get();
+        }
+        catch(InterruptedException e) {
+            // Stop taking new chunks, and wait until the chunks being transferred finish,
+            // since the caller may release the buffer as soon as this method returns
+            progress.failed = true;
+            awaitQuietly(f);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while transferring the file");
+        }
+        catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof UncheckedIOException)
+                throw ((UncheckedIOException) cause).getCause();
+            if(cause instanceof IOException)
+                throw (IOException) cause;
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if(cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Wait until the future completes without being interrupted. The errors of the future are ignored
+     */
+    private static void awaitQuietly(CompletableFuture<?> f) {
+        try {
+            // join() keeps waiting when the thread is interrupted
+            f.join();
+        }
+        catch(CompletionException | CancellationException e) {
+            // The transfer is already failed by the interrupt
+        }
+    }
+
+    /**
+     * Run the chunk transfers in background threads. Each thread takes the next chunk until all chunks are transferred or one of them fails.
+     */
+    static CompletableFuture<Void> transferAsync(final long length, final long chunkSize, int parallelism, final Progress progress, final ChunkTransfer t) {
+        final long numChunks = (length + chunkSize - 1) / chunkSize;
+        int numThreads = (int) Math.max(1, Math.min(parallelism, numChunks));
+        final AtomicLong nextChunk = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads, threadFactory);
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[numThreads];
+        try {
+            for(int i = 0; i < numThreads; ++i) {
+                workers[i] = CompletableFuture.runAsync(new Runnable() {
+                    @Override
+                    public void run() {
+                        long chunk;
+                        while(!progress.failed && (chunk = nextChunk.getAndIncrement()) < numChunks) {
+                            long pos = chunk * chunkSize;
+                            try {
+                                t.transfer(pos, (int) Math.min(chunkSize, length - pos), progress);
+                            }
+                            catch(IOException e) {
+                                progress.failed = true;
+                                throw new UncheckedIOException(e);
+                            }
+                            catch(RuntimeException | Error e) {
+                                progress.failed = true;
+                                throw e;
+                            }
+                        }
+                    }
+                }, pool);
+            }
+        }
+        finally {
+            // The threads terminate after finishing the submitted tasks. Do not interrupt them, since an interrupt closes the file channel
+            pool.shutdown();
+        }
+        return CompletableFuture.allOf(workers);
+    }
+}
@@ -0,0 +1,209 @@
+package xerial.larray.buffer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static xerial.larray.buffer.UnsafeUtil.unsafe;
+
+/**
+ * A memory allocator that recycles released memories. Memories are allocated in power-of-two size classes,
+ * and released memories are kept in a free list of their size class up to the given pool capacity,
+ * so that the next allocation of the same size class can reuse them without calling malloc.
+ *
+ * Usage:
+ * <pre>
+ *   LBufferConfig.allocator = new PooledMemoryAllocator();
+ * </pre>
+ *
+ * @author Taro L. Saito
+ */
+public class PooledMemoryAllocator extends DefaultMemoryAllocator {
+
+    private static Logger logger = Logger.getLogger(PooledMemoryAllocator.class.getName());
+
+    /**
+     * The smallest size class (2^MIN_SIZE_CLASS bytes including the header)
+     */
+    private static final int MIN_SIZE_CLASS = 4;
+
+    private final long poolCapacity;
+    private final long maxBlockSize;
+    private final FreeList[] freeLists;
+
+    private final AtomicLong pooledSize = new AtomicLong(0L);
+    private final AtomicLong hitCount = new AtomicLong(0L);
+    private final AtomicLong missCount = new AtomicLong(0L);
+
+    /**
+     * Create a pooled allocator that keeps at most 64MB of free memories of up to 1MB blocks
+     */
+    public PooledMemoryAllocator() {
+        this(64L * 1024 * 1024, 1024L * 1024);
+    }
+
+    /**
+     * Create a pooled allocator
+     * @param poolCapacity the maximum byte size of free memories kept in the pool
+     * @param maxBlockSize the largest block size to be pooled. Allocations larger than this size
+     *                     are passed to malloc/free directly.
+     */
+    public PooledMemoryAllocator(long poolCapacity, long maxBlockSize) {
+        if(poolCapacity < 0L)
+            throw new IllegalArgumentException(String.format("invalid pool capacity: %,d", poolCapacity));
+        if(maxBlockSize < (1L << MIN_SIZE_CLASS) || maxBlockSize > (1L << 62))
+            throw new IllegalArgumentException(String.format("invalid max block size: %,d", maxBlockSize));
+        this.poolCapacity = poolCapacity;
+        this.maxBlockSize = maxBlockSize;
+        this.freeLists = new FreeList[sizeClass(maxBlockSize) + 1];
+        for(int i=0; i<freeLists.length; ++i) {
+            freeLists[i] = new FreeList();
+        }
+    }
+
+    /**
+     * Index of the power-of-two size class that can hold the given block size
+     */
+    private static int sizeClass(long blockSize) {
+        int c = 64 - Long.numberOfLeadingZeros(blockSize - 1L);
+        return Math.max(c, MIN_SIZE_CLASS);
+    }
+
+    @Override
+    public Memory allocate(long size) {
+        if(size == 0L)
+            return new OffHeapMemory();
+
+        long memorySize = size + OffHeapMemory.HEADER_SIZE;
+        if(memorySize > maxBlockSize)
+            return super.allocate(size);
+
+        int c = sizeClass(memorySize);
+        long address = freeLists[c].pop();
+        if(address != 0L) {
+            pooledSize.getAndAdd(-(1L << c));
+            hitCount.incrementAndGet();
+        }
+        else {
+            missCount.incrementAndGet();
+            address = unsafe.allocateMemory(1L << c);
+        }
+        Memory m = new OffHeapMemory(address, size);
+        register(m);
+        return m;
+    }
+
+    /**
+     * Resize the memory. A pooled memory is resized in place if the new size fits in the same size class,
+     * and copied otherwise, since the size class of a pooled block must not be changed by realloc().
+     */
+    @Override
+    public Memory reallocate(Memory m, long newSize) {
+        long memorySize = newSize + OffHeapMemory.HEADER_SIZE;
+        if(m.getClass() != OffHeapMemory.class || newSize == 0L || m.dataSize() == 0L)
+            return super.reallocate(m, newSize);
+
+        if(m.size() > maxBlockSize && memorySize > maxBlockSize) {
+            // Neither is a pooled block
+            return super.reallocate(m, newSize);
+        }
+        if(m.size() <= maxBlockSize && memorySize <= maxBlockSize && sizeClass(m.size()) == sizeClass(memorySize)) {
+            unregister(m);
+            Memory newMemory = new OffHeapMemory(m.headerAddress(), newSize);
+            register(newMemory);
+            return newMemory;
+        }
+        return reallocateByCopy(m, newSize);
+    }
+
+    @Override
+    protected void dispose(Memory m) {
+        if(m.getClass() != OffHeapMemory.class || m.size() > maxBlockSize) {
+            // Not allocated from the pool
+            m.release();
+            return;
+        }
+
+        int c = sizeClass(m.size());
+        long blockSize = 1L << c;
+        if(pooledSize.addAndGet(blockSize) > poolCapacity) {
+            // The pool is full
+            pooledSize.getAndAdd(-blockSize);
+            m.release();
+        }
+        else {
+            freeLists[c].push(m.headerAddress());
+        }
+    }
+
+    /**
+     * Release all memories taken by this allocator, including the free memories in the pool.
+     */
+    @Override
+    public void releaseAll() {
+        super.releaseAll();
+        trim();
+    }
+
+    /**
+     * Return all free memories in the pool to the OS
+     */
+    public void trim() {
+        for(int c=0; c<freeLists.length; ++c) {
+            long address;
+            while((address = freeLists[c].pop()) != 0L) {
+                pooledSize.getAndAdd(-(1L << c));
+                unsafe.freeMemory(address);
+            }
+        }
+        if(logger.isLoggable(Level.FINER)) {
+            logger.finer(String.format("Trimmed the memory pool. hit ratio: %.2f", hitRatio()));
+        }
+    }
+
+    /**
+     * The total byte size of the free memories kept in the pool
+     */
+    public long pooledSize() { return pooledSize.get(); }
+
+    /**
+     * The number of allocations served from the pool
+     */
+    public long hitCount() { return hitCount.get(); }
+
+    /**
+     * The number of poolable allocations that needed to call malloc
+     */
+    public long missCount() { return missCount.get(); }
+
+    /**
+     * The ratio of allocations served from the pool
+     */
+    public double hitRatio() {
+        long hit = hitCount.get();
+        long total = hit + missCount.get();
+        return total == 0L ? 0.0 : (double) hit / total;
+    }
+
+    /**
+     * A stack of free memories of a size class. The link to the next free memory is stored in the
+     * first 8 bytes of each free memory, so pushing and popping memories creates no garbage.
+     */
+    private static class FreeList {
+        private long head = 0L;
+
+        synchronized void push(long address) {
+            unsafe.putLong(address, head);
+            head = address;
+        }
+
+        synchronized long pop() {
+            long address = head;
+            if(address != 0L) {
+                head = unsafe.getLong(address);
+            }
+            return address;
+        }
+    }
+
+}
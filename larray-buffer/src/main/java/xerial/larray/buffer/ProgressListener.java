@@ -0,0 +1,16 @@
+package xerial.larray.buffer;
+
+/**
+ * Receives the progress of file transfers. This method can be called from multiple threads
+ * when the transfer runs in parallel, so implementations must be thread-safe.
+ *
+ * @author Taro L. Saito
+ */
+public interface ProgressListener {
+
+    /**
+     * @param transferredBytes the total byte size transferred so far
+     * @param totalBytes the total byte size to transfer
+     */
+    void progress(long transferredBytes, long totalBytes);
+}
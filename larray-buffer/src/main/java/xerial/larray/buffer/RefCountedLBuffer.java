@@ -0,0 +1,212 @@
+package xerial.larray.buffer;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * An off-heap buffer whose memory is shared by reference counting. The memory has a reference count, which starts from 1,
+ * is incremented by {@link #retain()} and is decremented by {@link #release()}. The memory is freed exactly once when
+ * the count reaches zero.
+ *
+ * Views created by {@link #view(long, long)} and {@link #retainedDuplicate()} share the memory without copying it and hold
+ * a reference of their own, so each of them must be released as well. This allows passing zero-copy sub-ranges to other threads
+ * or pipeline stages, which release the views when they are done.
+ *
+ * Each buffer object gives up only the references it holds: one from its creation and one for each {@link #retain()} call.
+ * Releasing a buffer more times than that has no effect, so a view is never freed by extra releases of another buffer sharing the memory.
+ *
+ * Usage:
+ * <pre>
+ *   RefCountedLBuffer buf = new RefCountedLBuffer(1024);
+ *   RefCountedLBuffer header = buf.view(0, 16);  // The reference count becomes 2
+ *   buf.release();                               // The memory is still alive
+ *   header.getInt(0);
+ *   header.release();                            // The memory is freed
+ * </pre>
+ *
+ * @author Taro L. Saito
+ */
+public class RefCountedLBuffer extends WrappedLBuffer {
+
+    /**
+     * The memory and its reference count shared by the buffer and its views
+     */
+    private static class SharedMemory {
+        private final Memory m;
+        private final MemoryAllocator allocator;
+        private final AtomicInteger refCnt = new AtomicInteger(1);
+
+        SharedMemory(Memory m, MemoryAllocator allocator) {
+            this.m = m;
+            this.allocator = allocator;
+        }
+
+        void retain() {
+            while(true) {
+                int c = refCnt.get();
+                if(c <= 0)
+                    throw new IllegalStateException("The buffer is already released");
+                if(c == Integer.MAX_VALUE)
+                    throw new IllegalStateException("Too many references to the buffer");
+                if(refCnt.compareAndSet(c, c + 1))
+                    return;
+            }
+        }
+
+        boolean release() {
+            while(true) {
+                int c = refCnt.get();
+                if(c <= 0)
+                    throw new IllegalStateException("The buffer is already released");
+                if(refCnt.compareAndSet(c, c - 1)) {
+                    if(c == 1) {
+                        allocator.release(m);
+                        return true;
+                    }
+                    return false;
+                }
+            }
+        }
+    }
+
+    private final SharedMemory shared;
+    // The number of references held by this buffer object
+    private final AtomicInteger handleRefCnt = new AtomicInteger(1);
+
+    private RefCountedLBuffer(SharedMemory shared, long offset, long size) {
+        super(shared.m, offset, size);
+        this.shared = shared;
+    }
+
+    /**
+     * Allocate a memory of the specified byte size
+     *
+     * @param size byte size of the buffer
+     */
+    public RefCountedLBuffer(long size) {
+        this(new SharedMemory(LBufferConfig.allocator.allocate(size), LBufferConfig.allocator), 0L, size);
+    }
+
+    /**
+     * Allocate a memory of the specified byte size whose address is a multiple of the given alignment
+     *
+     * @param size byte size of the buffer
+     * @param alignment alignment of the address. This must be a power of two.
+     */
+    public RefCountedLBuffer(long size, long alignment) {
+        this(new SharedMemory(LBufferConfig.allocator.allocate(size, alignment), LBufferConfig.allocator), 0L, size);
+    }
+
+    /**
+     * Take over the memory of the given buffer without copying it. The given buffer becomes empty, and the memory will be
+     * released by the reference counting of the returned buffer.
+     *
+     * @param buf buffer to take over. This must not be a view of another buffer
+     * @return reference-counted buffer of the same contents
+     */
+    public static RefCountedLBuffer wrap(LBufferAPI buf) {
+        if(buf instanceof WrappedLBuffer)
+            throw new IllegalArgumentException("Cannot take over the memory of a view");
+        if(buf.m == null)
+            throw new IllegalStateException("The buffer is already released");
+        RefCountedLBuffer b = new RefCountedLBuffer(new SharedMemory(buf.m, LBufferConfig.allocator), buf.offset(), buf.size());
+        buf.m = null;
+        return b;
+    }
+
+    /**
+     * Get the current reference count of the memory
+     */
+    public int refCnt() {
+        return shared.refCnt.get();
+    }
+
+    /**
+     * Increment the reference count of the memory. This buffer holds the new reference, which is given up by
+     * another call of {@link #release()}.
+     *
+     * @return this buffer
+     * @throws IllegalStateException if this buffer is already released
+     */
+    public RefCountedLBuffer retain() {
+        while(true) {
+            int c = handleRefCnt.get();
+            if(c <= 0)
+                throw new IllegalStateException("The buffer is already released");
+            if(handleRefCnt.compareAndSet(c, c + 1))
+                break;
+        }
+        try {
+            shared.retain();
+        }
+        catch(IllegalStateException e) {
+            handleRefCnt.decrementAndGet();
+            throw e;
+        }
+        return this;
+    }
+
+    /**
+     * Give up a reference held by this buffer, and free the memory when the reference count of the memory reaches zero.
+     * When this buffer has no more references, it cannot be used anymore, and calling this method again has no effect.
+     */
+    @Override
+    public void release() {
+        while(true) {
+            int c = handleRefCnt.get();
+            if(c <= 0)
+                return;
+            if(handleRefCnt.compareAndSet(c, c - 1)) {
+                if(c == 1)
+                    m = null;
+                shared.release();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Create a view of the range [from, to) of this buffer, which shares the memory and holds a new reference to it.
+     * The view must be released independently of this buffer.
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    @Override
+    public RefCountedLBuffer view(long from, long to) {
+        if(handleRefCnt.get() <= 0)
+            throw new IllegalStateException("The buffer is already released");
+        if(from < 0 || from > to || to > size())
+            throw new IllegalArgumentException(String.format("invalid range %,d to %,d", from, to));
+
+        shared.retain();
+        return new RefCountedLBuffer(shared, offset() + from, to - from);
+    }
+
+    /**
+     * Create a view of the whole range of this buffer, which holds a new reference to the memory
+     */
+    public RefCountedLBuffer retainedDuplicate() {
+        return view(0L, size());
+    }
+
+    /**
+     * Dump the buffer contents to a file in background threads. This buffer holds a reference to the memory until the returned
+     * future completes, so the caller can release this buffer right after this call.
+     */
+    @Override
+    public CompletableFuture<Void> writeToAsync(File file, int parallelism, boolean sync, ProgressListener listener) {
+        if(handleRefCnt.get() <= 0)
+            throw new IllegalStateException("The buffer is already released");
+        shared.retain();
+        return super.writeToAsync(file, parallelism, sync, listener).whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void v, Throwable error) {
+                shared.release();
+            }
+        });
+    }
+}
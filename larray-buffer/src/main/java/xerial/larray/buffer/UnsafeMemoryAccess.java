@@ -0,0 +1,154 @@
+package xerial.larray.buffer;
+
+import java.nio.ByteBuffer;
+
+import static xerial.larray.buffer.UnsafeUtil.unsafe;
+
+/**
+ * Memory access backend using sun.misc.Unsafe, which is available in all JVM versions supported by LArray.
+ *
+ * @author Taro L. Saito
+ */
+public class UnsafeMemoryAccess implements MemoryAccess {
+
+    private static final long BYTE_ARRAY_OFFSET = unsafe.arrayBaseOffset(byte[].class);
+
+    // The same threshold with java.nio.Bits to allow safepoint polling while copying large arrays
+    private static final long UNSAFE_COPY_THRESHOLD = 1024L * 1024L;
+
+    public String name() { return "unsafe"; }
+
+    public byte getByte(long address) { return unsafe.getByte(address); }
+    public char getChar(long address) { return unsafe.getChar(address); }
+    public short getShort(long address) { return unsafe.getShort(address); }
+    public int getInt(long address) { return unsafe.getInt(address); }
+    public float getFloat(long address) { return unsafe.getFloat(address); }
+    public long getLong(long address) { return unsafe.getLong(address); }
+    public double getDouble(long address) { return unsafe.getDouble(address); }
+
+    public void putByte(long address, byte value) { unsafe.putByte(address, value); }
+    public void putChar(long address, char value) { unsafe.putChar(address, value); }
+    public void putShort(long address, short value) { unsafe.putShort(address, value); }
+    public void putInt(long address, int value) { unsafe.putInt(address, value); }
+    public void putFloat(long address, float value) { unsafe.putFloat(address, value); }
+    public void putLong(long address, long value) { unsafe.putLong(address, value); }
+    public void putDouble(long address, double value) { unsafe.putDouble(address, value); }
+
+    public void copyMemory(long srcAddress, long destAddress, long size) {
+        unsafe.copyMemory(srcAddress, destAddress, size);
+    }
+
+    public void setMemory(long address, long size, byte value) {
+        unsafe.setMemory(address, size, value);
+    }
+
+    public void copyToArray(long srcAddress, byte[] dest, int destOffset, int length) {
+        if(destOffset < 0 || length < 0 || destOffset + length > dest.length)
+            throw new ArrayIndexOutOfBoundsException(String.format("offset:%,d, length:%,d", destOffset, length));
+        unsafe.copyMemory(null, srcAddress, dest, BYTE_ARRAY_OFFSET + destOffset, length);
+    }
+
+    public void copyFromArray(byte[] src, int srcOffset, long destAddress, int length) {
+        if(srcOffset < 0 || length < 0 || srcOffset + length > src.length)
+            throw new ArrayIndexOutOfBoundsException(String.format("offset:%,d, length:%,d", srcOffset, length));
+        unsafe.copyMemory(src, BYTE_ARRAY_OFFSET + srcOffset, null, destAddress, length);
+    }
+
+    public void copyToArray(long srcAddress, Object destArray, int destIndex, int length, boolean swapBytes) {
+        int scale = checkArrayRange(destArray, destIndex, length);
+        long destOffset = unsafe.arrayBaseOffset(destArray.getClass()) + (long) destIndex * scale;
+        copy(null, srcAddress, destArray, destOffset, (long) length * scale, swapBytes ? scale : 1);
+    }
+
+    public void copyFromArray(Object srcArray, int srcIndex, long destAddress, int length, boolean swapBytes) {
+        int scale = checkArrayRange(srcArray, srcIndex, length);
+        long srcOffset = unsafe.arrayBaseOffset(srcArray.getClass()) + (long) srcIndex * scale;
+        copy(srcArray, srcOffset, null, destAddress, (long) length * scale, swapBytes ? scale : 1);
+    }
+
+    private static int checkArrayRange(Object array, int index, int length) {
+        int scale;
+        int arrayLength;
+        if(array instanceof byte[]) {
+            scale = 1; arrayLength = ((byte[]) array).length;
+        }
+        else if(array instanceof char[]) {
+            scale = 2; arrayLength = ((char[]) array).length;
+        }
+        else if(array instanceof short[]) {
+            scale = 2; arrayLength = ((short[]) array).length;
+        }
+        else if(array instanceof int[]) {
+            scale = 4; arrayLength = ((int[]) array).length;
+        }
+        else if(array instanceof float[]) {
+            scale = 4; arrayLength = ((float[]) array).length;
+        }
+        else if(array instanceof long[]) {
+            scale = 8; arrayLength = ((long[]) array).length;
+        }
+        else if(array instanceof double[]) {
+            scale = 8; arrayLength = ((double[]) array).length;
+        }
+        else {
+            throw new IllegalArgumentException("Not a primitive array: " + array);
+        }
+        if(index < 0 || length < 0 || index > arrayLength - length)
+            throw new ArrayIndexOutOfBoundsException(String.format("index:%,d, length:%,d, array length:%,d", index, length, arrayLength));
+        return scale;
+    }
+
+    /**
+     * Copy memory contents, reversing the byte order of each element of the given byte size if swapSize is larger than 1
+     */
+    private static void copy(Object srcBase, long srcOffset, Object destBase, long destOffset, long size, int swapSize) {
+        switch(swapSize) {
+            case 2:
+                for(long i = 0; i < size; i += 2)
+                    unsafe.putShort(destBase, destOffset + i, Short.reverseBytes(unsafe.getShort(srcBase, srcOffset + i)));
+                break;
+            case 4:
+                for(long i = 0; i < size; i += 4)
+                    unsafe.putInt(destBase, destOffset + i, Integer.reverseBytes(unsafe.getInt(srcBase, srcOffset + i)));
+                break;
+            case 8:
+                for(long i = 0; i < size; i += 8)
+                    unsafe.putLong(destBase, destOffset + i, Long.reverseBytes(unsafe.getLong(srcBase, srcOffset + i)));
+                break;
+            default:
+                while(size > 0) {
+                    long len = Math.min(size, UNSAFE_COPY_THRESHOLD);
+                    unsafe.copyMemory(srcBase, srcOffset, destBase, destOffset, len);
+                    size -= len;
+                    srcOffset += len;
+                    destOffset += len;
+                }
+        }
+    }
+
+    public ByteBuffer newDirectByteBuffer(long address, int size, Object att) {
+        return UnsafeUtil.newDirectByteBufferByReflection(address, size, att);
+    }
+
+    public boolean compareAndSwapInt(long address, int expected, int value) { return unsafe.compareAndSwapInt(null, address, expected, value); }
+    public boolean compareAndSwapLong(long address, long expected, long value) { return unsafe.compareAndSwapLong(null, address, expected, value); }
+    public int getAndAddInt(long address, int delta) { return unsafe.getAndAddInt(null, address, delta); }
+    public long getAndAddLong(long address, long delta) { return unsafe.getAndAddLong(null, address, delta); }
+    public int getAndSetInt(long address, int value) { return unsafe.getAndSetInt(null, address, value); }
+    public long getAndSetLong(long address, long value) { return unsafe.getAndSetLong(null, address, value); }
+
+    public int getIntVolatile(long address) { return unsafe.getIntVolatile(null, address); }
+    public long getLongVolatile(long address) { return unsafe.getLongVolatile(null, address); }
+    public void putIntVolatile(long address, int value) { unsafe.putIntVolatile(null, address, value); }
+    public void putLongVolatile(long address, long value) { unsafe.putLongVolatile(null, address, value); }
+
+    // Java 8 Unsafe has no acquire load, so use the volatile load, which is stronger
+    public int getIntAcquire(long address) { return unsafe.getIntVolatile(null, address); }
+    public long getLongAcquire(long address) { return unsafe.getLongVolatile(null, address); }
+    public void putIntRelease(long address, int value) { unsafe.putOrderedInt(null, address, value); }
+    public void putLongRelease(long address, long value) { unsafe.putOrderedLong(null, address, value); }
+
+    public void loadFence() { unsafe.loadFence(); }
+    public void storeFence() { unsafe.storeFence(); }
+    public void fullFence() { unsafe.fullFence(); }
+}
@@ -2,8 +2,12 @@ package xerial.larray.buffer;
 
 import sun.misc.Unsafe;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
 /**
@@ -29,29 +33,49 @@ public class UnsafeUtil {
 
     public static Unsafe unsafe = getUnsafe();
 
-    private static ByteBufferCreator findDirectByteBufferConstructor() {
+    // (long address, int size, Object att)ByteBuffer
+    private static final MethodHandle dbbConstructor;
+    private static final String dbbConstructorError;
+
+    static {
+        MethodHandle mh = null;
+        String error = null;
         try {
-            return constructorWithAttStrategy();
+            mh = findDirectByteBufferConstructor();
         }
-        catch(ClassNotFoundException e) {
-            throw new IllegalStateException(
-                String.format("Failed to find java.nio.DirectByteBuffer: $s", e.getMessage()));
+        catch(Throwable e) {
+            error = String.format("Failed to find constructor of java.nio.DirectByteBuffer: %s", e);
+        }
+        dbbConstructor = mh;
+        dbbConstructorError = error;
+    }
+
+    private static MethodHandle findDirectByteBufferConstructor() throws ReflectiveOperationException {
+        Class<?> dbbClass = Class.forName("java.nio.DirectByteBuffer");
+        MethodType type = MethodType.methodType(ByteBuffer.class, Long.TYPE, Integer.TYPE, Object.class);
+        Constructor<?> c;
+        try {
+            // DirectByteBuffer(long addr, int cap, Object att)
+            c = dbbClass.getDeclaredConstructor(Long.TYPE, Integer.TYPE, Object.class);
+            c.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(c).asType(type);
         }
         catch(NoSuchMethodException e) {
             try {
-                return constructorWithoutAttStrategy();
-            } catch (NoSuchMethodException e2) {
-                throw new IllegalStateException(
-                    String.format("Failed to find constructor f java.nio.DirectByteBuffer: $s", e2.getMessage()), e2);
-            } catch (ClassNotFoundException e2) {
-                throw new IllegalStateException(
-                    String.format("Failed to find constructor f java.nio.DirectByteBuffer: $s", e2.getMessage()), e2);
+                // DirectByteBuffer(long addr, int cap)
+                c = dbbClass.getDeclaredConstructor(Long.TYPE, Integer.TYPE);
+            }
+            catch(NoSuchMethodException e2) {
+                // DirectByteBuffer(long addr, long cap) in Java 21 or later
+                c = dbbClass.getDeclaredConstructor(Long.TYPE, Long.TYPE);
             }
+            c.setAccessible(true);
+            MethodHandle mh = MethodHandles.lookup().unreflectConstructor(c);
+            mh = MethodHandles.explicitCastArguments(mh, MethodType.methodType(ByteBuffer.class, Long.TYPE, Integer.TYPE));
+            return MethodHandles.dropArguments(mh, 2, Object.class);
         }
     }
 
-    private static ByteBufferCreator byteBufferCreator = findDirectByteBufferConstructor();
-
     /**
      * Create a new DirectByteBuffer from a given address and size.
      * The returned DirectByteBuffer does not release the memory by itself.
@@ -64,50 +88,71 @@ public class UnsafeUtil {
      * @return
      */
     public static ByteBuffer newDirectByteBuffer(long addr, int size, Object att) {
-        return byteBufferCreator.newDirectByteBuffer(addr, size, att);
+        return LBufferConfig.access.newDirectByteBuffer(addr, size, att);
     }
 
-    private static ByteBufferCreator constructorWithAttStrategy()
-        throws ClassNotFoundException, NoSuchMethodException {
-        final Constructor<? extends ByteBuffer> dbbCC =
-            (Constructor<? extends ByteBuffer>) Class.forName("java.nio.DirectByteBuffer")
-                .getDeclaredConstructor(Long.TYPE, Integer.TYPE, Object.class);
-        return new ByteBufferCreator() {
-            @Override
-            public ByteBuffer newDirectByteBuffer(long addr, int size, Object att) {
-                dbbCC.setAccessible(true);
-                try {
-                    return dbbCC.newInstance(Long.valueOf(addr), Integer.valueOf(size), att);
-                } catch (Exception e) {
-                    throw new IllegalStateException(
-                        String.format("Failed to create DirectByteBuffer: %s", e.getMessage()), e);
-                }
-            }
-        };
+    /**
+     * Create a new DirectByteBuffer by calling the constructor of java.nio.DirectByteBuffer.
+     * In Java 16 or later, this requires --add-opens java.base/java.nio=ALL-UNNAMED JVM option.
+     */
+    static ByteBuffer newDirectByteBufferByReflection(long addr, int size, Object att) {
+        if(dbbConstructor == null)
+            throw new IllegalStateException(dbbConstructorError);
+        try {
+            return (ByteBuffer) dbbConstructor.invokeExact(addr, size, att);
+        }
+        catch(Throwable e) {
+            throw new IllegalStateException(String.format("Failed to create DirectByteBuffer: %s", e.getMessage()), e);
+        }
     }
 
-    private static ByteBufferCreator constructorWithoutAttStrategy()
-        throws ClassNotFoundException, NoSuchMethodException {
-        final Constructor<? extends ByteBuffer> dbbCC =
-            (Constructor<? extends ByteBuffer>) Class.forName("java.nio.DirectByteBuffer")
-                .getDeclaredConstructor(Long.TYPE, Integer.TYPE);
-        return new ByteBufferCreator() {
-            @Override
-            public ByteBuffer newDirectByteBuffer(long addr, int size, Object att) {
-                dbbCC.setAccessible(true);
-                try {
-                    return dbbCC.newInstance(Long.valueOf(addr), Integer.valueOf(size));
-                } catch (Exception e) {
-                    throw new IllegalStateException(
-                        String.format("Failed to create DirectByteBuffer: %s", e.getMessage()), e);
-                }
-            }
-        };
+    private static final long bufferAddressOffset = fieldOffset(Buffer.class, "address");
+    private static final long bufferCapacityOffset = fieldOffset(Buffer.class, "capacity");
+
+    private static long fieldOffset(Class<?> cl, String name) {
+        try {
+            return unsafe.objectFieldOffset(cl.getDeclaredField(name));
+        }
+        catch(Exception e) {
+            return -1L;
+        }
     }
 
-    private interface ByteBufferCreator {
-        ByteBuffer newDirectByteBuffer(long addr, int size, Object att);
+    /**
+     * Get the memory address of a direct buffer, or 0 if it is unavailable
+     */
+    static long directBufferAddress(ByteBuffer b) {
+        if(!b.isDirect() || bufferAddressOffset < 0)
+            return 0L;
+        return unsafe.getLong(b, bufferAddressOffset);
     }
 
+    private static final ThreadLocal<ByteBuffer> threadLocalView = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            // The memory of this buffer is released by its own cleaner, which holds the original address
+            return ByteBuffer.allocateDirect(0);
+        }
+    };
+
+    /**
+     * Get a DirectByteBuffer view of the given memory region without creating any object. The returned buffer is
+     * shared in the current thread and re-targeted to another region in the next call, so it must not be retained
+     * after the use. The byte order of the view is undefined.
+     *
+     * @param addr address of the memory region
+     * @param size byte size of the memory region
+     * @return DirectByteBuffer whose position is 0 and limit is size
+     */
+    public static ByteBuffer directByteBufferView(long addr, int size) {
+        if(bufferAddressOffset < 0 || bufferCapacityOffset < 0)
+            return newDirectByteBuffer(addr, size, null);
+
+        ByteBuffer b = threadLocalView.get();
+        unsafe.putLong(b, bufferAddressOffset, addr);
+        unsafe.putInt(b, bufferCapacityOffset, size);
+        b.clear();
+        return b;
+    }
 
 }
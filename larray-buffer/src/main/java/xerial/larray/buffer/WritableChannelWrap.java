@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
 
-import static xerial.larray.buffer.UnsafeUtil.unsafe;
 
 /**
  * @author Taro L. Saito
@@ -20,22 +19,8 @@ class WritableChannelWrap implements WritableByteChannel {
 
     @Override
     public int write(ByteBuffer src) throws IOException {
-        int len = (int) Math.max(src.limit() - src.position(), 0);
-        int writeLen = 0;
-        if(src.isDirect()) {
-            src.put(b.toDirectByteBuffer(cursor, len));
-            writeLen = len;
-        }
-        else if(src.hasArray()) {
-            writeLen = b.readFrom(src.array(), src.position(), cursor, len);
-        }
-        else {
-            for(long i=0; i<len; ++i)
-                unsafe.putByte(b.address() + i, src.get((int) (src.position() + i)));
-            writeLen = len;
-        }
+        int writeLen = b.readFrom(src, cursor);
         cursor += writeLen;
-        src.position(src.position() + writeLen);
         return writeLen;
     }
 
@@ -0,0 +1,124 @@
+package xerial.larray.buffer;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Memory access backend using the Foreign Function and Memory API of Java 22 or later.
+ * This class is compiled into META-INF/versions/22 of the multi-release jar.
+ *
+ * This backend is opt-in with -Dxerial.larray.memoryAccess=ffm. Raw addresses are accessed through a segment covering
+ * the whole address space, so the JVM needs --enable-native-access=ALL-UNNAMED to suppress the restricted method warning.
+ *
+ * @author Taro L. Saito
+ */
+public class SegmentMemoryAccess implements MemoryAccess {
+
+    private static final MemorySegment ALL = MemorySegment.NULL.reinterpret(Long.MAX_VALUE);
+
+    private static final ValueLayout.OfChar CHAR = ValueLayout.JAVA_CHAR_UNALIGNED;
+    private static final ValueLayout.OfShort SHORT = ValueLayout.JAVA_SHORT_UNALIGNED;
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED;
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED;
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED;
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE_UNALIGNED;
+
+    // Atomic accesses need aligned layouts. The coordinates are (MemorySegment, long offset)
+    private static final VarHandle ATOMIC_INT = ValueLayout.JAVA_INT.varHandle();
+    private static final VarHandle ATOMIC_LONG = ValueLayout.JAVA_LONG.varHandle();
+
+    public String name() { return "ffm"; }
+
+    public byte getByte(long address) { return ALL.get(ValueLayout.JAVA_BYTE, address); }
+    public char getChar(long address) { return ALL.get(CHAR, address); }
+    public short getShort(long address) { return ALL.get(SHORT, address); }
+    public int getInt(long address) { return ALL.get(INT, address); }
+    public float getFloat(long address) { return ALL.get(FLOAT, address); }
+    public long getLong(long address) { return ALL.get(LONG, address); }
+    public double getDouble(long address) { return ALL.get(DOUBLE, address); }
+
+    public void putByte(long address, byte value) { ALL.set(ValueLayout.JAVA_BYTE, address, value); }
+    public void putChar(long address, char value) { ALL.set(CHAR, address, value); }
+    public void putShort(long address, short value) { ALL.set(SHORT, address, value); }
+    public void putInt(long address, int value) { ALL.set(INT, address, value); }
+    public void putFloat(long address, float value) { ALL.set(FLOAT, address, value); }
+    public void putLong(long address, long value) { ALL.set(LONG, address, value); }
+    public void putDouble(long address, double value) { ALL.set(DOUBLE, address, value); }
+
+    public void copyMemory(long srcAddress, long destAddress, long size) {
+        MemorySegment.copy(ALL, srcAddress, ALL, destAddress, size);
+    }
+
+    public void setMemory(long address, long size, byte value) {
+        ALL.asSlice(address, size).fill(value);
+    }
+
+    public void copyToArray(long srcAddress, byte[] dest, int destOffset, int length) {
+        MemorySegment.copy(ALL, ValueLayout.JAVA_BYTE, srcAddress, dest, destOffset, length);
+    }
+
+    public void copyFromArray(byte[] src, int srcOffset, long destAddress, int length) {
+        MemorySegment.copy(src, srcOffset, ALL, ValueLayout.JAVA_BYTE, destAddress, length);
+    }
+
+    public void copyToArray(long srcAddress, Object destArray, int destIndex, int length, boolean swapBytes) {
+        MemorySegment.copy(ALL, layoutOf(destArray, swapBytes), srcAddress, destArray, destIndex, length);
+    }
+
+    public void copyFromArray(Object srcArray, int srcIndex, long destAddress, int length, boolean swapBytes) {
+        MemorySegment.copy(srcArray, srcIndex, ALL, layoutOf(srcArray, swapBytes), destAddress, length);
+    }
+
+    private static ValueLayout layoutOf(Object array, boolean swapBytes) {
+        ValueLayout layout;
+        if(array instanceof byte[])
+            return ValueLayout.JAVA_BYTE;
+        else if(array instanceof char[])
+            layout = CHAR;
+        else if(array instanceof short[])
+            layout = SHORT;
+        else if(array instanceof int[])
+            layout = INT;
+        else if(array instanceof float[])
+            layout = FLOAT;
+        else if(array instanceof long[])
+            layout = LONG;
+        else if(array instanceof double[])
+            layout = DOUBLE;
+        else
+            throw new IllegalArgumentException("Not a primitive array: " + array);
+
+        if(swapBytes)
+            layout = layout.withOrder(layout.order() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        return layout;
+    }
+
+    public ByteBuffer newDirectByteBuffer(long address, int size, Object att) {
+        // The attachment is unnecessary since the buffer is created from a segment, which does not own the memory
+        return MemorySegment.ofAddress(address).reinterpret(size).asByteBuffer();
+    }
+
+    public boolean compareAndSwapInt(long address, int expected, int value) { return ATOMIC_INT.compareAndSet(ALL, address, expected, value); }
+    public boolean compareAndSwapLong(long address, long expected, long value) { return ATOMIC_LONG.compareAndSet(ALL, address, expected, value); }
+    public int getAndAddInt(long address, int delta) { return (int) ATOMIC_INT.getAndAdd(ALL, address, delta); }
+    public long getAndAddLong(long address, long delta) { return (long) ATOMIC_LONG.getAndAdd(ALL, address, delta); }
+    public int getAndSetInt(long address, int value) { return (int) ATOMIC_INT.getAndSet(ALL, address, value); }
+    public long getAndSetLong(long address, long value) { return (long) ATOMIC_LONG.getAndSet(ALL, address, value); }
+
+    public int getIntVolatile(long address) { return (int) ATOMIC_INT.getVolatile(ALL, address); }
+    public long getLongVolatile(long address) { return (long) ATOMIC_LONG.getVolatile(ALL, address); }
+    public void putIntVolatile(long address, int value) { ATOMIC_INT.setVolatile(ALL, address, value); }
+    public void putLongVolatile(long address, long value) { ATOMIC_LONG.setVolatile(ALL, address, value); }
+
+    public int getIntAcquire(long address) { return (int) ATOMIC_INT.getAcquire(ALL, address); }
+    public long getLongAcquire(long address) { return (long) ATOMIC_LONG.getAcquire(ALL, address); }
+    public void putIntRelease(long address, int value) { ATOMIC_INT.setRelease(ALL, address, value); }
+    public void putLongRelease(long address, long value) { ATOMIC_LONG.setRelease(ALL, address, value); }
+
+    public void loadFence() { VarHandle.acquireFence(); }
+    public void storeFence() { VarHandle.releaseFence(); }
+    public void fullFence() { VarHandle.fullFence(); }
+}
@@ -0,0 +1,90 @@
+//--------------------------------------
+//
+// ArenaMemoryAllocatorTest.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray.buffer
+
+import xerial.larray.LArraySpec
+
+/**
+ * @author Taro L. Saito
+ */
+class ArenaMemoryAllocatorTest extends LArraySpec {
+
+  "ArenaMemoryAllocator" should {
+
+    "allocate memories from chunks" in {
+      val arena = new ArenaMemoryAllocator(1024)
+      val l = for(i <- 0 until 100) yield {
+        val m = arena.allocate(100)
+        val b = new WrappedLBuffer(m, 0, m.dataSize())
+        b.fill(0, b.size(), i.toByte)
+        b
+      }
+      for((b, i) <- l.zipWithIndex) {
+        b.size() shouldBe 100L
+        (0 until 100).forall(j => b.getByte(j) == i.toByte) shouldBe true
+      }
+      arena.allocatedSize() shouldBe 100L * 112
+      // 9 allocations fit in a chunk
+      arena.reservedSize() shouldBe 12L * 1024
+
+      // Releasing individual memories does nothing
+      arena.release(l(0).m)
+      arena.allocatedSize() shouldBe 100L * 112
+
+      arena.close()
+      arena.allocatedSize() shouldBe 0L
+      arena.reservedSize() shouldBe 0L
+    }
+
+    "allocate a memory larger than the chunk size" in {
+      val arena = new ArenaMemoryAllocator(1024)
+      val small = arena.allocate(10)
+      val large = arena.allocate(4096)
+      large.dataSize() shouldBe 4096L
+      val next = arena.allocate(10)
+      // The current chunk is still used after allocating a large memory
+      next.address() shouldBe small.address() + 24
+      arena.close()
+    }
+
+    "extend the last memory in place" in {
+      val arena = new ArenaMemoryAllocator(1024)
+      val m1 = arena.allocate(100)
+      new WrappedLBuffer(m1, 0, 100).fill(0, 100, 5.toByte)
+      val m2 = arena.reallocate(m1, 500)
+      m2.address() shouldBe m1.address()
+      m2.dataSize() shouldBe 500L
+      arena.allocatedSize() shouldBe 512L
+
+      // Not the last memory
+      val other = arena.allocate(10)
+      val m3 = arena.reallocate(m2, 2000)
+      m3.address() should not be (m2.address())
+      val b = new WrappedLBuffer(m3, 0, 2000)
+      (0 until 100).forall(i => b.getByte(i) == 5.toByte) shouldBe true
+      arena.close()
+    }
+
+    "be faster than malloc and free" taggedAs("bench") in {
+      val N = 10000
+      val S = 1024
+      val default = new DefaultMemoryAllocator()
+      time("allocate and release", repeat = 10) {
+        block("default") {
+          val l = for(i <- 0 until N) yield default.allocate(S)
+          l.foreach(default.release(_))
+        }
+        block("arena") {
+          val arena = new ArenaMemoryAllocator()
+          val l = for(i <- 0 until N) yield arena.allocate(S)
+          arena.close()
+        }
+      }
+    }
+  }
+}
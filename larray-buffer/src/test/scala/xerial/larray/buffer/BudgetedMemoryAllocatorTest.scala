@@ -0,0 +1,86 @@
+//--------------------------------------
+//
+// BudgetedMemoryAllocatorTest.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray.buffer
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import xerial.larray.LArraySpec
+
+/**
+ * @author Taro L. Saito
+ */
+class BudgetedMemoryAllocatorTest extends LArraySpec {
+
+  val S = 1024 - OffHeapMemory.HEADER_SIZE
+
+  "BudgetedMemoryAllocator" should {
+
+    "fail when the budget is exhausted" in {
+      val alloc = new BudgetedMemoryAllocator(new DefaultMemoryAllocator(), 4096)
+      val l = for (i <- 0 until 4) yield alloc.allocate(S)
+      alloc.remaining() shouldBe 0L
+      val e = intercept[MemoryBudgetExceededException] {
+        alloc.allocate(S)
+      }
+      e.getRequestedSize shouldBe 1024L
+      e.getLimit shouldBe 4096L
+
+      alloc.release(l(0))
+      val m = alloc.allocate(S)
+      alloc.allocatedSize() shouldBe 4096L
+      (m +: l.tail).foreach(alloc.release(_))
+    }
+
+    "block until memories are released" in {
+      val alloc = new BudgetedMemoryAllocator(new DefaultMemoryAllocator(), 4096, 10000)
+      val l = for (i <- 0 until 4) yield alloc.allocate(S)
+      val releaser = new Thread(new Runnable {
+        def run() {
+          Thread.sleep(100)
+          alloc.release(l(0))
+        }
+      })
+      releaser.start()
+      val m = alloc.allocate(S)
+      releaser.join()
+      alloc.allocatedSize() shouldBe 4096L
+      (m +: l.tail).foreach(alloc.release(_))
+    }
+
+    "throw an exception after the timeout" in {
+      val alloc = new BudgetedMemoryAllocator(new DefaultMemoryAllocator(), 4096, 100)
+      val l = for (i <- 0 until 4) yield alloc.allocate(S)
+      intercept[MemoryBudgetExceededException] {
+        alloc.allocate(S)
+      }
+      l.foreach(alloc.release(_))
+    }
+
+    "call the spill handler" in {
+      val cache = new ConcurrentLinkedQueue[Memory]()
+      var spilled = 0L
+      lazy val alloc: BudgetedMemoryAllocator = new BudgetedMemoryAllocator(new DefaultMemoryAllocator(), 4096, new BudgetedMemoryAllocator.SpillHandler {
+        def spill(requiredBytes: Long) {
+          spilled += requiredBytes
+          var released = 0L
+          while (released < requiredBytes && !cache.isEmpty) {
+            val m = cache.poll()
+            released += m.size()
+            alloc.release(m)
+          }
+        }
+      })
+      for (i <- 0 until 10) {
+        cache.add(alloc.allocate(S))
+      }
+      spilled shouldBe 6 * 1024L
+      alloc.allocatedSize() shouldBe 4096L
+      alloc.remaining() shouldBe 0L
+    }
+  }
+}
@@ -0,0 +1,71 @@
+//--------------------------------------
+//
+// CleanerMemoryAllocatorTest.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray.buffer
+
+import xerial.larray.LArraySpec
+
+/**
+ * @author Taro L. Saito
+ */
+class CleanerMemoryAllocatorTest extends LArraySpec {
+
+  def waitUntilReleased(alloc: MemoryAllocator) {
+    val deadline = System.currentTimeMillis() + 10000
+    while (alloc.allocatedSize() > 0L && System.currentTimeMillis() < deadline) {
+      System.gc()
+      Thread.sleep(10)
+    }
+  }
+
+  "CleanerMemoryAllocator" should {
+
+    "release memories collected by GC" in {
+      val alloc = new CleanerMemoryAllocator()
+      for (i <- 0 until 100) {
+        alloc.allocate(1024)
+      }
+      alloc.allocatedSize() should be > 0L
+      waitUntilReleased(alloc)
+      alloc.allocatedSize() shouldBe 0L
+    }
+
+    "release memories explicitly" in {
+      val alloc = new CleanerMemoryAllocator()
+      val l = for (i <- 0 until 100) yield alloc.allocate(1024)
+      l.foreach(alloc.release(_))
+      alloc.allocatedSize() shouldBe 0L
+      // Reuse the released addresses
+      val l2 = for (i <- 0 until 100) yield alloc.allocate(1024)
+      val size = alloc.allocatedSize()
+      // Cleaning actions of the released memories must not release the new memories
+      System.gc()
+      Thread.sleep(100)
+      alloc.allocatedSize() shouldBe size
+      l2.foreach(alloc.release(_))
+    }
+  }
+
+  "DefaultMemoryAllocator" should {
+
+    "request GC when the allocated size exceeds the threshold" in {
+      val alloc = new DefaultMemoryAllocator()
+      alloc.setReclamationThreshold(1024 * 1024)
+      val N = 1000
+      val S = 64 * 1024
+      for (i <- 0 until N) {
+        // Not released explicitly
+        alloc.allocate(S)
+        if (i % 100 == 0) {
+          Thread.sleep(150)
+        }
+      }
+      // No explicit GC call is necessary to release unreachable memories
+      alloc.allocatedSize() should be < (N.toLong * S / 2)
+    }
+  }
+}
@@ -7,7 +7,7 @@
 
 package xerial.larray.buffer
 
-import java.nio.ByteBuffer
+import java.nio.{ByteBuffer, ByteOrder}
 
 import xerial.larray.{DataUnit, LArraySpec}
 
@@ -205,6 +205,18 @@ class LBufferTest extends LArraySpec {
 
     }
 
+    "be released by close" in {
+      val alloc = LBufferConfig.allocator
+      val before = alloc.allocatedSize()
+      val b = new LBuffer(1024)
+      alloc.allocatedSize() shouldBe before + 1024 + OffHeapMemory.HEADER_SIZE
+      b.close()
+      alloc.allocatedSize() shouldBe before
+      // close can be called more than once
+      b.close()
+      b.release()
+    }
+
     "read from ByteBuffer" in {
       val bytes = Array[Byte](1, 2, 3)
       val byteBuffer = ByteBuffer.wrap(bytes)
@@ -212,5 +224,524 @@ class LBufferTest extends LArraySpec {
       lbuffer.readFrom(byteBuffer, 0)
       byteBuffer.array() === lbuffer.toArray
     }
+
+    "read from direct and read-only ByteBuffers" in {
+      val bytes = (0 until 100).map(_.toByte).toArray
+      val lbuffer = new LBuffer(240)
+
+      val direct = ByteBuffer.allocateDirect(100)
+      direct.put(bytes).flip()
+      lbuffer.readFrom(direct, 0) shouldBe 100
+      direct.remaining() shouldBe 0
+
+      val readOnly = ByteBuffer.wrap(bytes).asReadOnlyBuffer()
+      readOnly.position(10)
+      lbuffer.readFrom(readOnly, 100) shouldBe 90
+      readOnly.remaining() shouldBe 0
+
+      val sliced = ByteBuffer.wrap(bytes, 50, 50).slice()
+      lbuffer.readFrom(sliced, 190) shouldBe 50
+
+      val a = lbuffer.toArray
+      a.slice(0, 100) shouldBe bytes
+      a.slice(100, 190) shouldBe bytes.slice(10, 100)
+      a.slice(190, 240) shouldBe bytes.slice(50, 100)
+      lbuffer.release()
+    }
+
+    "write to channels" in {
+      val lbuffer = new LBuffer(1000)
+      (0 until 1000).foreach(i => lbuffer(i) = (i % 100).toByte)
+      val out = new java.io.ByteArrayOutputStream()
+      // A channel that accepts at most 100 bytes at a time
+      val ch = new java.nio.channels.WritableByteChannel {
+        val underlying = java.nio.channels.Channels.newChannel(out)
+        def write(src: ByteBuffer): Int = {
+          val len = math.min(src.remaining(), 100)
+          val b = src.duplicate()
+          b.limit(b.position() + len)
+          underlying.write(b)
+          src.position(src.position() + len)
+          len
+        }
+        def isOpen = true
+        def close() {}
+      }
+      lbuffer.writeTo(ch)
+      out.toByteArray shouldBe lbuffer.toArray
+
+      // Copy between LBuffers through a channel
+      val copy = new LBuffer(1000)
+      lbuffer.writeTo(new WritableChannelWrap(copy))
+      copy.toArray shouldBe lbuffer.toArray
+
+      val arr = new Array[Byte](10)
+      lbuffer.copyTo(95, arr, 0, 10)
+      arr shouldBe ((95 until 105).map(i => (i % 100).toByte).toArray)
+      lbuffer.release()
+      copy.release()
+    }
+
+    "load files in parallel" in {
+      val f = java.io.File.createTempFile("lbuffer", ".dat", new java.io.File("target"))
+      f.deleteOnExit()
+      val data = Array.tabulate[Byte](100000)(i => (i * 7).toByte)
+      val out = new java.io.FileOutputStream(f)
+      out.write(data)
+      out.close()
+
+      val b = LBufferAPI.loadFrom(f)
+      b.size() shouldBe data.length
+      b.toArray shouldBe data
+      b.release()
+
+      val maxProgress = new java.util.concurrent.atomic.AtomicLong()
+      val b2 = LBufferAPI.loadFrom(f, 4, new ProgressListener {
+        def progress(transferred: Long, total: Long) {
+          total shouldBe data.length
+          maxProgress.accumulateAndGet(transferred, new java.util.function.LongBinaryOperator {
+            def applyAsLong(a: Long, b: Long) = math.max(a, b)
+          })
+        }
+      })
+      b2.toArray shouldBe data
+      maxProgress.get() shouldBe data.length
+      b2.release()
+
+      // Read a part of the file with small chunks to use multiple threads
+      val in = new java.io.FileInputStream(f).getChannel
+      val b3 = new LBuffer(50000)
+      b3.clear()
+      ParallelFileIO.read(in, 30000, b3, 100, 49900, 1000L, 4, null)
+      b3.getByte(99) shouldBe 0.toByte
+      b3.toArray.slice(100, 50000) shouldBe data.slice(30000, 79900)
+      intercept[java.io.EOFException] {
+        ParallelFileIO.read(in, 90000, b3, 0, 20000, 1000L, 4, null)
+      }
+      intercept[IndexOutOfBoundsException] {
+        ParallelFileIO.read(in, 0, b3, 100, 50000, 4, null)
+      }
+      in.close()
+      b3.release()
+    }
+
+    "wait for the running chunk reads when interrupted" in {
+      // A sparse file of three chunks
+      val f = java.io.File.createTempFile("lbuffer", ".dat", new java.io.File("target"))
+      f.deleteOnExit()
+      val raf = new java.io.RandomAccessFile(f, "rw")
+      raf.setLength(ParallelFileIO.CHUNK_SIZE * 2 + 100)
+      raf.close()
+
+      val running = new java.util.concurrent.atomic.AtomicInteger()
+      val started = new java.util.concurrent.CountDownLatch(1)
+      val caller = Thread.currentThread()
+      val interrupter = new Thread(new Runnable {
+        def run() {
+          started.await()
+          caller.interrupt()
+        }
+      })
+      interrupter.start()
+      intercept[java.io.InterruptedIOException] {
+        LBufferAPI.loadFrom(f, 3, new ProgressListener {
+          // Called in the worker threads while reading the chunks
+          def progress(transferred: Long, total: Long) {
+            running.incrementAndGet()
+            started.countDown()
+            Thread.sleep(500)
+            running.decrementAndGet()
+          }
+        })
+      }
+      // The interrupt is kept
+      Thread.interrupted() shouldBe true
+      running.get() shouldBe 0
+      interrupter.join()
+    }
+
+    "write files in parallel and asynchronously" in {
+      val f = java.io.File.createTempFile("lbuffer", ".dat", new java.io.File("target"))
+      f.deleteOnExit()
+      val b = new LBuffer(100000)
+      (0 until 100000).foreach(i => b(i) = (i * 3).toByte)
+
+      b.writeTo(f)
+      f.length() shouldBe 100000
+      LBufferAPI.loadFrom(f).toArray shouldBe b.toArray
+
+      val f2 = java.io.File.createTempFile("lbuffer", ".dat", new java.io.File("target"))
+      f2.deleteOnExit()
+      val maxProgress = new java.util.concurrent.atomic.AtomicLong()
+      val future = b.writeToAsync(f2, 4, true, new ProgressListener {
+        def progress(transferred: Long, total: Long) {
+          maxProgress.accumulateAndGet(transferred, new java.util.function.LongBinaryOperator {
+            def applyAsLong(a: Long, b: Long) = math.max(a, b)
+          })
+        }
+      })
+      future.get()
+      maxProgress.get() shouldBe 100000
+      LBufferAPI.loadFrom(f2).toArray shouldBe b.toArray
+
+      // Write a part of the buffer with small chunks to use multiple threads
+      val ch = new java.io.RandomAccessFile(f2, "rw").getChannel
+      ParallelFileIO.transferAsync(50000, 1000L, 4, new ParallelFileIO.Progress(50000, null), new ParallelFileIO.ChunkTransfer {
+        def transfer(chunkOffset: Long, chunkLength: Int, progress: ParallelFileIO.Progress) {
+          val buf = b.toDirectByteBuffers(chunkOffset, chunkLength)(0)
+          while (buf.hasRemaining)
+            ch.write(buf, 200000 + chunkOffset + buf.position())
+        }
+      }).get()
+      ch.size() shouldBe 250000
+      ParallelFileIO.writeAsync(b, 10, 20, ch, 0, 2, false, null).get()
+      ch.close()
+      val loaded = LBufferAPI.loadFrom(f2)
+      loaded.toArray.slice(0, 20) shouldBe b.toArray.slice(10, 30)
+      loaded.toArray.slice(200000, 250000) shouldBe b.toArray.slice(0, 50000)
+      loaded.release()
+
+      // Errors are reported through the future
+      val closed = new java.io.RandomAccessFile(f2, "rw").getChannel
+      closed.close()
+      val failure = intercept[java.util.concurrent.ExecutionException] {
+        ParallelFileIO.writeAsync(b, 0, 100000, closed, 0, 2, false, null).get()
+      }
+      failure.getCause shouldBe a[java.io.UncheckedIOException]
+      intercept[java.nio.channels.ClosedChannelException] {
+        ParallelFileIO.write(b, 0, 100000, closed, 0, 2, false, null)
+      }
+      val missing = b.writeToAsync(new java.io.File("target/no-such-dir/file"))
+      intercept[java.util.concurrent.ExecutionException] {
+        missing.get()
+      }.getCause shouldBe a[java.io.FileNotFoundException]
+      b.release()
+    }
+
+    "compare contents" in {
+      val N = 41
+      val a = new LBuffer(N)
+      val b = new LBuffer(N + 5)
+      (0 until N).foreach { i => a(i) = i.toByte; b(i + 5) = i.toByte }
+      a.mismatch(0, b, 5, N) shouldBe -1L
+      a.equals(0, b, 5, N) shouldBe true
+      a.hash64() shouldBe b.hash64(5, N)
+      for (i <- 0 until N) {
+        b(i + 5) = 100.toByte
+        a.mismatch(0, b, 5, N) shouldBe i
+        a.equals(0, b, 5, N) shouldBe false
+        a.hash64() should not be b.hash64(5, N)
+        b(i + 5) = i.toByte
+      }
+
+      val c = new LBuffer(N)
+      c.clear()
+      a.copyTo(0, c, 0, N)
+      a.contentEquals(c) shouldBe true
+      a.mismatch(c) shouldBe -1L
+      a.compareTo(c) shouldBe 0
+      // Unsigned comparison
+      c(20) = 0x80.toByte
+      a.compareTo(c) should be < 0
+      c.compareTo(a) should be > 0
+      a.mismatch(c) shouldBe 20L
+      a.contentEquals(c) shouldBe false
+
+      // A prefix is smaller
+      val prefix = new LBuffer(10)
+      a.copyTo(0, prefix, 0, 10)
+      prefix.compareTo(a) should be < 0
+      a.compareTo(prefix) should be > 0
+      prefix.mismatch(a) shouldBe 10L
+      prefix.contentEquals(a) shouldBe false
+
+      // Hash values of all prefixes are different
+      (0 to N).map(len => a.hash64(0, len)).distinct.size shouldBe N + 1
+      intercept[IndexOutOfBoundsException] {
+        a.mismatch(0, b, 10, N)
+      }
+      Seq(a, b, c, prefix).foreach(_.release())
+    }
+
+    "compare contents faster than element-wise loops" taggedAs ("bench") in {
+      val N = 64 * 1024 * 1024
+      val a = new LBuffer(N)
+      val b = new LBuffer(N)
+      a.fill(0, N, 1.toByte)
+      b.fill(0, N, 1.toByte)
+      b(N - 1) = 2.toByte
+      val arr1 = a.toArray
+      val arr2 = b.toArray
+      // java.util.Arrays.mismatch is available since Java 9
+      val arraysMismatch = scala.util.Try(classOf[java.util.Arrays].getMethod("mismatch", classOf[Array[Byte]], classOf[Array[Byte]])).toOption
+
+      time("mismatch", repeat = 10) {
+        block("LBuffer.mismatch") {
+          a.mismatch(b) shouldBe N - 1
+        }
+        block("byte loop") {
+          var i = 0L
+          while (i < N && a(i) == b(i)) {
+            i += 1
+          }
+          i shouldBe N - 1
+        }
+        block("Arrays.equals") {
+          java.util.Arrays.equals(arr1, arr2) shouldBe false
+        }
+        for (m <- arraysMismatch) {
+          block("Arrays.mismatch") {
+            m.invoke(null, arr1, arr2) shouldBe N - 1
+          }
+        }
+        block("LBuffer.hash64") {
+          a.hash64()
+        }
+      }
+      a.release()
+      b.release()
+    }
+
+    "compute checksums" in {
+      val data = Array.tabulate[Byte](1000)(i => (i * 31 + 7).toByte)
+      val b = new LBuffer(1008)
+      b.readFrom(data, 8)
+      // Reference values of xxHash64 (seed 0 and 12345) and CRC32C
+      val expected = Seq(
+        (0, -1205034819632174695L, -7685310337509261171L, 0x00000000L),
+        (1, -6238471690400515145L, 5291662054375373783L, 0x86B737BAL),
+        (3, 6261856666793576441L, -7710295066758904386L, 0x765A7C83L),
+        (4, -4175657425724010748L, 1167751852228588262L, 0x65F1C5DCL),
+        (7, -5782907530754680178L, -3428741404339349807L, 0x5110A112L),
+        (8, 4442176141076628448L, 2575773315923761690L, 0x40795C72L),
+        (31, 5365180931665220769L, -4615593234166582937L, 0x17430993L),
+        (32, -8261898989794966467L, 8926110254148031078L, 0x9AC661B0L),
+        (33, 7118499008196474468L, 6495196144732647954L, 0xD7082B08L),
+        (100, -1179752692538359471L, 5705573003090453817L, 0xE26C441CL),
+        (1000, -7396793741651722955L, -3759332629855921661L, 0xFF52EE97L)
+      )
+      for ((len, xx, xxSeed, crc) <- expected) {
+        b.xxHash64(8, len, 0L) shouldBe xx
+        b.xxHash64(8, len, 12345L) shouldBe xxSeed
+        b.xxHash64Chunked(8, len, 0L, 4) shouldBe xx
+        b.crc32c(8, len, 4) shouldBe crc
+        // The table-based implementation used in Java 8
+        (~MemoryChecksum.crc32cTable(~0, b.address() + 8, len) & 0xFFFFFFFFL) shouldBe crc
+      }
+
+      // xxHash64 of the data split into ranges
+      for (split1 <- Seq(0, 1, 7, 32, 500); split2 <- Seq(split1, split1 + 3, split1 + 40, 1000)) {
+        val h = new MemoryChecksum.XXHash64(12345L)
+        h.update(b.address() + 8, split1)
+        h.update(b.address() + 8 + split1, split2 - split1)
+        h.update(b.address() + 8 + split2, 1000 - split2)
+        h.getValue shouldBe -3759332629855921661L
+      }
+
+      // CRC32C of concatenated ranges
+      for (split <- Seq(0, 1, 7, 500, 1000)) {
+        val crc1 = b.crc32c(8, split, 1)
+        val crc2 = b.crc32c(8 + split, 1000 - split, 1)
+        MemoryChecksum.crc32cCombine(crc1, crc2, 1000 - split) shouldBe 0xFF52EE97L
+      }
+      intercept[IndexOutOfBoundsException] {
+        b.crc32c(10, 1000, 1)
+      }
+      b.release()
+
+      // Large buffers are processed in parallel
+      val large = new LBuffer(MemoryChecksum.CHUNK_SIZE * 2 + 100)
+      for (i <- 0L until large.size by 4096) {
+        large(i) = (i >> 12).toByte
+      }
+      large.crc32c(0, large.size, 4) shouldBe large.crc32c()
+      val h = large.xxHash64Chunked(0, large.size, 0L, 4)
+      h shouldBe large.xxHash64Chunked(0, large.size, 0L, 1)
+      h should not be large.xxHash64()
+      large.release()
+    }
+
+    "compute checksums without copying" taggedAs ("bench") in {
+      val N = 256 * 1024 * 1024
+      val b = new LBuffer(N)
+      for (i <- 0L until b.size by 4096) {
+        b(i) = i.toByte
+      }
+      time("checksum 256MB", repeat = 5) {
+        block("copy to byte[] + CRC32") {
+          // How checksums were computed before: copying the contents to a heap array
+          val crc = new java.util.zip.CRC32
+          val buf = new Array[Byte](1024 * 1024)
+          var pos = 0L
+          while (pos < N) {
+            b.copyTo(pos.toInt, buf, 0, buf.length)
+            crc.update(buf, 0, buf.length)
+            pos += buf.length
+          }
+          crc.getValue
+        }
+        block("crc32c") {
+          b.crc32c()
+        }
+        block("crc32c parallel") {
+          b.crc32c(0, N, 4)
+        }
+        block("xxHash64") {
+          b.xxHash64()
+        }
+        block("xxHash64 chunked") {
+          b.xxHash64Chunked(0, N, 0L, 4)
+        }
+      }
+      b.release()
+    }
+
+    "transfer typed arrays" in {
+      val b = new LBuffer(1024)
+      val ints = (0 until 100).toArray
+      b.put(8, ints)
+      (0 until 100).forall(i => b.getInt(8 + i * 4) == i) shouldBe true
+      val ints2 = new Array[Int](110)
+      b.get(8, ints2, 10, 100)
+      ints2.drop(10) shouldBe ints
+
+      val longs = Array(1L, -1L, Long.MaxValue, 0x0102030405060708L)
+      b.put(0, longs, 0, 4, ByteOrder.BIG_ENDIAN)
+      b.getByte(24) shouldBe 1.toByte
+      b.getByte(31) shouldBe 8.toByte
+      val longs2 = new Array[Long](4)
+      b.get(0, longs2, 0, 4, ByteOrder.BIG_ENDIAN)
+      longs2 shouldBe longs
+      b.get(0, longs2, 0, 4, ByteOrder.nativeOrder())
+      longs2(3) shouldBe java.lang.Long.reverseBytes(0x0102030405060708L)
+
+      val doubles = Array(1.5, math.Pi, -0.0)
+      b.put(100, doubles, 0, 3, ByteOrder.BIG_ENDIAN)
+      ByteBuffer.wrap(b.toArray, 100, 24).asDoubleBuffer().get(2) shouldBe -0.0
+      val doubles2 = new Array[Double](3)
+      b.get(100, doubles2, 0, 3, ByteOrder.BIG_ENDIAN)
+      doubles2 shouldBe doubles
+
+      val chars = "hello world".toCharArray
+      b.put(200, chars)
+      val chars2 = new Array[Char](chars.length)
+      b.get(200, chars2)
+      chars2 shouldBe chars
+
+      val shorts = Array[Short](1, 2, 3)
+      b.put(300, shorts, 1, 2, ByteOrder.LITTLE_ENDIAN)
+      val shorts2 = new Array[Short](2)
+      b.get(300, shorts2, 0, 2, ByteOrder.LITTLE_ENDIAN)
+      shorts2 shouldBe Array[Short](2, 3)
+
+      val floats = Array(1.0f, 2.0f)
+      b.put(400, floats)
+      b.getFloat(404) shouldBe 2.0f
+
+      intercept[IndexOutOfBoundsException] {
+        b.put(1020, ints)
+      }
+      intercept[IndexOutOfBoundsException] {
+        b.get(0, ints2, 100, 20)
+      }
+      b.release()
+    }
+
+    "read and write values in explicit byte orders" in {
+      val b = new LBuffer(64)
+      b.putIntBE(0, 0x01020304)
+      b.getByte(0) shouldBe 1.toByte
+      b.getByte(3) shouldBe 4.toByte
+      b.getIntBE(0) shouldBe 0x01020304
+      b.getIntLE(0) shouldBe 0x04030201
+      b.putLongLE(8, 0x0102030405060708L)
+      b.getByte(8) shouldBe 8.toByte
+      b.getLongBE(8) shouldBe 0x0807060504030201L
+      b.putShortBE(16, 0x0102.toShort)
+      b.getShortLE(16) shouldBe 0x0201.toShort
+      b.putCharLE(18, 'a')
+      b.getCharLE(18) shouldBe 'a'
+      b.putFloatBE(20, 1.5f)
+      ByteBuffer.wrap(b.toArray).getFloat(20) shouldBe 1.5f
+      b.putDoubleLE(24, math.E)
+      b.getDoubleLE(24) shouldBe math.E
+      ByteBuffer.wrap(b.toArray).order(ByteOrder.LITTLE_ENDIAN).getDouble(24) shouldBe math.E
+
+      for (order <- Seq(ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN)) {
+        val v = b.orderedView(order)
+        v.order() shouldBe order
+        v.size() shouldBe 64
+        v.putLong(32, 123456789L)
+        v.putInt(40, -5)
+        v.putDouble(48, 0.25)
+        v.putChar(56, 'x')
+        v.putShort(58, 300.toShort)
+        val bb = ByteBuffer.wrap(b.toArray).order(order)
+        bb.getLong(32) shouldBe 123456789L
+        bb.getInt(40) shouldBe -5
+        bb.getDouble(48) shouldBe 0.25
+        bb.getChar(56) shouldBe 'x'
+        bb.getShort(58) shouldBe 300.toShort
+        v.getLong(32) shouldBe 123456789L
+        v.putFloat(60, 3.25f)
+        ByteBuffer.wrap(b.toArray).order(order).getFloat(60) shouldBe 3.25f
+        v.getFloat(60) shouldBe 3.25f
+      }
+      b.release()
+    }
+
+    "copy typed arrays faster than loops" taggedAs ("bench") in {
+      val N = 1024 * 1024
+      val b = new LBuffer(N * 8L)
+      val arr = Array.tabulate(N)(_.toLong)
+      time("put long array", repeat = 10) {
+        block("loop") {
+          var i = 0
+          while (i < N) {
+            b.putLong(i * 8L, arr(i))
+            i += 1
+          }
+        }
+        block("bulk") {
+          b.put(0, arr)
+        }
+        block("bulk with byte swap") {
+          b.put(0, arr, 0, N, ByteOrder.BIG_ENDIAN)
+        }
+      }
+      b.release()
+    }
+
+    "copy small data without creating garbage" taggedAs ("bench") in {
+      val N = 100000
+      val lbuffer = new LBuffer(4096)
+      val arr = new Array[Byte](4096)
+      for (size <- Seq(64, 512, 4096)) {
+        time(s"copy ${size} bytes", repeat = 10) {
+          block("new DirectByteBuffer") {
+            var i = 0
+            while (i < N) {
+              UnsafeUtil.newDirectByteBuffer(lbuffer.address(), size, lbuffer).get(arr, 0, size)
+              i += 1
+            }
+          }
+          block("thread-local view") {
+            var i = 0
+            while (i < N) {
+              UnsafeUtil.directByteBufferView(lbuffer.address(), size).get(arr, 0, size)
+              i += 1
+            }
+          }
+          block("copyTo") {
+            var i = 0
+            while (i < N) {
+              lbuffer.copyTo(0, arr, 0, size)
+              i += 1
+            }
+          }
+        }
+      }
+      lbuffer.release()
+    }
   }
 }
\ No newline at end of file
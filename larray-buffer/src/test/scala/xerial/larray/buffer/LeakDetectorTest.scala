@@ -0,0 +1,162 @@
+//--------------------------------------
+//
+// LeakDetectorTest.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray.buffer
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import xerial.larray.LArraySpec
+
+import scala.collection.JavaConverters._
+
+/**
+ * @author Taro L. Saito
+ */
+class LeakDetectorTest extends LArraySpec {
+
+  def waitUntilReleased(alloc: MemoryAllocator) {
+    val deadline = System.currentTimeMillis() + 10000
+    while (alloc.allocatedSize() > 0L && System.currentTimeMillis() < deadline) {
+      System.gc()
+      Thread.sleep(10)
+    }
+  }
+
+  def allocateLeakedMemories(alloc: MemoryAllocator) {
+    for (i <- 0 until 10)
+      alloc.allocate(1000)
+  }
+
+  def allocateReleasedMemories(alloc: MemoryAllocator) {
+    for (i <- 0 until 10)
+      alloc.release(alloc.allocate(1000))
+  }
+
+  def newDetector(sampleRate: Double, leaks: ConcurrentLinkedQueue[LeakDetector.Allocation]) =
+    new LeakDetector(sampleRate, 5, new LeakDetector.LeakListener {
+      def onLeak(a: LeakDetector.Allocation) {
+        leaks.add(a)
+      }
+    })
+
+  "LeakDetector" should {
+
+    "report memories reclaimed by GC with their allocation stacks" in {
+      for (alloc <- Seq(new DefaultMemoryAllocator(), new CleanerMemoryAllocator())) {
+        val leaks = new ConcurrentLinkedQueue[LeakDetector.Allocation]()
+        val detector = newDetector(1.0, leaks)
+        alloc.setLeakDetector(detector)
+        allocateReleasedMemories(alloc)
+        allocateLeakedMemories(alloc)
+        waitUntilReleased(alloc)
+        alloc.allocatedSize() shouldBe 0L
+
+        detector.leakCount() shouldBe 10L
+        detector.leakedBytes() shouldBe 10L * 1008
+        leaks.size() shouldBe 10
+        for (a <- leaks.asScala) {
+          a.size() shouldBe 1008L
+          // The allocator frames are excluded
+          a.stackTrace()(0).getClassName should startWith("xerial.larray.buffer.LeakDetectorTest")
+          a.stackTrace().exists(_.getMethodName.contains("allocateLeakedMemories")) shouldBe true
+        }
+        detector.liveAllocations().isEmpty shouldBe true
+      }
+    }
+
+    "group live allocations by call sites" in {
+      val alloc = new DefaultMemoryAllocator()
+      val detector = new LeakDetector(1.0)
+      alloc.setLeakDetector(detector)
+      val l1 = for (i <- 0 until 3) yield alloc.allocate(100)
+      val l2 = for (i <- 0 until 5) yield alloc.allocate(10)
+      val sites = detector.liveAllocations()
+      sites.size() shouldBe 2
+      sites.get(0).count() shouldBe 3L
+      sites.get(0).bytes() shouldBe 3L * 108
+      sites.get(1).count() shouldBe 5L
+      sites.get(1).bytes() shouldBe 5L * 18
+      val dump = detector.dump()
+      debug(dump)
+      dump should include("8 allocations of 414 bytes")
+
+      // Reallocated memories are tracked with the new allocation
+      val m = alloc.reallocate(l1(0), 1000)
+      detector.liveAllocations().asScala.map(_.count()).sum shouldBe 8L
+
+      (l1.tail ++ l2 :+ m).foreach(alloc.release(_))
+      detector.liveAllocations().isEmpty shouldBe true
+      detector.leakCount() shouldBe 0L
+    }
+
+    "sample allocations" in {
+      val alloc = new DefaultMemoryAllocator()
+      val detector = new LeakDetector(0.1)
+      alloc.setLeakDetector(detector)
+      val l = for (i <- 0 until 10000) yield alloc.allocate(8)
+      val sampled = detector.liveAllocations().asScala.map(_.count()).sum
+      sampled should be > 500L
+      sampled should be < 1500L
+      detector.dump() should include("estimated total")
+      l.foreach(alloc.release(_))
+
+      intercept[IllegalArgumentException] {
+        new LeakDetector(1.5)
+      }
+    }
+
+    "have low overhead" taggedAs ("bench") in {
+      val N = 1000000
+      val S = 64
+      val plain = new DefaultMemoryAllocator()
+      val sampled = new DefaultMemoryAllocator()
+      sampled.setLeakDetector(new LeakDetector(0.01))
+      val full = new DefaultMemoryAllocator()
+      full.setLeakDetector(new LeakDetector(1.0))
+
+      def run(alloc: MemoryAllocator, n: Int) {
+        var i = 0
+        while (i < n) {
+          alloc.release(alloc.allocate(S))
+          i += 1
+        }
+      }
+
+      // Allocate memories in a deep stack, where capturing the whole stack with Throwable is expensive
+      def runDeep(alloc: MemoryAllocator, n: Int, depth: Int = 200) {
+        if (depth > 0)
+          runDeep(alloc, n, depth - 1)
+        else
+          run(alloc, n)
+      }
+
+      // Java 17 (core avg): no detection 0.154 sec., 1% sampling 0.190 sec., 100% sampling 0.431 sec.
+      // (with the whole stacks captured by Throwable: 0.183 sec., 0.260 sec. and 0.813 sec.)
+      // In the deep stack: no detection 0.163 sec., 1% sampling 0.235 sec. (Throwable: 0.185 sec. and 0.280 sec.)
+      time("allocate and release", repeat = 5) {
+        block("no detection") {
+          run(plain, N)
+        }
+        block("1% sampling") {
+          run(sampled, N)
+        }
+        block("100% sampling") {
+          run(full, N / 10)
+        }
+      }
+
+      time("allocate and release in a deep stack", repeat = 5) {
+        block("no detection") {
+          runDeep(plain, N)
+        }
+        block("1% sampling") {
+          runDeep(sampled, N)
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,159 @@
+//--------------------------------------
+//
+// MemoryAccessTest.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray.buffer
+
+import xerial.larray.LArraySpec
+
+import scala.util.Try
+
+/**
+ * @author Taro L. Saito
+ */
+class MemoryAccessTest extends LArraySpec {
+
+  // The FFM backend is available only when running with Java 22 or later and the multi-release jar
+  val backends: Seq[MemoryAccess] = Seq(new UnsafeMemoryAccess) ++
+    Try(Class.forName("xerial.larray.buffer.SegmentMemoryAccess").newInstance().asInstanceOf[MemoryAccess]).toOption
+
+  "MemoryAccess" should {
+
+    "choose a backend at startup" in {
+      info(s"memory access backend: ${LBufferConfig.access.name()}")
+      backends.map(_.name()) should contain(LBufferConfig.access.name())
+      // The FFM backend is opt-in
+      if (System.getProperty(LBufferConfig.KEY_MEMORY_ACCESS) == null)
+        LBufferConfig.access.name() shouldBe "unsafe"
+    }
+
+    for (a <- backends) {
+      s"read and write values with ${a.name()} backend" in {
+        val b = new LBuffer(64)
+        val addr = b.address()
+        a.putByte(addr, 1.toByte)
+        a.getByte(addr) shouldBe 1.toByte
+        a.putChar(addr + 1, 'a')
+        a.getChar(addr + 1) shouldBe 'a'
+        a.putShort(addr + 3, 12345.toShort)
+        a.getShort(addr + 3) shouldBe 12345.toShort
+        a.putInt(addr + 5, 123456789)
+        a.getInt(addr + 5) shouldBe 123456789
+        a.putFloat(addr + 9, 1.5f)
+        a.getFloat(addr + 9) shouldBe 1.5f
+        a.putLong(addr + 13, Long.MaxValue - 1)
+        a.getLong(addr + 13) shouldBe Long.MaxValue - 1
+        a.putDouble(addr + 21, math.Pi)
+        a.getDouble(addr + 21) shouldBe math.Pi
+
+        a.setMemory(addr, 64, 3.toByte)
+        (0 until 64).forall(i => b.getByte(i) == 3.toByte) shouldBe true
+
+        val arr = (0 until 32).map(_.toByte).toArray
+        a.copyFromArray(arr, 0, addr + 8, 32)
+        a.copyMemory(addr + 8, addr + 40, 16)
+        val out = new Array[Byte](24)
+        a.copyToArray(addr + 40, out, 4, 16)
+        out.slice(4, 20) shouldBe arr.slice(0, 16)
+
+        intercept[IndexOutOfBoundsException] {
+          a.copyToArray(addr, out, 16, 16)
+        }
+        b.release()
+      }
+
+      s"update values atomically with ${a.name()} backend" in {
+        val b = new LBuffer(64)
+        b.clear()
+        val addr = b.address()
+        a.compareAndSwapInt(addr, 0, 10) shouldBe true
+        a.compareAndSwapInt(addr, 0, 20) shouldBe false
+        a.getIntVolatile(addr) shouldBe 10
+        a.getAndAddInt(addr, 5) shouldBe 10
+        a.getAndSetInt(addr, 1) shouldBe 15
+        a.putIntRelease(addr + 4, 7)
+        a.getIntAcquire(addr + 4) shouldBe 7
+
+        a.compareAndSwapLong(addr + 8, 0L, Long.MaxValue) shouldBe true
+        a.getAndAddLong(addr + 8, -1L) shouldBe Long.MaxValue
+        a.getAndSetLong(addr + 8, 3L) shouldBe Long.MaxValue - 1
+        a.putLongVolatile(addr + 16, 42L)
+        a.getLongVolatile(addr + 16) shouldBe 42L
+        a.putLongRelease(addr + 24, 43L)
+        a.getLongAcquire(addr + 24) shouldBe 43L
+        a.loadFence()
+        a.storeFence()
+        a.fullFence()
+
+        val N = 4
+        val K = 10000
+        val threads = (0 until N).map { t =>
+          new Thread(new Runnable {
+            def run() {
+              for (i <- 0 until K) {
+                a.getAndAddLong(addr + 32, 1L)
+                var done = false
+                while (!done) {
+                  val v = a.getIntVolatile(addr + 40)
+                  done = a.compareAndSwapInt(addr + 40, v, v + 2)
+                }
+              }
+            }
+          })
+        }
+        threads.foreach(_.start())
+        threads.foreach(_.join())
+        b.getLong(32) shouldBe N.toLong * K
+        b.getInt(40) shouldBe N * K * 2
+        b.release()
+      }
+    }
+
+    "compare the performance of the backends" taggedAs ("bench") in {
+      val N = 1024 * 1024
+      val b = new LBuffer(N * 8L)
+      val c = new LBuffer(N * 8L)
+      val addr = b.address()
+
+      time("get/put", repeat = 10) {
+        for (a <- backends) {
+          block(a.name()) {
+            var i = 0
+            while (i < N) {
+              a.putLong(addr + (i << 3), i)
+              i += 1
+            }
+            var sum = 0L
+            i = 0
+            while (i < N) {
+              sum += a.getLong(addr + (i << 3))
+              i += 1
+            }
+            sum
+          }
+        }
+      }
+
+      time("copy", repeat = 10) {
+        for (a <- backends) {
+          block(a.name()) {
+            a.copyMemory(addr, c.address(), N * 8L)
+          }
+        }
+      }
+
+      time("fill", repeat = 10) {
+        for (a <- backends) {
+          block(a.name()) {
+            a.setMemory(addr, N * 8L, 1.toByte)
+          }
+        }
+      }
+      b.release()
+      c.release()
+    }
+  }
+}
@@ -29,6 +29,19 @@ import xerial.larray.LArraySpec
  * @author Taro L. Saito
  */
 class MemoryAllocatorTest extends LArraySpec {
+
+  /**
+    * An allocator implementing only the abstract methods of MemoryAllocator
+    */
+  class MinimalAllocator extends MemoryAllocator {
+    private val alloc = new DefaultMemoryAllocator()
+    def allocate(size: Long): Memory = alloc.allocate(size)
+    def allocatedSize(): Long = alloc.allocatedSize()
+    def register(m: Memory) { alloc.register(m) }
+    def release(m: Memory) { alloc.release(m) }
+    def release(ref: MemoryReference) { alloc.release(ref) }
+  }
+
   "ConcurrentMemoryAllocator" should {
     "perform better than the default heap allocator" in {
 
@@ -56,4 +69,209 @@ class MemoryAllocatorTest extends LArraySpec {
       t("concurrent") should be <= (t("Array"))
     }
   }
-}
\ No newline at end of file
+
+  "DefaultMemoryAllocator" should {
+
+    "track memories allocated and released concurrently" in {
+      val alloc = new DefaultMemoryAllocator()
+      val threads = for (t <- 0 until 8) yield new Thread(new Runnable {
+        def run() {
+          val l = for (i <- 0 until 1000) yield alloc.allocate(i + 1)
+          l.foreach(alloc.release(_))
+        }
+      })
+      threads.foreach(_.start())
+      threads.foreach(_.join())
+      alloc.allocatedSize() shouldBe 0L
+
+      val l = for (i <- 0 until 1000) yield alloc.allocate(8)
+      alloc.allocatedSize() shouldBe 1000L * 16
+      alloc.releaseAll()
+      alloc.allocatedSize() shouldBe 0L
+    }
+
+    "scale with the number of threads" taggedAs ("bench") in {
+      val N = 100000
+      val S = 64
+      val alloc = new DefaultMemoryAllocator()
+
+      def run(numThreads: Int) {
+        val threads = for (t <- 0 until numThreads) yield new Thread(new Runnable {
+          def run() {
+            var i = 0
+            while (i < N) {
+              alloc.release(alloc.allocate(S))
+              i += 1
+            }
+          }
+        })
+        threads.foreach(_.start())
+        threads.foreach(_.join())
+      }
+
+      val maxThreads = math.max(Runtime.getRuntime.availableProcessors(), 2)
+      time(s"allocate and release ${N} memories per thread", repeat = 5) {
+        for (numThreads <- Iterator.iterate(1)(_ * 2).takeWhile(_ <= maxThreads)) {
+          block(s"${numThreads} threads") {
+            run(numThreads)
+          }
+        }
+      }
+    }
+
+    "allocate aligned memories" in {
+      val alloc = new DefaultMemoryAllocator()
+      for (alignment <- Seq(8L, 64L, 4096L); size <- Seq(1L, 100L, 10000L)) {
+        val m = alloc.allocate(size, alignment)
+        m.address() % alignment shouldBe 0L
+        m.dataSize() shouldBe size
+        val b = new WrappedLBuffer(m, 0, m.dataSize())
+        b.fill(0, size, 1.toByte)
+        (0L until size).forall(i => b.getByte(i) == 1.toByte) shouldBe true
+        alloc.release(m)
+      }
+      alloc.allocatedSize() shouldBe 0L
+
+      intercept[IllegalArgumentException] {
+        alloc.allocate(100, 24)
+      }
+
+      val b = new LBuffer(1000, 64)
+      b.address() % 64 shouldBe 0L
+      b.size() shouldBe 1000L
+      b.release()
+    }
+
+    "align and resize memories of allocators implementing only the abstract methods" in {
+      val alloc = new MinimalAllocator
+      for (alignment <- Seq(8L, 64L, 4096L); size <- Seq(1L, 100L, 10000L)) {
+        val m = alloc.allocate(size, alignment)
+        m.address() % alignment shouldBe 0L
+        m.dataSize() shouldBe size
+        new WrappedLBuffer(m, 0, m.dataSize()).fill(0, size, 1.toByte)
+        alloc.release(m)
+      }
+      alloc.allocatedSize() shouldBe 0L
+      intercept[IllegalArgumentException] {
+        alloc.allocate(100, 24)
+      }
+
+      var m = alloc.allocate(100)
+      new WrappedLBuffer(m, 0, 100).fill(0, 100, 7.toByte)
+      for (size <- Seq(1000L, 50L)) {
+        m = alloc.reallocate(m, size)
+        m.dataSize() shouldBe size
+        val b = new WrappedLBuffer(m, 0, size)
+        (0L until math.min(size, 100L)).forall(i => b.getByte(i) == 7.toByte) shouldBe true
+      }
+      alloc.release(m)
+      val a = alloc.reallocate(alloc.allocate(100, 4096), 10000)
+      a.address() % 4096 shouldBe 0L
+      a.dataSize() shouldBe 10000L
+      alloc.release(a)
+      alloc.allocatedSize() shouldBe 0L
+    }
+
+    "reallocate memories preserving the contents" in {
+      val alloc = new DefaultMemoryAllocator()
+      var m = alloc.allocate(100)
+      new WrappedLBuffer(m, 0, 100).fill(0, 100, 7.toByte)
+      for (size <- Seq(1000L, 1L << 20, 8L << 20, 50L)) {
+        m = alloc.reallocate(m, size)
+        m.dataSize() shouldBe size
+        alloc.allocatedSize() shouldBe size + 8
+        val b = new WrappedLBuffer(m, 0, size)
+        (0L until math.min(size, 100L)).forall(i => b.getByte(i) == 7.toByte) shouldBe true
+      }
+      alloc.release(m)
+      alloc.allocatedSize() shouldBe 0L
+
+      // Aligned memories are copied to new aligned memories
+      val a = alloc.reallocate(alloc.allocate(100, 4096), 10000)
+      a.address() % 4096 shouldBe 0L
+      a.dataSize() shouldBe 10000L
+      alloc.release(a)
+      alloc.allocatedSize() shouldBe 0L
+
+      intercept[IllegalArgumentException] {
+        alloc.reallocate(new DefaultMemoryAllocator().allocate(10), 100)
+      }
+    }
+
+    "allocate aligned memories from arenas" in {
+      val arena = new ArenaMemoryAllocator(1024)
+      val l = for (i <- 0 until 100) yield {
+        val m = arena.allocate(i + 1, 64)
+        m.address() % 64 shouldBe 0L
+        m.dataSize() shouldBe (i + 1).toLong
+        m
+      }
+      val large = arena.allocate(4096, 4096)
+      large.address() % 4096 shouldBe 0L
+      arena.close()
+    }
+
+    "scan aligned memories sequentially" taggedAs ("bench") in {
+      val N = 1000
+      val S = 64 * 1024 + 8
+      val alloc = new DefaultMemoryAllocator()
+      val unaligned = for (i <- 0 until N) yield new WrappedLBuffer(alloc.allocate(S), 0, S)
+      val aligned = for (i <- 0 until N) yield new WrappedLBuffer(alloc.allocate(S, 64), 0, S)
+
+      def scan(l: Seq[WrappedLBuffer]): Long = {
+        var sum = 0L
+        for (b <- l) {
+          var i = 0L
+          while (i + 8 <= S) {
+            sum += b.getLong(i)
+            i += 8
+          }
+        }
+        sum
+      }
+
+      time("sequential scan", repeat = 10) {
+        block("unaligned") {
+          scan(unaligned)
+        }
+        block("64-byte aligned") {
+          scan(aligned)
+        }
+      }
+      alloc.releaseAll()
+    }
+  }
+
+  "MemoryReferenceTable" should {
+
+    "put and remove addresses" in {
+      val table = new MemoryReferenceTable(4)
+      val queue = new java.lang.ref.ReferenceQueue[Memory]()
+      val N = 10000
+      val refs = for (i <- 0 until N) yield new OffHeapMemory((i + 1) * 16L).toRef(queue)
+      refs.foreach(r => table.put(r.address, r))
+      table.size() shouldBe N
+      refs.forall(r => table.get(r.address) eq r) shouldBe true
+
+      // Remove every other entry
+      for ((r, i) <- refs.zipWithIndex if i % 2 == 0) {
+        table.remove(r.address) shouldBe r
+      }
+      table.size() shouldBe N / 2
+      for ((r, i) <- refs.zipWithIndex) {
+        if (i % 2 == 0) {
+          table.get(r.address) shouldBe null
+        }
+        else {
+          table.get(r.address) shouldBe r
+        }
+      }
+
+      // A different reference of the same address is not removed
+      val r1 = refs(1)
+      table.remove(r1.address, refs(3)) shouldBe false
+      table.remove(r1.address, r1) shouldBe true
+      table.values().size() shouldBe N / 2 - 1
+    }
+  }
+}
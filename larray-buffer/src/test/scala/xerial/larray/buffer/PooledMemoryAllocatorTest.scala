@@ -0,0 +1,115 @@
+//--------------------------------------
+//
+// PooledMemoryAllocatorTest.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray.buffer
+
+import xerial.larray.LArraySpec
+
+/**
+ * @author Taro L. Saito
+ */
+class PooledMemoryAllocatorTest extends LArraySpec {
+
+  "PooledMemoryAllocator" should {
+
+    "reuse released memory of the same size class" in {
+      val alloc = new PooledMemoryAllocator()
+      val m1 = alloc.allocate(100)
+      val addr = m1.headerAddress()
+      alloc.release(m1)
+      alloc.pooledSize() shouldBe 128L
+      alloc.allocatedSize() shouldBe 0L
+
+      // 120 + 8 (header) bytes fits in the same size class
+      val m2 = alloc.allocate(120)
+      m2.headerAddress() shouldBe addr
+      m2.dataSize() shouldBe 120L
+      alloc.hitCount() shouldBe 1L
+      alloc.missCount() shouldBe 1L
+      alloc.pooledSize() shouldBe 0L
+      alloc.releaseAll()
+    }
+
+    "not pool memories beyond the pool capacity" in {
+      val alloc = new PooledMemoryAllocator(1024, 1024)
+      val l = (0 until 4).map(i => alloc.allocate(500))
+      l.foreach(alloc.release(_))
+      alloc.pooledSize() shouldBe 1024L
+
+      val large = alloc.allocate(2048)
+      alloc.release(large)
+      alloc.pooledSize() shouldBe 1024L
+
+      alloc.trim()
+      alloc.pooledSize() shouldBe 0L
+    }
+
+    "reallocate pooled memories without changing their size classes" in {
+      val alloc = new PooledMemoryAllocator(1 << 20, 1024)
+      val m1 = alloc.allocate(60)
+      new WrappedLBuffer(m1, 0, 60).fill(0, 60, 3.toByte)
+      // 100 + 8 bytes fits in the same size class (128)
+      val m2 = alloc.reallocate(m1, 100)
+      m2.headerAddress() shouldBe m1.headerAddress()
+      // Moved to the next size class
+      val m3 = alloc.reallocate(m2, 200)
+      m3.dataSize() shouldBe 200L
+      (0 until 60).forall(i => new WrappedLBuffer(m3, 0, 200).getByte(i) == 3.toByte) shouldBe true
+      alloc.pooledSize() shouldBe 128L
+      // Beyond the maximum block size
+      val m4 = alloc.reallocate(m3, 4096)
+      val m5 = alloc.reallocate(m4, 8192)
+      (0 until 60).forall(i => new WrappedLBuffer(m5, 0, 8192).getByte(i) == 3.toByte) shouldBe true
+      alloc.allocatedSize() shouldBe 8200L
+      alloc.release(m5)
+      alloc.allocatedSize() shouldBe 0L
+      alloc.pooledSize() shouldBe 384L
+      alloc.releaseAll()
+    }
+
+    "be used as the default allocator of LBuffer" in {
+      val prev = LBufferConfig.allocator
+      val alloc = new PooledMemoryAllocator()
+      LBufferConfig.allocator = alloc
+      try {
+        for(i <- 0 until 100) {
+          val b = new LBuffer(1000)
+          b.putInt(996, i)
+          b.getInt(996) shouldBe i
+          b.release()
+        }
+        alloc.hitCount() shouldBe 99L
+        debug(f"hit ratio: ${alloc.hitRatio()}%.2f")
+      }
+      finally {
+        LBufferConfig.allocator = prev
+        alloc.releaseAll()
+      }
+    }
+
+    "allocate faster than malloc" taggedAs("bench") in {
+      val N = 10000
+      val S = 4096
+      val pooled = new PooledMemoryAllocator()
+      val default = new DefaultMemoryAllocator()
+
+      time("allocate and release", repeat = 10) {
+        block("default") {
+          for(i <- 0 until N) {
+            default.release(default.allocate(S))
+          }
+        }
+        block("pooled") {
+          for(i <- 0 until N) {
+            pooled.release(pooled.allocate(S))
+          }
+        }
+      }
+      pooled.releaseAll()
+    }
+  }
+}
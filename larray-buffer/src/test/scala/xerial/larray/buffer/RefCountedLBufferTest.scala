@@ -0,0 +1,163 @@
+//--------------------------------------
+//
+// RefCountedLBufferTest.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray.buffer
+
+import java.io.File
+import java.util.concurrent.{CountDownLatch, Executors, TimeUnit}
+
+import xerial.larray.LArraySpec
+
+/**
+ * @author Taro L. Saito
+ */
+class RefCountedLBufferTest extends LArraySpec {
+
+  def withAllocator[U](alloc: MemoryAllocator)(body: => U): U = {
+    val prev = LBufferConfig.allocator
+    LBufferConfig.allocator = alloc
+    try {
+      body
+    }
+    finally {
+      LBufferConfig.allocator = prev
+    }
+  }
+
+  "RefCountedLBuffer" should {
+
+    "free the memory when the last reference is released" in {
+      val alloc = new DefaultMemoryAllocator()
+      withAllocator(alloc) {
+        val b = new RefCountedLBuffer(100)
+        for (i <- 0 until 100)
+          b.putByte(i, i.toByte)
+        b.refCnt() shouldBe 1
+
+        val v = b.view(10, 30)
+        v.size() shouldBe 20L
+        v.address() shouldBe b.address() + 10
+        b.refCnt() shouldBe 2
+        val vv = v.view(5, 10)
+        vv.getByte(0) shouldBe 15.toByte
+        b.refCnt() shouldBe 3
+
+        b.release()
+        vv.release()
+        alloc.allocatedSize() should be > 0L
+        v.getByte(0) shouldBe 10.toByte
+        v.refCnt() shouldBe 1
+
+        v.release()
+        v.refCnt() shouldBe 0
+        alloc.allocatedSize() shouldBe 0L
+
+        // Releasing again has no effect
+        b.release()
+        v.release()
+        intercept[IllegalStateException] {
+          b.retain()
+        }
+        intercept[IllegalStateException] {
+          b.view(0, 10)
+        }
+      }
+    }
+
+    "not take the references of the views by releasing a buffer twice" in {
+      val alloc = new DefaultMemoryAllocator()
+      withAllocator(alloc) {
+        val b = new RefCountedLBuffer(100)
+        b.fill(0, 100, 5.toByte)
+        val v = b.view(0, 50)
+        b.refCnt() shouldBe 2
+        b.release()
+        b.release()
+        v.refCnt() shouldBe 1
+        v.getByte(49) shouldBe 5.toByte
+        alloc.allocatedSize() should be > 0L
+        // The released buffer cannot be used anymore
+        intercept[NullPointerException] {
+          b.getByte(0)
+        }
+
+        // A buffer used in try-with-resources after an explicit release
+        v.retain()
+        v.release()
+        v.close()
+        v.close()
+        alloc.allocatedSize() shouldBe 0L
+      }
+    }
+
+    "take over the memory of LBuffer" in {
+      val alloc = new DefaultMemoryAllocator()
+      withAllocator(alloc) {
+        val l = new LBuffer(64)
+        l.fill(0, 64, 3.toByte)
+        val b = RefCountedLBuffer.wrap(l)
+        l.m shouldBe null
+        // Releasing the original buffer does nothing
+        l.release()
+        b.size() shouldBe 64L
+        b.getByte(63) shouldBe 3.toByte
+        b.retain().release()
+        b.release()
+        alloc.allocatedSize() shouldBe 0L
+
+        intercept[IllegalArgumentException] {
+          RefCountedLBuffer.wrap(new LBuffer(10).view(0, 5))
+        }
+      }
+    }
+
+    "pass views to other threads" in {
+      val alloc = new DefaultMemoryAllocator()
+      withAllocator(alloc) {
+        val N = 16
+        val b = new RefCountedLBuffer(N * 1024)
+        val pool = Executors.newFixedThreadPool(4)
+        val done = new CountDownLatch(N)
+        for (i <- 0 until N) {
+          val v = b.view(i * 1024, (i + 1) * 1024)
+          pool.submit(new Runnable {
+            def run() {
+              try {
+                v.fill(0, v.size(), i.toByte)
+              }
+              finally {
+                v.release()
+                done.countDown()
+              }
+            }
+          })
+        }
+        done.await(10, TimeUnit.SECONDS) shouldBe true
+        pool.shutdown()
+        (0 until N).forall(i => b.getByte(i * 1024 + 1023) == i.toByte) shouldBe true
+        b.refCnt() shouldBe 1
+        b.release()
+        alloc.allocatedSize() shouldBe 0L
+      }
+    }
+
+    "keep the memory while writing to a file" in {
+      val alloc = new DefaultMemoryAllocator()
+      withAllocator(alloc) {
+        val b = new RefCountedLBuffer(10000)
+        b.fill(0, 10000, 9.toByte)
+        val f = File.createTempFile("refcount", ".dat")
+        f.deleteOnExit()
+        val future = b.writeToAsync(f)
+        b.release()
+        future.get()
+        alloc.allocatedSize() shouldBe 0L
+        f.length() shouldBe 10000L
+      }
+    }
+  }
+}
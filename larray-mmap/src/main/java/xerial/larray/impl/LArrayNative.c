@@ -1,3 +1,6 @@
+#if defined(__linux__)
+#define _GNU_SOURCE
+#endif
 #include "LArrayNative.h"
 #include <string.h>
 #include <stdio.h>
@@ -6,6 +9,9 @@
 #include <windows.h>
 #else
 #include <sys/mman.h>
+#include <errno.h>
+#include <unistd.h>
+#include <fcntl.h>
 #endif
 
 /*
@@ -55,6 +61,7 @@ JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_mmap
   DWORD mapAccess = FILE_MAP_READ;
   DWORD fileProtect = PAGE_READONLY;
   BOOL result;
+  mode &= 0xff;
   if (mode == 0) {
     fileProtect = PAGE_READONLY;
     mapAccess = FILE_MAP_READ;
@@ -76,6 +83,8 @@ JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_mmap
    void *addr;
    int prot = 0;
    int flags = 0;
+   int populate = mode & 0x100;
+   mode &= 0xff;
    if(mode == 0) {
       prot = PROT_READ;
       flags = MAP_SHARED;
@@ -87,6 +96,11 @@ JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_mmap
      flags = MAP_PRIVATE;
    }
 
+#if defined(MAP_POPULATE)
+   if(populate)
+     flags |= MAP_POPULATE;
+#endif
+
    addr = mmap(0, size, prot, flags, (int) fd, offset);
 
    return (jlong) addr;
@@ -144,6 +158,33 @@ JNIEXPORT void JNICALL Java_xerial_larray_impl_LArrayNative_msync
 #endif
 }
 
+JNIEXPORT jint JNICALL Java_xerial_larray_impl_LArrayNative_msyncRange
+(JNIEnv *env, jclass cls, jlong fd, jlong addr, jlong size, jboolean async) {
+
+#if defined(_WIN32) || defined(_WIN64)
+  /* FlushViewOfFile only starts writing the pages, and FlushFileBuffers waits for the completion */
+  int retry = 0;
+  BOOL result;
+  do {
+    result = FlushViewOfFile((void *) addr, (SIZE_T) size);
+    if ((result != 0) || (GetLastError() != ERROR_LOCK_VIOLATION))
+      break;
+    retry++;
+  } while (retry < 3);
+  if(result == 0)
+    return (jint) GetLastError();
+  if(!async && fd != 0 && fd != -1) {
+    if(FlushFileBuffers((HANDLE) fd) == 0 && GetLastError() != ERROR_ACCESS_DENIED)
+      return (jint) GetLastError();
+  }
+  return 0;
+#else
+  if(msync((void *) addr, (size_t) size, async ? MS_ASYNC : MS_SYNC) != 0)
+    return errno;
+  return 0;
+#endif
+}
+
 JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_duplicateHandle
   (JNIEnv *env, jclass cls, jlong handle) {
 
@@ -161,3 +202,160 @@ JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_duplicateHandle
 #endif
 
   }
+
+
+JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_mmapAnonymous
+  (JNIEnv *env, jclass cls, jlong size, jboolean hugeTLB) {
+
+#if defined(_WIN32) || defined(_WIN64)
+  void *addr = VirtualAlloc(NULL, (SIZE_T) size, MEM_RESERVE | MEM_COMMIT, PAGE_READWRITE);
+  return (jlong) addr;
+#else
+  void *addr;
+  int flags = MAP_PRIVATE | MAP_ANONYMOUS;
+  if(hugeTLB) {
+#if defined(MAP_HUGETLB)
+    flags |= MAP_HUGETLB;
+#else
+    return 0;
+#endif
+  }
+  addr = mmap(0, (size_t) size, PROT_READ | PROT_WRITE, flags, -1, 0);
+  if(addr == MAP_FAILED)
+    return 0;
+  return (jlong) addr;
+#endif
+}
+
+
+JNIEXPORT jint JNICALL Java_xerial_larray_impl_LArrayNative_madvise
+  (JNIEnv *env, jclass cls, jlong addr, jlong size, jint advice) {
+
+#if defined(_WIN32) || defined(_WIN64)
+  return -1;
+#else
+  int adv;
+  switch(advice) {
+  case 0: adv = MADV_NORMAL; break;
+  case 1: adv = MADV_RANDOM; break;
+  case 2: adv = MADV_SEQUENTIAL; break;
+  case 3: adv = MADV_WILLNEED; break;
+  case 4: adv = MADV_DONTNEED; break;
+#if defined(MADV_HUGEPAGE)
+  case 5: adv = MADV_HUGEPAGE; break;
+  case 6: adv = MADV_NOHUGEPAGE; break;
+#endif
+  default: return EINVAL;
+  }
+  if(madvise((void *) addr, (size_t) size, adv) != 0)
+    return errno;
+  return 0;
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_xerial_larray_impl_LArrayNative_mlock
+  (JNIEnv *env, jclass cls, jlong addr, jlong size) {
+
+#if defined(_WIN32) || defined(_WIN64)
+  if(VirtualLock((LPVOID) addr, (SIZE_T) size) == 0)
+    return (jint) GetLastError();
+  return 0;
+#else
+  if(mlock((void *) addr, (size_t) size) != 0)
+    return errno;
+  return 0;
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_xerial_larray_impl_LArrayNative_munlock
+  (JNIEnv *env, jclass cls, jlong addr, jlong size) {
+
+#if defined(_WIN32) || defined(_WIN64)
+  if(VirtualUnlock((LPVOID) addr, (SIZE_T) size) == 0)
+    return (jint) GetLastError();
+  return 0;
+#else
+  if(munlock((void *) addr, (size_t) size) != 0)
+    return errno;
+  return 0;
+#endif
+}
+
+JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_residentSize
+  (JNIEnv *env, jclass cls, jlong addr, jlong size) {
+
+#if defined(_WIN32) || defined(_WIN64)
+  return -1;
+#else
+  /* Check the pages in batches to bound the size of the vector */
+  const size_t batch = 64 * 1024;
+  size_t pageSize = (size_t) sysconf(_SC_PAGESIZE);
+  size_t numPages = ((size_t) size + pageSize - 1) / pageSize;
+  unsigned char vec[64 * 1024];
+  jlong resident = 0;
+  size_t p, i;
+  for(p = 0; p < numPages; p += batch) {
+    size_t n = numPages - p < batch ? numPages - p : batch;
+    if(mincore((void *) (addr + p * pageSize), n * pageSize, (void *) vec) != 0)
+      return -1;
+    for(i = 0; i < n; ++i) {
+      if(vec[i] & 1)
+        resident += pageSize;
+    }
+  }
+  return resident;
+#endif
+}
+
+JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_mmapReserve
+  (JNIEnv *env, jclass cls, jlong size) {
+
+#if defined(_WIN32) || defined(_WIN64)
+  return 0;
+#else
+  void *addr;
+  int flags = MAP_PRIVATE | MAP_ANONYMOUS;
+#if defined(MAP_NORESERVE)
+  flags |= MAP_NORESERVE;
+#endif
+  addr = mmap(0, (size_t) size, PROT_NONE, flags, -1, 0);
+  if(addr == MAP_FAILED)
+    return 0;
+  return (jlong) addr;
+#endif
+}
+
+JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_mmapFixed
+  (JNIEnv *env, jclass cls, jlong addr, jlong fd, jint mode, jlong offset, jlong size) {
+
+#if defined(_WIN32) || defined(_WIN64)
+  return 0;
+#else
+  void *result;
+  int prot = PROT_READ | PROT_WRITE;
+  int flags = MAP_SHARED | MAP_FIXED;
+  if(mode == 0)
+    prot = PROT_READ;
+  else if(mode == 2)
+    flags = MAP_PRIVATE | MAP_FIXED;
+  result = mmap((void *) addr, (size_t) size, prot, flags, (int) fd, (off_t) offset);
+  if(result == MAP_FAILED)
+    return 0;
+  return (jlong) result;
+#endif
+}
+
+JNIEXPORT jint JNICALL Java_xerial_larray_impl_LArrayNative_fallocate
+  (JNIEnv *env, jclass cls, jlong fd, jlong offset, jlong length) {
+
+#if defined(__linux__)
+  /* Some file systems do not support fallocate. posix_fallocate emulates it by writing zeros */
+  if(fallocate((int) fd, 0, (off_t) offset, (off_t) length) == 0)
+    return 0;
+  if(errno != EOPNOTSUPP)
+    return errno;
+  return posix_fallocate((int) fd, (off_t) offset, (off_t) length);
+#else
+  return -1;
+#endif
+}
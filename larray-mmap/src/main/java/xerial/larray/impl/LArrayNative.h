@@ -55,6 +55,78 @@ JNIEXPORT void JNICALL Java_xerial_larray_impl_LArrayNative_msync
 JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_duplicateHandle
   (JNIEnv *, jclass, jlong);
 
+/*
+ * Class:     xerial_larray_impl_LArrayNative
+ * Method:    mmapAnonymous
+ * Signature: (JZ)J
+ */
+JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_mmapAnonymous
+  (JNIEnv *, jclass, jlong, jboolean);
+
+/*
+ * Class:     xerial_larray_impl_LArrayNative
+ * Method:    madvise
+ * Signature: (JJI)I
+ */
+JNIEXPORT jint JNICALL Java_xerial_larray_impl_LArrayNative_madvise
+  (JNIEnv *, jclass, jlong, jlong, jint);
+
+/*
+ * Class:     xerial_larray_impl_LArrayNative
+ * Method:    msyncRange
+ * Signature: (JJJZ)I
+ */
+JNIEXPORT jint JNICALL Java_xerial_larray_impl_LArrayNative_msyncRange
+  (JNIEnv *, jclass, jlong, jlong, jlong, jboolean);
+
+/*
+ * Class:     xerial_larray_impl_LArrayNative
+ * Method:    mlock
+ * Signature: (JJ)I
+ */
+JNIEXPORT jint JNICALL Java_xerial_larray_impl_LArrayNative_mlock
+  (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     xerial_larray_impl_LArrayNative
+ * Method:    munlock
+ * Signature: (JJ)I
+ */
+JNIEXPORT jint JNICALL Java_xerial_larray_impl_LArrayNative_munlock
+  (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     xerial_larray_impl_LArrayNative
+ * Method:    residentSize
+ * Signature: (JJ)J
+ */
+JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_residentSize
+  (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     xerial_larray_impl_LArrayNative
+ * Method:    mmapReserve
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_mmapReserve
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     xerial_larray_impl_LArrayNative
+ * Method:    mmapFixed
+ * Signature: (JJIJJ)J
+ */
+JNIEXPORT jlong JNICALL Java_xerial_larray_impl_LArrayNative_mmapFixed
+  (JNIEnv *, jclass, jlong, jlong, jint, jlong, jlong);
+
+/*
+ * Class:     xerial_larray_impl_LArrayNative
+ * Method:    fallocate
+ * Signature: (JJJ)I
+ */
+JNIEXPORT jint JNICALL Java_xerial_larray_impl_LArrayNative_fallocate
+  (JNIEnv *, jclass, jlong, jlong, jlong);
+
 #ifdef __cplusplus
 }
 #endif
@@ -33,8 +33,85 @@ public class LArrayNative {
     public static native int copyToArray(long srcAddress, Object destArray, int destOffset, int length);
     public static native int copyFromArray(Object srcArray, int srcOffset, long destAddress, int length);
 
+    /**
+     * Map a file region.
+     * @param mode the code of {@link xerial.larray.mmap.MMapMode}, optionally combined with {@link #MMAP_POPULATE}
+     */
     public static native long mmap(long fd, int mode, long offset, long size);
+
+    /**
+     * A flag of the mmap mode to prefault the pages of the mapping (MAP_POPULATE). This is supported only in Linux.
+     */
+    public static final int MMAP_POPULATE = 0x100;
+
     public static native void munmap(long address, long size);
     public static native void msync(long handle, long address, long size);
     public static native long duplicateHandle(long handle);
+
+    /**
+     * Write the modified pages in the range back to the file. The address must be aligned to the page boundary.
+     * @param handle duplicated file handle (Windows only)
+     * @param async if true, the write is scheduled and this method returns without waiting for its completion (MS_ASYNC)
+     * @return 0 on success, or an OS error code
+     */
+    public static native int msyncRange(long handle, long address, long size, boolean async);
+
+    /**
+     * Map an anonymous memory region. When hugeTLB is true, the region is backed by the pre-allocated huge pages (MAP_HUGETLB).
+     * @return the mapped address, or 0 if the mapping failed
+     */
+    public static native long mmapAnonymous(long size, boolean hugeTLB);
+
+    /**
+     * Lock the pages in the range into the physical memory. The address must be aligned to the page boundary.
+     * @return 0 on success, or an OS error code
+     */
+    public static native int mlock(long address, long size);
+
+    /**
+     * Unlock the pages in the range locked by {@link #mlock(long, long)}
+     * @return 0 on success, or an OS error code
+     */
+    public static native int munlock(long address, long size);
+
+    /**
+     * Get the byte size of the pages in the range resident in the physical memory (mincore). The address must be aligned to the page boundary.
+     * @return the resident byte size, or -1 if not supported
+     */
+    public static native long residentSize(long address, long size);
+
+    /**
+     * Reserve an address range without accessible pages, into which files can be mapped by {@link #mmapFixed}. The range is
+     * released by {@link #munmap(long, long)}.
+     * @return the reserved address, or 0 if the reservation failed or is not supported
+     */
+    public static native long mmapReserve(long size);
+
+    /**
+     * Map a file region at the given address, replacing the pages mapped there. The address must be aligned to the page boundary.
+     * @param mode the code of {@link xerial.larray.mmap.MMapMode}
+     * @return the mapped address, or 0 if the mapping failed or is not supported
+     */
+    public static native long mmapFixed(long address, long fd, int mode, long offset, long size);
+
+    /**
+     * Allocate the disk blocks of the file range, extending the file size if necessary
+     * @return 0 on success, an OS error code, or -1 if not supported
+     */
+    public static native int fallocate(long fd, long offset, long length);
+
+    /**
+     * Give an advice on the usage of the memory region to the OS.
+     * @param advice one of the MADV_* constants defined in this class
+     * @return 0 on success, or an OS error code
+     */
+    public static native int madvise(long address, long size, int advice);
+
+    public static final int MADV_NORMAL = 0;
+    public static final int MADV_RANDOM = 1;
+    public static final int MADV_SEQUENTIAL = 2;
+    public static final int MADV_WILLNEED = 3;
+    public static final int MADV_DONTNEED = 4;
+    public static final int MADV_HUGEPAGE = 5;
+    public static final int MADV_NOHUGEPAGE = 6;
 }
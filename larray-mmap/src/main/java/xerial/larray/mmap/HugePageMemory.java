@@ -0,0 +1,20 @@
+package xerial.larray.mmap;
+
+/**
+ * A memory region mapped by {@link HugePageMemoryAllocator}. The mapped size is rounded up to a multiple of the huge page size.
+ *
+ * @author Taro L. Saito
+ */
+public class HugePageMemory extends MMapMemory {
+
+    private final long dataSize;
+
+    public HugePageMemory(long address, long size, long dataSize) {
+        super(address, size);
+        this.dataSize = dataSize;
+    }
+
+    @Override
+    public long dataSize() { return dataSize; }
+
+}
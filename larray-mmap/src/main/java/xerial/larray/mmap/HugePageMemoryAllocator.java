@@ -0,0 +1,212 @@
+package xerial.larray.mmap;
+
+import xerial.larray.buffer.DefaultMemoryAllocator;
+import xerial.larray.buffer.LBufferAPI;
+import xerial.larray.buffer.Memory;
+import xerial.larray.impl.LArrayNative;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A memory allocator that backs large memories with huge pages in Linux to reduce TLB misses in random accesses.
+ *
+ * A memory is allocated with mmap(MAP_ANONYMOUS|MAP_HUGETLB) if the huge pages are reserved in the system
+ * (/proc/sys/vm/nr_hugepages). Otherwise, the memory region is aligned to the huge page boundary and
+ * madvise(MADV_HUGEPAGE) is used so that transparent huge pages can be used. Memories smaller than
+ * the minimum size, or allocated in the other OSes, are allocated by {@link DefaultMemoryAllocator}.
+ *
+ * Usage:
+ * <pre>
+ *   LBufferConfig.allocator = new HugePageMemoryAllocator();
+ * </pre>
+ *
+ * @author Taro L. Saito
+ */
+public class HugePageMemoryAllocator extends DefaultMemoryAllocator {
+
+    private static Logger logger = Logger.getLogger(HugePageMemoryAllocator.class.getName());
+
+    /**
+     * The default huge page size of x86_64 Linux
+     */
+    public static final long HUGE_PAGE_SIZE = 2L * 1024 * 1024;
+
+    private static final boolean isAvailable = checkAvailability();
+
+    private static boolean checkAvailability() {
+        if(!System.getProperty("os.name", "").toLowerCase().contains("linux"))
+            return false;
+        try {
+            // Native libraries built before the huge page support do not have this method
+            LArrayNative.madvise(0L, 0L, LArrayNative.MADV_NORMAL);
+            return true;
+        }
+        catch(UnsatisfiedLinkError e) {
+            logger.warning("Huge pages are not supported by the native library: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if huge page allocation is supported in this platform
+     */
+    public static boolean isAvailable() {
+        return isAvailable;
+    }
+
+    private final long minSize;
+    private final boolean useHugeTLB;
+
+    /**
+     * Create an allocator that uses huge pages for memories larger than or equal to the huge page size
+     */
+    public HugePageMemoryAllocator() {
+        this(HUGE_PAGE_SIZE, true);
+    }
+
+    /**
+     * @param minSize the minimum byte size of the memory to allocate with huge pages
+     * @param useHugeTLB if false, only transparent huge pages are used
+     */
+    public HugePageMemoryAllocator(long minSize, boolean useHugeTLB) {
+        this.minSize = minSize;
+        this.useHugeTLB = useHugeTLB;
+    }
+
+    @Override
+    public Memory allocate(long size) {
+        if(!isAvailable || size < minSize)
+            return super.allocate(size);
+        return allocateHugePages(size);
+    }
+
+    @Override
+    public Memory allocate(long size, long alignment) {
+        if(!isAvailable || size < minSize || alignment > HUGE_PAGE_SIZE)
+            return super.allocate(size, alignment);
+        // Huge page regions are always aligned to the huge page size
+        return allocateHugePages(size);
+    }
+
+    /**
+     * Resize the memory. A huge page memory is resized in place if the new size fits in the mapped pages, and
+     * a memory growing beyond the minimum size is moved to huge pages.
+     */
+    @Override
+    public Memory reallocate(Memory m, long newSize) {
+        if(m instanceof HugePageMemory && newSize > 0L && roundUp(newSize) == m.size()) {
+            unregister(m);
+            Memory newMemory = new HugePageMemory(m.headerAddress(), m.size(), newSize);
+            register(newMemory);
+            return newMemory;
+        }
+        if(m instanceof HugePageMemory || (isAvailable && newSize >= minSize))
+            return reallocateByCopy(m, newSize);
+        return super.reallocate(m, newSize);
+    }
+
+    private Memory allocateHugePages(long size) {
+        long mappedSize = roundUp(size);
+        if(useHugeTLB) {
+            long address = LArrayNative.mmapAnonymous(mappedSize, true);
+            if(address != 0L) {
+                Memory m = new HugePageMemory(address, mappedSize, size);
+                register(m);
+                return m;
+            }
+            logger.fine("No huge page is reserved. Use transparent huge pages instead");
+        }
+
+        // Map an extra huge page to align the region, then unmap the unaligned head and tail
+        long rawSize = mappedSize + HUGE_PAGE_SIZE;
+        long raw = LArrayNative.mmapAnonymous(rawSize, false);
+        if(raw == 0L)
+            throw new OutOfMemoryError("Failed to map " + rawSize + " bytes");
+        long address = (raw + HUGE_PAGE_SIZE - 1) & ~(HUGE_PAGE_SIZE - 1);
+        long head = address - raw;
+        if(head > 0)
+            LArrayNative.munmap(raw, head);
+        long tail = rawSize - head - mappedSize;
+        if(tail > 0)
+            LArrayNative.munmap(address + mappedSize, tail);
+
+        int ret = LArrayNative.madvise(address, mappedSize, LArrayNative.MADV_HUGEPAGE);
+        if(ret != 0 && logger.isLoggable(Level.FINE))
+            logger.fine(String.format("madvise(MADV_HUGEPAGE) failed with error code %d", ret));
+
+        Memory m = new HugePageMemory(address, mappedSize, size);
+        register(m);
+        return m;
+    }
+
+    private static long roundUp(long size) {
+        return (size + HUGE_PAGE_SIZE - 1) & ~(HUGE_PAGE_SIZE - 1);
+    }
+
+    /**
+     * Get the byte size of the buffer region currently backed by huge pages. Transparent huge pages are
+     * assigned when the pages are touched, so this returns 0 for the buffer that has never been written.
+     * This reads /proc/self/smaps, so it is not suited for frequent calls.
+     *
+     * @param buf buffer
+     * @return byte size backed by huge pages
+     */
+    public static long hugePageSize(LBufferAPI buf) {
+        return hugePageSize(buf.address());
+    }
+
+    /**
+     * Get the byte size backed by huge pages of the memory mapping containing the given address
+     *
+     * @param address memory address
+     * @return byte size backed by huge pages, or 0 if it is unknown
+     */
+    public static long hugePageSize(long address) {
+        File smaps = new File("/proc/self/smaps");
+        if(!smaps.exists())
+            return 0L;
+
+        try(BufferedReader in = new BufferedReader(new FileReader(smaps))) {
+            boolean found = false;
+            long mappingSize = 0L;
+            String line;
+            while((line = in.readLine()) != null) {
+                int sep = line.indexOf(' ');
+                int dash = line.indexOf('-');
+                if(dash > 0 && sep > dash && Character.digit(line.charAt(0), 16) >= 0 && !line.endsWith(" kB")) {
+                    // Header line of a mapping: start-end perms offset dev inode path
+                    if(found)
+                        break;
+                    long start = Long.parseUnsignedLong(line.substring(0, dash), 16);
+                    long end = Long.parseUnsignedLong(line.substring(dash + 1, sep), 16);
+                    found = Long.compareUnsigned(start, address) <= 0 && Long.compareUnsigned(address, end) < 0;
+                    mappingSize = end - start;
+                }
+                else if(found) {
+                    if(line.startsWith("KernelPageSize:") && parseKB(line) > 4096L) {
+                        // hugetlbfs mapping
+                        return mappingSize;
+                    }
+                    else if(line.startsWith("AnonHugePages:")) {
+                        return parseKB(line);
+                    }
+                }
+            }
+        }
+        catch(IOException e) {
+            logger.warning("Failed to read " + smaps + ": " + e.getMessage());
+        }
+        return 0L;
+    }
+
+    private static long parseKB(String line) {
+        String[] c = line.trim().split("\\s+");
+        return Long.parseLong(c[1]) * 1024L;
+    }
+
+}
@@ -0,0 +1,47 @@
+package xerial.larray.mmap;
+
+import xerial.larray.impl.LArrayNative;
+
+/**
+ * Access pattern hints of memory mapped files given to the OS with madvise(2).
+ *
+ * @author Taro L. Saito
+ */
+public enum MMapAdvice {
+
+    /**
+     * No special treatment. This resets the other hints
+     */
+    NORMAL(LArrayNative.MADV_NORMAL),
+    /**
+     * Pages will be accessed in random order, so the read-ahead is disabled
+     */
+    RANDOM(LArrayNative.MADV_RANDOM),
+    /**
+     * Pages will be accessed in sequential order, so the pages are read ahead aggressively and freed soon after they are accessed
+     */
+    SEQUENTIAL(LArrayNative.MADV_SEQUENTIAL),
+    /**
+     * Pages will be accessed in the near future, so the OS starts reading them in background
+     */
+    WILLNEED(LArrayNative.MADV_WILLNEED),
+    /**
+     * Pages will not be accessed in the near future, so the OS can free them. Unsaved changes of {@link MMapMode#PRIVATE} mappings are discarded
+     */
+    DONTNEED(LArrayNative.MADV_DONTNEED),
+    /**
+     * Use transparent huge pages for the range. This is supported only for some file systems in Linux
+     */
+    HUGEPAGE(LArrayNative.MADV_HUGEPAGE),
+    /**
+     * Do not use transparent huge pages for the range
+     */
+    NOHUGEPAGE(LArrayNative.MADV_NOHUGEPAGE);
+
+    public final int code;
+
+    private MMapAdvice(int code) {
+        this.code = code;
+    }
+
+}
@@ -0,0 +1,358 @@
+package xerial.larray.mmap;
+
+import xerial.larray.buffer.LBufferAPI;
+import xerial.larray.buffer.LBufferConfig;
+import xerial.larray.buffer.UnsafeUtil;
+import xerial.larray.buffer.WrappedLBuffer;
+import xerial.larray.impl.LArrayNative;
+import xerial.larray.impl.OSInfo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * An append-only log backed by a memory mapped file that grows without remapping the existing ranges.
+ *
+ * An address range of the maximum capacity is reserved when the log is opened, and the file is mapped into the head of the range.
+ * When the appended data exceed the mapped capacity, the disk blocks of the extended range are allocated with fallocate, and
+ * the extended range of the file is mapped right after the current mapping. Since the address of the data never changes,
+ * the views created by {@link #view(long, long)} remain valid while the log grows, and readers can keep reading them concurrently.
+ *
+ * The file starts with a header containing the committed length of the data. {@link #commit()} writes the appended data to the file,
+ * then updates the committed length, so that a crashed writer leaves the log consistent up to the last commit.
+ * When the log is opened again, appending starts from the committed length, and the uncommitted tail is overwritten.
+ *
+ * Usage:
+ * <pre>
+ *   MMapAppendLog log = new MMapAppendLog(file);
+ *   long pos = log.append(record);
+ *   log.commit();
+ *   log.view(pos, pos + record.length).getInt(0);
+ *   log.close();
+ * </pre>
+ *
+ * This class is supported only in Linux.
+ *
+ * @author Taro L. Saito
+ */
+public class MMapAppendLog implements Closeable {
+
+    /**
+     * Byte size of the file header preceding the data
+     */
+    public static final long HEADER_SIZE = 4096L;
+
+    /**
+     * The default byte size of the data preallocated when the log is created
+     */
+    public static final long DEFAULT_INITIAL_CAPACITY = 64L * 1024 * 1024;
+
+    /**
+     * The default maximum byte size of the data. This only reserves the address space, and no memory or disk space is used until the log grows
+     */
+    public static final long DEFAULT_MAX_CAPACITY = 1L << 40;
+
+    // "LARRAYLG" in ASCII
+    static final long MAGIC = 0x4C415252_41594C47L;
+    static final int VERSION = 1;
+
+    private static final long MAGIC_OFFSET = 0L;
+    private static final long VERSION_OFFSET = 8L;
+    private static final long COMMITTED_OFFSET = 16L;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final long fd;
+    private final long pageSize;
+    private final long baseAddress;
+    private final long reservedSize;
+    private final MMapMemory data;
+
+    private volatile long mappedSize;
+    private long position;
+    private volatile long committed;
+    private boolean closed = false;
+
+    /**
+     * Open an append log of the default capacities. The file is created if it does not exist.
+     * @param f
+     * @throws IOException
+     */
+    public MMapAppendLog(File f) throws IOException {
+        this(f, DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_CAPACITY);
+    }
+
+    /**
+     * Open an append log. The file is created if it does not exist.
+     * @param f
+     * @param initialCapacity byte size of the data to preallocate
+     * @param maxCapacity the maximum byte size of the data
+     * @throws IOException if failed to open the file, or the file is not an append log
+     * @throws UnsupportedOperationException if not supported in this platform
+     */
+    public MMapAppendLog(File f, long initialCapacity, long maxCapacity) throws IOException {
+        if(initialCapacity < 0 || maxCapacity < initialCapacity)
+            throw new IllegalArgumentException(String.format("invalid capacities: initial %,d, max %,d", initialCapacity, maxCapacity));
+        if(!OSInfo.getOSName().equals("Linux"))
+            throw new UnsupportedOperationException("MMapAppendLog is supported only in Linux");
+
+        this.file = f;
+        this.pageSize = UnsafeUtil.unsafe.pageSize();
+        this.reservedSize = roundUp(HEADER_SIZE + maxCapacity);
+        this.raf = new RandomAccessFile(f, "rw");
+        try {
+            this.fd = MMapBuffer.fileDescriptor(raf, f);
+            long fileSize = raf.length();
+            boolean isNew = fileSize == 0L;
+            if(!isNew && fileSize < HEADER_SIZE)
+                throw new IOException("Not an append log: " + f.getPath());
+
+            long size = Math.min(reservedSize, Math.max(roundUp(fileSize), roundUp(HEADER_SIZE + initialCapacity)));
+            long base;
+            try {
+                base = LArrayNative.mmapReserve(reservedSize);
+            }
+            catch(UnsatisfiedLinkError e) {
+                throw new UnsupportedOperationException("MMapAppendLog is not supported by the native library", e);
+            }
+            if(base == 0L)
+                throw new IOException(String.format("Failed to reserve %,d bytes of address space", reservedSize));
+            this.baseAddress = base;
+            try {
+                mapRange(0L, size);
+            }
+            catch(UncheckedIOException e) {
+                LArrayNative.munmap(baseAddress, reservedSize);
+                throw e.getCause();
+            }
+            this.mappedSize = size;
+            this.data = new MMapMemory(baseAddress + HEADER_SIZE, reservedSize - HEADER_SIZE);
+
+            if(isNew) {
+                LBufferConfig.access.putLong(baseAddress + MAGIC_OFFSET, MAGIC);
+                LBufferConfig.access.putInt(baseAddress + VERSION_OFFSET, VERSION);
+                LBufferConfig.access.putLong(baseAddress + COMMITTED_OFFSET, 0L);
+                sync(baseAddress, HEADER_SIZE);
+            }
+            else {
+                long magic = LBufferConfig.access.getLong(baseAddress + MAGIC_OFFSET);
+                int version = LBufferConfig.access.getInt(baseAddress + VERSION_OFFSET);
+                long c = LBufferConfig.access.getLong(baseAddress + COMMITTED_OFFSET);
+                if(magic != MAGIC || version != VERSION || c < 0 || c > size - HEADER_SIZE) {
+                    LArrayNative.munmap(baseAddress, reservedSize);
+                    throw new IOException("Not an append log or corrupted: " + f.getPath());
+                }
+                this.committed = c;
+            }
+            this.position = committed;
+        }
+        catch(IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private long roundUp(long size) {
+        return (size + pageSize - 1) & ~(pageSize - 1);
+    }
+
+    /**
+     * Allocate the disk blocks of the file range [offset, offset+length), then map the range at the corresponding address
+     */
+    private void mapRange(long offset, long length) {
+        int ret = LArrayNative.fallocate(fd, offset, length);
+        if(ret != 0)
+            throw new UncheckedIOException(new IOException(String.format("fallocate failed with error code %d: %s", ret, file.getPath())));
+        long addr = LArrayNative.mmapFixed(baseAddress + offset, fd, MMapMode.READ_WRITE.code, offset, length);
+        if(addr == 0L)
+            throw new UncheckedIOException(new IOException(String.format("Failed to map %,d bytes of %s", length, file.getPath())));
+    }
+
+    private void sync(long address, long length) {
+        long start = address & ~(pageSize - 1);
+        int ret = LArrayNative.msyncRange(-1L, start, address + length - start, false);
+        if(ret != 0)
+            throw new UncheckedIOException(new IOException(String.format("msync failed with error code %d", ret)));
+    }
+
+    private void checkOpen() {
+        if(closed)
+            throw new IllegalStateException("The log is already closed");
+    }
+
+    /**
+     * Address of the beginning of the data. This address does not change while the log grows
+     */
+    public long address() {
+        return data.address();
+    }
+
+    /**
+     * The append cursor, i.e., the byte size of the appended data
+     */
+    public synchronized long position() {
+        return position;
+    }
+
+    /**
+     * The byte size of the committed data
+     */
+    public long committedPosition() {
+        return committed;
+    }
+
+    /**
+     * The byte size of the data that can be appended without growing the file
+     */
+    public long capacity() {
+        return mappedSize - HEADER_SIZE;
+    }
+
+    /**
+     * The maximum byte size of the data
+     */
+    public long maxCapacity() {
+        return reservedSize - HEADER_SIZE;
+    }
+
+    /**
+     * Grow the file if the data of the given size do not fit in the mapped range. The capacity is doubled until it
+     * becomes large enough.
+     *
+     * @param size byte size of the data
+     * @throws BufferOverflowException if the size exceeds the maximum capacity
+     */
+    public synchronized void ensureCapacity(long size) {
+        checkOpen();
+        if(size > maxCapacity())
+            throw new BufferOverflowException();
+        long required = HEADER_SIZE + size;
+        if(required <= mappedSize)
+            return;
+        long newSize = mappedSize;
+        while(newSize < required)
+            newSize = Math.min(reservedSize, newSize * 2);
+        mapRange(mappedSize, newSize - mappedSize);
+        mappedSize = newSize;
+    }
+
+    /**
+     * Advance the append cursor by the given length, growing the file if necessary. The caller writes the reserved range
+     * through {@link #view(long, long)} before calling {@link #commit()}.
+     *
+     * @param length byte length to reserve
+     * @return the offset of the reserved range
+     */
+    public synchronized long reserve(long length) {
+        if(length < 0)
+            throw new IllegalArgumentException("negative length: " + length);
+        ensureCapacity(position + length);
+        long p = position;
+        position += length;
+        return p;
+    }
+
+    /**
+     * Append the bytes in the source array
+     *
+     * @return the offset of the appended data
+     */
+    public long append(byte[] src) {
+        return append(src, 0, src.length);
+    }
+
+    /**
+     * Append the bytes in the range [srcOffset, srcOffset+length) of the source array
+     *
+     * @return the offset of the appended data
+     */
+    public synchronized long append(byte[] src, int srcOffset, int length) {
+        long p = reserve(length);
+        LBufferConfig.access.copyFromArray(src, srcOffset, data.address() + p, length);
+        return p;
+    }
+
+    /**
+     * Append the remaining bytes of the source buffer
+     *
+     * @return the offset of the appended data
+     */
+    public synchronized long append(ByteBuffer src) {
+        int length = src.remaining();
+        long p = reserve(length);
+        view(p, p + length).readFrom(src, 0L);
+        return p;
+    }
+
+    /**
+     * Append the bytes in the range [srcOffset, srcOffset+length) of the source buffer
+     *
+     * @return the offset of the appended data
+     */
+    public synchronized long append(LBufferAPI src, long srcOffset, long length) {
+        long p = reserve(length);
+        src.copyTo(srcOffset, view(p, p + length), 0L, length);
+        return p;
+    }
+
+    /**
+     * Create a view of the range [from, to) of the appended data. The view remains valid while the log grows, and becomes
+     * invalid when the log is closed.
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public WrappedLBuffer view(long from, long to) {
+        checkOpen();
+        if(from < 0 || from > to || to > position())
+            throw new IllegalArgumentException(String.format("invalid range %,d to %,d", from, to));
+        return new WrappedLBuffer(data, from, to - from);
+    }
+
+    /**
+     * Write the data appended since the last commit to the file, then record the append cursor as the committed length.
+     * When this method returns, the data up to the cursor are durable.
+     */
+    public synchronized void commit() {
+        checkOpen();
+        long c = committed;
+        if(position == c)
+            return;
+        sync(data.address() + c, position - c);
+        LBufferConfig.access.putLongVolatile(baseAddress + COMMITTED_OFFSET, position);
+        sync(baseAddress + COMMITTED_OFFSET, 8L);
+        committed = position;
+    }
+
+    /**
+     * Discard the data appended since the last commit by moving the append cursor back to the committed length
+     */
+    public synchronized void rollback() {
+        checkOpen();
+        position = committed;
+    }
+
+    /**
+     * Commit the appended data, then unmap and close the file. The preallocated space is kept in the file for the later appends.
+     * Calling this method more than once has no effect.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(closed)
+            return;
+        try {
+            commit();
+        }
+        finally {
+            closed = true;
+            LArrayNative.munmap(baseAddress, reservedSize);
+            raf.close();
+        }
+    }
+}
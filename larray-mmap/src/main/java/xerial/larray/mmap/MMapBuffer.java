@@ -5,9 +5,19 @@ import java.io.File;
 import java.io.FileDescriptor;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
-import sun.misc.SharedSecrets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import xerial.larray.buffer.LBufferAPI;
 import xerial.larray.buffer.LBufferConfig;
 import xerial.larray.buffer.UnsafeUtil;
@@ -21,6 +31,8 @@ import xerial.larray.impl.OSInfo;
  */
 public class MMapBuffer extends LBufferAPI {
 
+    private static Logger logger = Logger.getLogger(MMapBuffer.class.getName());
+
     private final RandomAccessFile raf;
     private final FileChannel fc;
     private final long fd;
@@ -28,6 +40,7 @@ public class MMapBuffer extends LBufferAPI {
 
     private final long address;
     private long winHandle = -1;
+    private volatile MMapFlusher flusher;
 
     @Override
     public long address()  { return address; }
@@ -42,6 +55,17 @@ public class MMapBuffer extends LBufferAPI {
         this(f, 0L, f.length(), mode);
     }
 
+    /**
+     * Open an memory mapped file with options.
+     * @param f
+     * @param mode
+     * @param options
+     * @throws IOException
+     */
+    public MMapBuffer(File f, MMapMode mode, MMapOption... options) throws IOException {
+        this(f, 0L, f.length(), mode, options);
+    }
+
     /**
      * Open an memory mapped file.
      * @param f
@@ -51,27 +75,23 @@ public class MMapBuffer extends LBufferAPI {
      * @throws IOException
      */
     public MMapBuffer(File f, long offset, long size, MMapMode mode) throws IOException {
+        this(f, offset, size, mode, new MMapOption[0]);
+    }
+
+    /**
+     * Open an memory mapped file with options.
+     * @param f
+     * @param offset
+     * @param size
+     * @param mode
+     * @param options
+     * @throws IOException if failed to open the file, or failed to lock the pages with {@link MMapOption#LOCK}
+     */
+    public MMapBuffer(File f, long offset, long size, MMapMode mode, MMapOption... options) throws IOException {
         super();
         this.raf = new RandomAccessFile(f, mode.mode);
         this.fc = raf.getChannel();
-        // Retrieve file descriptor
-        FileDescriptor rawfd = raf.getFD();
-        try {
-            if(!OSInfo.isWindows()) {
-                Field idf = rawfd.getClass().getDeclaredField("fd");
-                idf.setAccessible(true);
-                this.fd = idf.getInt(rawfd);
-            }
-            else {
-                // In Windows, fd is stored as 'handle'
-                Field idf = rawfd.getClass().getDeclaredField("handle");
-                idf.setAccessible(true);
-                this.fd = idf.getLong(rawfd);
-            }
-        }
-        catch(Exception e) {
-            throw new IOException("Failed to retrieve file descriptor of " + f.getPath() + ": " + e.getMessage());
-        }
+        this.fd = fileDescriptor(raf, f);
 
         long allocationGranule = UnsafeUtil.unsafe.pageSize();
         this.pagePosition = (int) (offset % allocationGranule);
@@ -91,12 +111,23 @@ public class MMapBuffer extends LBufferAPI {
         long mapSize = size + pagePosition;
         // A workaround for the error when calling fc.map(MapMode.READ_WRITE, offset, size) with size more than 2GB
 
-        long rawAddr = LArrayNative.mmap(fd, mode.code, mapPosition, mapSize);
+        boolean populate = false;
+        boolean lock = false;
+        for(MMapOption opt : options) {
+            populate |= opt == MMapOption.POPULATE;
+            lock |= opt == MMapOption.LOCK;
+        }
+        boolean isLinux = OSInfo.getOSName().equals("Linux");
+        int modeCode = mode.code;
+        if(populate && isLinux)
+            modeCode |= LArrayNative.MMAP_POPULATE;
+
+        long rawAddr = LArrayNative.mmap(fd, modeCode, mapPosition, mapSize);
         //trace(f"mmap addr:$rawAddr%x, start address:${rawAddr+pagePosition}%x")
 
         if(OSInfo.isWindows()) {
-            sun.misc.JavaIOFileDescriptorAccess a = SharedSecrets.getJavaIOFileDescriptorAccess();
-            winHandle = LArrayNative.duplicateHandle(a.getHandle(raf.getFD()));
+            // fd holds the file handle retrieved above
+            winHandle = LArrayNative.duplicateHandle(fd);
             //debug(f"win handle: $winHandle%x")
         }
 
@@ -104,6 +135,41 @@ public class MMapBuffer extends LBufferAPI {
         LBufferConfig.allocator.register(m);
 
         this.address = rawAddr + pagePosition;
+
+        if(populate && !isLinux)
+            warmUp(1);
+        if(lock) {
+            try {
+                lock();
+            }
+            catch(RuntimeException e) {
+                close();
+                throw e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : new IOException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Retrieve the OS file descriptor of the opened file. In Windows, this returns the file handle.
+     */
+    public static long fileDescriptor(RandomAccessFile raf, File f) throws IOException {
+        FileDescriptor rawfd = raf.getFD();
+        try {
+            if(!OSInfo.isWindows()) {
+                Field idf = rawfd.getClass().getDeclaredField("fd");
+                idf.setAccessible(true);
+                return idf.getInt(rawfd);
+            }
+            else {
+                // In Windows, fd is stored as 'handle'
+                Field idf = rawfd.getClass().getDeclaredField("handle");
+                idf.setAccessible(true);
+                return idf.getLong(rawfd);
+            }
+        }
+        catch(Exception e) {
+            throw new IOException("Failed to retrieve file descriptor of " + f.getPath() + ": " + e.getMessage());
+        }
     }
 
     /**
@@ -113,12 +179,456 @@ public class MMapBuffer extends LBufferAPI {
         LArrayNative.msync(winHandle, m.headerAddress(), m.size());
     }
 
+    /**
+     * Forces the changes made to the range [offset, offset+length) of this buffer to be written to the file. The range is extended to
+     * the page boundary. This is much faster than {@link #flush()} when only a small part of a large file is modified.
+     *
+     * @param offset byte offset from the beginning of this buffer
+     * @param length byte length of the range
+     * @throws UncheckedIOException if failed to write the range
+     */
+    public void flush(long offset, long length) {
+        sync(offset, length, false);
+    }
+
+    /**
+     * Schedules the changes made to this buffer to be written to the file, without waiting for the completion of the write
+     *
+     * @throws UncheckedIOException if failed to schedule the write
+     */
+    public void flushAsync() {
+        checkReleased();
+        sync(0L, dataLength(), true);
+    }
+
+    /**
+     * Schedules the changes made to the range [offset, offset+length) of this buffer to be written to the file, without waiting
+     * for the completion of the write
+     *
+     * @param offset byte offset from the beginning of this buffer
+     * @param length byte length of the range
+     * @throws UncheckedIOException if failed to schedule the write
+     */
+    public void flushAsync(long offset, long length) {
+        sync(offset, length, true);
+    }
+
+    private void sync(long offset, long length, boolean async) {
+        long start = pageStart(offset, length);
+        long end = address + offset + length;
+        if(end == start)
+            return;
+        int ret;
+        try {
+            ret = LArrayNative.msyncRange(winHandle, start, end - start, async);
+        }
+        catch(UnsatisfiedLinkError e) {
+            // Native libraries built before the ranged sync support
+            LArrayNative.msync(winHandle, start, end - start);
+            return;
+        }
+        if(ret != 0)
+            throw new UncheckedIOException(new IOException(String.format("msync failed with error code %d", ret)));
+    }
+
+    /**
+     * Start a background thread that syncs the dirty ranges of this buffer when the oldest dirty range becomes older than
+     * the interval or when the total size of the dirty ranges exceeds the byte threshold. The ranges written by the bulk write methods
+     * (put, readFrom and fill) are recorded automatically, and the ranges written by the single value methods (e.g., putLong)
+     * need to be recorded with {@link #markDirty(long, long)}. The flusher is stopped when this buffer is released.
+     *
+     * @param intervalMillis the maximum time in milliseconds to keep the written data unsynced
+     * @param byteThreshold the total size of dirty ranges to trigger a sync
+     * @return the started flusher
+     * @throws IllegalStateException if a flusher is already started
+     */
+    public synchronized MMapFlusher startFlusher(long intervalMillis, long byteThreshold) {
+        checkReleased();
+        if(flusher != null)
+            throw new IllegalStateException("A flusher is already started");
+        flusher = new MMapFlusher(this, intervalMillis, byteThreshold);
+        return flusher;
+    }
+
+    /**
+     * Get the flusher started by {@link #startFlusher(long, long)}, or null if no flusher is started
+     */
+    public MMapFlusher flusher() {
+        return flusher;
+    }
+
+    synchronized void removeFlusher(MMapFlusher f) {
+        if(flusher == f)
+            flusher = null;
+    }
+
+    /**
+     * Record the range [offset, offset+length) as dirty, so that the range will be synced by the flusher. This does nothing if no flusher is started.
+     *
+     * @param offset byte offset from the beginning of this buffer
+     * @param length byte length of the written range
+     */
+    public void markDirty(long offset, long length) {
+        MMapFlusher f = flusher;
+        if(f != null)
+            f.markDirty(offset, length);
+    }
+
+    @Override
+    public void fill(long offset, long length, byte value) {
+        super.fill(offset, length, value);
+        markDirty(offset, length);
+    }
+
+    @Override
+    public int readFrom(byte[] src, int srcOffset, long destOffset, int length) {
+        int readLen = super.readFrom(src, srcOffset, destOffset, length);
+        markDirty(destOffset, readLen);
+        return readLen;
+    }
+
+    @Override
+    public int readFrom(ByteBuffer src, long destOffset) {
+        int readLen = super.readFrom(src, destOffset);
+        markDirty(destOffset, readLen);
+        return readLen;
+    }
+
+    @Override
+    public void put(long offset, char[] src, int srcIndex, int length, ByteOrder order) {
+        super.put(offset, src, srcIndex, length, order);
+        markDirty(offset, (long) length * 2);
+    }
+
+    @Override
+    public void put(long offset, short[] src, int srcIndex, int length, ByteOrder order) {
+        super.put(offset, src, srcIndex, length, order);
+        markDirty(offset, (long) length * 2);
+    }
+
+    @Override
+    public void put(long offset, int[] src, int srcIndex, int length, ByteOrder order) {
+        super.put(offset, src, srcIndex, length, order);
+        markDirty(offset, (long) length * 4);
+    }
+
+    @Override
+    public void put(long offset, float[] src, int srcIndex, int length, ByteOrder order) {
+        super.put(offset, src, srcIndex, length, order);
+        markDirty(offset, (long) length * 4);
+    }
+
+    @Override
+    public void put(long offset, long[] src, int srcIndex, int length, ByteOrder order) {
+        super.put(offset, src, srcIndex, length, order);
+        markDirty(offset, (long) length * 8);
+    }
+
+    @Override
+    public void put(long offset, double[] src, int srcIndex, int length, ByteOrder order) {
+        super.put(offset, src, srcIndex, length, order);
+        markDirty(offset, (long) length * 8);
+    }
+
+    /**
+     * Give an access pattern hint of the whole mapped range to the OS.
+     *
+     * @param advice access pattern hint
+     * @return true if the hint is accepted by the OS, or false if the hint is not supported in this platform
+     */
+    public boolean advise(MMapAdvice advice) {
+        checkReleased();
+        return advise(advice, 0L, dataLength());
+    }
+
+    /**
+     * Give an access pattern hint of the range [offset, offset+length) of this buffer to the OS. The range is extended to
+     * the page boundary, since madvise works in the unit of pages.
+     *
+     * @param advice access pattern hint
+     * @param offset byte offset from the beginning of this buffer
+     * @param length byte length of the range
+     * @return true if the hint is accepted by the OS, or false if the hint is not supported in this platform
+     */
+    public boolean advise(MMapAdvice advice, long offset, long length) {
+        long start = pageStart(offset, length);
+        long end = address + offset + length;
+        if(end == start)
+            return true;
+        try {
+            int ret = LArrayNative.madvise(start, end - start, advice.code);
+            if(ret != 0 && logger.isLoggable(Level.FINE))
+                logger.fine(String.format("madvise(%s) failed with error code %d", advice, ret));
+            return ret == 0;
+        }
+        catch(UnsatisfiedLinkError e) {
+            // Native libraries built before the madvise support
+            return false;
+        }
+    }
+
+    /**
+     * Lock the pages of this buffer into the physical memory, so that accessing them never causes page faults.
+     *
+     * @throws UncheckedIOException if failed to lock the pages, e.g., when the size exceeds the limit of the locked memory (ulimit -l)
+     */
+    public void lock() {
+        checkReleased();
+        lock(0L, dataLength());
+    }
+
+    /**
+     * Lock the pages in the range [offset, offset+length) of this buffer into the physical memory. The range is extended to the page boundary.
+     *
+     * @param offset byte offset from the beginning of this buffer
+     * @param length byte length of the range
+     * @throws UncheckedIOException if failed to lock the pages, e.g., when the size exceeds the limit of the locked memory (ulimit -l)
+     */
+    public void lock(long offset, long length) {
+        long start = pageStart(offset, length);
+        long end = address + offset + length;
+        int ret;
+        try {
+            ret = LArrayNative.mlock(start, end - start);
+        }
+        catch(UnsatisfiedLinkError e) {
+            throw new UnsupportedOperationException("mlock is not supported by the native library", e);
+        }
+        if(ret != 0)
+            throw new UncheckedIOException(new IOException(String.format("mlock failed with error code %d", ret)));
+    }
+
+    /**
+     * Unlock the pages of this buffer locked by {@link #lock()}
+     */
+    public void unlock() {
+        checkReleased();
+        unlock(0L, dataLength());
+    }
+
+    /**
+     * Unlock the pages in the range [offset, offset+length) of this buffer. The range is extended to the page boundary.
+     *
+     * @param offset byte offset from the beginning of this buffer
+     * @param length byte length of the range
+     */
+    public void unlock(long offset, long length) {
+        long start = pageStart(offset, length);
+        long end = address + offset + length;
+        int ret;
+        try {
+            ret = LArrayNative.munlock(start, end - start);
+        }
+        catch(UnsatisfiedLinkError e) {
+            throw new UnsupportedOperationException("munlock is not supported by the native library", e);
+        }
+        if(ret != 0)
+            throw new UncheckedIOException(new IOException(String.format("munlock failed with error code %d", ret)));
+    }
+
+    /**
+     * Get the byte size of the pages of this buffer resident in the physical memory
+     *
+     * @return the resident byte size, or -1 if not supported in this platform
+     */
+    public long residentBytes() {
+        checkReleased();
+        return residentBytes(0L, dataLength());
+    }
+
+    /**
+     * Get the byte size of the pages in the range [offset, offset+length) resident in the physical memory. The range is extended
+     * to the page boundary.
+     *
+     * @param offset byte offset from the beginning of this buffer
+     * @param length byte length of the range
+     * @return the resident byte size, or -1 if not supported in this platform
+     */
+    public long residentBytes(long offset, long length) {
+        long start = pageStart(offset, length);
+        long end = address + offset + length;
+        try {
+            return LArrayNative.residentSize(start, end - start);
+        }
+        catch(UnsatisfiedLinkError e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * The result of {@link #warmUp(int)}
+     */
+    public static class WarmUpStats {
+        private final long elapsedMillis;
+        private final long touchedBytes;
+        private final long residentBytes;
+
+        WarmUpStats(long elapsedMillis, long touchedBytes, long residentBytes) {
+            this.elapsedMillis = elapsedMillis;
+            this.touchedBytes = touchedBytes;
+            this.residentBytes = residentBytes;
+        }
+
+        /**
+         * The time spent for the warm-up in milliseconds
+         */
+        public long elapsedMillis() { return elapsedMillis; }
+
+        /**
+         * Byte size of the range whose pages are touched
+         */
+        public long touchedBytes() { return touchedBytes; }
+
+        /**
+         * Byte size of the pages in the range resident in the physical memory after the warm-up, or -1 if not supported in this platform
+         */
+        public long residentBytes() { return residentBytes; }
+
+        @Override
+        public String toString() {
+            return String.format("warmed up %,d bytes in %,d ms (resident: %,d bytes)", touchedBytes, elapsedMillis, residentBytes);
+        }
+    }
+
+    /**
+     * Byte size of the range touched by a warm-up thread at a time
+     */
+    static final long WARM_UP_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    private static final AtomicInteger warmUpThreadCount = new AtomicInteger();
+
+    private static final ThreadFactory warmUpThreadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r);
+            t.setName("LArray-WarmUp-" + warmUpThreadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    };
+
+    // Keeps the values read in the warm-up so that the reads are not eliminated by JIT
+    private volatile long warmUpSink;
+
+    /**
+     * Read the pages of this buffer in advance by touching them from multiple threads, so that the later accesses do not cause
+     * major page faults. The page faults of the threads are handled by the OS concurrently, which is much faster than reading the pages
+     * in the order of accesses.
+     *
+     * @param parallelism the number of threads to touch the pages
+     * @return the time spent and the resident bytes after the warm-up
+     */
+    public WarmUpStats warmUp(int parallelism) {
+        checkReleased();
+        return warmUp(0L, dataLength(), parallelism);
+    }
+
+    /**
+     * Read the pages in the range [offset, offset+length) of this buffer in advance by touching them from multiple threads.
+     * The range is extended to the page boundary.
+     *
+     * @param offset byte offset from the beginning of this buffer
+     * @param length byte length of the range
+     * @param parallelism the number of threads to touch the pages
+     * @return the time spent and the resident bytes after the warm-up
+     */
+    public WarmUpStats warmUp(long offset, long length, int parallelism) {
+        final long start = pageStart(offset, length);
+        final long end = address + offset + length;
+        final long pageSize = UnsafeUtil.unsafe.pageSize();
+        long startTime = System.currentTimeMillis();
+
+        // Let the OS start reading the pages in background while the threads touch them
+        advise(MMapAdvice.WILLNEED, offset, length);
+
+        final long numChunks = (end - start + WARM_UP_CHUNK_SIZE - 1) / WARM_UP_CHUNK_SIZE;
+        int numThreads = (int) Math.max(1, Math.min(parallelism, numChunks));
+        final AtomicLong nextChunk = new AtomicLong();
+        Runnable toucher = new Runnable() {
+            @Override
+            public void run() {
+                long sum = 0L;
+                long chunk;
+                while((chunk = nextChunk.getAndIncrement()) < numChunks) {
+                    long chunkEnd = Math.min(end, start + (chunk + 1) * WARM_UP_CHUNK_SIZE);
+                    for(long p = start + chunk * WARM_UP_CHUNK_SIZE; p < chunkEnd; p += pageSize)
+                        sum += LBufferConfig.access.getByte(p);
+                }
+                warmUpSink += sum;
+            }
+        };
+        if(numThreads == 1)
+            toucher.run();
+        else {
+            ExecutorService pool = Executors.newFixedThreadPool(numThreads, warmUpThreadFactory);
+            try {
+                CompletableFuture<?>[] workers = new CompletableFuture<?>[numThreads];
+                for(int i = 0; i < numThreads; ++i)
+                    workers[i] = CompletableFuture.runAsync(toucher, pool);
+                CompletableFuture.allOf(workers).join();
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+        long elapsed = System.currentTimeMillis() - startTime;
+        return new WarmUpStats(elapsed, end - start, residentBytes(offset, length));
+    }
+
+    private long dataLength() {
+        return m.size() - pagePosition;
+    }
+
+    private void checkReleased() {
+        if(m == null)
+            throw new IllegalStateException("The buffer is already released");
+    }
+
+    /**
+     * Check the range [offset, offset+length) of this buffer, then return its start address aligned to the page boundary
+     */
+    private long pageStart(long offset, long length) {
+        checkReleased();
+        if(offset < 0 || length < 0 || offset + length > dataLength())
+            throw new IllegalArgumentException(String.format("invalid range %,d to %,d", offset, offset + length));
+        if(length == 0)
+            return address + offset;
+        long pageSize = UnsafeUtil.unsafe.pageSize();
+        return (address + offset) & ~(pageSize - 1);
+    }
+
+    /**
+     * Stop the flusher after syncing the remaining dirty ranges, then unmap the file
+     */
+    @Override
+    public void release() {
+        MMapFlusher f;
+        synchronized(this) {
+            f = flusher;
+            flusher = null;
+        }
+        try {
+            if(f != null && m != null)
+                f.close();
+        }
+        finally {
+            super.release();
+        }
+    }
+
     /**
      * Close the memory mapped file. To ensure the written data is saved in the file, call flush before closing.
+     * @throws UncheckedIOException if failed to close the file
      */
-    public void close() throws IOException {
+    @Override
+    public void close() {
         release();
-        fc.close();
+        try {
+            fc.close();
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     protected long offset() {
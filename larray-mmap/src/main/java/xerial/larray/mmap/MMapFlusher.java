@@ -0,0 +1,239 @@
+package xerial.larray.mmap;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A background thread that writes the dirty ranges of a memory mapped file back to the file. The ranges written through
+ * {@link MMapBuffer} are recorded as dirty, and they are synced when the oldest dirty range becomes older than the interval
+ * or when the total size of the dirty ranges exceeds the byte threshold. This bounds the time until the written data become durable
+ * without making the writer wait for msync.
+ *
+ * Usage:
+ * <pre>
+ *   MMapBuffer b = new MMapBuffer(file, MMapMode.READ_WRITE);
+ *   MMapFlusher flusher = b.startFlusher(100, 16 * 1024 * 1024);
+ *   b.put(0, data);                 // Bulk writes are recorded automatically
+ *   b.putLong(100, 1L);
+ *   b.markDirty(100, 8);            // Single value writes need to be recorded explicitly
+ *   ...
+ *   b.close();                      // Stops the flusher after syncing the remaining dirty ranges
+ * </pre>
+ *
+ * @author Taro L. Saito
+ */
+public class MMapFlusher implements Closeable {
+
+    private static Logger logger = Logger.getLogger(MMapFlusher.class.getName());
+
+    private final MMapBuffer buffer;
+    private final long intervalMillis;
+    private final long byteThreshold;
+
+    // Non-overlapping dirty ranges: start offset -> end offset
+    private final TreeMap<Long, Long> dirtyRanges = new TreeMap<Long, Long>();
+    private long dirtyBytes = 0L;
+    private long oldestDirtyTime = 0L;
+    private boolean closed = false;
+
+    // Serializes syncs so that flush() returns after the ranges being synced by the background thread are written
+    private final Object syncLock = new Object();
+    private long syncCount = 0L;
+    private long syncedBytes = 0L;
+
+    private final Thread thread;
+
+    MMapFlusher(MMapBuffer buffer, long intervalMillis, long byteThreshold) {
+        if(intervalMillis <= 0)
+            throw new IllegalArgumentException("intervalMillis must be positive: " + intervalMillis);
+        if(byteThreshold <= 0)
+            throw new IllegalArgumentException("byteThreshold must be positive: " + byteThreshold);
+        this.buffer = buffer;
+        this.intervalMillis = intervalMillis;
+        this.byteThreshold = byteThreshold;
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while(awaitDirtyRanges()) {
+                    try {
+                        flush();
+                    }
+                    catch(RuntimeException e) {
+                        logger.log(Level.WARNING, String.format("Failed to sync the memory mapped file. Retry after %d ms", intervalMillis), e);
+                        awaitRetry();
+                    }
+                }
+            }
+        });
+        thread.setName("LArray-MMapFlusher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Wait until the dirty ranges need to be synced
+     * @return false if this flusher is closed
+     */
+    private synchronized boolean awaitDirtyRanges() {
+        try {
+            while(!closed) {
+                if(dirtyRanges.isEmpty()) {
+                    wait();
+                    continue;
+                }
+                long remaining = oldestDirtyTime + intervalMillis - System.currentTimeMillis();
+                if(dirtyBytes >= byteThreshold || remaining <= 0)
+                    return true;
+                wait(remaining);
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Wait for the interval before retrying a failed sync, unless this flusher is closed
+     */
+    private synchronized void awaitRetry() {
+        long deadline = System.currentTimeMillis() + intervalMillis;
+        try {
+            long remaining;
+            while(!closed && (remaining = deadline - System.currentTimeMillis()) > 0)
+                wait(remaining);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Record the range [offset, offset+length) of the buffer as dirty
+     * @param offset byte offset in the buffer
+     * @param length byte length of the written range
+     */
+    public synchronized void markDirty(long offset, long length) {
+        if(length <= 0)
+            return;
+        boolean wasEmpty = dirtyRanges.isEmpty();
+        long start = offset;
+        long end = offset + length;
+        // Merge the overlapping or adjacent ranges
+        Map.Entry<Long, Long> prev = dirtyRanges.floorEntry(start);
+        if(prev != null && prev.getValue() >= start) {
+            if(prev.getValue() >= end)
+                return;
+            start = prev.getKey();
+        }
+        Map.Entry<Long, Long> e = dirtyRanges.ceilingEntry(start);
+        while(e != null && e.getKey() <= end) {
+            end = Math.max(end, e.getValue());
+            dirtyBytes -= e.getValue() - e.getKey();
+            dirtyRanges.remove(e.getKey());
+            e = dirtyRanges.higherEntry(e.getKey());
+        }
+        dirtyRanges.put(start, end);
+        dirtyBytes += end - start;
+
+        if(wasEmpty) {
+            oldestDirtyTime = System.currentTimeMillis();
+            notifyAll();
+        }
+        else if(dirtyBytes >= byteThreshold)
+            notifyAll();
+    }
+
+    private synchronized List<long[]> takeDirtyRanges() {
+        List<long[]> ranges = new ArrayList<long[]>(dirtyRanges.size());
+        for(Map.Entry<Long, Long> e : dirtyRanges.entrySet())
+            ranges.add(new long[] { e.getKey(), e.getValue() - e.getKey() });
+        dirtyRanges.clear();
+        dirtyBytes = 0L;
+        return ranges;
+    }
+
+    /**
+     * Sync the dirty ranges now in the caller thread. When this method returns, the ranges recorded before this call are written to the file.
+     * If the sync of a range fails (e.g., {@link java.io.UncheckedIOException} for an msync error), the ranges not synced yet remain dirty
+     * so that they are retried by the next sync.
+     */
+    public void flush() {
+        synchronized(syncLock) {
+            List<long[]> ranges = takeDirtyRanges();
+            int i = 0;
+            try {
+                for(; i < ranges.size(); ++i) {
+                    long[] r = ranges.get(i);
+                    buffer.flush(r[0], r[1]);
+                    syncedBytes += r[1];
+                }
+            }
+            finally {
+                // Put back the ranges that are not synced due to the error
+                for(int j = i; j < ranges.size(); ++j)
+                    markDirty(ranges.get(j)[0], ranges.get(j)[1]);
+            }
+            if(!ranges.isEmpty())
+                syncCount++;
+        }
+    }
+
+    /**
+     * Total byte size of the dirty ranges waiting for the sync
+     */
+    public synchronized long pendingBytes() {
+        return dirtyBytes;
+    }
+
+    /**
+     * The number of syncs performed so far
+     */
+    public long syncCount() {
+        synchronized(syncLock) {
+            return syncCount;
+        }
+    }
+
+    /**
+     * Total byte size of the ranges synced so far
+     */
+    public long syncedBytes() {
+        synchronized(syncLock) {
+            return syncedBytes;
+        }
+    }
+
+    /**
+     * Stop the background thread, then sync the remaining dirty ranges. Another flusher can be started after this call. Calling this method more than once has no effect.
+     * This flusher is stopped even if the sync of the remaining ranges fails.
+     */
+    @Override
+    public void close() {
+        synchronized(this) {
+            if(closed)
+                return;
+            closed = true;
+            notifyAll();
+        }
+        if(Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            flush();
+        }
+        finally {
+            buffer.removeFlusher(this);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package xerial.larray.mmap;
+
+/**
+ * Options applied when a memory mapped file is opened
+ *
+ * @author Taro L. Saito
+ */
+public enum MMapOption {
+
+    /**
+     * Read the pages of the mapping in advance (MAP_POPULATE), so that the first accesses do not cause major page faults.
+     * In the other OSes than Linux, the pages are touched after mapping the file
+     */
+    POPULATE,
+    /**
+     * Lock the pages of the mapping into the physical memory (mlock), so that they are never paged out.
+     * The size of the mapping must be within the limit of the locked memory of the process (ulimit -l)
+     */
+    LOCK
+
+}
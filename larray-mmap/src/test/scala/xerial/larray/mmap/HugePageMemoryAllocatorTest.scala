@@ -0,0 +1,70 @@
+//--------------------------------------
+//
+// HugePageMemoryAllocatorTest.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray.mmap
+
+import xerial.larray.LArraySpec
+import xerial.larray.buffer.{LBufferConfig, LBuffer}
+
+/**
+ * @author Taro L. Saito
+ */
+class HugePageMemoryAllocatorTest extends LArraySpec {
+
+  import HugePageMemoryAllocator.HUGE_PAGE_SIZE
+
+  "HugePageMemoryAllocator" should {
+
+    "allocate memories aligned to huge pages" in {
+      val alloc = new HugePageMemoryAllocator()
+      val size = 3 * HUGE_PAGE_SIZE + 100
+      val m = alloc.allocate(size)
+      m.dataSize() shouldBe size
+      if (HugePageMemoryAllocator.isAvailable) {
+        m.address() % HUGE_PAGE_SIZE shouldBe 0L
+        m.size() shouldBe 4 * HUGE_PAGE_SIZE
+      }
+      alloc.allocatedSize() shouldBe m.size()
+
+      // Touch all pages
+      val unsafe = xerial.larray.buffer.UnsafeUtil.unsafe
+      unsafe.setMemory(m.address(), size, 1.toByte)
+      unsafe.getByte(m.address() + size - 1) shouldBe 1.toByte
+      val hugePageSize = HugePageMemoryAllocator.hugePageSize(m.address())
+      info(s"huge page size: ${hugePageSize}")
+      hugePageSize should be <= m.size()
+
+      alloc.release(m)
+      alloc.allocatedSize() shouldBe 0L
+    }
+
+    "allocate small memories with the default allocator" in {
+      val alloc = new HugePageMemoryAllocator()
+      val m = alloc.allocate(100)
+      m.isInstanceOf[HugePageMemory] shouldBe false
+      m.dataSize() shouldBe 100L
+      alloc.release(m)
+    }
+
+    "be selectable in LBufferConfig" in {
+      val prev = LBufferConfig.allocator
+      val alloc = new HugePageMemoryAllocator()
+      LBufferConfig.allocator = alloc
+      try {
+        val b = new LBuffer(HUGE_PAGE_SIZE * 2)
+        b.size() shouldBe HUGE_PAGE_SIZE * 2
+        b.fill(0, b.size(), 1.toByte)
+        b.getByte(b.size() - 1) shouldBe 1.toByte
+        b.release()
+        alloc.allocatedSize() shouldBe 0L
+      }
+      finally {
+        LBufferConfig.allocator = prev
+      }
+    }
+  }
+}
@@ -0,0 +1,178 @@
+//--------------------------------------
+//
+// MMapAppendLogTest.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray.mmap
+
+import java.io.{File, FileOutputStream, IOException}
+import java.nio.{BufferOverflowException, ByteBuffer}
+import java.util.concurrent.atomic.AtomicBoolean
+
+import xerial.larray.LArraySpec
+import xerial.larray.buffer.LBuffer
+
+/**
+ * @author Taro L. Saito
+ */
+class MMapAppendLogTest extends LArraySpec {
+
+  def tempFile = {
+    val f = File.createTempFile("appendlog", ".larray", new File("target"))
+    f.delete()
+    f.deleteOnExit()
+    f
+  }
+
+  "MMapAppendLog" should {
+
+    "append records while growing the file" in {
+      val f = tempFile
+      val log = new MMapAppendLog(f, 4096, 1L << 30)
+      log.capacity() shouldBe 4096L
+      val address = log.address()
+      val first = log.append(Array.tabulate[Byte](100)(_.toByte))
+      first shouldBe 0L
+      val v = log.view(0, 100)
+
+      for (i <- 0 until 1000)
+        log.append(ByteBuffer.allocate(8).putLong(0, i).array())
+      log.position() shouldBe 8100L
+      log.capacity() shouldBe 12288L
+      // The data are not moved by the growth
+      log.address() shouldBe address
+      v.getByte(99) shouldBe 99.toByte
+      log.view(100 + 8 * 999, 8100).getLongBE(0) shouldBe 999L
+      f.length() shouldBe MMapAppendLog.HEADER_SIZE + 12288L
+
+      val b = new LBuffer(64)
+      b.fill(0, 64, 7.toByte)
+      log.append(b, 0, 64) shouldBe 8100L
+      val direct = ByteBuffer.allocateDirect(16)
+      direct.putLong(1L).putLong(2L).flip()
+      log.append(direct) shouldBe 8164L
+      b.release()
+
+      val p = log.reserve(8)
+      log.view(p, p + 8).putLong(0, 42L)
+      log.committedPosition() shouldBe 0L
+      log.commit()
+      log.committedPosition() shouldBe 8188L
+      log.close()
+      intercept[IllegalStateException] {
+        log.append(Array[Byte](1))
+      }
+
+      val log2 = new MMapAppendLog(f)
+      log2.position() shouldBe 8188L
+      log2.view(0, 100).getByte(50) shouldBe 50.toByte
+      log2.view(8100, 8164).getByte(63) shouldBe 7.toByte
+      log2.view(8180, 8188).getLong(0) shouldBe 42L
+      intercept[IllegalArgumentException] {
+        log2.view(8000, 8189)
+      }
+      log2.close()
+    }
+
+    "recover the committed tail" in {
+      val f = tempFile
+      val log = new MMapAppendLog(f, 4096, 1L << 20)
+      log.append(Array.fill[Byte](1000)(1))
+      log.commit()
+      log.append(Array.fill[Byte](500)(2))
+
+      // Another writer opening the log after a crash sees only the committed data
+      val recovered = new MMapAppendLog(f, 4096, 1L << 20)
+      recovered.position() shouldBe 1000L
+      recovered.close()
+
+      log.rollback()
+      log.position() shouldBe 1000L
+      log.append(Array.fill[Byte](10)(3)) shouldBe 1000L
+      log.close()
+
+      val log2 = new MMapAppendLog(f)
+      log2.position() shouldBe 1010L
+      log2.view(1000, 1010).getByte(9) shouldBe 3.toByte
+      log2.close()
+
+      intercept[BufferOverflowException] {
+        val small = new MMapAppendLog(tempFile, 0, 8192)
+        try small.append(new Array[Byte](8193))
+        finally small.close()
+      }
+    }
+
+    "reject files that are not append logs" in {
+      val f = tempFile
+      val out = new FileOutputStream(f)
+      out.write(new Array[Byte](10000))
+      out.close()
+      intercept[IOException] {
+        new MMapAppendLog(f)
+      }
+    }
+
+    "allow reading committed records while appending" in {
+      val log = new MMapAppendLog(tempFile, 4096, 1L << 30)
+      val N = 100000
+      val done = new AtomicBoolean(false)
+      @volatile var error: Throwable = null
+      val reader = new Thread(new Runnable {
+        def run() {
+          try {
+            while (!done.get()) {
+              val c = log.committedPosition()
+              if (c > 0) {
+                val v = log.view(0, c)
+                val i = c / 8 - 1
+                if (v.getLong(i * 8) != i)
+                  throw new IllegalStateException(s"unexpected value at ${i}")
+              }
+            }
+          }
+          catch {
+            case e: Throwable => error = e
+          }
+        }
+      })
+      reader.start()
+      val buf = ByteBuffer.allocate(8).order(java.nio.ByteOrder.nativeOrder())
+      for (i <- 0 until N) {
+        buf.clear()
+        buf.putLong(i).flip()
+        log.append(buf)
+        if (i % 1000 == 999)
+          log.commit()
+      }
+      done.set(true)
+      reader.join()
+      error shouldBe null
+      log.position() shouldBe N * 8L
+      log.close()
+    }
+
+    "compare append speed with FileChannel" taggedAs ("bench") in {
+      val N = 64 * 1024
+      val record = new Array[Byte](4096)
+      time("append records", repeat = 3) {
+        block("MMapAppendLog") {
+          val log = new MMapAppendLog(tempFile, 1024 * 1024, 1L << 34)
+          for (i <- 0 until N)
+            log.append(record)
+          log.close()
+        }
+        block("FileChannel") {
+          val f = tempFile
+          val out = new FileOutputStream(f).getChannel
+          for (i <- 0 until N)
+            out.write(ByteBuffer.wrap(record))
+          out.force(false)
+          out.close()
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,263 @@
+//--------------------------------------
+//
+// MMapBufferTest.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray.mmap
+
+import java.io.File
+
+import xerial.larray.LArraySpec
+
+/**
+ * @author Taro L. Saito
+ */
+class MMapBufferTest extends LArraySpec {
+
+  def tempFile = {
+    val f = File.createTempFile("mmap", ".larray", new File("target"))
+    f.deleteOnExit()
+    f
+  }
+
+  def waitUntil(cond: => Boolean) {
+    val deadline = System.currentTimeMillis() + 10000
+    while (!cond && System.currentTimeMillis() < deadline)
+      Thread.sleep(5)
+  }
+
+  "MMapBuffer" should {
+
+    "flush ranges" in {
+      val f = tempFile
+      val b = new MMapBuffer(f, 100, 100000, MMapMode.READ_WRITE)
+      b.putLong(50000, 123L)
+      b.flush(50000, 8)
+      b.putLong(0, 456L)
+      b.flushAsync(0, 8)
+      b.flushAsync()
+      b.flush(0, 0)
+      intercept[IllegalArgumentException] {
+        b.flush(99999, 2)
+      }
+      b.close()
+      intercept[IllegalStateException] {
+        b.flush(0, 8)
+      }
+
+      val b2 = new MMapBuffer(f, MMapMode.READ_ONLY)
+      b2.getLong(50100) shouldBe 123L
+      b2.getLong(100) shouldBe 456L
+      b2.close()
+    }
+
+    "merge dirty ranges" in {
+      val b = new MMapBuffer(tempFile, 0, 100000, MMapMode.READ_WRITE)
+      val flusher = b.startFlusher(100000, Long.MaxValue)
+      b.markDirty(0, 10)
+      b.markDirty(20, 10)
+      flusher.pendingBytes() shouldBe 20L
+      b.markDirty(5, 20)
+      flusher.pendingBytes() shouldBe 30L
+      b.markDirty(0, 10)
+      b.markDirty(30, 10)
+      flusher.pendingBytes() shouldBe 40L
+      b.put(1000, Array[Long](1L, 2L, 3L))
+      b.fill(2000, 100, 1.toByte)
+      flusher.pendingBytes() shouldBe 164L
+
+      flusher.flush()
+      flusher.pendingBytes() shouldBe 0L
+      flusher.syncCount() shouldBe 1L
+      flusher.syncedBytes() shouldBe 164L
+      intercept[IllegalStateException] {
+        b.startFlusher(100, 100)
+      }
+      b.close()
+      b.flusher() shouldBe null
+    }
+
+    "keep dirty ranges failed to sync" in {
+      val b = new MMapBuffer(tempFile, 0, 100000, MMapMode.READ_WRITE)
+      val flusher = b.startFlusher(100000, Long.MaxValue)
+      b.markDirty(0, 10)
+      // The sync fails for the ranges out of the buffer
+      b.markDirty(1L << 46, 8)
+      b.markDirty((1L << 46) + 100, 8)
+      intercept[IllegalArgumentException] {
+        flusher.flush()
+      }
+      flusher.syncedBytes() shouldBe 10L
+      flusher.pendingBytes() shouldBe 16L
+      intercept[IllegalArgumentException] {
+        flusher.flush()
+      }
+      flusher.pendingBytes() shouldBe 16L
+
+      // The buffer is released even if the remaining ranges cannot be synced
+      intercept[IllegalArgumentException] {
+        b.close()
+      }
+      b.flusher() shouldBe null
+      intercept[IllegalStateException] {
+        b.flush(0, 8)
+      }
+    }
+
+    "sync dirty ranges in background" in {
+      val f = tempFile
+      val b = new MMapBuffer(f, 0, 1L << 20, MMapMode.READ_WRITE)
+
+      // Sync by the byte threshold
+      val flusher = b.startFlusher(100000, 8192)
+      b.readFrom(new Array[Byte](4096), 0)
+      flusher.syncCount() shouldBe 0L
+      b.readFrom(new Array[Byte](4096), 8192)
+      waitUntil(flusher.syncCount() == 1L)
+      flusher.syncCount() shouldBe 1L
+      flusher.pendingBytes() shouldBe 0L
+      b.close()
+
+      // Sync by the interval
+      val b2 = new MMapBuffer(f, 0, 1L << 20, MMapMode.READ_WRITE)
+      val flusher2 = b2.startFlusher(50, Long.MaxValue)
+      b2.putLong(100, 3L)
+      b2.markDirty(100, 8)
+      waitUntil(flusher2.syncCount() == 1L)
+      flusher2.syncedBytes() shouldBe 8L
+
+      // Remaining ranges are synced when the buffer is closed
+      b2.putLong(200, 4L)
+      b2.markDirty(200, 8)
+      b2.close()
+      flusher2.pendingBytes() shouldBe 0L
+      flusher2.syncedBytes() shouldBe 16L
+    }
+
+    "prefault and lock pages" in {
+      val f = tempFile
+      val L = 1L << 20
+      val b = new MMapBuffer(f, 0, L, MMapMode.READ_WRITE)
+      b.fill(0, L, 3.toByte)
+      b.close()
+
+      val linux = System.getProperty("os.name").toLowerCase.contains("linux")
+      val b2 = new MMapBuffer(f, MMapMode.READ_ONLY, MMapOption.POPULATE)
+      if (linux)
+        b2.residentBytes() shouldBe L
+      b2.getByte(L - 1) shouldBe 3.toByte
+      b2.close()
+
+      // Lock a small range within the default limit of the locked memory
+      val b3 = new MMapBuffer(f, 100, 16384, MMapMode.READ_ONLY, MMapOption.LOCK)
+      if (linux)
+        b3.residentBytes() shouldBe 20480L
+      b3.unlock()
+      b3.lock(8192, 100)
+      b3.unlock(8192, 100)
+      b3.close()
+      intercept[IllegalStateException] {
+        b3.lock()
+      }
+    }
+
+    "warm up pages in parallel" in {
+      val f = tempFile
+      val L = 10L * 1024 * 1024
+      val b = new MMapBuffer(f, 0, L, MMapMode.READ_WRITE)
+      b.fill(0, L, 1.toByte)
+      b.flush()
+      b.advise(MMapAdvice.DONTNEED)
+
+      val stats = b.warmUp(4)
+      debug(stats)
+      stats.touchedBytes() shouldBe L
+      stats.elapsedMillis() should be >= 0L
+      if (System.getProperty("os.name").toLowerCase.contains("linux")) {
+        stats.residentBytes() shouldBe L
+        b.residentBytes(100, 5000) shouldBe 8192L
+      }
+      b.warmUp(100, 0, 4).touchedBytes() shouldBe 0L
+      b.close()
+    }
+
+    "reduce the first access latency with warm-up" taggedAs ("bench") in {
+      val f = tempFile
+      val L = 256L * 1024 * 1024
+      val b = new MMapBuffer(f, 0, L, MMapMode.READ_WRITE)
+      b.fill(0, L, 1.toByte)
+      b.close()
+      val N = 100000
+      val r = new scala.util.Random(0)
+      val offsets = Array.fill(N)((r.nextLong() & Long.MaxValue) % (L / 8) * 8)
+
+      def probe(m: MMapBuffer) = {
+        var sum = 0L
+        for (i <- 0 until N)
+          sum += m.getLong(offsets(i))
+        sum
+      }
+
+      time("first access", repeat = 3) {
+        block("no warm-up") {
+          val m = new MMapBuffer(f, MMapMode.READ_ONLY)
+          probe(m)
+          m.close()
+        }
+        block("populate") {
+          val m = new MMapBuffer(f, MMapMode.READ_ONLY, MMapOption.POPULATE)
+          probe(m)
+          m.close()
+        }
+        block("warm-up") {
+          val m = new MMapBuffer(f, MMapMode.READ_ONLY)
+          debug(m.warmUp(4))
+          probe(m)
+          m.close()
+        }
+      }
+    }
+
+    "reduce the writer latency with ranged flush" taggedAs ("bench") in {
+      val L = 256L * 1024 * 1024
+      val b = new MMapBuffer(tempFile, 0, L, MMapMode.READ_WRITE)
+      b.fill(0, L, 1.toByte)
+      b.flush()
+      val N = 1000
+      val r = new scala.util.Random(0)
+      val offsets = Array.fill(N)((r.nextLong() & Long.MaxValue) % (L / 8) * 8)
+
+      time("write and flush", repeat = 3) {
+        block("flush all") {
+          for (i <- 0 until N / 10) {
+            b.putLong(offsets(i), i)
+            b.flush()
+          }
+        }
+        block("flush range") {
+          for (i <- 0 until N) {
+            b.putLong(offsets(i), i)
+            b.flush(offsets(i), 8)
+          }
+        }
+        block("flush async") {
+          for (i <- 0 until N) {
+            b.putLong(offsets(i), i)
+            b.flushAsync(offsets(i), 8)
+          }
+        }
+        block("background flusher") {
+          val flusher = b.startFlusher(10, 1024 * 1024)
+          for (i <- 0 until N) {
+            b.putLong(offsets(i), i)
+            b.markDirty(offsets(i), 8)
+          }
+          flusher.close()
+        }
+      }
+      b.close()
+    }
+  }
+}
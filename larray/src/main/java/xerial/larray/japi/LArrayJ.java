@@ -19,9 +19,11 @@ import scala.reflect.ClassTag$;
 import xerial.larray.*;
 import xerial.larray.buffer.LBufferConfig;
 import xerial.larray.buffer.MemoryAllocator;
+import xerial.larray.buffer.ProgressListener;
 import xerial.larray.mmap.MMapMode;
 
 import java.io.File;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Java interface of LArray
@@ -100,4 +102,21 @@ public class LArrayJ {
         return (LLongArray) LArray$.MODULE$.loadFrom(file, ClassTag$.MODULE$.Long());
     }
 
+    /**
+     * Save the array contents to a file in background threads. The array must not be released until the returned future completes.
+     */
+    public static CompletableFuture<File> saveToAsync(LSeq<?> array, File file) {
+        return array.saveToAsync(file);
+    }
+
+    /**
+     * Save the array contents to a file in background threads. The array must not be released until the returned future completes.
+     * @param parallelism the number of threads to write the file
+     * @param sync if true, the file contents are flushed to the storage device (fsync) before the future completes
+     * @param listener progress listener, or null
+     */
+    public static CompletableFuture<File> saveToAsync(LSeq<?> array, File file, int parallelism, boolean sync, ProgressListener listener) {
+        return array.saveToAsync(file, parallelism, sync, listener);
+    }
+
 }
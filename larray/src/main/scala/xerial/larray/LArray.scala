@@ -27,10 +27,12 @@ import java.nio.{ByteBuffer, ByteOrder}
 import java.nio.channels.{FileChannel, WritableByteChannel}
 
 import sun.nio.ch.DirectBuffer
-import java.io.{File, FileInputStream, FileOutputStream}
+import java.io.{File, FileInputStream, FileOutputStream, IOException}
+import java.util.concurrent.CompletableFuture
 
 import wvlet.log.LogSupport
-import xerial.larray.buffer.{Memory, MemoryAllocator}
+import xerial.larray.buffer.{ByteOrderView, LBufferConfig, Memory, MemoryAllocator, MemoryChecksum, MemoryOps, ParallelFileIO, ProgressListener, WrappedLBuffer}
+import xerial.larray.buffer.ByteOrderView.NATIVE_BIG_ENDIAN
 import xerial.larray.mmap.MMapMode
 
 
@@ -88,16 +90,73 @@ trait LSeq[A] extends LIterable[A] {
    * @param f
    * @return
    */
-  def saveTo(f: File): File = {
+  def saveTo(f: File): File = saveTo(f, ParallelFileIO.defaultParallelism, false, null)
+
+  /**
+   * Save to a file. The array contents are split into chunks, which are written concurrently.
+   * @param f
+   * @param parallelism the number of threads to write the file
+   * @param sync if true, the file contents are flushed to the storage device (fsync) before returning
+   * @param listener progress listener, or null
+   * @return
+   */
+  def saveTo(f: File, parallelism: Int, sync: Boolean, listener: ProgressListener): File = {
     val fout = new FileOutputStream(f).getChannel
     try {
-      fout.write(this.toDirectByteBuffer)
+      val header = fileHeader
+      fout.write(ByteBuffer.wrap(header), 0L)
+      if (byteLength > 0)
+        ParallelFileIO.write(address, byteLength, this, fout, header.length, parallelism, sync, listener)
+      else if (sync)
+        fout.force(true)
       f
     }
     finally
       fout.close
   }
 
+  /**
+   * Save to a file in background threads. The array must not be released until the returned future completes.
+   * @param f
+   * @return a future that completes with the file when it is written and closed
+   */
+  def saveToAsync(f: File): CompletableFuture[File] = saveToAsync(f, ParallelFileIO.defaultParallelism, false, null)
+
+  /**
+   * Save to a file in background threads. The array must not be released until the returned future completes.
+   * @param f
+   * @param parallelism the number of threads to write the file
+   * @param sync if true, the file contents are flushed to the storage device (fsync) before the future completes
+   * @param listener progress listener, or null
+   * @return a future that completes with the file when it is written and closed
+   */
+  def saveToAsync(f: File, parallelism: Int, sync: Boolean, listener: ProgressListener): CompletableFuture[File] = {
+    val written = try {
+      val fout = new FileOutputStream(f).getChannel
+      try {
+        val header = fileHeader
+        fout.write(ByteBuffer.wrap(header), 0L)
+        ParallelFileIO.closeWhenDone(ParallelFileIO.writeAsync(if (byteLength > 0) address else 0L, byteLength, this, fout, header.length, parallelism, sync, listener), fout)
+      }
+      catch {
+        case e: Throwable =>
+          fout.close
+          throw e
+      }
+    }
+    catch {
+      case e: IOException => ParallelFileIO.failed[Void](e)
+    }
+    written.thenApply[File](new java.util.function.Function[Void, File] {
+      def apply(v: Void) = f
+    })
+  }
+
+  /**
+   * Bytes written before the array contents by saveTo
+   */
+  private[larray] def fileHeader: Array[Byte] = Array.emptyByteArray
+
   /**
    * Copy the contents of this LSeq[A] into the target LByteArray
    * @param dst
@@ -120,16 +179,85 @@ trait LSeq[A] extends LIterable[A] {
    */
   @inline def address: Long
 
-  import UnsafeUtil.unsafe
+  import xerial.larray.buffer.LBufferConfig.access
+
+  @inline def getByte(offset: Long): Byte = access.getByte(address + offset)
+  @inline def getChar(offset: Long): Char = access.getChar(address + offset)
+  @inline def getShort(offset: Long): Short = access.getShort(address + offset)
+  @inline def getInt(offset: Long): Int = access.getInt(address + offset)
+  @inline def getFloat(offset: Long): Float = access.getFloat(address + offset)
+  @inline def getLong(offset: Long): Long = access.getLong(address + offset)
+  @inline def getDouble(offset: Long): Double = access.getDouble(address + offset)
+
+  // Accessors of explicit byte orders: BE (big-endian) and LE (little-endian)
+  @inline def getCharBE(offset: Long): Char = { val v = getChar(offset); if (NATIVE_BIG_ENDIAN) v else java.lang.Character.reverseBytes(v) }
+  @inline def getShortBE(offset: Long): Short = { val v = getShort(offset); if (NATIVE_BIG_ENDIAN) v else java.lang.Short.reverseBytes(v) }
+  @inline def getIntBE(offset: Long): Int = { val v = getInt(offset); if (NATIVE_BIG_ENDIAN) v else java.lang.Integer.reverseBytes(v) }
+  @inline def getLongBE(offset: Long): Long = { val v = getLong(offset); if (NATIVE_BIG_ENDIAN) v else java.lang.Long.reverseBytes(v) }
+  @inline def getFloatBE(offset: Long): Float = java.lang.Float.intBitsToFloat(getIntBE(offset))
+  @inline def getDoubleBE(offset: Long): Double = java.lang.Double.longBitsToDouble(getLongBE(offset))
+  @inline def getCharLE(offset: Long): Char = { val v = getChar(offset); if (!NATIVE_BIG_ENDIAN) v else java.lang.Character.reverseBytes(v) }
+  @inline def getShortLE(offset: Long): Short = { val v = getShort(offset); if (!NATIVE_BIG_ENDIAN) v else java.lang.Short.reverseBytes(v) }
+  @inline def getIntLE(offset: Long): Int = { val v = getInt(offset); if (!NATIVE_BIG_ENDIAN) v else java.lang.Integer.reverseBytes(v) }
+  @inline def getLongLE(offset: Long): Long = { val v = getLong(offset); if (!NATIVE_BIG_ENDIAN) v else java.lang.Long.reverseBytes(v) }
+  @inline def getFloatLE(offset: Long): Float = java.lang.Float.intBitsToFloat(getIntLE(offset))
+  @inline def getDoubleLE(offset: Long): Double = java.lang.Double.longBitsToDouble(getLongLE(offset))
+
+  // Volatile and acquire reads. The offset must be aligned to the value size
+  @inline def getIntVolatile(offset: Long): Int = access.getIntVolatile(address + offset)
+  @inline def getLongVolatile(offset: Long): Long = access.getLongVolatile(address + offset)
+  @inline def getIntAcquire(offset: Long): Int = access.getIntAcquire(address + offset)
+  @inline def getLongAcquire(offset: Long): Long = access.getLongAcquire(address + offset)
+
+  /**
+   * Copy the values beginning from the byte offset into a primitive array with a single memory copy.
+   * @param offset byte offset in this sequence
+   * @param dest destination array of Byte, Char, Short, Int, Float, Long or Double
+   * @param destIndex index in the destination array
+   * @param length the number of values to copy
+   * @param order byte order of the values stored in this sequence
+   */
+  def get[B](offset: Long, dest: Array[B], destIndex: Int, length: Int, order: ByteOrder = ByteOrder.nativeOrder()) {
+    checkByteRange(offset, length.toLong * LArray.primitiveSizeOf(dest.getClass.getComponentType))
+    access.copyToArray(address + offset, dest, destIndex, length, order != ByteOrder.nativeOrder())
+  }
+
+  /**
+   * Compute the CRC32C checksum of the byte range
+   * @param offset byte offset
+   * @param length byte length
+   * @param parallelism the number of threads to use for large ranges. The result does not depend on the parallelism
+   * @return CRC32C value in the lower 32 bits
+   */
+  def crc32c(offset: Long = 0L, length: Long = byteLength, parallelism: Int = 1): Long = {
+    checkByteRange(offset, length)
+    if (length == 0) 0L else MemoryChecksum.crc32c(address + offset, length, parallelism)
+  }
+
+  /**
+   * Compute the xxHash64 value of the byte range
+   * @param offset byte offset
+   * @param length byte length
+   * @param seed
+   */
+  def xxHash64(offset: Long = 0L, length: Long = byteLength, seed: Long = 0L): Long = {
+    checkByteRange(offset, length)
+    MemoryChecksum.xxHash64(if (length == 0) 0L else address + offset, length, seed)
+  }
 
-  @inline def getByte(offset: Long): Byte = unsafe.getByte(address + offset)
-  @inline def getChar(offset: Long): Char = unsafe.getChar(address + offset)
-  @inline def getShort(offset: Long): Short = unsafe.getShort(address + offset)
-  @inline def getInt(offset: Long): Int = unsafe.getInt(address + offset)
-  @inline def getFloat(offset: Long): Float = unsafe.getFloat(address + offset)
-  @inline def getLong(offset: Long): Long = unsafe.getLong(address + offset)
-  @inline def getDouble(offset: Long): Double = unsafe.getDouble(address + offset)
+  /**
+   * Compute a hash value of the byte range by combining the xxHash64 values of the chunks computed in parallel
+   * @see [[xerial.larray.buffer.MemoryChecksum.xxHash64Chunked]]
+   */
+  def xxHash64Chunked(offset: Long = 0L, length: Long = byteLength, seed: Long = 0L, parallelism: Int = ParallelFileIO.defaultParallelism): Long = {
+    checkByteRange(offset, length)
+    MemoryChecksum.xxHash64Chunked(if (length == 0) 0L else address + offset, length, seed, parallelism)
+  }
 
+  protected def checkByteRange(offset: Long, len: Long) {
+    if (offset < 0 || len < 0 || offset > byteLength - len)
+      throw new IndexOutOfBoundsException(f"offset:$offset%,d, length:$len%,d, byte length:$byteLength%,d")
+  }
 
 }
 
@@ -212,6 +340,10 @@ trait LArray[A] extends LSeq[A] with WritableByteChannel {
 
   def isOpen: Boolean = true
 
+  /**
+   * Release the memory of LArray. Since LArray is a `java.io.Closeable`, it can be used in
+   * try-with-resources statements in Java or resource management utilities in Scala.
+   */
   def close() {
     free
   }
@@ -264,15 +396,41 @@ trait LArray[A] extends LSeq[A] with WritableByteChannel {
 
   override def toString = mkString(", ")
 
-  import UnsafeUtil.unsafe
-
-  @inline def putByte(offset: Long, v: Byte) = { unsafe.putByte(address+offset, v); v }
-  @inline def putChar(offset: Long, v: Char) = { unsafe.putChar(address+offset, v); v }
-  @inline def putShort(offset: Long, v: Short) = { unsafe.putShort(address+offset, v); v }
-  @inline def putInt(offset: Long, v: Int) = { unsafe.putInt(address+offset, v); v }
-  @inline def putFloat(offset: Long, v: Float) = { unsafe.putFloat(address + offset, v); v }
-  @inline def putLong(offset: Long, v: Long) = { unsafe.putLong(address + offset, v); v}
-  @inline def putDouble(offset: Long, v: Double) = { unsafe.putDouble(address + offset, v); v }
+  import xerial.larray.buffer.LBufferConfig.access
+
+  @inline def putByte(offset: Long, v: Byte) = { access.putByte(address+offset, v); v }
+  @inline def putChar(offset: Long, v: Char) = { access.putChar(address+offset, v); v }
+  @inline def putShort(offset: Long, v: Short) = { access.putShort(address+offset, v); v }
+  @inline def putInt(offset: Long, v: Int) = { access.putInt(address+offset, v); v }
+  @inline def putFloat(offset: Long, v: Float) = { access.putFloat(address + offset, v); v }
+  @inline def putLong(offset: Long, v: Long) = { access.putLong(address + offset, v); v}
+  @inline def putDouble(offset: Long, v: Double) = { access.putDouble(address + offset, v); v }
+
+  @inline def putCharBE(offset: Long, v: Char) = { putChar(offset, if (NATIVE_BIG_ENDIAN) v else java.lang.Character.reverseBytes(v)); v }
+  @inline def putShortBE(offset: Long, v: Short) = { putShort(offset, if (NATIVE_BIG_ENDIAN) v else java.lang.Short.reverseBytes(v)); v }
+  @inline def putIntBE(offset: Long, v: Int) = { putInt(offset, if (NATIVE_BIG_ENDIAN) v else java.lang.Integer.reverseBytes(v)); v }
+  @inline def putLongBE(offset: Long, v: Long) = { putLong(offset, if (NATIVE_BIG_ENDIAN) v else java.lang.Long.reverseBytes(v)); v }
+  @inline def putFloatBE(offset: Long, v: Float) = { putIntBE(offset, java.lang.Float.floatToRawIntBits(v)); v }
+  @inline def putDoubleBE(offset: Long, v: Double) = { putLongBE(offset, java.lang.Double.doubleToRawLongBits(v)); v }
+  @inline def putCharLE(offset: Long, v: Char) = { putChar(offset, if (!NATIVE_BIG_ENDIAN) v else java.lang.Character.reverseBytes(v)); v }
+  @inline def putShortLE(offset: Long, v: Short) = { putShort(offset, if (!NATIVE_BIG_ENDIAN) v else java.lang.Short.reverseBytes(v)); v }
+  @inline def putIntLE(offset: Long, v: Int) = { putInt(offset, if (!NATIVE_BIG_ENDIAN) v else java.lang.Integer.reverseBytes(v)); v }
+  @inline def putLongLE(offset: Long, v: Long) = { putLong(offset, if (!NATIVE_BIG_ENDIAN) v else java.lang.Long.reverseBytes(v)); v }
+  @inline def putFloatLE(offset: Long, v: Float) = { putIntLE(offset, java.lang.Float.floatToRawIntBits(v)); v }
+  @inline def putDoubleLE(offset: Long, v: Double) = { putLongLE(offset, java.lang.Double.doubleToRawLongBits(v)); v }
+
+  // Atomic operations for sharing the array between threads or processes (through memory-mapped files).
+  // The offset must be aligned to the value size
+  @inline def compareAndSwapInt(offset: Long, expected: Int, v: Int): Boolean = access.compareAndSwapInt(address + offset, expected, v)
+  @inline def compareAndSwapLong(offset: Long, expected: Long, v: Long): Boolean = access.compareAndSwapLong(address + offset, expected, v)
+  @inline def getAndAddInt(offset: Long, delta: Int): Int = access.getAndAddInt(address + offset, delta)
+  @inline def getAndAddLong(offset: Long, delta: Long): Long = access.getAndAddLong(address + offset, delta)
+  @inline def getAndSetInt(offset: Long, v: Int): Int = access.getAndSetInt(address + offset, v)
+  @inline def getAndSetLong(offset: Long, v: Long): Long = access.getAndSetLong(address + offset, v)
+  @inline def putIntVolatile(offset: Long, v: Int) = { access.putIntVolatile(address + offset, v); v }
+  @inline def putLongVolatile(offset: Long, v: Long) = { access.putLongVolatile(address + offset, v); v }
+  @inline def putIntRelease(offset: Long, v: Int) = { access.putIntRelease(address + offset, v); v }
+  @inline def putLongRelease(offset: Long, v: Long) = { access.putLongRelease(address + offset, v); v }
 
 }
 
@@ -289,6 +447,15 @@ trait LArray[A] extends LSeq[A] with WritableByteChannel {
  */
 object LArray {
 
+  import xerial.larray.buffer.LBufferConfig.access
+
+  /**
+   * Memory fences to be used with the plain reads and writes of LArrays
+   */
+  def loadFence(): Unit = access.loadFence()
+  def storeFence(): Unit = access.storeFence()
+  def fullFence(): Unit = access.fullFence()
+
   import _root_.java.{lang => jl}
 
   /**
@@ -297,24 +464,46 @@ object LArray {
    * @tparam A the element type
    * @return LArray contains the file contents
    */
-  def loadFrom[A: ClassTag](f: File): LArray[A] = {
+  def loadFrom[A: ClassTag](f: File): LArray[A] = loadFrom[A](f, ParallelFileIO.defaultParallelism, null)
+
+  /**
+   * Load the contents of a file into LArray. The file is split into chunks, which are read concurrently
+   * into the array memory.
+   * @param f the file to read
+   * @param parallelism the number of threads to read the file
+   * @param listener progress listener, or null
+   * @tparam A the element type
+   * @return LArray contains the file contents
+   */
+  def loadFrom[A: ClassTag](f: File, parallelism: Int, listener: ProgressListener): LArray[A] = {
     val fin = new FileInputStream(f).getChannel
     val tag = implicitly[ClassTag[A]]
+
+    def readInto[L <: LArray[_]](l: L, pos: Long): L = {
+      val u = l.asInstanceOf[UnsafeArray[_]]
+      try
+        ParallelFileIO.read(fin, pos, new WrappedLBuffer(u.m, 0L, u.byteLength), 0L, u.byteLength, parallelism, listener)
+      catch {
+        case e: Throwable =>
+          l.free
+          throw e
+      }
+      l
+    }
+
     try {
       tag.runtimeClass match {
         case jl.Boolean.TYPE => {
           val arr = new Array[Byte](8)
           val bb = ByteBuffer.wrap(arr)
-          fin.read(bb)
+          fin.read(bb, 0L)
           val numBits = bb.getLong(0)
           val fileSize = fin.size()
-          val b = new LLongArrayBuilder()
-          var pos = 8L
-          b.sizeHint((fileSize - pos) / 8L)
-          while (pos < fileSize) {
-            pos += fin.transferTo(pos, fileSize - pos, b)
-          }
-          new LBitArray(b.result, numBits).asInstanceOf[LArray[A]]
+          val words = readInto(new LLongArray((fileSize - 8L) / 8L), 8L)
+          new LBitArray(words, numBits).asInstanceOf[LArray[A]]
+        }
+        case cl if primitiveSizeOf(cl) > 0 => {
+          readInto(LArray.of[A](fin.size() / primitiveSizeOf(cl)), 0L)
         }
         case _ => {
           var pos = 0L
@@ -330,8 +519,6 @@ object LArray {
     }
     finally
       fin.close
-
-
   }
 
 
@@ -451,6 +638,17 @@ object LArray {
     }
   }
 
+  /**
+   * Byte size of a primitive type except Boolean, or 0 for the other types
+   */
+  private[larray] def primitiveSizeOf(cl: Class[_]): Int = cl match {
+    case jl.Byte.TYPE => 1
+    case jl.Character.TYPE | jl.Short.TYPE => 2
+    case jl.Integer.TYPE | jl.Float.TYPE => 4
+    case jl.Long.TYPE | jl.Double.TYPE => 8
+    case _ => 0
+  }
+
 
   /**
    * Convert iterator to LArray
@@ -567,14 +765,14 @@ object LArray {
    * @tparam A the element type
    */
   def copy[A](src: LArray[A], srcPos: Long, dest: LArray[A], destPos: Long, length: Long) {
-    import UnsafeUtil.unsafe
+    import xerial.larray.buffer.LBufferConfig.access
     val copyLen = math.min(length, math.min(src.size - srcPos, dest.size - destPos))
 
     (src, dest) match {
       case (a: UnsafeArray[A], b: UnsafeArray[A]) =>
         val elemSize = a.elementByteSize
         // Use fast memcopy
-        unsafe.copyMemory(a.m.address + srcPos * elemSize, b.m.address + destPos * elemSize, copyLen * elemSize)
+        access.copyMemory(a.m.address + srcPos * elemSize, b.m.address + destPos * elemSize, copyLen * elemSize)
       case _ =>
         // slow copy
         var i = 0L
@@ -673,10 +871,37 @@ trait RawByteArray[A] extends LArray[A] {
   def toInputStream: java.io.InputStream = LArrayInputStream(this)
 
 
-  import UnsafeUtil.unsafe
+  import xerial.larray.buffer.LBufferConfig.access
 
   def clear() {
-    unsafe.setMemory(address, byteLength, 0)
+    access.setMemory(address, byteLength, 0)
+  }
+
+  /**
+   * Copy the values of a primitive array into this array beginning from the byte offset with a single memory copy.
+   * @param offset byte offset in this array
+   * @param src source array of Byte, Char, Short, Int, Float, Long or Double
+   * @param srcIndex index in the source array
+   * @param length the number of values to copy
+   * @param order byte order of the values to store in this array
+   */
+  def put[B](offset: Long, src: Array[B], srcIndex: Int, length: Int, order: ByteOrder = ByteOrder.nativeOrder()) {
+    checkByteRange(offset, length.toLong * LArray.primitiveSizeOf(src.getClass.getComponentType))
+    access.copyFromArray(src, srcIndex, address + offset, length, order != ByteOrder.nativeOrder())
+  }
+
+  /**
+   * Creates a copy of this array in the form of the standard Scala Array. Arrays of primitive types are copied with a single memory copy.
+   */
+  override def toArray[A1 >: A : ClassTag]: Array[A1] = {
+    val elemSize = LArray.primitiveSizeOf(implicitly[ClassTag[A1]].runtimeClass)
+    if (elemSize != 0 && elemSize == elementByteSize && size <= Int.MaxValue) {
+      val arr = new Array[A1](size.toInt)
+      get(0L, arr, 0, size.toInt)
+      arr
+    }
+    else
+      super.toArray[A1]
   }
 
   protected var cursor = 0L
@@ -685,14 +910,14 @@ trait RawByteArray[A] extends LArray[A] {
     val len = math.max(src.limit - src.position, 0)
     val writeLen = src match {
       case d: DirectBuffer =>
-        unsafe.copyMemory(d.address() + src.position(), address + cursor, len)
+        access.copyMemory(d.address() + src.position(), address + cursor, len)
         len
       case arr if src.hasArray =>
-        readFromArray(src.array(), src.position(), cursor, len)
+        readFromArray(src.array(), src.arrayOffset() + src.position(), cursor, len)
       case _ =>
         var i = 0L
         while (i < len) {
-          unsafe.putByte(address + i, src.get((src.position() + i).toInt))
+          access.putByte(address + cursor + i, src.get((src.position() + i).toInt))
           i += 1
         }
         len
@@ -713,8 +938,7 @@ trait RawByteArray[A] extends LArray[A] {
    */
   def writeToArray(srcOffset: Long, dest: Array[Byte], destOffset: Int, length: Int): Int = {
     val writeLen = math.min(dest.length - destOffset, math.min(length, byteLength - srcOffset)).toInt
-    val b = xerial.larray.buffer.UnsafeUtil.newDirectByteBuffer(address + srcOffset, writeLen, this)
-    b.get(dest, destOffset, writeLen)
+    access.copyToArray(address + srcOffset, dest, destOffset, writeLen)
     writeLen
   }
 
@@ -727,17 +951,63 @@ trait RawByteArray[A] extends LArray[A] {
    */
   def readFromArray(src: Array[Byte], srcOffset: Int, destOffset: Long, length: Int): Int = {
     val readLen = math.min(src.length - srcOffset, math.min(byteLength - destOffset, length)).toInt
-    val b = xerial.larray.buffer.UnsafeUtil.newDirectByteBuffer(address + destOffset, readLen, this)
-    b.put(src, srcOffset, readLen)
+    access.copyFromArray(src, srcOffset, address + destOffset, readLen)
     readLen
   }
 
   def copyTo(dst: LByteArray, dstOffset: Long) {
-    unsafe.copyMemory(address, dst.address + dstOffset, byteLength)
+    access.copyMemory(address, dst.address + dstOffset, byteLength)
   }
 
   def copyTo[B](srcOffset: Long, dst: RawByteArray[B], dstOffset: Long, blen: Long) {
-    unsafe.copyMemory(address + srcOffset, dst.address + dstOffset, blen)
+    access.copyMemory(address + srcOffset, dst.address + dstOffset, blen)
+  }
+
+  /**
+   * Find the first byte that differs between this array and the other array
+   * @param that
+   * @return the byte offset of the first mismatch, the smaller byte length if one array is a prefix of the other,
+   *         or -1 if the arrays have the same bytes
+   */
+  def mismatch(that: RawByteArray[_]): Long = {
+    val len = math.min(byteLength, that.byteLength)
+    val i = MemoryOps.mismatch(address, that.address, len)
+    if (i < 0 && byteLength != that.byteLength) len else i
+  }
+
+  /**
+   * Find the first byte that differs between the byte ranges of this array and the other array
+   * @return the relative byte offset of the first mismatch, or -1 if the ranges have the same bytes
+   */
+  def mismatch(offset: Long, that: RawByteArray[_], thatOffset: Long, length: Long): Long = {
+    checkByteRange(offset, length)
+    that.checkByteRange(thatOffset, length)
+    MemoryOps.mismatch(address + offset, that.address + thatOffset, length)
+  }
+
+  /**
+   * Returns true if the byte ranges of this array and the other array have the same bytes
+   */
+  def equals(offset: Long, that: RawByteArray[_], thatOffset: Long, length: Long): Boolean =
+    mismatch(offset, that, thatOffset, length) < 0
+
+  /**
+   * Compare the array contents in the lexicographic order of unsigned bytes
+   * @return a negative value, zero or a positive value if this array is smaller than, equal to or larger than the other array
+   */
+  def compareTo(that: RawByteArray[_]): Int = MemoryOps.compare(address, byteLength, that.address, that.byteLength)
+
+  /**
+   * Compute a 64-bit hash value of the array contents
+   * @see [[xerial.larray.buffer.MemoryOps.hash64]]
+   */
+  def hash64: Long = MemoryOps.hash64(address, byteLength, 0L)
+
+  override def sameElements[B >: A](that: LIterable[B]): Boolean = that match {
+    // Compare bytes only for the same integral types, since floating-point values have different bit patterns for equal values (0.0 and -0.0)
+    case r: RawByteArray[_] if r.getClass == getClass && !isInstanceOf[LFloatArray] && !isInstanceOf[LDoubleArray] =>
+      size == r.size && mismatch(r) < 0
+    case _ => super.sameElements(that)
   }
 
 
@@ -751,6 +1021,12 @@ private[larray] trait UnsafeArray[T] extends RawByteArray[T] with LogSupport {
 
   private[larray] def alloc :MemoryAllocator
 
+  /**
+   * Create a view of this array that reads and writes values in the given byte order
+   * @param order byte order of the values stored in this array
+   */
+  def orderedView(order: ByteOrder): ByteOrderView = ByteOrderView.of(new WrappedLBuffer(m, 0L, byteLength), order)
+
   /**
    * Release the memory of LArray. After calling this method, the results of calling the behavior of the other methods becomes undefined or might cause JVM crash.
    */
@@ -766,16 +1042,17 @@ class LCharArray(val size: Long, private[larray] val m: Memory)(implicit val all
   protected[this] def newBuilder = new LCharArrayBuilder
 
   def this(size: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size << 1))(alloc)
+  def this(size: Long, alignment: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size << 1, alignment))(alloc)
 
-  import UnsafeUtil.unsafe
+  import xerial.larray.buffer.LBufferConfig.access
 
   def apply(i: Long): Char = {
-    unsafe.getChar(m.address + (i << 1))
+    access.getChar(m.address + (i << 1))
   }
 
   // a(i) = a(j) = 1
   def update(i: Long, v: Char): Char = {
-    unsafe.putChar(m.address + (i << 1), v)
+    access.putChar(m.address + (i << 1), v)
     v
   }
 
@@ -800,16 +1077,17 @@ class LIntArray(val size: Long, private[larray] val m: Memory)(implicit val allo
   protected[this] def newBuilder = new LIntArrayBuilder
 
   def this(size: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size << 2))(alloc)
+  def this(size: Long, alignment: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size << 2, alignment))(alloc)
 
-  import UnsafeUtil.unsafe
+  import xerial.larray.buffer.LBufferConfig.access
 
   def apply(i: Long): Int = {
-    unsafe.getInt(m.address + (i << 2))
+    access.getInt(m.address + (i << 2))
   }
 
   // a(i) = a(j) = 1
   def update(i: Long, v: Int): Int = {
-    unsafe.putInt(m.address + (i << 2), v)
+    access.putInt(m.address + (i << 2), v)
     v
   }
 
@@ -820,6 +1098,29 @@ class LIntArray(val size: Long, private[larray] val m: Memory)(implicit val allo
 
   def view(from: Long, to: Long) = new LArrayView.LIntArrayView(this, from, to - from)
 
+  /**
+   * Atomically set the i-th element if the current value is equal to the expected one
+   * @return true if the element is updated
+   */
+  def compareAndSwap(i: Long, expected: Int, v: Int): Boolean = access.compareAndSwapInt(m.address + (i << 2), expected, v)
+
+  /**
+   * Atomically add the delta to the i-th element
+   * @return the previous value
+   */
+  def getAndAdd(i: Long, delta: Int): Int = access.getAndAddInt(m.address + (i << 2), delta)
+
+  /**
+   * Atomically set the i-th element
+   * @return the previous value
+   */
+  def getAndSet(i: Long, v: Int): Int = access.getAndSetInt(m.address + (i << 2), v)
+
+  def getVolatile(i: Long): Int = access.getIntVolatile(m.address + (i << 2))
+  def putVolatile(i: Long, v: Int): Int = { access.putIntVolatile(m.address + (i << 2), v); v }
+  def getAcquire(i: Long): Int = access.getIntAcquire(m.address + (i << 2))
+  def putRelease(i: Long, v: Int): Int = { access.putIntRelease(m.address + (i << 2), v); v }
+
 }
 
 /**
@@ -832,25 +1133,49 @@ class LLongArray(val size: Long, private[larray] val m: Memory)(implicit val all
   extends LArray[Long]
   with UnsafeArray[Long] {
   def this(size: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size << 3))(alloc)
+  def this(size: Long, alignment: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size << 3, alignment))(alloc)
 
   protected[this] def newBuilder = new LLongArrayBuilder
 
   private[larray] def elementByteSize: Int = 8
 
-  import UnsafeUtil.unsafe
+  import xerial.larray.buffer.LBufferConfig.access
 
   def apply(i: Long): Long = {
-    unsafe.getLong(m.address + (i << 3))
+    access.getLong(m.address + (i << 3))
   }
 
   // a(i) = a(j) = 1
   def update(i: Long, v: Long): Long = {
-    unsafe.putLong(m.address + (i << 3), v)
+    access.putLong(m.address + (i << 3), v)
     v
   }
 
   def view(from: Long, to: Long) = new LArrayView.LLongArrayView(this, from, to - from)
 
+  /**
+   * Atomically set the i-th element if the current value is equal to the expected one
+   * @return true if the element is updated
+   */
+  def compareAndSwap(i: Long, expected: Long, v: Long): Boolean = access.compareAndSwapLong(m.address + (i << 3), expected, v)
+
+  /**
+   * Atomically add the delta to the i-th element
+   * @return the previous value
+   */
+  def getAndAdd(i: Long, delta: Long): Long = access.getAndAddLong(m.address + (i << 3), delta)
+
+  /**
+   * Atomically set the i-th element
+   * @return the previous value
+   */
+  def getAndSet(i: Long, v: Long): Long = access.getAndSetLong(m.address + (i << 3), v)
+
+  def getVolatile(i: Long): Long = access.getLongVolatile(m.address + (i << 3))
+  def putVolatile(i: Long, v: Long): Long = { access.putLongVolatile(m.address + (i << 3), v); v }
+  def getAcquire(i: Long): Long = access.getLongAcquire(m.address + (i << 3))
+  def putRelease(i: Long, v: Long): Long = { access.putLongRelease(m.address + (i << 3), v); v }
+
 }
 
 
@@ -866,6 +1191,7 @@ class LByteArray(val size: Long, private[larray] val m: Memory)(implicit val all
   self =>
 
   def this(size: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size))(alloc)
+  def this(size: Long, alignment: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size, alignment))(alloc)
 
   protected[this] def newBuilder = new LByteArrayBuilder
 
@@ -877,11 +1203,11 @@ class LByteArray(val size: Long, private[larray] val m: Memory)(implicit val all
    * @return the element value
    */
   def apply(i: Long): Byte = {
-    UnsafeUtil.unsafe.getByte(m.address + i)
+    LBufferConfig.access.getByte(m.address + i)
   }
 
   def apply(i: Int) : Byte = {
-    UnsafeUtil.unsafe.getByte(m.address + i)
+    LBufferConfig.access.getByte(m.address + i)
   }
 
   /**
@@ -891,7 +1217,7 @@ class LByteArray(val size: Long, private[larray] val m: Memory)(implicit val all
    * @return the value
    */
   def update(i: Long, v: Byte): Byte = {
-    UnsafeUtil.unsafe.putByte(m.address + i, v)
+    LBufferConfig.access.putByte(m.address + i, v)
     v
   }
 
@@ -902,7 +1228,7 @@ class LByteArray(val size: Long, private[larray] val m: Memory)(implicit val all
    * @return the value
    */
   def update(i: Int, v: Byte): Byte = {
-    UnsafeUtil.unsafe.putByte(m.address + i, v)
+    LBufferConfig.access.putByte(m.address + i, v)
     v
   }
 
@@ -953,19 +1279,20 @@ class LDoubleArray(val size: Long, private[larray] val m: Memory)(implicit val a
   extends LArray[Double]
   with UnsafeArray[Double] {
   def this(size: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size << 3))(alloc)
+  def this(size: Long, alignment: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size << 3, alignment))(alloc)
 
 
   private[larray] def elementByteSize = 8
 
-  import UnsafeUtil.unsafe
+  import xerial.larray.buffer.LBufferConfig.access
 
   def apply(i: Long): Double = {
-    unsafe.getDouble(m.address + (i << 3))
+    access.getDouble(m.address + (i << 3))
   }
 
   // a(i) = a(j) = 1
   def update(i: Long, v: Double): Double = {
-    unsafe.putDouble(m.address + (i << 2), v)
+    access.putDouble(m.address + (i << 3), v)
     v
   }
 
@@ -978,18 +1305,19 @@ class LFloatArray(val size: Long, private[larray] val m: Memory)(implicit val al
   extends LArray[Float]
   with UnsafeArray[Float] {
   def this(size: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size << 2))(alloc)
+  def this(size: Long, alignment: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size << 2, alignment))(alloc)
 
   private[larray] def elementByteSize = 4
 
-  import UnsafeUtil.unsafe
+  import xerial.larray.buffer.LBufferConfig.access
 
   def apply(i: Long): Float = {
-    unsafe.getFloat(m.address + (i << 2))
+    access.getFloat(m.address + (i << 2))
   }
 
   // a(i) = a(j) = 1
   def update(i: Long, v: Float): Float = {
-    unsafe.putFloat(m.address + (i << 2), v)
+    access.putFloat(m.address + (i << 2), v)
     v
   }
 
@@ -1002,18 +1330,19 @@ class LShortArray(val size: Long, private[larray] val m: Memory)(implicit val al
   extends LArray[Short]
   with UnsafeArray[Short] {
   def this(size: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size << 1))(alloc)
+  def this(size: Long, alignment: Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size << 1, alignment))(alloc)
 
   private[larray] def elementByteSize = 2
 
-  import UnsafeUtil.unsafe
+  import xerial.larray.buffer.LBufferConfig.access
 
   def apply(i: Long): Short = {
-    unsafe.getShort(m.address + (i << 1))
+    access.getShort(m.address + (i << 1))
   }
 
   // a(i) = a(j) = 1
   def update(i: Long, v: Short): Short = {
-    unsafe.putShort(m.address + (i << 1), v)
+    access.putShort(m.address + (i << 1), v)
     v
   }
 
@@ -116,13 +116,32 @@ abstract class LArrayBuilder[A, Repr <: LArray[A]] extends LBuilder[A, Repr] wit
     this
   }
 
+  /**
+    * Resize the buffer to hold the given number of elements. The buffer memory is reallocated by the allocator,
+    * which extends it in place (or remaps its pages) whenever possible instead of copying the contents.
+    */
   protected def mkArray(size: Long): LByteArray = {
-    val newArray = new LByteArray(size * elementSize)
-    if (this.numElems > 0L) {
-      LArray.copy(elems, newArray)
-      elems.free
+    val byteSize = size * elementSize
+    if (elems == null) {
+      new LByteArray(byteSize)
     }
-    newArray
+    else {
+      val alloc = elems.alloc
+      new LByteArray(byteSize, alloc.reallocate(elems.m, byteSize))(alloc)
+    }
+  }
+
+  /**
+    * Hand over the buffer holding the added elements to the result. The buffer is shrunk to the exact size without copying
+    * the contents, and this builder becomes empty.
+    */
+  protected def takeArray(): LByteArray = {
+    val n = numElems
+    val arr = if (elems != null && capacity == n) elems else mkArray(n)
+    elems = null
+    capacity = 0L
+    cursor = 0L
+    arr
   }
 
   def sizeHint(size: Long) {
@@ -149,21 +168,22 @@ abstract class LArrayBuilder[A, Repr <: LArray[A]] extends LBuilder[A, Repr] wit
   }
 
   def clear() {
-    if (numElems > 0) {
+    if (elems != null) {
       elems.free
+      elems = null
     }
     capacity = 0L
     cursor = 0L
   }
 
   def write(src: ByteBuffer): Int = {
-    import UnsafeUtil.unsafe
+    import xerial.larray.buffer.LBufferConfig.access
     val len = math.max(src.limit - src.position, 0)
     val toAdd = (len + elementSize - 1) / elementSize
     ensureSize(numElems + toAdd)
     val writeLen = src match {
       case d: DirectBuffer =>
-        unsafe.copyMemory(d.address() + d.position, elems.address + cursor, len)
+        access.copyMemory(d.address() + d.position, elems.address + cursor, len)
         len
       case arr if src.hasArray =>
         elems.readFromArray(src.array(), src.position(), cursor, len)
@@ -197,14 +217,7 @@ class LByteArrayBuilder extends LArrayBuilder[Byte, LByteArray] {
     this
   }
 
-  def result(): LByteArray = {
-    if (capacity != 0L && capacity == numElems) {
-      elems
-    }
-    else {
-      mkArray(numElems)
-    }
-  }
+  def result(): LByteArray = takeArray()
 }
 
 class LCharArrayBuilder extends LArrayBuilder[Char, LCharArray] {
@@ -217,12 +230,9 @@ class LCharArrayBuilder extends LArrayBuilder[Char, LCharArray] {
     this
   }
   def result(): LCharArray = {
-    if (capacity != 0L && capacity == numElems) {
-      new LCharArray(numElems, elems.m)
-    }
-    else {
-      new LCharArray(numElems, mkArray(numElems).m)
-    }
+    val n = numElems
+    val arr = takeArray()
+    new LCharArray(n, arr.m)(arr.alloc)
   }
 }
 
@@ -236,12 +246,9 @@ class LShortArrayBuilder extends LArrayBuilder[Short, LShortArray] {
     this
   }
   def result(): LShortArray = {
-    if (capacity != 0L && capacity == numElems) {
-      new LShortArray(numElems, elems.m)
-    }
-    else {
-      new LShortArray(numElems, mkArray(numElems).m)
-    }
+    val n = numElems
+    val arr = takeArray()
+    new LShortArray(n, arr.m)(arr.alloc)
   }
 }
 
@@ -256,12 +263,9 @@ class LIntArrayBuilder extends LArrayBuilder[Int, LIntArray] {
   }
 
   def result(): LIntArray = {
-    if (capacity != 0L && capacity == numElems) {
-      new LIntArray(numElems, elems.m)
-    }
-    else {
-      new LIntArray(numElems, mkArray(numElems).m)
-    }
+    val n = numElems
+    val arr = takeArray()
+    new LIntArray(n, arr.m)(arr.alloc)
   }
 }
 
@@ -276,12 +280,9 @@ class LFloatArrayBuilder extends LArrayBuilder[Float, LFloatArray] {
   }
 
   def result(): LFloatArray = {
-    if (capacity != 0L && capacity == numElems) {
-      new LFloatArray(numElems, elems.m)
-    }
-    else {
-      new LFloatArray(numElems, mkArray(numElems).m)
-    }
+    val n = numElems
+    val arr = takeArray()
+    new LFloatArray(n, arr.m)(arr.alloc)
   }
 }
 
@@ -296,12 +297,9 @@ class LLongArrayBuilder extends LArrayBuilder[Long, LLongArray] {
   }
 
   def result(): LLongArray = {
-    if (capacity != 0L && capacity == numElems) {
-      new LLongArray(numElems, elems.m)
-    }
-    else {
-      new LLongArray(numElems, mkArray(numElems).m)
-    }
+    val n = numElems
+    val arr = takeArray()
+    new LLongArray(n, arr.m)(arr.alloc)
   }
 
 }
@@ -317,12 +315,9 @@ class LDoubleArrayBuilder extends LArrayBuilder[Double, LDoubleArray] {
   }
 
   def result(): LDoubleArray = {
-    if (capacity != 0L && capacity == numElems) {
-      new LDoubleArray(numElems, elems.m)
-    }
-    else {
-      new LDoubleArray(numElems, mkArray(numElems).m)
-    }
+    val n = numElems
+    val arr = takeArray()
+    new LDoubleArray(n, arr.m)(arr.alloc)
   }
 }
 
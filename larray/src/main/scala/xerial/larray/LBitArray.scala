@@ -22,11 +22,10 @@
 
 package xerial.larray
 
-import java.io.{File, FileOutputStream}
 import java.nio.ByteBuffer
 
 import wvlet.log.LogSupport
-import xerial.larray.buffer.Memory
+import xerial.larray.buffer.{LBufferConfig, Memory}
 
 /**
   * Helper methods for packing bit sequences into Array[Long]
@@ -109,7 +108,7 @@ class LBitArray(private[larray] val seq: LLongArray, private val numBits: Long)
   self =>
 
   import BitEncoder._
-  import UnsafeUtil.unsafe
+  import xerial.larray.buffer.LBufferConfig.access
 
   private[larray] def alloc = seq.alloc
 
@@ -147,7 +146,7 @@ class LBitArray(private[larray] val seq: LLongArray, private val numBits: Long)
     * @return
     */
   def fill {
-    unsafe.setMemory(seq.m.address, byteLength, 0xFF.toByte)
+    access.setMemory(seq.m.address, byteLength, 0xFF.toByte)
   }
 
   /**
@@ -327,26 +326,8 @@ class LBitArray(private[larray] val seq: LLongArray, private val numBits: Long)
 
   def view(from: Long, to: Long) = new LArrayView.LBitArrayView(this, from, to - from)
 
-  /**
-    * Save to a file.
-    *
-    * @param f
-    * @return
-    */
-  override def saveTo(f: File): File = {
-    val fout = new FileOutputStream(f).getChannel
-    try {
-      // LBitArray need to record numBits
-      val b = new Array[Byte](8)
-      val bb = ByteBuffer.wrap(b).putLong(numBits)
-      bb.flip()
-      fout.write(bb)
-      fout.write(this.toDirectByteBuffer)
-      f
-    }
-    finally
-      fout.close
-  }
+  // LBitArray need to record numBits
+  override private[larray] def fileHeader: Array[Byte] = ByteBuffer.allocate(8).putLong(numBits).array()
 
 }
 
@@ -363,14 +344,26 @@ class LBitArrayBuilder extends LBuilder[Boolean, LBitArray] with LogSupport {
   private var capacity: Long       = 0L
   private var numBits : Long       = 0L
 
+  /**
+    * Resize the buffer to hold the given number of bits. The buffer memory is reallocated by the allocator
+    * without copying the contents whenever possible, and the extended words are cleared.
+    */
   protected def mkArray(size: Long): LLongArray = {
-    val newArray = new LLongArray(minArraySize(size))
-    newArray.clear()
-    if (capacity > 0L) {
-      LArray.copy(elems, newArray)
-      elems.free
+    val newLen = minArraySize(size)
+    if (elems == null) {
+      val newArray = new LLongArray(newLen)
+      newArray.clear()
+      newArray
+    }
+    else {
+      val alloc = elems.alloc
+      val oldLen = elems.size
+      val newArray = new LLongArray(newLen, alloc.reallocate(elems.m, newLen << 3))(alloc)
+      if (newLen > oldLen) {
+        LBufferConfig.access.setMemory(newArray.address + (oldLen << 3), (newLen - oldLen) << 3, 0)
+      }
+      newArray
     }
-    newArray
   }
 
   def sizeHint(size: Long) {
@@ -397,8 +390,9 @@ class LBitArrayBuilder extends LBuilder[Boolean, LBitArray] with LogSupport {
   }
 
   def clear() {
-    if (numBits > 0) {
+    if (elems != null) {
       elems.free
+      elems = null
     }
     capacity = 0L
     numBits = 0L
@@ -423,14 +417,16 @@ class LBitArrayBuilder extends LBuilder[Boolean, LBitArray] with LogSupport {
     this
   }
 
+  /**
+    * Hand over the buffer holding the added bits to the result without copying them. This builder becomes empty.
+    */
   def result(): LBitArray = {
-    val s = minArraySize(numBits)
-    if (capacity != 0L && capacity == s) {
-      new LBitArray(elems, numBits)
-    }
-    else {
-      new LBitArray(mkArray(numBits), numBits)
-    }
+    val n = numBits
+    val arr = if (elems != null && elems.size == minArraySize(n)) elems else mkArray(n)
+    elems = null
+    capacity = 0L
+    numBits = 0L
+    new LBitArray(arr, n)
   }
 
   def result(numBits: Long): LBitArray = {
@@ -438,7 +434,7 @@ class LBitArrayBuilder extends LBuilder[Boolean, LBitArray] with LogSupport {
     result()
   }
 
-  override def toString = result.toString
+  override def toString = if (elems == null) "" else new LBitArray(elems, numBits).toString
 
   def append(seq: LSeq[Boolean]) = {
     val N = seq.length
@@ -0,0 +1,501 @@
+//--------------------------------------
+//
+// LChunkedArray.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray
+
+import java.io.{File, FileOutputStream, IOException}
+import java.nio.{ByteBuffer, ByteOrder}
+import java.nio.channels.ReadableByteChannel
+import java.util.concurrent.CompletableFuture
+
+import sun.nio.ch.DirectBuffer
+import xerial.larray.buffer.{ByteOrderView, LBufferConfig, ParallelFileIO, ProgressListener}
+
+import scala.collection.mutable.ArrayBuffer
+import scala.reflect.ClassTag
+
+/**
+  * A read-only sequence of primitive values stored in a list of fixed-size off-heap segments, which is built by
+  * [[xerial.larray.LChunkedArrayBuilder]]. Unlike LArray, the values are not placed in a contiguous memory, so building this sequence from
+  * a stream of unknown length neither copies the values nor needs a large contiguous memory.
+  *
+  * This sequence has no single memory address. Element accesses, iteration, `toDirectByteBuffer`, `copyTo`, `get`, the checksums and `saveTo` work on
+  * the segments directly, while the other operations depending on `address` throw UnsupportedOperationException. Use [[toLArray]]
+  * to consolidate the values into a contiguous LArray.
+  *
+  * @param segments   the segments holding the values. All segments except the last one have `chunkSize` bytes
+  * @param chunkSize  byte size of the segments. This must be a power of two
+  * @param size       the number of elements
+  * @tparam A element type
+  */
+abstract class LChunkedArray[A](private[larray] val segments: Array[LByteArray], val chunkSize: Long, val size: Long) extends SegmentedLSeq[A] {
+
+  import LBufferConfig.access
+
+  private val shift = java.lang.Long.numberOfTrailingZeros(chunkSize)
+  private val mask  = chunkSize - 1L
+
+  /**
+    * The number of segments
+    */
+  def numSegments: Int = segments.length
+
+  /**
+    * Get the segment of the given index. Modifying the segment changes the contents of this sequence.
+    */
+  def segment(i: Int): LByteArray = segments(i)
+
+  def address: Long = throw new UnsupportedOperationException("LChunkedArray has no contiguous memory address. Use toLArray instead")
+
+  /**
+    * Read the bytes of a value crossing the segment boundary in the memory order
+    */
+  private def readCrossing(offset: Long, len: Int): Long = {
+    var v = 0L
+    var i = 0
+    while (i < len) {
+      val b = getByte(offset + i) & 0xFFL
+      v = if (ByteOrderView.NATIVE_BIG_ENDIAN) (v << 8) | b else v | (b << (i * 8))
+      i += 1
+    }
+    v
+  }
+
+  @inline private def addressOf(offset: Long, len: Int): Long = {
+    val pos = offset & mask
+    if (pos + len <= chunkSize) segments((offset >>> shift).toInt).address + pos else 0L
+  }
+
+  @inline override def getByte(offset: Long): Byte = access.getByte(segments((offset >>> shift).toInt).address + (offset & mask))
+  @inline override def getChar(offset: Long): Char = { val a = addressOf(offset, 2); if (a != 0L) access.getChar(a) else readCrossing(offset, 2).toChar }
+  @inline override def getShort(offset: Long): Short = { val a = addressOf(offset, 2); if (a != 0L) access.getShort(a) else readCrossing(offset, 2).toShort }
+  @inline override def getInt(offset: Long): Int = { val a = addressOf(offset, 4); if (a != 0L) access.getInt(a) else readCrossing(offset, 4).toInt }
+  @inline override def getFloat(offset: Long): Float = java.lang.Float.intBitsToFloat(getInt(offset))
+  @inline override def getLong(offset: Long): Long = { val a = addressOf(offset, 8); if (a != 0L) access.getLong(a) else readCrossing(offset, 8) }
+  @inline override def getDouble(offset: Long): Double = java.lang.Double.longBitsToDouble(getLong(offset))
+
+  // Aligned values never cross the segment boundaries
+  private def alignedAddress(offset: Long, len: Int): Long = {
+    if ((offset & (len - 1)) != 0L)
+      throw new IllegalArgumentException(f"offset $offset%,d is not aligned to $len bytes")
+    addressOf(offset, len)
+  }
+
+  override def getIntVolatile(offset: Long): Int = access.getIntVolatile(alignedAddress(offset, 4))
+  override def getLongVolatile(offset: Long): Long = access.getLongVolatile(alignedAddress(offset, 8))
+  override def getIntAcquire(offset: Long): Int = access.getIntAcquire(alignedAddress(offset, 4))
+  override def getLongAcquire(offset: Long): Long = access.getLongAcquire(alignedAddress(offset, 8))
+
+  /**
+    * Create DirectByteBuffers, one for each segment, that project the contents of this sequence
+    * @return sequence of `java.nio.ByteBuffer`
+    */
+  override def toDirectByteBuffer: Array[ByteBuffer] = {
+    for (s <- segments) yield {
+      xerial.larray.buffer.UnsafeUtil.newDirectByteBuffer(s.address, s.byteLength.toInt, s).order(ByteOrder.nativeOrder())
+    }
+  }
+
+  protected def foreachRange(offset: Long, length: Long)(f: (Long, Long, Long) => Unit) {
+    checkByteRange(offset, length)
+    var done = 0L
+    while (done < length) {
+      val o = offset + done
+      val s = segments((o >>> shift).toInt)
+      val pos = o & mask
+      val len = math.min(s.byteLength - pos, length - done)
+      f(s.address + pos, done, len)
+      done += len
+    }
+  }
+
+  def copyTo(dst: LByteArray, dstOffset: Long) {
+    copyTo(0L, dst, dstOffset, byteLength)
+  }
+
+  def copyTo[B](srcOffset: Long, dst: RawByteArray[B], dstOffset: Long, blen: Long) {
+    checkByteRange(srcOffset, blen)
+    var done = 0L
+    while (done < blen) {
+      val offset = srcOffset + done
+      val s = segments((offset >>> shift).toInt)
+      val pos = offset & mask
+      val len = math.min(s.byteLength - pos, blen - done)
+      s.copyTo(pos, dst, dstOffset + done, len)
+      done += len
+    }
+  }
+
+  /**
+    * Consolidate the values into a contiguous LArray
+    */
+  def toLArray: LArray[A] = {
+    val b = newBuilder
+    b.sizeHint(size)
+    b.append(this)
+    b.result()
+  }
+
+  /**
+    * Release the memory of the segments
+    */
+  def free {
+    segments.foreach(_.free)
+  }
+
+  /**
+    * Save to a file by writing the segments in order. Each segment is split into chunks, which are written concurrently.
+    */
+  override def saveTo(f: File, parallelism: Int, sync: Boolean, listener: ProgressListener): File = {
+    val fout = new FileOutputStream(f).getChannel
+    try {
+      val header = fileHeader
+      fout.write(ByteBuffer.wrap(header), 0L)
+      var pos = 0L
+      for (s <- segments) {
+        ParallelFileIO.write(s.address, s.byteLength, s, fout, header.length + pos, parallelism, false, progressOf(pos, listener))
+        pos += s.byteLength
+      }
+      if (sync)
+        fout.force(true)
+      f
+    }
+    finally
+      fout.close
+  }
+
+  /**
+    * Save to a file in background threads. The segments are written in order, and the sequence must not be released until the returned future completes.
+    */
+  override def saveToAsync(f: File, parallelism: Int, sync: Boolean, listener: ProgressListener): CompletableFuture[File] = {
+    val written = try {
+      val fout = new FileOutputStream(f).getChannel
+      try {
+        val header = fileHeader
+        fout.write(ByteBuffer.wrap(header), 0L)
+        var future: CompletableFuture[Void] = CompletableFuture.completedFuture[Void](null)
+        var pos = 0L
+        for ((s, i) <- segments.zipWithIndex) {
+          val filePos = header.length + pos
+          val segmentListener = progressOf(pos, listener)
+          val lastSync = sync && i == segments.length - 1
+          future = future.thenCompose(new java.util.function.Function[Void, CompletableFuture[Void]] {
+            def apply(v: Void) = ParallelFileIO.writeAsync(s.address, s.byteLength, s, fout, filePos, parallelism, lastSync, segmentListener)
+          })
+          pos += s.byteLength
+        }
+        ParallelFileIO.closeWhenDone(future, fout)
+      }
+      catch {
+        case e: Throwable =>
+          fout.close
+          throw e
+      }
+    }
+    catch {
+      case e: IOException => ParallelFileIO.failed[Void](e)
+    }
+    written.thenApply[File](new java.util.function.Function[Void, File] {
+      def apply(v: Void) = f
+    })
+  }
+
+  override def toString = s"${getClass.getSimpleName}(size:$size, segments:$numSegments)"
+}
+
+object LChunkedArray {
+
+  /**
+    * The default byte size of the segments
+    */
+  val DefaultChunkSize: Long = 16L * 1024 * 1024
+
+  /**
+    * Create a new builder of chunked arrays
+    * @param chunkSize byte size of the segments. This must be a power of two between 8 bytes and 1GB
+    */
+  def newBuilder[A: ClassTag](chunkSize: Long = DefaultChunkSize): LChunkedArrayBuilder[A, LChunkedArray[A]] = {
+    val builder = implicitly[ClassTag[A]].runtimeClass match {
+      case java.lang.Byte.TYPE => new LByteChunkedArrayBuilder(chunkSize)
+      case java.lang.Short.TYPE => new LShortChunkedArrayBuilder(chunkSize)
+      case java.lang.Character.TYPE => new LCharChunkedArrayBuilder(chunkSize)
+      case java.lang.Integer.TYPE => new LIntChunkedArrayBuilder(chunkSize)
+      case java.lang.Float.TYPE => new LFloatChunkedArrayBuilder(chunkSize)
+      case java.lang.Long.TYPE => new LLongChunkedArrayBuilder(chunkSize)
+      case java.lang.Double.TYPE => new LDoubleChunkedArrayBuilder(chunkSize)
+      case other => throw new IllegalArgumentException(s"LChunkedArray does not support ${other}")
+    }
+    builder.asInstanceOf[LChunkedArrayBuilder[A, LChunkedArray[A]]]
+  }
+
+  class LByteChunkedArray(segments: Array[LByteArray], chunkSize: Long, size: Long) extends LChunkedArray[Byte](segments, chunkSize, size) {
+    protected[this] def newBuilder: LBuilder[Byte, LArray[Byte]] = new LByteArrayBuilder
+    private[larray] def elementByteSize: Int = 1
+    def apply(i: Long): Byte = getByte(i)
+  }
+
+  class LCharChunkedArray(segments: Array[LByteArray], chunkSize: Long, size: Long) extends LChunkedArray[Char](segments, chunkSize, size) {
+    protected[this] def newBuilder: LBuilder[Char, LArray[Char]] = new LCharArrayBuilder
+    private[larray] def elementByteSize: Int = 2
+    def apply(i: Long): Char = getChar(i << 1)
+  }
+
+  class LShortChunkedArray(segments: Array[LByteArray], chunkSize: Long, size: Long) extends LChunkedArray[Short](segments, chunkSize, size) {
+    protected[this] def newBuilder: LBuilder[Short, LArray[Short]] = new LShortArrayBuilder
+    private[larray] def elementByteSize: Int = 2
+    def apply(i: Long): Short = getShort(i << 1)
+  }
+
+  class LIntChunkedArray(segments: Array[LByteArray], chunkSize: Long, size: Long) extends LChunkedArray[Int](segments, chunkSize, size) {
+    protected[this] def newBuilder: LBuilder[Int, LArray[Int]] = new LIntArrayBuilder
+    private[larray] def elementByteSize: Int = 4
+    def apply(i: Long): Int = getInt(i << 2)
+  }
+
+  class LFloatChunkedArray(segments: Array[LByteArray], chunkSize: Long, size: Long) extends LChunkedArray[Float](segments, chunkSize, size) {
+    protected[this] def newBuilder: LBuilder[Float, LArray[Float]] = new LFloatArrayBuilder
+    private[larray] def elementByteSize: Int = 4
+    def apply(i: Long): Float = getFloat(i << 2)
+  }
+
+  class LLongChunkedArray(segments: Array[LByteArray], chunkSize: Long, size: Long) extends LChunkedArray[Long](segments, chunkSize, size) {
+    protected[this] def newBuilder: LBuilder[Long, LArray[Long]] = new LLongArrayBuilder
+    private[larray] def elementByteSize: Int = 8
+    def apply(i: Long): Long = getLong(i << 3)
+  }
+
+  class LDoubleChunkedArray(segments: Array[LByteArray], chunkSize: Long, size: Long) extends LChunkedArray[Double](segments, chunkSize, size) {
+    protected[this] def newBuilder: LBuilder[Double, LArray[Double]] = new LDoubleArrayBuilder
+    private[larray] def elementByteSize: Int = 8
+    def apply(i: Long): Double = getDouble(i << 3)
+  }
+}
+
+/**
+  * A builder that appends values to fixed-size off-heap segments. When a segment becomes full, a new segment is allocated,
+  * so the added values are never copied. The unused space of the last segment is released by `result()`.
+  *
+  * @param chunkSize byte size of the segments. This must be a power of two between 8 bytes and 1GB
+  */
+abstract class LChunkedArrayBuilder[A, Repr <: LChunkedArray[A]](val chunkSize: Long) extends LBuilder[A, Repr] {
+
+  require(chunkSize >= 8L && chunkSize <= (1L << 30) && java.lang.Long.bitCount(chunkSize) == 1, s"chunkSize must be a power of two between 8 and 2^30: ${chunkSize}")
+
+  protected val segments = new ArrayBuffer[LByteArray]
+  protected var current: LByteArray = _
+  /**
+    * Byte offset in the current segment
+    */
+  protected var pos: Long = chunkSize
+  /**
+    * Total byte size of the added values
+    */
+  protected var byteSize: Long = 0L
+
+  protected def numElems: Long = byteSize / elementSize
+
+  protected def newSegment() {
+    current = new LByteArray(chunkSize)
+    segments += current
+    pos = 0L
+  }
+
+  /**
+    * Get the memory address to write a value of the given byte size, or 0 if the value crosses the segment boundary. Since the chunk size
+    * is a multiple of the element size, values cross the boundaries only when the bytes appended before leave the position unaligned.
+    */
+  @inline protected def reserve(len: Int): Long = {
+    if (pos == chunkSize)
+      newSegment()
+    if (pos + len > chunkSize)
+      0L
+    else {
+      val a = current.address + pos
+      pos += len
+      byteSize += len
+      a
+    }
+  }
+
+  /**
+    * Write a value crossing the segment boundary byte by byte in the memory order, so that the segments stay densely filled
+    */
+  protected def appendCrossing(len: Int, v: Long): this.type = {
+    var i = 0
+    while (i < len) {
+      if (pos == chunkSize)
+        newSegment()
+      val shiftBits = if (ByteOrderView.NATIVE_BIG_ENDIAN) (len - 1 - i) * 8 else i * 8
+      LBufferConfig.access.putByte(current.address + pos, (v >>> shiftBits).toByte)
+      pos += 1
+      byteSize += 1
+      i += 1
+    }
+    this
+  }
+
+  /**
+    * Append bytes, which may be split into multiple segments
+    */
+  def append(b: Array[Byte], offset: Int, len: Int): this.type = {
+    var done = 0
+    while (done < len) {
+      if (pos == chunkSize)
+        newSegment()
+      val n = math.min(chunkSize - pos, len - done).toInt
+      current.readFromArray(b, offset + done, pos, n)
+      pos += n
+      byteSize += n
+      done += n
+    }
+    this
+  }
+
+  def append(seq: LSeq[A]): this.type = {
+    val blen = seq.byteLength
+    var done = 0L
+    while (done < blen) {
+      if (pos == chunkSize)
+        newSegment()
+      val n = math.min(chunkSize - pos, blen - done)
+      seq.copyTo(done, current, pos, n)
+      pos += n
+      byteSize += n
+      done += n
+    }
+    this
+  }
+
+  def write(src: ByteBuffer): Int = {
+    val len = math.max(src.limit - src.position, 0)
+    var done = 0
+    while (done < len) {
+      if (pos == chunkSize)
+        newSegment()
+      val n = math.min(chunkSize - pos, len - done).toInt
+      src match {
+        case d: DirectBuffer =>
+          LBufferConfig.access.copyMemory(d.address() + src.position, current.address + pos, n)
+          src.position(src.position + n)
+        case _ =>
+          val dup = src.duplicate()
+          dup.limit(src.position + n)
+          UnsafeUtil.newDirectByteBuffer(current.address + pos, n).put(dup)
+          src.position(src.position + n)
+      }
+      pos += n
+      byteSize += n
+      done += n
+    }
+    len
+  }
+
+  /**
+    * Read all bytes from the channel directly into the segments
+    * @param in input channel
+    * @return the number of bytes read
+    */
+  def readFrom(in: ReadableByteChannel): Long = {
+    var total = 0L
+    var eof = false
+    while (!eof) {
+      if (pos == chunkSize)
+        newSegment()
+      val buf = UnsafeUtil.newDirectByteBuffer(current.address + pos, (chunkSize - pos).toInt)
+      val n = in.read(buf)
+      if (n < 0)
+        eof = true
+      else {
+        pos += n
+        byteSize += n
+        total += n
+      }
+    }
+    total
+  }
+
+  /**
+    * Segments are allocated on demand, so this does nothing
+    */
+  def sizeHint(size: Long) {}
+
+  def clear() {
+    segments.foreach(_.free)
+    segments.clear()
+    current = null
+    pos = chunkSize
+    byteSize = 0L
+  }
+
+  /**
+    * Hand over the segments to the result and make this builder empty. The last segment is shrunk to the used size.
+    */
+  protected def takeSegments(): Array[LByteArray] = {
+    if (current != null) {
+      if (pos == 0L) {
+        current.free
+        segments.remove(segments.length - 1)
+      }
+      else if (pos < chunkSize) {
+        val alloc = current.alloc
+        segments(segments.length - 1) = new LByteArray(pos, alloc.reallocate(current.m, pos))(alloc)
+      }
+    }
+    val s = segments.toArray
+    segments.clear()
+    current = null
+    pos = chunkSize
+    byteSize = 0L
+    s
+  }
+
+  def isOpen: Boolean = true
+
+  def close() {clear()}
+}
+
+class LByteChunkedArrayBuilder(chunkSize: Long) extends LChunkedArrayBuilder[Byte, LChunkedArray.LByteChunkedArray](chunkSize) {
+  def elementSize = 1
+  def +=(elem: Byte): this.type = {LBufferConfig.access.putByte(reserve(1), elem); this}
+  def result(): LChunkedArray.LByteChunkedArray = {val n = numElems; new LChunkedArray.LByteChunkedArray(takeSegments(), chunkSize, n)}
+}
+
+class LCharChunkedArrayBuilder(chunkSize: Long) extends LChunkedArrayBuilder[Char, LChunkedArray.LCharChunkedArray](chunkSize) {
+  def elementSize = 2
+  def +=(elem: Char): this.type = {val a = reserve(2); if (a != 0L) LBufferConfig.access.putChar(a, elem) else appendCrossing(2, elem); this}
+  def result(): LChunkedArray.LCharChunkedArray = {val n = numElems; new LChunkedArray.LCharChunkedArray(takeSegments(), chunkSize, n)}
+}
+
+class LShortChunkedArrayBuilder(chunkSize: Long) extends LChunkedArrayBuilder[Short, LChunkedArray.LShortChunkedArray](chunkSize) {
+  def elementSize = 2
+  def +=(elem: Short): this.type = {val a = reserve(2); if (a != 0L) LBufferConfig.access.putShort(a, elem) else appendCrossing(2, elem); this}
+  def result(): LChunkedArray.LShortChunkedArray = {val n = numElems; new LChunkedArray.LShortChunkedArray(takeSegments(), chunkSize, n)}
+}
+
+class LIntChunkedArrayBuilder(chunkSize: Long) extends LChunkedArrayBuilder[Int, LChunkedArray.LIntChunkedArray](chunkSize) {
+  def elementSize = 4
+  def +=(elem: Int): this.type = {val a = reserve(4); if (a != 0L) LBufferConfig.access.putInt(a, elem) else appendCrossing(4, elem); this}
+  def result(): LChunkedArray.LIntChunkedArray = {val n = numElems; new LChunkedArray.LIntChunkedArray(takeSegments(), chunkSize, n)}
+}
+
+class LFloatChunkedArrayBuilder(chunkSize: Long) extends LChunkedArrayBuilder[Float, LChunkedArray.LFloatChunkedArray](chunkSize) {
+  def elementSize = 4
+  def +=(elem: Float): this.type = {val a = reserve(4); if (a != 0L) LBufferConfig.access.putFloat(a, elem) else appendCrossing(4, java.lang.Float.floatToRawIntBits(elem)); this}
+  def result(): LChunkedArray.LFloatChunkedArray = {val n = numElems; new LChunkedArray.LFloatChunkedArray(takeSegments(), chunkSize, n)}
+}
+
+class LLongChunkedArrayBuilder(chunkSize: Long) extends LChunkedArrayBuilder[Long, LChunkedArray.LLongChunkedArray](chunkSize) {
+  def elementSize = 8
+  def +=(elem: Long): this.type = {val a = reserve(8); if (a != 0L) LBufferConfig.access.putLong(a, elem) else appendCrossing(8, elem); this}
+  def result(): LChunkedArray.LLongChunkedArray = {val n = numElems; new LChunkedArray.LLongChunkedArray(takeSegments(), chunkSize, n)}
+}
+
+class LDoubleChunkedArrayBuilder(chunkSize: Long) extends LChunkedArrayBuilder[Double, LChunkedArray.LDoubleChunkedArray](chunkSize) {
+  def elementSize = 8
+  def +=(elem: Double): this.type = {val a = reserve(8); if (a != 0L) LBufferConfig.access.putDouble(a, elem) else appendCrossing(8, java.lang.Double.doubleToRawLongBits(elem)); this}
+  def result(): LChunkedArray.LDoubleChunkedArray = {val n = numElems; new LChunkedArray.LDoubleChunkedArray(takeSegments(), chunkSize, n)}
+}
@@ -24,29 +24,31 @@ package xerial.larray
 
 import java.io.File
 
-import xerial.larray.buffer.{Memory, MemoryAllocator}
-import xerial.larray.mmap.{MMapBuffer, MMapMode}
+import xerial.larray.buffer.MemoryAllocator
+import xerial.larray.mmap.{MMapAdvice, MMapBuffer, MMapFlusher, MMapMode, MMapOption}
 
 /**
   * Memory-mapped LByteArray
   *
+  * @param options options applied when opening the file (e.g., [[MMapOption.POPULATE]] to prefault the pages)
   * @author Taro L. Saito
   */
-class MappedLByteArray(f: File, offset: Long = 0, val size: Long = -1, mode: MMapMode = MMapMode.READ_WRITE)(implicit alloc: MemoryAllocator) extends RawByteArray[Byte] {
+class MappedLByteArray(f: File, offset: Long = 0, val size: Long = -1, mode: MMapMode = MMapMode.READ_WRITE, options: Seq[MMapOption] = Seq.empty)(implicit alloc: MemoryAllocator) extends RawByteArray[Byte] {
 
   import java.{lang => jl}
 
-  import UnsafeUtil.unsafe
+  import xerial.larray.buffer.LBufferConfig.access
 
-  private val mmap      = new MMapBuffer(f, offset, size, mode);
-  private val m: Memory = mmap.m
+  def this(f: File, offset: Long, size: Long, mode: MMapMode)(implicit alloc: MemoryAllocator) = this(f, offset, size, mode, Seq.empty)(alloc)
+
+  private val mmap      = new MMapBuffer(f, offset, size, mode, options: _*);
 
   protected[this] def newBuilder = new LByteArrayBuilder
 
   val address = mmap.address()
 
   def free {
-    m.release();
+    mmap.release()
   }
 
   /**
@@ -56,6 +58,102 @@ class MappedLByteArray(f: File, offset: Long = 0, val size: Long = -1, mode: MMa
     mmap.flush()
   }
 
+  /**
+    * Forces the changes made to the range [offset, offset+length) to be written to the file
+    */
+  def flush(offset: Long, length: Long) {
+    mmap.flush(offset, length)
+  }
+
+  /**
+    * Schedules the changes made to this array to be written to the file without waiting for the completion
+    */
+  def flushAsync {
+    mmap.flushAsync()
+  }
+
+  /**
+    * Schedules the changes made to the range [offset, offset+length) to be written to the file without waiting for the completion
+    */
+  def flushAsync(offset: Long, length: Long) {
+    mmap.flushAsync(offset, length)
+  }
+
+  /**
+    * Start a background thread that syncs the dirty ranges recorded by [[markDirty]] when the oldest dirty range becomes
+    * older than the interval or when the total size of the dirty ranges exceeds the byte threshold
+    *
+    * @param intervalMillis the maximum time in milliseconds to keep the written data unsynced
+    * @param byteThreshold the total size of dirty ranges to trigger a sync
+    */
+  def startFlusher(intervalMillis: Long, byteThreshold: Long): MMapFlusher = mmap.startFlusher(intervalMillis, byteThreshold)
+
+  /**
+    * Record the range [offset, offset+length) as dirty, so that the range will be synced by the flusher
+    */
+  def markDirty(offset: Long, length: Long) {
+    mmap.markDirty(offset, length)
+  }
+
+  /**
+    * Give an access pattern hint of the whole mapped range to the OS
+    *
+    * @param advice access pattern hint
+    * @return true if the hint is accepted by the OS
+    */
+  def advise(advice: MMapAdvice): Boolean = mmap.advise(advice)
+
+  /**
+    * Give an access pattern hint of the range [offset, offset+length) to the OS
+    *
+    * @param advice access pattern hint
+    * @param offset byte offset from the beginning of this array
+    * @param length byte length of the range
+    * @return true if the hint is accepted by the OS
+    */
+  def advise(advice: MMapAdvice, offset: Long, length: Long): Boolean = mmap.advise(advice, offset, length)
+
+  /**
+    * Lock the pages of this array into the physical memory
+    */
+  def lock {
+    mmap.lock()
+  }
+
+  /**
+    * Lock the pages in the range [offset, offset+length) into the physical memory
+    */
+  def lock(offset: Long, length: Long) {
+    mmap.lock(offset, length)
+  }
+
+  /**
+    * Unlock the pages of this array
+    */
+  def unlock {
+    mmap.unlock()
+  }
+
+  /**
+    * Unlock the pages in the range [offset, offset+length)
+    */
+  def unlock(offset: Long, length: Long) {
+    mmap.unlock(offset, length)
+  }
+
+  /**
+    * Read the pages of this array in advance by touching them from multiple threads
+    *
+    * @param parallelism the number of threads to touch the pages
+    * @return the time spent and the resident bytes after the warm-up
+    */
+  def warmUp(parallelism: Int): MMapBuffer.WarmUpStats = mmap.warmUp(parallelism)
+
+  /**
+    * Byte size of the pages of this array resident in the physical memory, or -1 if not supported in this platform
+    */
+  def residentBytes: Long = mmap.residentBytes()
+
   /**
     * Close the memory mapped file. To ensure the written data is saved in the file, call flush before closing
     */
@@ -70,7 +168,7 @@ class MappedLByteArray(f: File, offset: Long = 0, val size: Long = -1, mode: MMa
     * @param v value to set
     * @return the value
     */
-  def update(i: Long, v: Byte) = {unsafe.putByte(address + i, v); v}
+  def update(i: Long, v: Byte) = {access.putByte(address + i, v); v}
 
   def view(from: Long, to: Long) = new LArrayView.LByteArrayView(this, from, to - from)
 
@@ -80,7 +178,7 @@ class MappedLByteArray(f: File, offset: Long = 0, val size: Long = -1, mode: MMa
     * @param i index
     * @return the element value
     */
-  def apply(i: Long) = unsafe.getByte(address + i)
+  def apply(i: Long) = access.getByte(address + i)
 
   /**
     * Byte size of an element. For example, if A is Int, its elementByteSize is 4
@@ -0,0 +1,110 @@
+//--------------------------------------
+//
+// SegmentedLSeq.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray
+
+import java.nio.ByteOrder
+
+import xerial.larray.buffer.{LBufferConfig, MemoryChecksum, ProgressListener}
+
+/**
+  * A sequence whose bytes are stored in multiple memory ranges instead of a contiguous memory. The checksums and bulk reads
+  * of this trait process the ranges in order, and return the same results with LArrays of the same contents.
+  *
+  * @author Taro L. Saito
+  */
+private[larray] trait SegmentedLSeq[A] extends LSeq[A] {
+
+  import LBufferConfig.access
+
+  /**
+    * Apply the function to each memory range of the byte range [offset, offset+length) in order
+    * @param f a function receiving the address of the memory range, the byte offset of the memory range from the beginning of the byte range, and the byte length of the memory range
+    */
+  protected def foreachRange(offset: Long, length: Long)(f: (Long, Long, Long) => Unit): Unit
+
+  /**
+    * Report the progress of writing a memory range as the progress of the whole sequence
+    * @param rangeOffset the byte offset of the memory range from the beginning of the written bytes
+    * @param total the byte length of the written bytes
+    */
+  protected def progressOf(rangeOffset: Long, listener: ProgressListener, total: Long = byteLength): ProgressListener = {
+    if (listener == null)
+      null
+    else {
+      new ProgressListener {
+        def progress(transferredBytes: Long, totalBytes: Long) {
+          listener.progress(rangeOffset + transferredBytes, total)
+        }
+      }
+    }
+  }
+
+  override def crc32c(offset: Long, length: Long, parallelism: Int): Long = {
+    var crc = 0L
+    foreachRange(offset, length) { (addr, done, len) =>
+      crc = MemoryChecksum.crc32cCombine(crc, MemoryChecksum.crc32c(addr, len, parallelism), len)
+    }
+    crc
+  }
+
+  override def xxHash64(offset: Long, length: Long, seed: Long): Long = {
+    val h = new MemoryChecksum.XXHash64(seed)
+    foreachRange(offset, length) { (addr, done, len) => h.update(addr, len) }
+    h.getValue
+  }
+
+  override def xxHash64Chunked(offset: Long, length: Long, seed: Long, parallelism: Int): Long = {
+    checkByteRange(offset, length)
+    MemoryChecksum.xxHash64Chunked(length, seed, parallelism, new MemoryChecksum.ChunkHasher {
+      def xxHash64(chunkOffset: Long, chunkLength: Long, seed: Long): Long = SegmentedLSeq.this.xxHash64(offset + chunkOffset, chunkLength, seed)
+    })
+  }
+
+  override def get[B](offset: Long, dest: Array[B], destIndex: Int, length: Int, order: ByteOrder) {
+    val elemSize = LArray.primitiveSizeOf(dest.getClass.getComponentType)
+    if (elemSize == 0)
+      throw new IllegalArgumentException(s"unsupported array type: ${dest.getClass.getComponentType}")
+    val swap = order != ByteOrder.nativeOrder()
+    var index = destIndex
+    // Holds the bytes of an element crossing the range boundary
+    var crossing: LByteArray = null
+    var crossingBytes = 0
+    try {
+      foreachRange(offset, length.toLong * elemSize) { (addr, done, len) =>
+        var p = 0L
+        if (crossingBytes > 0) {
+          val n = math.min(elemSize - crossingBytes, len)
+          access.copyMemory(addr, crossing.address + crossingBytes, n)
+          crossingBytes += n.toInt
+          p = n
+          if (crossingBytes == elemSize) {
+            access.copyToArray(crossing.address, dest, index, 1, swap)
+            index += 1
+            crossingBytes = 0
+          }
+        }
+        val n = ((len - p) / elemSize).toInt
+        if (n > 0) {
+          access.copyToArray(addr + p, dest, index, n, swap)
+          index += n
+          p += n.toLong * elemSize
+        }
+        if (p < len) {
+          if (crossing == null)
+            crossing = new LByteArray(8)
+          access.copyMemory(addr + p, crossing.address, len - p)
+          crossingBytes = (len - p).toInt
+        }
+      }
+    }
+    finally {
+      if (crossing != null)
+        crossing.free
+    }
+  }
+}
@@ -70,17 +70,17 @@ private[larray] class UInt32ArrayView(base:UInt32Array, offset:Long, val size:Lo
 class UInt32Array(val size: Long, private[larray] val m:Memory)(implicit val alloc: MemoryAllocator) extends LArray[Long] with UnsafeArray[Long] { self =>
   def this(size:Long)(implicit alloc: MemoryAllocator) = this(size, alloc.allocate(size << 2))(alloc)
 
-  import UnsafeUtil.unsafe
+  import xerial.larray.buffer.LBufferConfig.access
 
   protected[this] def newBuilder: LBuilder[Long, UInt32Array] = UInt32Array.newBuilder
 
   def apply(i:Long) : Long = {
-    val v : Long = unsafe.getInt(m.address + (i << 2)) & 0xFFFFFFFFL
+    val v : Long = access.getInt(m.address + (i << 2)) & 0xFFFFFFFFL
     v
   }
 
   def update(i:Long, v:Long) : Long = {
-    unsafe.putInt(m.address + (i << 2), (v & 0xFFFFFFFFL).toInt)
+    access.putInt(m.address + (i << 2), (v & 0xFFFFFFFFL).toInt)
     v
   }
 
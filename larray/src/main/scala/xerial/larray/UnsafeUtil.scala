@@ -39,12 +39,8 @@ object UnsafeUtil extends LogSupport {
     f.get(null).asInstanceOf[Unsafe]
   }
 
-  private val dbbCC = Class.forName("java.nio.DirectByteBuffer").getDeclaredConstructor(classOf[Long], classOf[Int])
-
   def newDirectByteBuffer(addr: Long, size: Int): ByteBuffer = {
-    dbbCC.setAccessible(true)
-    val b = dbbCC.newInstance(new java.lang.Long(addr), new java.lang.Integer(size))
-    b.asInstanceOf[ByteBuffer]
+    xerial.larray.buffer.UnsafeUtil.newDirectByteBuffer(addr, size, null)
   }
 
   val byteArrayOffset   = unsafe.arrayBaseOffset(classOf[Array[Byte]]).toLong
@@ -0,0 +1,459 @@
+//--------------------------------------
+//
+// WindowedMappedLByteArray.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray
+
+import java.io.{File, FileOutputStream, IOException, RandomAccessFile, UncheckedIOException}
+import java.nio.{ByteBuffer, ByteOrder}
+import java.util.concurrent.CompletableFuture
+
+import xerial.larray.buffer.{ByteOrderView, LBufferConfig, ParallelFileIO, ProgressListener}
+import xerial.larray.impl.{LArrayNative, OSInfo}
+import xerial.larray.mmap.{MMapBuffer, MMapMode}
+
+/**
+  * A memory-mapped LByteArray that maps only the recently accessed windows of the file. Unlike [[MappedLByteArray]], which maps
+  * the whole range at once, this array maps fixed-size windows on demand and unmaps the least recently used window when the number
+  * of mapped windows exceeds the limit. This bounds the address space and the page tables used for files of several terabytes.
+  *
+  * Values crossing the window boundaries are read and written byte by byte, and the atomic operations require the offsets aligned to
+  * the value size. This array has no single memory address. The bulk operations (`copyTo`, `get`, the checksums and `saveTo`) process
+  * the windows in order, while `address` and `toDirectByteBuffer` throw UnsupportedOperationException since the buffers would outlive
+  * the unmapped windows.
+  *
+  * A window may be unmapped by any access to another window, so this array must not be shared between threads.
+  * Use an instance for each thread to read the same file concurrently.
+  *
+  * @param f file to map
+  * @param offset byte offset in the file
+  * @param size byte size of the array. The file is extended if it is smaller than offset + size
+  * @param mode open mode
+  * @param windowSize byte size of each window. This must be a power of two and a multiple of the page size
+  * @param maxWindows the maximum number of windows mapped at the same time
+  * @author Taro L. Saito
+  */
+class WindowedMappedLByteArray(f: File,
+                               offset: Long,
+                               val size: Long,
+                               mode: MMapMode = MMapMode.READ_WRITE,
+                               val windowSize: Long = WindowedMappedLByteArray.DefaultWindowSize,
+                               val maxWindows: Int = WindowedMappedLByteArray.DefaultMaxWindows) extends LArray[Byte] with SegmentedLSeq[Byte] {
+
+  import LBufferConfig.access
+
+  def this(f: File, mode: MMapMode) = this(f, 0L, f.length(), mode)
+
+  private val pageSize = UnsafeUtil.unsafe.pageSize()
+
+  require(offset >= 0 && size >= 0, f"invalid range: offset $offset%,d, size $size%,d")
+  require(java.lang.Long.bitCount(windowSize) == 1 && windowSize >= pageSize, f"windowSize must be a power of two and a multiple of the page size: $windowSize%,d")
+  require(maxWindows > 0, s"maxWindows must be positive: ${maxWindows}")
+
+  // Windows are aligned to the page boundary of the file, so the array begins at delta in the first window
+  private val delta   = offset & (pageSize - 1)
+  private val mapBase = offset - delta
+  private val shift   = java.lang.Long.numberOfTrailingZeros(windowSize)
+  private val mask    = windowSize - 1L
+
+  private val numWindows: Int = {
+    val n = (delta + size + windowSize - 1) >>> shift
+    if (n > Int.MaxValue)
+      throw new IllegalArgumentException(f"too many windows: $n%,d. Use a larger window size")
+    n.toInt
+  }
+
+  private val raf = new RandomAccessFile(f, mode.mode)
+  if (raf.length() < offset + size)
+    raf.setLength(offset + size)
+  private val fd        = MMapBuffer.fileDescriptor(raf, f)
+  private val winHandle = if (OSInfo.isWindows) LArrayNative.duplicateHandle(fd) else -1L
+
+  // The address of each mapped window, or 0 if not mapped
+  private val windowAddress = new Array[Long](numWindows)
+  // Mapped windows in the order of the last accesses
+  private val lru           = new java.util.LinkedHashMap[Integer, java.lang.Boolean](16, 0.75f, true)
+  private var lastWindow    = -1
+  private var lastAddress   = 0L
+  private var closed        = false
+
+  private var hits      = 0L
+  private var misses    = 0L
+  private var evictions = 0L
+
+  /**
+    * The number of accesses to the mapped windows
+    */
+  def windowHits: Long = hits
+
+  /**
+    * The number of accesses that mapped a new window
+    */
+  def windowMisses: Long = misses
+
+  /**
+    * The number of windows unmapped to map the other windows
+    */
+  def windowEvictions: Long = evictions
+
+  /**
+    * The number of windows currently mapped
+    */
+  def mappedWindows: Int = lru.size()
+
+  protected[this] def newBuilder = new LByteArrayBuilder
+
+  private[larray] def elementByteSize = 1
+
+  def address: Long = throw new UnsupportedOperationException("WindowedMappedLByteArray has no contiguous memory address")
+
+  override def toDirectByteBuffer: Array[ByteBuffer] =
+    throw new UnsupportedOperationException("WindowedMappedLByteArray cannot project the windows, which may be unmapped, to ByteBuffers")
+
+  private def windowLength(w: Int): Long = math.min(windowSize, delta + size - (w.toLong << shift))
+
+  /**
+    * Get the address of the window containing the position, mapping the window if necessary
+    * @param pos byte position from the beginning of the first window
+    */
+  @inline private def windowOf(pos: Long): Long = {
+    val w = (pos >>> shift).toInt
+    if (w == lastWindow) {
+      hits += 1
+      lastAddress
+    }
+    else {
+      var a = windowAddress(w)
+      if (a != 0L) {
+        hits += 1
+        lru.get(w)
+      }
+      else {
+        misses += 1
+        a = map(w)
+      }
+      lastWindow = w
+      lastAddress = a
+      a
+    }
+  }
+
+  private def map(w: Int): Long = {
+    if (closed)
+      throw new IllegalStateException("The array is already closed")
+    if (lru.size() >= maxWindows) {
+      val it = lru.keySet().iterator()
+      val eldest = it.next()
+      it.remove()
+      unmap(eldest)
+      evictions += 1
+    }
+    val len = windowLength(w)
+    val a = LArrayNative.mmap(fd, mode.code, mapBase + (w.toLong << shift), len)
+    if (a == 0L || a == -1L)
+      throw new UncheckedIOException(new IOException(f"Failed to map $len%,d bytes of ${f.getPath}"))
+    windowAddress(w) = a
+    lru.put(w, java.lang.Boolean.TRUE)
+    a
+  }
+
+  private def unmap(w: Int) {
+    LArrayNative.munmap(windowAddress(w), windowLength(w))
+    windowAddress(w) = 0L
+    if (lastWindow == w)
+      lastWindow = -1
+  }
+
+  @inline private def addressOf(offset: Long): Long = {
+    val pos = delta + offset
+    windowOf(pos) + (pos & mask)
+  }
+
+  /**
+    * Returns true if the value at the offset fits in a window
+    */
+  @inline private def inWindow(offset: Long, len: Int): Boolean = ((delta + offset) & mask) + len <= windowSize
+
+  /**
+    * Read the bytes of a value crossing the window boundary in the memory order
+    */
+  private def readCrossing(offset: Long, len: Int): Long = {
+    var v = 0L
+    var i = 0
+    while (i < len) {
+      val b = getByte(offset + i) & 0xFFL
+      v = if (ByteOrderView.NATIVE_BIG_ENDIAN) (v << 8) | b else v | (b << (i * 8))
+      i += 1
+    }
+    v
+  }
+
+  /**
+    * Write the bytes of a value crossing the window boundary in the memory order
+    */
+  private def writeCrossing(offset: Long, len: Int, v: Long) {
+    var i = 0
+    while (i < len) {
+      val shiftBits = if (ByteOrderView.NATIVE_BIG_ENDIAN) (len - 1 - i) * 8 else i * 8
+      putByte(offset + i, (v >>> shiftBits).toByte)
+      i += 1
+    }
+  }
+
+  def apply(i: Long): Byte = getByte(i)
+
+  def update(i: Long, v: Byte): Byte = putByte(i, v)
+
+  @inline override def getByte(offset: Long): Byte = access.getByte(addressOf(offset))
+  @inline override def getChar(offset: Long): Char = if (inWindow(offset, 2)) access.getChar(addressOf(offset)) else readCrossing(offset, 2).toChar
+  @inline override def getShort(offset: Long): Short = if (inWindow(offset, 2)) access.getShort(addressOf(offset)) else readCrossing(offset, 2).toShort
+  @inline override def getInt(offset: Long): Int = if (inWindow(offset, 4)) access.getInt(addressOf(offset)) else readCrossing(offset, 4).toInt
+  @inline override def getFloat(offset: Long): Float = java.lang.Float.intBitsToFloat(getInt(offset))
+  @inline override def getLong(offset: Long): Long = if (inWindow(offset, 8)) access.getLong(addressOf(offset)) else readCrossing(offset, 8)
+  @inline override def getDouble(offset: Long): Double = java.lang.Double.longBitsToDouble(getLong(offset))
+
+  @inline override def putByte(offset: Long, v: Byte) = { access.putByte(addressOf(offset), v); v }
+  @inline override def putChar(offset: Long, v: Char) = { if (inWindow(offset, 2)) access.putChar(addressOf(offset), v) else writeCrossing(offset, 2, v); v }
+  @inline override def putShort(offset: Long, v: Short) = { if (inWindow(offset, 2)) access.putShort(addressOf(offset), v) else writeCrossing(offset, 2, v); v }
+  @inline override def putInt(offset: Long, v: Int) = { if (inWindow(offset, 4)) access.putInt(addressOf(offset), v) else writeCrossing(offset, 4, v); v }
+  @inline override def putFloat(offset: Long, v: Float) = { putInt(offset, java.lang.Float.floatToRawIntBits(v)); v }
+  @inline override def putLong(offset: Long, v: Long) = { if (inWindow(offset, 8)) access.putLong(addressOf(offset), v) else writeCrossing(offset, 8, v); v }
+  @inline override def putDouble(offset: Long, v: Double) = { putLong(offset, java.lang.Double.doubleToRawLongBits(v)); v }
+
+  // Aligned values never cross the window boundaries
+  private def alignedAddress(offset: Long, len: Int): Long = {
+    if (((delta + offset) & (len - 1)) != 0L)
+      throw new IllegalArgumentException(f"offset $offset%,d is not aligned to $len bytes")
+    addressOf(offset)
+  }
+
+  override def getIntVolatile(offset: Long): Int = access.getIntVolatile(alignedAddress(offset, 4))
+  override def getLongVolatile(offset: Long): Long = access.getLongVolatile(alignedAddress(offset, 8))
+  override def getIntAcquire(offset: Long): Int = access.getIntAcquire(alignedAddress(offset, 4))
+  override def getLongAcquire(offset: Long): Long = access.getLongAcquire(alignedAddress(offset, 8))
+  override def compareAndSwapInt(offset: Long, expected: Int, v: Int): Boolean = access.compareAndSwapInt(alignedAddress(offset, 4), expected, v)
+  override def compareAndSwapLong(offset: Long, expected: Long, v: Long): Boolean = access.compareAndSwapLong(alignedAddress(offset, 8), expected, v)
+  override def getAndAddInt(offset: Long, delta: Int): Int = access.getAndAddInt(alignedAddress(offset, 4), delta)
+  override def getAndAddLong(offset: Long, delta: Long): Long = access.getAndAddLong(alignedAddress(offset, 8), delta)
+  override def getAndSetInt(offset: Long, v: Int): Int = access.getAndSetInt(alignedAddress(offset, 4), v)
+  override def getAndSetLong(offset: Long, v: Long): Long = access.getAndSetLong(alignedAddress(offset, 8), v)
+  override def putIntVolatile(offset: Long, v: Int) = { access.putIntVolatile(alignedAddress(offset, 4), v); v }
+  override def putLongVolatile(offset: Long, v: Long) = { access.putLongVolatile(alignedAddress(offset, 8), v); v }
+  override def putIntRelease(offset: Long, v: Int) = { access.putIntRelease(alignedAddress(offset, 4), v); v }
+  override def putLongRelease(offset: Long, v: Long) = { access.putLongRelease(alignedAddress(offset, 8), v); v }
+
+  /**
+    * Apply the function to each piece of the byte range [offset, offset+length) split by the window boundaries
+    * @param f a function receiving the address of the piece, the byte offset of the piece from the beginning of the range, and the byte length of the piece
+    */
+  private[larray] def foreachWindow(offset: Long, length: Long)(f: (Long, Long, Long) => Unit) {
+    checkByteRange(offset, length)
+    var done = 0L
+    while (done < length) {
+      val pos = delta + offset + done
+      val len = math.min(windowSize - (pos & mask), length - done)
+      f(windowOf(pos) + (pos & mask), done, len)
+      done += len
+    }
+  }
+
+  protected def foreachRange(offset: Long, length: Long)(f: (Long, Long, Long) => Unit) {
+    foreachWindow(offset, length)(f)
+  }
+
+  def clear() {
+    foreachWindow(0L, byteLength) { (addr, done, len) => access.setMemory(addr, len, 0.toByte) }
+  }
+
+  def copyTo(dst: LByteArray, dstOffset: Long) {
+    copyTo(0L, dst, dstOffset, byteLength)
+  }
+
+  def copyTo[B](srcOffset: Long, dst: RawByteArray[B], dstOffset: Long, blen: Long) {
+    foreachWindow(srcOffset, blen) { (addr, done, len) => access.copyMemory(addr, dst.address + dstOffset + done, len) }
+  }
+
+  /**
+    * Read the bytes of the source array into this array
+    * @param src source byte array
+    * @param srcOffset offset in the source array
+    * @param destOffset byte offset in this array
+    * @param length the byte length to read
+    */
+  def readFromArray(src: Array[Byte], srcOffset: Int, destOffset: Long, length: Int) {
+    foreachWindow(destOffset, length) { (addr, done, len) => access.copyFromArray(src, srcOffset + done.toInt, addr, len.toInt) }
+  }
+
+  /**
+    * Write the bytes of this array to the destination array
+    * @param srcOffset byte offset in this array
+    * @param dest destination byte array
+    * @param destOffset offset in the destination array
+    * @param length the byte length to write
+    */
+  def writeToArray(srcOffset: Long, dest: Array[Byte], destOffset: Int, length: Int) {
+    foreachWindow(srcOffset, length) { (addr, done, len) => access.copyToArray(addr, dest, destOffset + done.toInt, len.toInt) }
+  }
+
+  /**
+    * Compute the chunked hash in the caller thread, since the windows cannot be mapped concurrently. The result is the same
+    * for any parallelism
+    */
+  override def xxHash64Chunked(offset: Long, length: Long, seed: Long, parallelism: Int): Long = super.xxHash64Chunked(offset, length, seed, 1)
+
+  /**
+    * Save to a file by writing the windows in order. Each window is split into chunks, which are written concurrently.
+    */
+  override def saveTo(f: File, parallelism: Int, sync: Boolean, listener: ProgressListener): File = saveRange(0L, byteLength, f, parallelism, sync, listener)
+
+  /**
+    * Save to a file in background threads. The windows are mapped and written in order, so this array must not be accessed or released
+    * until the returned future completes.
+    */
+  override def saveToAsync(f: File, parallelism: Int, sync: Boolean, listener: ProgressListener): CompletableFuture[File] =
+    saveRangeAsync(0L, byteLength, f, parallelism, sync, listener)
+
+  private[larray] def saveRange(offset: Long, length: Long, f: File, parallelism: Int, sync: Boolean, listener: ProgressListener): File = {
+    checkByteRange(offset, length)
+    val fout = new FileOutputStream(f).getChannel
+    try {
+      foreachWindow(offset, length) { (addr, done, len) =>
+        ParallelFileIO.write(addr, len, this, fout, done, parallelism, false, progressOf(done, listener, length))
+      }
+      if (sync)
+        fout.force(true)
+      f
+    }
+    finally
+      fout.close
+  }
+
+  private[larray] def saveRangeAsync(offset: Long, length: Long, f: File, parallelism: Int, sync: Boolean, listener: ProgressListener): CompletableFuture[File] = {
+    val written = try {
+      checkByteRange(offset, length)
+      val fout = new FileOutputStream(f).getChannel
+      try {
+        var future: CompletableFuture[Void] =
+          if (length == 0) ParallelFileIO.writeAsync(0L, 0L, this, fout, 0L, parallelism, sync, listener)
+          else CompletableFuture.completedFuture[Void](null)
+        var done = 0L
+        while (done < length) {
+          val pos = delta + offset + done
+          val len = math.min(windowSize - (pos & mask), length - done)
+          val filePos = done
+          val lastSync = sync && done + len == length
+          val windowListener = progressOf(done, listener, length)
+          // Map the window after the previous window is written, since mapping a window may unmap the previous one
+          future = future.thenCompose(new java.util.function.Function[Void, CompletableFuture[Void]] {
+            def apply(v: Void) = ParallelFileIO.writeAsync(windowOf(pos) + (pos & mask), len, WindowedMappedLByteArray.this, fout, filePos, parallelism, lastSync, windowListener)
+          })
+          done += len
+        }
+        ParallelFileIO.closeWhenDone(future, fout)
+      }
+      catch {
+        case e: Throwable =>
+          fout.close
+          throw e
+      }
+    }
+    catch {
+      case e: IOException => ParallelFileIO.failed[Void](e)
+    }
+    written.thenApply[File](new java.util.function.Function[Void, File] {
+      def apply(v: Void) = f
+    })
+  }
+
+  def view(from: Long, to: Long) = new WindowedMappedLByteArray.WindowedView(this, from, to - from)
+
+  /**
+    * Forces the changes made to the mapped windows to be written to the file
+    */
+  def flush {
+    val it = lru.keySet().iterator()
+    while (it.hasNext) {
+      val w: Int = it.next()
+      LArrayNative.msync(winHandle, windowAddress(w), windowLength(w))
+    }
+  }
+
+  /**
+    * Unmap all windows and close the file. To ensure the written data is saved in the file, call flush before closing
+    */
+  def free {
+    if (!closed) {
+      closed = true
+      val it = lru.keySet().iterator()
+      while (it.hasNext)
+        unmap(it.next())
+      lru.clear()
+      raf.close()
+    }
+  }
+
+  override def toString = s"${getClass.getSimpleName}(size:$size, windowSize:$windowSize, mappedWindows:$mappedWindows)"
+}
+
+object WindowedMappedLByteArray {
+
+  /**
+    * The default byte size of the windows
+    */
+  val DefaultWindowSize: Long = 64L * 1024 * 1024
+
+  /**
+    * The default maximum number of mapped windows
+    */
+  val DefaultMaxWindows: Int = 16
+
+  /**
+    * A view of the windowed array, which reads the values and the byte ranges through the windows of the base array
+    */
+  class WindowedView(base: WindowedMappedLByteArray, viewOffset: Long, viewSize: Long) extends LArrayView.LByteArrayView(base, viewOffset, viewSize) {
+
+    override def toDirectByteBuffer: Array[ByteBuffer] = base.toDirectByteBuffer
+
+    @inline override def getByte(offset: Long): Byte = base.getByte(viewOffset + offset)
+    @inline override def getChar(offset: Long): Char = base.getChar(viewOffset + offset)
+    @inline override def getShort(offset: Long): Short = base.getShort(viewOffset + offset)
+    @inline override def getInt(offset: Long): Int = base.getInt(viewOffset + offset)
+    @inline override def getFloat(offset: Long): Float = base.getFloat(viewOffset + offset)
+    @inline override def getLong(offset: Long): Long = base.getLong(viewOffset + offset)
+    @inline override def getDouble(offset: Long): Double = base.getDouble(viewOffset + offset)
+
+    override def getIntVolatile(offset: Long): Int = base.getIntVolatile(viewOffset + offset)
+    override def getLongVolatile(offset: Long): Long = base.getLongVolatile(viewOffset + offset)
+    override def getIntAcquire(offset: Long): Int = base.getIntAcquire(viewOffset + offset)
+    override def getLongAcquire(offset: Long): Long = base.getLongAcquire(viewOffset + offset)
+
+    override def get[B](offset: Long, dest: Array[B], destIndex: Int, length: Int, order: ByteOrder) {
+      checkByteRange(offset, length.toLong * LArray.primitiveSizeOf(dest.getClass.getComponentType))
+      base.get(viewOffset + offset, dest, destIndex, length, order)
+    }
+
+    override def crc32c(offset: Long, length: Long, parallelism: Int): Long = {
+      checkByteRange(offset, length)
+      base.crc32c(viewOffset + offset, length, parallelism)
+    }
+
+    override def xxHash64(offset: Long, length: Long, seed: Long): Long = {
+      checkByteRange(offset, length)
+      base.xxHash64(viewOffset + offset, length, seed)
+    }
+
+    override def xxHash64Chunked(offset: Long, length: Long, seed: Long, parallelism: Int): Long = {
+      checkByteRange(offset, length)
+      base.xxHash64Chunked(viewOffset + offset, length, seed, parallelism)
+    }
+
+    override def saveTo(f: File, parallelism: Int, sync: Boolean, listener: ProgressListener): File =
+      base.saveRange(viewOffset, byteLength, f, parallelism, sync, listener)
+
+    override def saveToAsync(f: File, parallelism: Int, sync: Boolean, listener: ProgressListener): CompletableFuture[File] =
+      base.saveRangeAsync(viewOffset, byteLength, f, parallelism, sync, listener)
+  }
+}
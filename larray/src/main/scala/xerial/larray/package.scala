@@ -54,10 +54,16 @@ package object larray {
   implicit class ConvertArrayToLArray[A : ClassTag](arr:Array[A]) {
     def toLArray : LArray[A] = {
       val l = LArray.of[A](arr.length).asInstanceOf[RawByteArray[A]]
-      var i = 0
-      while(i < arr.length) {
-        l(i) = arr(i)
-        i += 1
+      if(LArray.primitiveSizeOf(implicitly[ClassTag[A]].runtimeClass) != 0) {
+        // Copy the array contents at once
+        l.put(0L, arr, 0, arr.length)
+      }
+      else {
+        var i = 0
+        while(i < arr.length) {
+          l(i) = arr(i)
+          i += 1
+        }
       }
       l
     }
@@ -20,6 +20,8 @@ import org.junit.Test;
 import xerial.larray.LIntArray;
 import xerial.larray.util.Logger;
 
+import java.io.File;
+
 /**
  * @author Taro L. Saito
  */
@@ -40,4 +42,22 @@ public class JLArrayTest {
 
         l.free();
     }
+
+    @Test
+    public void saveToAsync() throws Exception {
+        File f = File.createTempFile("sample", ".larray", new File("target"));
+        f.deleteOnExit();
+
+        LIntArray l = LArrayJ.newLIntArray(1000L);
+        for (long i = 0; i < l.size(); ++i) l.update(i, (int) i * 3);
+        File saved = LArrayJ.saveToAsync(l, f, 2, true, null).get();
+        Assert.assertEquals(f, saved);
+
+        LIntArray loaded = LArrayJ.loadLIntArrayFrom(f);
+        Assert.assertEquals(1000L, loaded.size());
+        for (long i = 0; i < l.size(); ++i) Assert.assertEquals(l.apply(i), loaded.apply(i));
+
+        l.free();
+        loaded.free();
+    }
 }
@@ -57,6 +57,22 @@ class IOPerfTest extends LArraySpec {
           val l = LArray.loadFrom[Byte](f1)
           l.free
         }
+        block("LArray.loadFrom (1 thread)") {
+          val l = LArray.loadFrom[Byte](f1, 1, null)
+          l.free
+        }
+        block("LArrayBuilder") {
+          // The single-threaded loader used before the parallel loader
+          val fin = new FileInputStream(f1).getChannel
+          val b = LArray.newBuilder[Byte]
+          b.sizeHint(fin.size)
+          var pos = 0L
+          while (pos < fin.size) {
+            pos += fin.transferTo(pos, fin.size - pos, b)
+          }
+          fin.close
+          b.result.free
+        }
         block("FileOutputStream") {
           trace("Loading to Array")
           IOUtil.readFully(new BufferedInputStream(new FileInputStream(f1))) {buf =>
@@ -65,5 +81,59 @@ class IOPerfTest extends LArraySpec {
         }
       }
     }
+
+    "load large files in parallel" taggedAs ("bench") in {
+      val f = File.createTempFile("sample", ".larray", new File("target"))
+      f.deleteOnExit()
+      val b = new Array[Byte](1024 * 1024)
+      val out = new FileOutputStream(f)
+      for (i <- 0 until 1024) {
+        Random.nextBytes(b)
+        out.write(b)
+      }
+      out.close
+
+      time("load 1GB", repeat = 3) {
+        for (p <- Seq(1, 2, 4, 8)) {
+          block(s"parallelism:${p}") {
+            LArray.loadFrom[Byte](f, p, null).free
+          }
+        }
+      }
+      f.delete()
+    }
+
+    "save large files in parallel" taggedAs ("bench") in {
+      val l = LArray.of[Byte](1024L * 1024 * 1024)
+      for (i <- 0L until l.size by 4096) {
+        l(i) = i.toByte
+      }
+      val f = File.createTempFile("sample", ".larray", new File("target"))
+      f.deleteOnExit()
+
+      time("save 1GB", repeat = 3) {
+        block("gathering write") {
+          // The single-threaded writer used before the parallel writer
+          val fout = new FileOutputStream(f).getChannel
+          val buffers = l.toDirectByteBuffer
+          while (buffers.exists(_.hasRemaining)) {
+            fout.write(buffers)
+          }
+          fout.close
+        }
+        for (p <- Seq(1, 4)) {
+          block(s"parallelism:${p}") {
+            l.saveTo(f, p, false, null)
+          }
+        }
+        block("async") {
+          val future = l.saveToAsync(f)
+          // The caller thread is free until the file is needed
+          future.get()
+        }
+      }
+      l.free
+      f.delete()
+    }
   }
 }
\ No newline at end of file
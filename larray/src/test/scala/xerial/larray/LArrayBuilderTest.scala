@@ -65,6 +65,67 @@ class LArrayBuilderTest extends LArraySpec {
       l.forall(v => v == r2.nextInt(255).toByte) should be (true)
     }
 
+    "hand over the memory to the result" in {
+      val b = new LLongArrayBuilder
+      b.sizeHint(10)
+      for (i <- 0L until 100000L)
+        b += i
+      val l = b.result()
+      l.size shouldBe 100000L
+      (0L until l.size).forall(i => l(i) == i) shouldBe true
+
+      // The builder becomes empty, and clear() does not free the result
+      b.clear()
+      b += 10L
+      val l2 = b.result()
+      l2.size shouldBe 1L
+      l2(0) shouldBe 10L
+      l(99999) shouldBe 99999L
+      l.free
+      l2.free
+
+      val empty = new LIntArrayBuilder().result()
+      empty.size shouldBe 0L
+    }
+
+    "build LBitArray" in {
+      val b = new LBitArrayBuilder
+      for (i <- 0 until 1000)
+        b += (i % 3 == 0)
+      b.toString.take(6) shouldBe "100100"
+      val l = b.result()
+      l.size shouldBe 1000L
+      (0 until 1000).forall(i => l(i) == (i % 3 == 0)) shouldBe true
+      b.clear()
+      l(999) shouldBe true
+      l.free
+    }
+
+    "grow without copying the contents" taggedAs ("bench") in {
+      val N = 16L * 1024 * 1024
+
+      time("build LLongArray", repeat = 5) {
+        block("builder") {
+          val b = new LLongArrayBuilder
+          var i = 0L
+          while (i < N) {
+            b += i
+            i += 1
+          }
+          b.result().free
+        }
+        block("fixed size") {
+          val l = new LLongArray(N)
+          var i = 0L
+          while (i < N) {
+            l(i) = i
+            i += 1
+          }
+          l.free
+        }
+      }
+    }
+
 
   }
 }
\ No newline at end of file
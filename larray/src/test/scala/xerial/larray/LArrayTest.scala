@@ -321,6 +321,187 @@ class LArrayTest extends LArraySpec {
       b(2) should be(34.toByte)
     }
 
+    "convert from/to primitive arrays" in {
+      val a = Array.tabulate(1000)(i => i * 3)
+      val l = a.toLArray
+      l.size shouldBe 1000
+      (0 until 1000).forall(i => l(i) == i * 3) shouldBe true
+      l.toArray shouldBe a
+
+      val d = Array(1.0, 2.5, -3.0)
+      d.toLArray.toArray shouldBe d
+
+      // LBitArray and UInt32Array are not copied with memcpy
+      val bits = Array(true, false, true)
+      bits.toLArray.toArray shouldBe bits
+      val u = new UInt32Array(3)
+      u(0) = 1L; u(1) = 4000000000L; u(2) = 3L
+      u.toArray shouldBe Array(1L, 4000000000L, 3L)
+
+      val out = new Array[Int](10)
+      l.get(4, out, 0, 10)
+      out shouldBe a.slice(1, 11)
+      l.asInstanceOf[RawByteArray[Int]].put(0, Array(7, 8), 0, 2, java.nio.ByteOrder.BIG_ENDIAN)
+      l.getInt(0) shouldBe Integer.reverseBytes(7)
+      l.free
+    }
+
+    "read and write values in explicit byte orders" in {
+      val l = LArray.of[Byte](32)
+      l.putIntBE(0, 0x01020304)
+      l(0) shouldBe 1.toByte
+      l.getIntLE(0) shouldBe 0x04030201
+      l.putLongLE(8, 0x0102030405060708L)
+      l(8) shouldBe 8.toByte
+      l.getLongBE(8) shouldBe 0x0807060504030201L
+      l.putDoubleBE(16, 2.5)
+      l.getDoubleBE(16) shouldBe 2.5
+      l.putShortLE(24, 0x0102.toShort)
+      l.getShortBE(24) shouldBe 0x0201.toShort
+
+      val v = l.asInstanceOf[UnsafeArray[Byte]].orderedView(java.nio.ByteOrder.BIG_ENDIAN)
+      v.size shouldBe 32
+      v.getInt(0) shouldBe 0x01020304
+      v.putLong(8, 42L)
+      l.getLongBE(8) shouldBe 42L
+      l.free
+    }
+
+    "update elements atomically" in {
+      val l = new LLongArray(16)
+      l.clear()
+      l.compareAndSwap(1, 0L, 5L) shouldBe true
+      l.compareAndSwap(1, 0L, 6L) shouldBe false
+      l.getAndAdd(1, 3L) shouldBe 5L
+      l.getAndSet(1, 1L) shouldBe 8L
+      l.putRelease(2, 9L)
+      l.getAcquire(2) shouldBe 9L
+      l.putVolatile(3, 10L)
+      l.getVolatile(3) shouldBe 10L
+      l.getLongVolatile(24) shouldBe 10L
+
+      val N = 4
+      val K = 10000
+      val threads = (0 until N).map { t =>
+        new Thread(new Runnable {
+          def run() {
+            for (i <- 0 until K) {
+              l.getAndAdd(0, 1L)
+              l.getAndAddInt(64, 1)
+            }
+          }
+        })
+      }
+      threads.foreach(_.start())
+      threads.foreach(_.join())
+      LArray.fullFence()
+      l(0) shouldBe N.toLong * K
+      l.getInt(64) shouldBe N * K
+      l.free
+
+      val ints = new LIntArray(4)
+      ints.clear()
+      ints.compareAndSwap(3, 0, -1) shouldBe true
+      ints.getAndAdd(3, 2) shouldBe -1
+      ints(3) shouldBe 1
+      ints.free
+    }
+
+    "save to files asynchronously" in {
+      val f = File.createTempFile("sample", ".larray", new File("target"))
+      f.deleteOnExit()
+      val l = LArray.of[Long](10000)
+      (0L until 10000L).foreach(i => l(i) = i * i)
+      l.saveToAsync(f).get() shouldBe f
+      LArray.loadFrom[Long](f).sameElements(l) shouldBe true
+
+      // Save a view
+      l.view(100, 200).saveTo(f, 2, true, null)
+      f.length() shouldBe 800
+      LArray.loadFrom[Long](f).sameElements(l.slice(100, 200)) shouldBe true
+      l.free
+
+      val bits = new LBitArray(100)
+      bits.on(3)
+      bits.on(99)
+      bits.saveToAsync(f, 2, false, null).get()
+      val loadedBits = LArray.loadFrom[Boolean](f)
+      loadedBits.size shouldBe 100
+      loadedBits.sameElements(bits) shouldBe true
+
+      LArray.empty[Int].saveToAsync(f).get()
+      f.length() shouldBe 0
+    }
+
+    "compare array contents" in {
+      val a = LArray.of[Int](100)
+      val b = LArray.of[Int](100)
+      for (i <- 0 until 100) {
+        a(i) = i
+        b(i) = i
+      }
+      val ra = a.asInstanceOf[RawByteArray[Int]]
+      val rb = b.asInstanceOf[RawByteArray[Int]]
+      a.sameElements(b) shouldBe true
+      ra.mismatch(rb) shouldBe -1L
+      ra.hash64 shouldBe rb.hash64
+      ra.compareTo(rb) shouldBe 0
+
+      b(50) = -1
+      a.sameElements(b) shouldBe false
+      ra.mismatch(rb) shouldBe 200L
+      ra.equals(0, rb, 0, 200) shouldBe true
+      ra.equals(0, rb, 0, 201) shouldBe false
+      ra.compareTo(rb) should be < 0
+      ra.hash64 should not be rb.hash64
+      a.sameElements(a.slice(0, 50)) shouldBe false
+      ra.mismatch(a.slice(0, 50).asInstanceOf[RawByteArray[Int]]) shouldBe 200L
+
+      // Floating-point values are compared by their values
+      val d1 = LArray.of[Double](1)
+      val d2 = LArray.of[Double](1)
+      d1(0) = 0.0
+      d2(0) = -0.0
+      d1.sameElements(d2) shouldBe true
+      d1.asInstanceOf[RawByteArray[Double]].mismatch(d2.asInstanceOf[RawByteArray[Double]]) should not be -1L
+
+      Seq(a, b, d1, d2).foreach(_.free)
+    }
+
+    "compute checksums" in {
+      val l = LArray.of[Byte](1000)
+      for (i <- 0 until 1000) {
+        l(i) = (i * 31 + 7).toByte
+      }
+      l.crc32c() shouldBe 0xFF52EE97L
+      l.crc32c(0, 100) shouldBe 0xE26C441CL
+      l.xxHash64() shouldBe -7396793741651722955L
+      l.xxHash64(0, 32, 12345L) shouldBe 8926110254148031078L
+      l.xxHash64Chunked() shouldBe l.xxHash64()
+      l.slice(0, 100).xxHash64() shouldBe -1179752692538359471L
+      l.view(0, 100).crc32c() shouldBe 0xE26C441CL
+      LArray.empty[Int].crc32c() shouldBe 0L
+      LArray.empty[Int].xxHash64() shouldBe -1205034819632174695L
+      intercept[IndexOutOfBoundsException] {
+        l.xxHash64(1, 1000)
+      }
+      l.free
+    }
+
+    "allocate aligned memory" in {
+      val b = new LByteArray(1000, 64)
+      b.address % 64 shouldBe 0L
+      b.size shouldBe 1000L
+      b(999) = 1.toByte
+      b(999) shouldBe 1.toByte
+      b.free
+
+      val l = new LLongArray(100, 4096)
+      l.address % 4096 shouldBe 0L
+      l.byteLength shouldBe 800L
+      l.free
+    }
+
     "compare performance" taggedAs ("bp") in {
 
       val N = (0.01 * G).toLong
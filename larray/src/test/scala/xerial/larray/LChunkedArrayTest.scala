@@ -0,0 +1,208 @@
+//--------------------------------------
+//
+// LChunkedArrayTest.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray
+
+import java.io.{ByteArrayInputStream, File}
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+
+import xerial.larray.buffer.MemoryChecksum
+
+/**
+  * @author Taro L. Saito
+  */
+class LChunkedArrayTest extends LArraySpec {
+
+  "LChunkedArray" should {
+
+    "build a sequence of segments" in {
+      val b = LChunkedArray.newBuilder[Int](64)
+      for (i <- 0 until 1000)
+        b += i * 3
+      val l = b.result()
+      l.size shouldBe 1000L
+      l.byteLength shouldBe 4000L
+      // 62 full segments + a segment of 32 bytes
+      l.numSegments shouldBe 63
+      l.segment(62).byteLength shouldBe 32L
+      (0L until l.size).forall(i => l(i) == i * 3) shouldBe true
+      l.iterator.zipWithIndex.forall { case (v, i) => v == i * 3 } shouldBe true
+      l.toDirectByteBuffer.map(_.limit().toLong).sum shouldBe 4000L
+
+      val a = l.toLArray
+      a.size shouldBe 1000L
+      (0L until a.size).forall(i => a(i) == i * 3) shouldBe true
+      a.crc32c() shouldBe l.crc32c()
+      a.crc32c(10, 3000) shouldBe l.crc32c(10, 3000)
+
+      intercept[UnsupportedOperationException] {
+        l.address
+      }
+      a.free
+      l.free
+    }
+
+    "read values crossing the segment boundaries" in {
+      val b = LChunkedArray.newBuilder[Byte](16)
+      b.append((0 until 100).map(_.toByte).toArray, 0, 100)
+      val l = b.result()
+      val a = l.toLArray
+      for (offset <- 0L until 92L) {
+        l.getLong(offset) shouldBe a.getLong(offset)
+        l.getInt(offset) shouldBe a.getInt(offset)
+        l.getShortBE(offset) shouldBe a.getShortBE(offset)
+      }
+      l.getLongVolatile(16) shouldBe a.getLong(16)
+      intercept[IllegalArgumentException] {
+        l.getLongVolatile(4)
+      }
+      a.free
+      l.free
+    }
+
+    "append values crossing the segment boundaries after unaligned bytes" in {
+      val b = LChunkedArray.newBuilder[Int](16)
+      b.append(Array[Byte](1, 2, 3), 0, 3)
+      for (i <- 0 until 10)
+        b += i * 1000
+      val l = b.result()
+      // The segments are densely filled
+      l.numSegments shouldBe 3
+      l.segment(0).byteLength shouldBe 16L
+      l.segment(1).byteLength shouldBe 16L
+      l.getByte(2) shouldBe 3.toByte
+      for (i <- 0 until 10)
+        l.getInt(3 + i * 4) shouldBe i * 1000
+      l.free
+
+      val b2 = LChunkedArray.newBuilder[Double](16)
+      b2.append(Array[Byte](1), 0, 1)
+      for (i <- 0 until 5)
+        b2 += i * 1.5
+      val l2 = b2.result()
+      for (i <- 0 until 5)
+        l2.getDouble(1 + i * 8) shouldBe i * 1.5
+      l2.free
+    }
+
+    "compute hashes and read arrays over the segments" in {
+      val b = LChunkedArray.newBuilder[Byte](16)
+      b.append((0 until 100).map(i => (i * 7).toByte).toArray, 0, 100)
+      val l = b.result()
+      val a = l.toLArray
+      for (offset <- Seq(0L, 3L, 16L, 50L); length <- Seq(0L, 1L, 15L, 31L, 33L, 100L - offset)) {
+        l.xxHash64(offset, length, 1L) shouldBe a.xxHash64(offset, length, 1L)
+        l.xxHash64Chunked(offset, length, 1L, 4) shouldBe a.xxHash64Chunked(offset, length, 1L, 4)
+      }
+      l.xxHash64() shouldBe a.xxHash64()
+
+      for (offset <- Seq(0L, 5L, 13L)) {
+        val longs = new Array[Long](10)
+        l.get(offset, longs, 1, 9)
+        val expected = new Array[Long](10)
+        a.get(offset, expected, 1, 9)
+        longs shouldBe expected
+        val ints = new Array[Int](20)
+        l.get(offset, ints, 0, 20, java.nio.ByteOrder.BIG_ENDIAN)
+        (0 until 20).forall(i => ints(i) == a.getIntBE(offset + i * 4)) shouldBe true
+      }
+      intercept[IndexOutOfBoundsException] {
+        l.get(90, new Array[Int](3), 0, 3)
+      }
+      a.free
+      l.free
+
+      // Combine the hash values of the chunks larger than the segments
+      val L = MemoryChecksum.CHUNK_SIZE + 1000
+      val src = new LByteArray(L)
+      for (i <- 0L until L by 8)
+        src.putLong(i, i * 31)
+      val b2 = LChunkedArray.newBuilder[Byte](1L << 20)
+      b2.append(src)
+      val l2 = b2.result()
+      l2.xxHash64Chunked(3, L - 3, 0L, 4) shouldBe src.xxHash64Chunked(3, L - 3, 0L, 4)
+      l2.xxHash64Chunked(3, L - 3, 0L, 1) shouldBe src.xxHash64Chunked(3, L - 3, 0L, 4)
+      src.free
+      l2.free
+    }
+
+    "ingest streams" in {
+      val data = Array.tabulate[Byte](10000)(i => (i * 7).toByte)
+      val b = LChunkedArray.newBuilder[Byte](1024)
+      b.readFrom(Channels.newChannel(new ByteArrayInputStream(data))) shouldBe 10000L
+      b.write(ByteBuffer.wrap(data, 0, 3000)) shouldBe 3000
+      val direct = ByteBuffer.allocateDirect(2000)
+      direct.put(data, 0, 2000).flip()
+      b.write(direct) shouldBe 2000
+      b += 1.toByte
+      val l = b.result()
+      l.size shouldBe 15001L
+      (0 until 10000).forall(i => l(i) == data(i)) shouldBe true
+      (0 until 3000).forall(i => l(10000 + i) == data(i)) shouldBe true
+      (0 until 2000).forall(i => l(13000 + i) == data(i)) shouldBe true
+      l(15000) shouldBe 1.toByte
+
+      // The builder becomes empty after result()
+      b.result().size shouldBe 0L
+      l.free
+    }
+
+    "save to files without consolidating the segments" in {
+      val b = LChunkedArray.newBuilder[Long](256)
+      for (i <- 0L until 10000L)
+        b += i
+      val l = b.result()
+      val f = File.createTempFile("chunked", ".larray")
+      f.deleteOnExit()
+      var maxProgress = 0L
+      l.saveTo(f, 2, false, new buffer.ProgressListener {
+        def progress(transferred: Long, total: Long) {
+          synchronized { maxProgress = math.max(maxProgress, transferred) }
+          total shouldBe 80000L
+        }
+      })
+      maxProgress shouldBe 80000L
+      val l2 = LArray.loadFrom[Long](f)
+      l2.size shouldBe 10000L
+      (0L until 10000L).forall(i => l2(i) == i) shouldBe true
+
+      val f2 = File.createTempFile("chunked", ".larray")
+      f2.deleteOnExit()
+      l.saveToAsync(f2).get() shouldBe f2
+      val l3 = LArray.loadFrom[Long](f2)
+      l3.sameElements(l2) shouldBe true
+      l.free
+      l2.free
+      l3.free
+    }
+
+    "compare ingestion speed with LArrayBuilder" taggedAs ("bench") in {
+      val N = 16L * 1024 * 1024
+      time("append values", repeat = 5) {
+        block("LArrayBuilder") {
+          val b = new LLongArrayBuilder
+          var i = 0L
+          while (i < N) {
+            b += i
+            i += 1
+          }
+          b.result().free
+        }
+        block("LChunkedArrayBuilder") {
+          val b = new LLongChunkedArrayBuilder(LChunkedArray.DefaultChunkSize)
+          var i = 0L
+          while (i < N) {
+            b += i
+            i += 1
+          }
+          b.result().free
+        }
+      }
+    }
+  }
+}
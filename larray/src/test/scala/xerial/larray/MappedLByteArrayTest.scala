@@ -24,6 +24,8 @@ package xerial.larray
 
 import java.io.File
 
+import xerial.larray.mmap.MMapAdvice
+
 /**
   * @author Taro L. Saito
   */
@@ -62,6 +64,110 @@ class MappedLByteArrayTest extends LArraySpec {
       //m2.free
     }
 
+    "update shared values atomically" in {
+      val f = File.createTempFile("mmap", ".larray", new File("target"))
+      f.deleteOnExit()
+
+      val m = new MappedLByteArray(f, 0, 64)
+      m.clear()
+      m.compareAndSwapLong(8, 0L, 100L) shouldBe true
+      m.getAndAddLong(8, 1L) shouldBe 100L
+      m.putIntRelease(16, 3)
+      m.getAndSetInt(16, 4) shouldBe 3
+      m.getIntAcquire(16) shouldBe 4
+      m.close()
+
+      val m2 = new MappedLByteArray(f, 0, 64)
+      m2.getLongVolatile(8) shouldBe 101L
+      m2.getInt(16) shouldBe 4
+      m2.close()
+    }
+
+    "give access pattern hints" in {
+      val f = File.createTempFile("mmap", ".larray", new File("target"))
+      f.deleteOnExit()
+
+      val L = 1024L * 1024
+      val m = new MappedLByteArray(f, 0, L)
+      for (i <- 0L until L by 4096)
+        m(i) = 1.toByte
+      val linux = System.getProperty("os.name").toLowerCase.contains("linux")
+      for (a <- Seq(MMapAdvice.SEQUENTIAL, MMapAdvice.RANDOM, MMapAdvice.WILLNEED, MMapAdvice.NORMAL))
+        m.advise(a) shouldBe linux
+      // Sub-ranges not aligned to the page boundary
+      m.advise(MMapAdvice.WILLNEED, 100, 10000) shouldBe linux
+      m.advise(MMapAdvice.RANDOM, L - 1, 1) shouldBe linux
+      // Pages of the shared mapping are read again from the file
+      m.flush
+      m.advise(MMapAdvice.DONTNEED) shouldBe linux
+      (0L until L by 4096).forall(i => m(i) == 1.toByte) shouldBe true
+      // Transparent huge pages may not be supported for files
+      m.advise(MMapAdvice.HUGEPAGE)
+
+      intercept[IllegalArgumentException] {
+        m.advise(MMapAdvice.RANDOM, L - 1, 2)
+      }
+      m.close()
+
+      val mOffset = new MappedLByteArray(f, 4000, 10000)
+      mOffset.advise(MMapAdvice.SEQUENTIAL, 0, 10000) shouldBe linux
+      mOffset(0) shouldBe 0.toByte
+      mOffset(96) shouldBe 1.toByte
+      mOffset.close()
+    }
+
+    "compare scan and random probe speed with access hints" taggedAs ("bench") in {
+      val f = File.createTempFile("mmap", ".larray", new File("target"))
+      f.deleteOnExit()
+
+      val L = 256L * 1024 * 1024
+      val m = new MappedLByteArray(f, 0, L)
+      for (i <- 0L until L by 4096)
+        m.putLong(i, i)
+      m.flush
+
+      val P = 1000000
+      val r = new scala.util.Random(0)
+      val probes = Array.fill(P)((r.nextLong() & Long.MaxValue) % (L / 8) * 8)
+
+      def scan: Long = {
+        var sum = 0L
+        var i = 0L
+        while (i < L) {
+          sum += m.getLong(i)
+          i += 4096
+        }
+        sum
+      }
+
+      def probe: Long = {
+        var sum = 0L
+        var i = 0
+        while (i < P) {
+          sum += m.getLong(probes(i))
+          i += 1
+        }
+        sum
+      }
+
+      for (a <- Seq(MMapAdvice.NORMAL, MMapAdvice.SEQUENTIAL, MMapAdvice.RANDOM, MMapAdvice.WILLNEED)) {
+        time(s"access with ${a}", repeat = 3) {
+          block("scan") {
+            m.advise(MMapAdvice.DONTNEED)
+            m.advise(a)
+            scan
+          }
+          block("random probe") {
+            m.advise(MMapAdvice.DONTNEED)
+            m.advise(a)
+            probe
+          }
+        }
+      }
+      m.close()
+      f.delete()
+    }
+
     "create large memory mapped file more than 2GB" taggedAs ("large") in {
 
       val f = File.createTempFile("mmap", ".larray", new File("target"))
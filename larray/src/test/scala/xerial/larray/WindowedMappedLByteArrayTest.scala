@@ -0,0 +1,241 @@
+//--------------------------------------
+//
+// WindowedMappedLByteArrayTest.scala
+// Since: 2026/10/17
+//
+//--------------------------------------
+
+package xerial.larray
+
+import java.io.File
+
+import xerial.larray.mmap.MMapMode
+
+/**
+  * @author Taro L. Saito
+  */
+class WindowedMappedLByteArrayTest extends LArraySpec {
+
+  def tempFile = {
+    val f = File.createTempFile("windowed", ".larray", new File("target"))
+    f.deleteOnExit()
+    f
+  }
+
+  val pageSize = xerial.larray.buffer.UnsafeUtil.unsafe.pageSize()
+
+  "WindowedMappedLByteArray" should {
+
+    "map windows on demand" in {
+      val W = pageSize * 4L
+      val m = new WindowedMappedLByteArray(tempFile, 0, W * 10, MMapMode.READ_WRITE, W, 3)
+      m.mappedWindows shouldBe 0
+      for (i <- 0L until m.size by 1024)
+        m(i) = (i / 1024).toByte
+      m.windowMisses shouldBe 10L
+      m.windowEvictions shouldBe 7L
+      m.mappedWindows shouldBe 3
+
+      // The last three windows are still mapped
+      m(W * 9) shouldBe (W * 9 / 1024).toByte
+      m(W * 8) shouldBe (W * 8 / 1024).toByte
+      m(W * 7) shouldBe (W * 7 / 1024).toByte
+      m.windowMisses shouldBe 10L
+      // Window 9 is evicted as the least recently used one
+      m(0) shouldBe 0.toByte
+      m.windowMisses shouldBe 11L
+      m(W * 8) shouldBe (W * 8 / 1024).toByte
+      m.windowMisses shouldBe 11L
+      m(W * 9) shouldBe (W * 9 / 1024).toByte
+      m.windowMisses shouldBe 12L
+      m.windowHits should be > 0L
+      m.free
+      intercept[IllegalStateException] {
+        m(0)
+      }
+    }
+
+    "read and write values crossing the window boundaries" in {
+      val W = pageSize.toLong
+      // The array begins at the middle of a page
+      val m = new WindowedMappedLByteArray(tempFile, 100, W * 8, MMapMode.READ_WRITE, W, 2)
+      val b = W - 100 - 3
+      m.putLong(b, 0x0102030405060708L)
+      m.getLong(b) shouldBe 0x0102030405060708L
+      m.putInt(b + W, 12345678)
+      m.getInt(b + W) shouldBe 12345678
+      m.putDouble(b + 2 * W, 1.5)
+      m.getDouble(b + 2 * W) shouldBe 1.5
+      m.putShort(W - 101, 777.toShort)
+      m.getShort(W - 101) shouldBe 777.toShort
+      m.putChar(W - 101 + W, 'x')
+      m.getChar(W - 101 + W) shouldBe 'x'
+
+      // Compare with a contiguous array
+      val a = new LByteArray(m.size)
+      val r = new scala.util.Random(0)
+      for (i <- 0L until a.size) a(i) = r.nextInt().toByte
+      val buf = new Array[Byte](a.size.toInt)
+      a.writeToArray(0, buf, 0, buf.length)
+      m.readFromArray(buf, 0, 0, buf.length)
+      for (i <- 0L until a.size - 8 by 13)
+        m.getLong(i) shouldBe a.getLong(i)
+      m.crc32c() shouldBe a.crc32c()
+      val c = new LByteArray(m.size)
+      m.copyTo(c, 0)
+      c.crc32c() shouldBe a.crc32c()
+      val out = new Array[Byte](100)
+      m.writeToArray(W - 150, out, 0, 100)
+      out(99) shouldBe a(W - 51)
+      m.view(W - 10, W + 10)(15) shouldBe a(W + 5)
+
+      m.getAndAddLong(W - 100, 1L) shouldBe a.getLong(W - 100)
+      intercept[IllegalArgumentException] {
+        m.compareAndSwapInt(1, 0, 1)
+      }
+      intercept[UnsupportedOperationException] {
+        m.address
+      }
+      m.clear()
+      m.getLong(b) shouldBe 0L
+      m.free
+      a.free
+      c.free
+    }
+
+    "write data to the file" in {
+      val f = tempFile
+      val W = pageSize * 2L
+      val m = new WindowedMappedLByteArray(f, 10, W * 5, MMapMode.READ_WRITE, W, 2)
+      for (i <- 0L until m.size - 8 by 8)
+        m.putLong(i, i)
+      m.flush
+      m.free
+      f.length() shouldBe 10 + W * 5
+
+      val m2 = new MappedLByteArray(f, 10, W * 5, MMapMode.READ_ONLY)
+      for (i <- 0L until m2.size - 8 by 8)
+        m2.getLong(i) shouldBe i
+      m2.close()
+
+      val m3 = new WindowedMappedLByteArray(f, MMapMode.READ_ONLY)
+      m3.size shouldBe f.length()
+      m3.getLong(10 + W * 3) shouldBe W * 3
+      m3.free
+    }
+
+    "compute hashes, read arrays and save files through the windows" in {
+      val W = pageSize.toLong
+      val m = new WindowedMappedLByteArray(tempFile, 100, W * 5 + 37, MMapMode.READ_WRITE, W, 2)
+      val a = new LByteArray(m.size)
+      val r = new scala.util.Random(0)
+      for (i <- 0L until a.size) a(i) = r.nextInt().toByte
+      val buf = new Array[Byte](a.size.toInt)
+      a.writeToArray(0, buf, 0, buf.length)
+      m.readFromArray(buf, 0, 0, buf.length)
+
+      m.xxHash64() shouldBe a.xxHash64()
+      m.xxHash64(W - 3, 2 * W + 10, 123L) shouldBe a.xxHash64(W - 3, 2 * W + 10, 123L)
+      m.xxHash64Chunked(5, W * 4, 7L, 4) shouldBe a.xxHash64Chunked(5, W * 4, 7L, 4)
+      m.crc32c(10, W * 3) shouldBe a.crc32c(10, W * 3)
+
+      // Values crossing the window boundaries
+      val n = (W * 2 / 8).toInt
+      val l1 = new Array[Long](n)
+      val l2 = new Array[Long](n)
+      m.get(W - 103, l1, 0, n)
+      a.get(W - 103, l2, 0, n)
+      l1 shouldBe l2
+      val i1 = new Array[Int](n)
+      val i2 = new Array[Int](n)
+      m.get(W - 98, i1, 0, n, java.nio.ByteOrder.BIG_ENDIAN)
+      a.get(W - 98, i2, 0, n, java.nio.ByteOrder.BIG_ENDIAN)
+      i1 shouldBe i2
+
+      // Each window is written once
+      val f1 = m.saveTo(tempFile)
+      f1.length() shouldBe m.size
+      val l = LArray.loadFrom[Byte](f1)
+      l.crc32c() shouldBe a.crc32c()
+      l.free
+      val f2 = m.saveToAsync(tempFile, 2, true, null).get()
+      val l3 = LArray.loadFrom[Byte](f2)
+      l3.crc32c() shouldBe a.crc32c()
+      l3.free
+
+      // Views read the bytes through the windows
+      val v = m.view(W - 10, W * 4)
+      val av = a.view(W - 10, W * 4)
+      v.getLong(5) shouldBe av.getLong(5)
+      v.getIntBE(W + 7) shouldBe av.getIntBE(W + 7)
+      v.xxHash64() shouldBe av.xxHash64()
+      v.xxHash64Chunked() shouldBe av.xxHash64Chunked()
+      v.crc32c() shouldBe av.crc32c()
+      m.get(W - 10 + 3, l1, 0, 100)
+      v.get(3, l2, 0, 100)
+      l1 shouldBe l2
+      var transferred = 0L
+      val f3 = v.saveTo(tempFile, 1, false, new xerial.larray.buffer.ProgressListener {
+        def progress(transferredBytes: Long, totalBytes: Long) {
+          totalBytes shouldBe v.byteLength
+          transferred = transferredBytes
+        }
+      })
+      transferred shouldBe v.byteLength
+      val l4 = LArray.loadFrom[Byte](f3)
+      l4.crc32c() shouldBe av.crc32c()
+      l4.free
+      val l5 = LArray.loadFrom[Byte](v.saveToAsync(tempFile).get())
+      l5.crc32c() shouldBe av.crc32c()
+      l5.free
+      intercept[IndexOutOfBoundsException] {
+        v.xxHash64(10, W * 4)
+      }
+
+      intercept[UnsupportedOperationException] {
+        m.toDirectByteBuffer
+      }
+      m.free
+      a.free
+    }
+
+    "compare random access with MappedLByteArray" taggedAs ("bench") in {
+      val f = tempFile
+      val L = 1L << 30
+      val m = new MappedLByteArray(f, 0, L, MMapMode.READ_WRITE)
+      for (i <- 0L until L by 4096)
+        m.putLong(i, i)
+      m.close()
+      val N = 1000000
+      val r = new scala.util.Random(0)
+      val offsets = Array.fill(N)((r.nextLong() & Long.MaxValue) % (L / 8) * 8)
+
+      def probe(a: LArray[Byte]) = {
+        var sum = 0L
+        for (i <- 0 until N)
+          sum += a.getLong(offsets(i))
+        sum
+      }
+
+      time("random access", repeat = 3) {
+        block("MappedLByteArray") {
+          val a = new MappedLByteArray(f, 0, L, MMapMode.READ_ONLY)
+          probe(a)
+          a.close()
+        }
+        block("windowed (all windows)") {
+          val a = new WindowedMappedLByteArray(f, 0, L, MMapMode.READ_ONLY, 64L * 1024 * 1024, 16)
+          probe(a)
+          debug(s"hits:${a.windowHits}, misses:${a.windowMisses}")
+          a.free
+        }
+        block("windowed (4 windows)") {
+          val a = new WindowedMappedLByteArray(f, 0, L, MMapMode.READ_ONLY, 64L * 1024 * 1024, 4)
+          probe(a)
+          debug(s"hits:${a.windowHits}, misses:${a.windowMisses}, evictions:${a.windowEvictions}")
+          a.free
+        }
+      }
+    }
+  }
+}